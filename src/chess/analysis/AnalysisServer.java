@@ -0,0 +1,595 @@
+package chess.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import chess.board.BoardAnalyzer;
+import chess.board.ChessBoard;
+import chess.board.Fen;
+import chess.board.Move;
+import chess.board.Position;
+import chess.board.Zobrist;
+import chess.pgn.San;
+import chess.piece.PieceColor;
+import chess.player.Minimax;
+import chess.player.PvLine;
+import chess.player.SearchResult;
+import chess.player.TranspositionTable;
+import chess.uci.UciEngine;
+
+/**
+ * A small HTTP server which analyzes positions for other programs. It only
+ * listens on the loopback address and answers two requests:
+ *
+ * <pre>
+ * GET  /analyze?fen=...&amp;depth=6&amp;movetime=1000
+ * POST /analyze             (the same parameters, form encoded in the body)
+ * GET  /stats
+ * </pre>
+ *
+ * Every search has a time limit: {@value #DEFAULT_MOVETIME} ms when the
+ * request gives none, and never more than {@value #MAX_MOVETIME} ms, so that a
+ * request for a deep search cannot hold an engine for good.
+ *
+ * The answer to an analysis is a JSON object with the best move in UCI and
+ * standard algebraic notation, the score from the side to move in centipawns
+ * or as the moves to a checkmate, the depth, the nodes and the principal
+ * variation in UCI notation. A position without legal moves has no best move
+ * and a status of "checkmate", with a mate score of 0, or "stalemate".
+ *
+ * Searches run on a fixed pool of engines, each with its own board and
+ * transposition table. Only a limited amount of searches may wait for an
+ * engine, and requests are handled by a fixed pool of threads with a bounded
+ * queue; beyond that, requests are turned away with 503 Service Unavailable,
+ * so that a burst of requests cannot pile up without bound. Results of searches
+ * which reach their depth are kept in an LRU cache keyed by the Zobrist key of
+ * the position and the limits; a search cut short by its time limit is not
+ * cached, since a later request may get further. A request for a position
+ * which is already being searched with the same limits is answered when that
+ * search finishes instead of starting another one. Such a request does not
+ * hold a thread while it waits.
+ *
+ * @author kennangumbs
+ *
+ */
+public class AnalysisServer {
+
+	/**
+	 * The port the server listens on by default.
+	 */
+	public static final int DEFAULT_PORT = 8080;
+
+	private static final int DEFAULT_DEPTH = 6;
+	private static final long DEFAULT_MOVETIME = 10000;
+	private static final long MAX_MOVETIME = 60000;
+	private static final int SPARE_HANDLERS = 4;
+	private static final int TABLE_BITS = 20;
+	private static final int RETRY_AFTER = 1;
+
+	private final HttpServer server;
+	private final ThreadPoolExecutor handlers;
+	private final BlockingQueue<Engine> engines;
+	private final Semaphore admission;
+	private final Map<String, CompletableFuture<String>> pending;
+	private final Map<String, String> cache;
+
+	private final AtomicLong requests;
+	private final AtomicLong searches;
+	private final AtomicLong cacheHits;
+	private final AtomicLong coalesced;
+	private final AtomicLong rejected;
+
+	/**
+	 * Constructs an AnalysisServer object. The server does not answer requests
+	 * until it is started.
+	 *
+	 * @param port      the port to listen on, 0 for any free port
+	 * @param engines   the amount of positions searched at the same time
+	 * @param queue     the amount of searches which may wait for an engine
+	 * @param cacheSize the amount of results kept in the cache
+	 * @throws IOException if the port cannot be bound
+	 */
+	public AnalysisServer(int port, int engines, int queue, int cacheSize) throws IOException {
+		this.engines = new ArrayBlockingQueue<Engine>(engines);
+		for (int i = 0; i < engines; i++) {
+			this.engines.add(new Engine());
+		}
+		admission = new Semaphore(engines + queue);
+		pending = new ConcurrentHashMap<String, CompletableFuture<String>>();
+		cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > cacheSize;
+			}
+		};
+
+		requests = new AtomicLong();
+		searches = new AtomicLong();
+		cacheHits = new AtomicLong();
+		coalesced = new AtomicLong();
+		rejected = new AtomicLong();
+
+		// A request which is searched holds its thread, so there is one thread for
+		// every search which is admitted and a few more to turn away the rest and
+		// answer cache hits. Requests which find every thread busy may only queue
+		// up to a point; the server's own thread hands them over and answers the
+		// rest with 503 itself.
+		handlers = new ThreadPoolExecutor(engines + queue + SPARE_HANDLERS, engines + queue + SPARE_HANDLERS, 0,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queue)), r -> {
+					Thread t = new Thread(r, "Analysis Server");
+					t.setDaemon(true);
+					return t;
+				});
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/analyze", exchange -> dispatch(exchange, this::handleAnalyze));
+		server.createContext("/stats", exchange -> dispatch(exchange, this::handleStats));
+	}
+
+	/**
+	 * Starts answering requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops answering requests. Requests which are being answered get up to a
+	 * second to finish.
+	 */
+	public void stop() {
+		server.stop(1);
+		handlers.shutdownNow();
+	}
+
+	/**
+	 * A getter for the port the server listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Hands a request over to the handler threads, or answers it with 503 if
+	 * their queue is full. This runs on the server's own thread, so it must not
+	 * block.
+	 *
+	 * @param exchange the request and its response
+	 * @param handler  the handler which answers the request
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void dispatch(HttpExchange exchange, HttpHandler handler) throws IOException {
+		try {
+			handlers.execute(() -> {
+				try {
+					handler.handle(exchange);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			try {
+				sendFailure(exchange, new Overloaded());
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Answers a request to analyze a position. A request which waits for a search
+	 * that is already running is answered, and closed, when that search finishes.
+	 *
+	 * @param exchange the request and its response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void handleAnalyze(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		boolean waiting = false;
+		try {
+			Map<String, String> params;
+			if (exchange.getRequestMethod().equals("GET")) {
+				params = parseQuery(exchange.getRequestURI().getRawQuery());
+			} else if (exchange.getRequestMethod().equals("POST")) {
+				try (InputStream in = exchange.getRequestBody()) {
+					params = parseQuery(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+				}
+			} else {
+				exchange.getResponseHeaders().set("Allow", "GET, POST");
+				sendError(exchange, 405, "method not allowed");
+				return;
+			}
+
+			String fen = params.get("fen");
+			if (fen == null) {
+				sendError(exchange, 400, "missing fen");
+				return;
+			}
+			Position pos;
+			int depth;
+			long movetime;
+			try {
+				pos = Fen.parse(fen);
+				depth = Integer.parseInt(params.getOrDefault("depth", String.valueOf(DEFAULT_DEPTH)));
+				movetime = Long.parseLong(params.getOrDefault("movetime", String.valueOf(DEFAULT_MOVETIME)));
+			} catch (IllegalArgumentException e) {
+				sendError(exchange, 400, e.getMessage());
+				return;
+			}
+			depth = Math.max(1, Math.min(depth, Minimax.MAX_DEPTH));
+			movetime = (movetime <= 0) ? DEFAULT_MOVETIME : Math.min(movetime, MAX_MOVETIME);
+
+			waiting = analyze(exchange, pos, depth, movetime);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			sendError(exchange, 500, String.valueOf(e.getMessage()));
+		} finally {
+			if (!waiting) {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Answers a request from the cache, from a search which is already running,
+	 * or from a new search.
+	 *
+	 * @param exchange the request and its response
+	 * @param pos      the position
+	 * @param depth    the depth limit
+	 * @param movetime the time limit in milliseconds
+	 * @return true if the request waits for a search which is already running and
+	 *         will be answered when it finishes, false if it has been answered.
+	 * @throws IOException if the response cannot be sent
+	 */
+	private boolean analyze(HttpExchange exchange, Position pos, int depth, long movetime) throws IOException {
+		String key = Long.toHexString(Zobrist.getKey(pos.getBoard(), pos.getSideToMove())) + "/" + depth + "/"
+				+ movetime;
+
+		String json;
+		synchronized (cache) {
+			json = cache.get(key);
+		}
+		if (json != null) {
+			cacheHits.incrementAndGet();
+			send(exchange, 200, "hit", json);
+			return false;
+		}
+
+		CompletableFuture<String> future = new CompletableFuture<String>();
+		CompletableFuture<String> running = pending.putIfAbsent(key, future);
+		if (running != null) {
+			coalesced.incrementAndGet();
+			running.whenComplete((result, error) -> answer(exchange, result, error));
+			return true;
+		}
+
+		try {
+			if (!admission.tryAcquire()) {
+				rejected.incrementAndGet();
+				Overloaded overloaded = new Overloaded();
+				future.completeExceptionally(overloaded);
+				sendFailure(exchange, overloaded);
+				return false;
+			}
+			try {
+				json = search(pos, depth, movetime, key);
+			} finally {
+				admission.release();
+			}
+			future.complete(json);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(e);
+			sendError(exchange, 503, "interrupted");
+			return false;
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			pending.remove(key, future);
+		}
+		send(exchange, 200, "miss", json);
+		return false;
+	}
+
+	/**
+	 * Answers a request which waited for a search that was already running, and
+	 * closes it. This runs on the thread which finished the search.
+	 *
+	 * @param exchange the request and its response
+	 * @param json     the result of the search, null if it failed
+	 * @param error    the reason the search failed, null if it did not
+	 */
+	private static void answer(HttpExchange exchange, String json, Throwable error) {
+		try {
+			if (error == null) {
+				send(exchange, 200, "coalesced", json);
+			} else {
+				sendFailure(exchange, (error instanceof CompletionException) ? error.getCause() : error);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Searches a position on the next free engine, and caches the result if the
+	 * search reached its depth limit.
+	 *
+	 * @param pos      the position
+	 * @param depth    the depth limit
+	 * @param movetime the time limit in milliseconds
+	 * @param key      the key of the result in the cache
+	 * @return the result as a JSON object
+	 * @throws InterruptedException if the thread is interrupted while waiting for
+	 *                              an engine
+	 */
+	private String search(Position pos, int depth, long movetime, String key) throws InterruptedException {
+		Engine engine = engines.take();
+		try {
+			searches.incrementAndGet();
+			engine.board.set(pos.getBoard());
+			Minimax minimax = (pos.getSideToMove() == PieceColor.WHITE) ? engine.white : engine.black;
+			minimax.setDepthLimit(depth);
+			minimax.setTimeLimit(movetime);
+			SearchResult result = minimax.analyze(1);
+			String json = toJson(engine.board, pos.getSideToMove(), result);
+			if (result.getDepth() >= depth) {
+				synchronized (cache) {
+					cache.put(key, json);
+				}
+			}
+			return json;
+		} finally {
+			engines.put(engine);
+		}
+	}
+
+	/**
+	 * Writes the result of a search as a JSON object.
+	 *
+	 * @param cb     the chess board the search ran on
+	 * @param pc     the color of the player to move
+	 * @param result the result of the search
+	 * @return the JSON object
+	 */
+	private static String toJson(ChessBoard cb, PieceColor pc, SearchResult result) {
+		StringBuilder sb = new StringBuilder("{");
+		Move best = result.getBestMove();
+		if (best == null) {
+			sb.append("\"bestmove\":null,\"san\":null,");
+		} else {
+			sb.append("\"bestmove\":\"").append(UciEngine.toUci(cb, best)).append("\",");
+			sb.append("\"san\":\"").append(San.toSan(cb, pc, best, null)).append("\",");
+		}
+
+		List<PvLine> lines = result.getLines();
+		float score = (pc == PieceColor.WHITE) ? result.getScore() : -result.getScore();
+		BoardAnalyzer ba = BoardAnalyzer.getInstance();
+		if (best == null && ba.noMovesAvalible(cb, pc)) {
+			// A position without moves is not searched, so its score says nothing.
+			if (ba.isInCheck(cb, pc)) {
+				sb.append("\"status\":\"checkmate\",\"score\":{\"mate\":0},");
+			} else {
+				sb.append("\"status\":\"stalemate\",\"score\":{\"cp\":0},");
+			}
+		} else if (Math.abs(score) >= 999999 && !lines.isEmpty()) {
+			int moves = (lines.get(0).getMoves().size() + 1) / 2;
+			sb.append("\"score\":{\"mate\":").append(score > 0 ? moves : -moves).append("},");
+		} else {
+			sb.append("\"score\":{\"cp\":").append(Math.round(score * 100)).append("},");
+		}
+		sb.append("\"depth\":").append(result.getDepth()).append(',');
+		sb.append("\"seldepth\":").append(result.getMaxDepth()).append(',');
+		sb.append("\"nodes\":").append(result.getNodes()).append(',');
+		sb.append("\"time\":").append(result.getElapsedMs()).append(',');
+
+		sb.append("\"pv\":[");
+		if (!lines.isEmpty()) {
+			ChessBoard sim = new ChessBoard(cb);
+			List<Move> pv = lines.get(0).getMoves();
+			for (int i = 0; i < pv.size(); i++) {
+				sb.append(i == 0 ? "\"" : ",\"").append(UciEngine.toUci(sim, pv.get(i))).append('"');
+				pv.get(i).execute(sim);
+			}
+		}
+		return sb.append("]}").toString();
+	}
+
+	/**
+	 * Answers a request for the counters of the server.
+	 *
+	 * @param exchange the request and its response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void handleStats(HttpExchange exchange) throws IOException {
+		int size;
+		synchronized (cache) {
+			size = cache.size();
+		}
+		String json = "{\"requests\":" + requests.get() + ",\"searches\":" + searches.get() + ",\"cacheHits\":"
+				+ cacheHits.get() + ",\"coalesced\":" + coalesced.get() + ",\"rejected\":" + rejected.get()
+				+ ",\"cached\":" + size + ",\"running\":" + pending.size() + "}";
+		try {
+			send(exchange, 200, null, json);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Sends the response for a search which failed.
+	 *
+	 * @param exchange the request and its response
+	 * @param cause    the reason the search failed
+	 * @throws IOException if the response cannot be sent
+	 */
+	private static void sendFailure(HttpExchange exchange, Throwable cause) throws IOException {
+		if (cause instanceof Overloaded) {
+			exchange.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER));
+			sendError(exchange, 503, "too many requests");
+		} else {
+			sendError(exchange, 500, String.valueOf(cause.getMessage()));
+		}
+	}
+
+	/**
+	 * Sends an error as a JSON object.
+	 *
+	 * @param exchange the request and its response
+	 * @param status   the HTTP status code
+	 * @param message  the error message
+	 * @throws IOException if the response cannot be sent
+	 */
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		send(exchange, status, null, "{\"error\":\"" + escape(message) + "\"}");
+	}
+
+	/**
+	 * Sends a JSON response.
+	 *
+	 * @param exchange the request and its response
+	 * @param status   the HTTP status code
+	 * @param cache    how the result was found, for the X-Cache header, null for
+	 *                 no header
+	 * @param json     the body of the response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private static void send(HttpExchange exchange, int status, String cache, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		if (cache != null) {
+			exchange.getResponseHeaders().set("X-Cache", cache);
+		}
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Escapes the characters of a string which cannot appear in a JSON string.
+	 *
+	 * @param s the string
+	 * @return the escaped string
+	 */
+	private static String escape(String s) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Parses the parameters of a query string or a form encoded body.
+	 *
+	 * @param query the parameters, for example "fen=...&amp;depth=6"
+	 * @return the parameters by their names
+	 */
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query == null) {
+			return params;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * A class which holds everything one search needs, so that searches on
+	 * different engines never share any state.
+	 */
+	private static class Engine {
+
+		private final ChessBoard board;
+		private final Minimax white;
+		private final Minimax black;
+
+		/**
+		 * Constructs an Engine object.
+		 */
+		Engine() {
+			board = new ChessBoard();
+			TranspositionTable table = new TranspositionTable(TABLE_BITS);
+			white = new Minimax(PieceColor.WHITE, board);
+			white.setTranspositionTable(table);
+			black = new Minimax(PieceColor.BLACK, board);
+			black.setTranspositionTable(table);
+		}
+	}
+
+	/**
+	 * An exception which tells the requests waiting for a search that it was
+	 * turned away because too many searches were waiting.
+	 */
+	private static class Overloaded extends Exception {
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Runs the server from the command line until the process is stopped.
+	 *
+	 * @param args optionally the port, the amount of engines, the amount of
+	 *             searches which may wait, and the amount of cached results
+	 */
+	public static void main(String[] args) {
+		try {
+			int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+			int engines = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+			int queue = (args.length > 2) ? Integer.parseInt(args[2]) : 4 * engines;
+			int cacheSize = (args.length > 3) ? Integer.parseInt(args[3]) : 10000;
+
+			AnalysisServer server = new AnalysisServer(port, engines, queue, cacheSize);
+			server.start();
+			System.out.println("Listening on http://localhost:" + server.getPort() + "/analyze");
+		} catch (IOException | NumberFormatException e) {
+			System.err.println("Usage: AnalysisServer [port] [engines] [queue] [cache size]");
+			e.printStackTrace();
+		}
+	}
+}
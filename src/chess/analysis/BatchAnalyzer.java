@@ -0,0 +1,389 @@
+package chess.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import chess.board.BoardAnalyzer;
+import chess.board.ChessBoard;
+import chess.board.Epd;
+import chess.board.Move;
+import chess.board.Position;
+import chess.pgn.San;
+import chess.piece.PieceColor;
+import chess.player.Minimax;
+import chess.player.SearchResult;
+import chess.player.TranspositionTable;
+
+/**
+ * A tool which analyzes a large file of positions, one EPD record or FEN per
+ * line, and writes the best move and score of each one as an EPD record with
+ * the operations bm (best move), ce (score in centipawns for the player to
+ * move) or dm (moves to a checkmate, 0 if the player to move is checkmated),
+ * acd (depth) and acn (nodes), keeping any id operation.
+ *
+ * The positions are read one at a time and handed to a fixed number of
+ * workers through a bounded queue. Every worker owns a board, a Minimax for
+ * each color bound to that board, and a transposition table shared by the two,
+ * so that the workers never wait for each other. Results are written in the
+ * order of the input: a finished result waits in a ring buffer until all
+ * results before it are written, and the reader may only run ahead of the
+ * writer by the size of the ring, so memory use does not depend on the size of
+ * the input.
+ *
+ * Every few results, the amount of records and bytes written so far is saved
+ * to a checkpoint file next to the output. A run which finds a checkpoint cuts
+ * the output back to the saved size and continues after the saved record. The
+ * checkpoint is deleted when the run is complete.
+ *
+ * If a worker fails to write its result, nothing more is written, the reader
+ * stops and the run ends with the error, leaving the checkpoint so that the
+ * run can be continued. If the input cannot be read, the workers finish the
+ * positions they hold and the run ends with the error in the same way.
+ *
+ * @author kennangumbs
+ *
+ */
+public class BatchAnalyzer {
+
+	private static final int CHECKPOINT_INTERVAL = 64;
+	private static final int TABLE_BITS = 20;
+
+	private final int threads;
+	private final int window;
+	private int depthLimit;
+	private long timeLimit;
+
+	private String[] ring;
+	private long nextRecord;
+	private long bytesWritten;
+	private FileChannel out;
+	private Path checkpoint;
+	private Semaphore permits;
+	private volatile Exception failure;
+
+	/**
+	 * Constructs a BatchAnalyzer object.
+	 *
+	 * @param threads the amount of positions analyzed at the same time
+	 */
+	public BatchAnalyzer(int threads) {
+		this.threads = threads;
+		this.window = 16 * threads;
+		depthLimit = 6;
+		timeLimit = -1;
+	}
+
+	/**
+	 * A setter for the depth each position is searched to.
+	 *
+	 * @param depthLimit the new depth limit
+	 */
+	public void setDepthLimit(int depthLimit) {
+		this.depthLimit = depthLimit;
+	}
+
+	/**
+	 * A setter for the time each position may be searched for.
+	 *
+	 * @param timeLimit the new time limit in milliseconds, a negative number for
+	 *                  no limit
+	 */
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Analyzes every position of a file, continuing an interrupted run if there is
+	 * a checkpoint.
+	 *
+	 * @param input  the path of the positions
+	 * @param output the path of the results
+	 * @return the amount of records written by this run
+	 * @throws IOException          if a file cannot be read or written, also by a
+	 *                              worker
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public long run(Path input, Path output) throws IOException, InterruptedException {
+		checkpoint = output.resolveSibling(output.getFileName() + ".checkpoint");
+		long skip = 0;
+		bytesWritten = 0;
+		if (Files.exists(checkpoint)) {
+			String[] saved = Files.readString(checkpoint).trim().split("\\s+");
+			skip = Long.parseLong(saved[0]);
+			bytesWritten = Long.parseLong(saved[1]);
+		}
+
+		ring = new String[window];
+		nextRecord = skip;
+		permits = new Semaphore(window);
+		failure = null;
+		BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(window);
+
+		try (FileChannel ch = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+			out = ch;
+			out.truncate(bytesWritten);
+			out.position(bytesWritten);
+
+			Thread[] workers = new Thread[threads];
+			for (int i = 0; i < threads; i++) {
+				workers[i] = new Thread(() -> work(queue), "Analyzer " + i);
+				workers[i].start();
+			}
+
+			boolean read = false;
+			try {
+				long record = 0;
+				String line;
+				while (failure == null && (line = in.readLine()) != null) {
+					if (line.isBlank()) {
+						continue;
+					}
+					if (record >= skip) {
+						permits.acquire();
+						if (failure != null) {
+							break;
+						}
+						queue.put(new Task(record, line));
+					}
+					record++;
+				}
+				read = true;
+			} finally {
+				if (!read || failure != null) {
+					// The positions still waiting are dropped, so that the workers see the end.
+					queue.clear();
+				}
+				for (int i = 0; i < threads; i++) {
+					queue.put(Task.END);
+				}
+				for (Thread worker : workers) {
+					worker.join();
+				}
+			}
+		}
+		if (failure != null) {
+			throw new IOException("A worker failed, the run can be continued from " + checkpoint, failure);
+		}
+		Files.deleteIfExists(checkpoint);
+		return nextRecord - skip;
+	}
+
+	/**
+	 * The loop of a worker thread, which analyzes positions until it is told to
+	 * stop. If a result cannot be written, the failure is handed to the reader
+	 * and the worker stops.
+	 *
+	 * @param queue the queue of positions
+	 */
+	private void work(BlockingQueue<Task> queue) {
+		ChessBoard board = new ChessBoard();
+		TranspositionTable table = new TranspositionTable(TABLE_BITS);
+		Minimax white = createEngine(PieceColor.WHITE, board, table);
+		Minimax black = createEngine(PieceColor.BLACK, board, table);
+
+		try {
+			while (true) {
+				Task task = queue.take();
+				if (task == Task.END) {
+					return;
+				}
+				String result;
+				try {
+					Epd epd = Epd.parse(task.line);
+					Position pos = epd.getPosition();
+					board.set(pos.getBoard());
+					Minimax engine = (pos.getSideToMove() == PieceColor.WHITE) ? white : black;
+					result = format(task.line, epd, pos.getSideToMove(), engine.analyze(1), board);
+				} catch (RuntimeException e) {
+					result = task.line.trim() + " c0 \"error: " + e.getMessage() + "\";";
+				}
+				complete(task.record, result);
+			}
+		} catch (IOException | RuntimeException e) {
+			fail(e);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records the failure of a worker and wakes the reader, which may be waiting
+	 * for a result the worker will never write.
+	 *
+	 * @param e the cause of the failure
+	 */
+	private synchronized void fail(Exception e) {
+		if (failure == null) {
+			failure = e;
+		}
+		permits.release(window);
+	}
+
+	/**
+	 * Creates the engine of a worker.
+	 *
+	 * @param pc    the color the engine plays
+	 * @param board the board of the worker
+	 * @param table the transposition table of the worker
+	 * @return the engine
+	 */
+	private Minimax createEngine(PieceColor pc, ChessBoard board, TranspositionTable table) {
+		Minimax engine = new Minimax(pc, board);
+		engine.setTranspositionTable(table);
+		engine.setDepthLimit(depthLimit);
+		engine.setTimeLimit(timeLimit);
+		return engine;
+	}
+
+	/**
+	 * Stores a result and writes every result which is now next in order. Nothing
+	 * is written after a worker has failed, since the output may be incomplete.
+	 *
+	 * @param record the index of the record
+	 * @param result the line to write
+	 * @throws IOException if the output cannot be written
+	 */
+	private synchronized void complete(long record, String result) throws IOException {
+		if (failure != null) {
+			return;
+		}
+		ring[(int) (record % window)] = result;
+		while (ring[(int) (nextRecord % window)] != null) {
+			int slot = (int) (nextRecord % window);
+			ByteBuffer bytes = ByteBuffer.wrap((ring[slot] + "\n").getBytes(StandardCharsets.UTF_8));
+			bytesWritten += bytes.remaining();
+			while (bytes.hasRemaining()) {
+				out.write(bytes);
+			}
+			ring[slot] = null;
+			nextRecord++;
+			permits.release();
+
+			if (nextRecord % CHECKPOINT_INTERVAL == 0) {
+				saveCheckpoint();
+			}
+		}
+	}
+
+	/**
+	 * Saves the amount of records and bytes written so far. The output is forced
+	 * to disk first, and the checkpoint is replaced in one step, so that it never
+	 * claims more than the output holds.
+	 *
+	 * @throws IOException if the checkpoint cannot be written
+	 */
+	private void saveCheckpoint() throws IOException {
+		out.force(false);
+		Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+		Files.writeString(tmp, nextRecord + " " + bytesWritten + "\n");
+		Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes the result of an analysis as an EPD record.
+	 *
+	 * @param line   the input line
+	 * @param epd    the parsed input
+	 * @param pc     the color of the player to move
+	 * @param result the result of the search
+	 * @param board  the board the search ran on
+	 * @return the output line
+	 */
+	private static String format(String line, Epd epd, PieceColor pc, SearchResult result, ChessBoard board) {
+		String[] fields = line.trim().split("\\s+", 5);
+		StringBuilder sb = new StringBuilder();
+		sb.append(fields[0]).append(' ').append(fields[1]).append(' ').append(fields[2]).append(' ').append(fields[3]);
+
+		Move best = result.getBestMove();
+		if (best != null) {
+			sb.append(" bm ").append(San.toSan(board, pc, best, null)).append(';');
+		}
+		float score = (pc == PieceColor.WHITE) ? result.getScore() : -result.getScore();
+		BoardAnalyzer ba = BoardAnalyzer.getInstance();
+		if (best == null && ba.noMovesAvalible(board, pc)) {
+			// A position without moves is not searched, so its score says nothing.
+			sb.append(ba.isInCheck(board, pc) ? " dm 0;" : " ce 0;");
+		} else if (Math.abs(score) >= 999999 && !result.getLines().isEmpty()) {
+			// A checkmate is written as its distance in moves, like in UciEngine.
+			int moves = (result.getLines().get(0).getMoves().size() + 1) / 2;
+			sb.append(" dm ").append(score > 0 ? moves : -moves).append(';');
+		} else {
+			sb.append(" ce ").append(Math.round(score * 100)).append(';');
+		}
+		sb.append(" acd ").append(result.getDepth()).append(';');
+		sb.append(" acn ").append(result.getNodes()).append(';');
+		if (epd.getOperation("id") != null) {
+			sb.append(" id ").append(epd.getOperation("id")).append(';');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A class which represents a position waiting to be analyzed.
+	 */
+	private static class Task {
+
+		/**
+		 * The task which tells a worker to stop.
+		 */
+		static final Task END = new Task(-1, null);
+
+		private final long record;
+		private final String line;
+
+		/**
+		 * Constructs a Task object.
+		 *
+		 * @param record the index of the record in the input
+		 * @param line   the input line
+		 */
+		Task(long record, String line) {
+			this.record = record;
+			this.line = line;
+		}
+	}
+
+	/**
+	 * Analyzes a file of positions from the command line.
+	 *
+	 * @param args the input file, the output file, and optionally the search
+	 *             depth, the amount of threads and a time limit per position in
+	 *             milliseconds
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: BatchAnalyzer <input.epd> <output.epd> [depth] [threads] [ms]");
+			return;
+		}
+
+		try {
+			int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+			BatchAnalyzer analyzer = new BatchAnalyzer(threads);
+			if (args.length > 2) {
+				analyzer.setDepthLimit(Integer.parseInt(args[2]));
+			}
+			if (args.length > 4) {
+				analyzer.setTimeLimit(Long.parseLong(args[4]));
+			}
+
+			long start = System.currentTimeMillis();
+			long records = analyzer.run(Paths.get(args[0]), Paths.get(args[1]));
+			long ms = System.currentTimeMillis() - start;
+			System.out.println("Analyzed " + records + " positions in " + ms + " ms");
+		} catch (IOException | InterruptedException | NumberFormatException e) {
+			e.printStackTrace();
+		}
+	}
+}
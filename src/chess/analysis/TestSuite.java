@@ -0,0 +1,544 @@
+package chess.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import chess.board.ChessBoard;
+import chess.board.Epd;
+import chess.board.Move;
+import chess.board.Position;
+import chess.pgn.San;
+import chess.piece.ChessPiece;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+import chess.player.Minimax;
+import chess.player.SearchResult;
+import chess.player.TranspositionTable;
+
+/**
+ * A tool which runs a test suite of tactical positions, such as WAC or ECM,
+ * and reports how many of them are solved and how fast. Every record of the
+ * suite names its solutions with a bm (best move) operation, the moves to stay
+ * away from with an am (avoid move) operation, or both. A position is solved
+ * if the move of the last completed iteration is a solution; its time to
+ * solution is the time of the first iteration from which on every iteration
+ * found a solution.
+ *
+ * The positions are searched in parallel, every worker with its own board,
+ * engines and transposition table, which is cleared before each position so
+ * that the results do not depend on the order the positions are searched in.
+ * The opening book and the analysis cache are not used.
+ *
+ * The results can be saved to a baseline file and compared with the baseline
+ * of an earlier run, which lists the positions which are now solved or no
+ * longer solved.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Test-Positions
+ */
+public class TestSuite {
+
+	private static final int TABLE_BITS = 20;
+	private static final long[] TIMES = { 10, 30, 100, 300, 1000, 3000, 10000, 30000, 100000 };
+
+	private final int threads;
+	private long timeLimit;
+	private long nodeLimit;
+
+	/**
+	 * Constructs a TestSuite object which searches each position for a second.
+	 *
+	 * @param threads the amount of positions searched at the same time
+	 */
+	public TestSuite(int threads) {
+		this.threads = Math.max(1, threads);
+		timeLimit = 1000;
+	}
+
+	/**
+	 * A setter for the time each position is searched for.
+	 *
+	 * @param timeLimit the new time limit in milliseconds, a negative number for
+	 *                  no limit
+	 */
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * A setter for the amount of nodes each position is searched for. Unlike a
+	 * time limit, a node limit gives the same results on every machine.
+	 *
+	 * @param nodeLimit the new node limit, 0 for no limit
+	 */
+	public void setNodeLimit(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Reads a suite from a file, one EPD record per line.
+	 *
+	 * @param path the path of the suite
+	 * @return the records of the suite
+	 * @throws IOException              if the file cannot be read
+	 * @throws IllegalArgumentException if a record is malformed
+	 */
+	public static List<Epd> read(Path path) throws IOException {
+		List<Epd> suite = new ArrayList<Epd>();
+		for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+			if (!line.isBlank() && !line.startsWith("#")) {
+				suite.add(Epd.parse(line));
+			}
+		}
+		return suite;
+	}
+
+	/**
+	 * Searches every position of a suite.
+	 *
+	 * @param suite the records of the suite
+	 * @return the results, in the order of the suite
+	 * @throws InterruptedException if the thread is interrupted while waiting for
+	 *                              the workers
+	 */
+	public Result[] run(List<Epd> suite) throws InterruptedException {
+		Result[] results = new Result[suite.size()];
+		AtomicInteger next = new AtomicInteger();
+		Thread[] workers = new Thread[Math.min(threads, Math.max(1, suite.size()))];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(() -> work(suite, results, next), "Test Suite " + i);
+			workers[i].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return results;
+	}
+
+	/**
+	 * The loop of a worker thread, which searches positions until none are left.
+	 *
+	 * @param suite   the records of the suite
+	 * @param results the results, filled in by index
+	 * @param next    the index of the next position to search
+	 */
+	private void work(List<Epd> suite, Result[] results, AtomicInteger next) {
+		ChessBoard board = new ChessBoard();
+		TranspositionTable table = new TranspositionTable(TABLE_BITS);
+		Tracker tracker = new Tracker();
+		Minimax white = createEngine(PieceColor.WHITE, board, table, tracker);
+		Minimax black = createEngine(PieceColor.BLACK, board, table, tracker);
+
+		int i;
+		while ((i = next.getAndIncrement()) < suite.size()) {
+			Epd epd = suite.get(i);
+			String id = epd.getString("id");
+			if (id == null) {
+				id = "#" + (i + 1);
+			}
+			try {
+				Position pos = epd.getPosition();
+				board.set(pos.getBoard());
+				table.clear();
+				Minimax engine = (pos.getSideToMove() == PieceColor.WHITE) ? white : black;
+				PieceType promotion = engine.choosePromotedPiece().getPieceType();
+				tracker.reset(pos, epd, promotion);
+				SearchResult result = engine.analyze(1);
+
+				Move best = result.getBestMove();
+				String move = (best == null) ? "-" : San.toSan(board, pos.getSideToMove(), best, promotion);
+				boolean solved = best != null && tracker.isSolution(best);
+				results[i] = new Result(id, solved, solved ? tracker.time : -1, solved ? tracker.depth : -1, move,
+						result.getDepth(), result.getNodes(), result.getElapsedMs());
+			} catch (RuntimeException e) {
+				System.err.println(id + ": " + e);
+				results[i] = new Result(id, false, -1, -1, "-", 0, 0, 0);
+			}
+		}
+	}
+
+	/**
+	 * Creates an engine of a worker.
+	 *
+	 * @param pc      the color the engine plays
+	 * @param board   the board of the worker
+	 * @param table   the transposition table of the worker
+	 * @param tracker the tracker told about every iteration
+	 * @return the engine
+	 */
+	private Minimax createEngine(PieceColor pc, ChessBoard board, TranspositionTable table, Tracker tracker) {
+		Minimax engine = new Minimax(pc, board);
+		engine.setTranspositionTable(table);
+		engine.setAnalysisCache(null);
+		engine.setBook(null);
+		engine.setDepthLimit(Minimax.MAX_DEPTH);
+		engine.setTimeLimit(timeLimit);
+		engine.setNodeLimit(nodeLimit);
+		engine.setListener(tracker::update);
+		return engine;
+	}
+
+	/**
+	 * A class which follows the iterations of a search, to find out when the
+	 * search settled on a solution.
+	 */
+	private static class Tracker {
+
+		private final List<int[]> solutions;
+		private final List<int[]> avoid;
+		private PieceType promotion;
+		private long time;
+		private int depth;
+
+		/**
+		 * Constructs a Tracker object.
+		 */
+		Tracker() {
+			solutions = new ArrayList<int[]>();
+			avoid = new ArrayList<int[]>();
+		}
+
+		/**
+		 * Prepares for the search of a position.
+		 *
+		 * @param pos       the position
+		 * @param epd       the record of the position
+		 * @param promotion the piece the engine promotes pawns to
+		 * @throws IllegalArgumentException if a move of the bm or am operation is
+		 *                                  not valid
+		 */
+		void reset(Position pos, Epd epd, PieceType promotion) {
+			this.promotion = promotion;
+			parse(pos, epd.getOperation("bm"), solutions);
+			parse(pos, epd.getOperation("am"), avoid);
+			if (solutions.isEmpty() && avoid.isEmpty()) {
+				throw new IllegalArgumentException("No bm or am operation");
+			}
+			time = -1;
+			depth = -1;
+		}
+
+		/**
+		 * Reads the moves of an operation, as the two squares of each move and the
+		 * ordinal of the piece it promotes to, -1 if it is not a promotion. A
+		 * promotion without a piece is a promotion to a queen.
+		 *
+		 * @param pos   the position
+		 * @param moves the moves in Standard Algebraic Notation, separated by
+		 *              spaces, null for none
+		 * @param list  the list to fill
+		 */
+		private static void parse(Position pos, String moves, List<int[]> list) {
+			list.clear();
+			if (moves == null) {
+				return;
+			}
+			for (String san : moves.trim().split("\\s+")) {
+				Move m = San.parse(pos, san);
+				if (m == null) {
+					throw new IllegalArgumentException("Invalid move " + san);
+				}
+				int type = -1;
+				ChessPiece cp = pos.getBoard().getPiece(m.getFrom());
+				if (cp.getPieceType() == PieceType.PAWN && (m.getTo().getY() == 0 || m.getTo().getY() == 7)) {
+					PieceType pt = San.getPromotion(san);
+					type = (pt == null) ? PieceType.QUEEN.ordinal() : pt.ordinal();
+				}
+				list.add(new int[] { m.getFrom().getIndex(), m.getTo().getIndex(), type });
+			}
+		}
+
+		/**
+		 * Checks whether a move solves the position.
+		 *
+		 * @param m the move
+		 * @return true if the move is one of the best moves and none of the moves to
+		 *         avoid, false otherwise.
+		 */
+		boolean isSolution(Move m) {
+			return (solutions.isEmpty() || contains(solutions, m)) && !contains(avoid, m);
+		}
+
+		/**
+		 * Checks whether a list of moves holds a move of the engine, including the
+		 * piece it promotes to.
+		 *
+		 * @param list the list of moves
+		 * @param m    the move
+		 * @return true if the list holds the move, false otherwise.
+		 */
+		private boolean contains(List<int[]> list, Move m) {
+			for (int[] squares : list) {
+				if (squares[0] == m.getFrom().getIndex() && squares[1] == m.getTo().getIndex()
+						&& (squares[2] < 0 || squares[2] == promotion.ordinal())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Takes note of a completed iteration.
+		 *
+		 * @param result the result of the iteration
+		 */
+		void update(SearchResult result) {
+			Move best = result.getBestMove();
+			if (best == null || !isSolution(best)) {
+				time = -1;
+				depth = -1;
+			} else if (time < 0) {
+				time = result.getElapsedMs();
+				depth = result.getDepth();
+			}
+		}
+	}
+
+	/**
+	 * A class which represents the result of one position.
+	 */
+	public static class Result {
+
+		private final String id;
+		private final boolean solved;
+		private final long time;
+		private final int solvedDepth;
+		private final String move;
+		private final int depth;
+		private final long nodes;
+		private final long elapsedMs;
+
+		/**
+		 * Constructs a Result object.
+		 *
+		 * @param id          the id of the position
+		 * @param solved      true if the position was solved
+		 * @param time        the time to solution in milliseconds, -1 if unsolved
+		 * @param solvedDepth the depth of the solution, -1 if unsolved
+		 * @param move        the move found, in Standard Algebraic Notation
+		 * @param depth       the depth of the last completed iteration
+		 * @param nodes       the amount of nodes searched
+		 * @param elapsedMs   the time of the whole search in milliseconds
+		 */
+		public Result(String id, boolean solved, long time, int solvedDepth, String move, int depth, long nodes,
+				long elapsedMs) {
+			this.id = id;
+			this.solved = solved;
+			this.time = time;
+			this.solvedDepth = solvedDepth;
+			this.move = move;
+			this.depth = depth;
+			this.nodes = nodes;
+			this.elapsedMs = elapsedMs;
+		}
+
+		/**
+		 * A getter for the id of the position.
+		 *
+		 * @return the value of id
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * A getter for whether the position was solved.
+		 *
+		 * @return true if the position was solved, false otherwise.
+		 */
+		public boolean isSolved() {
+			return solved;
+		}
+
+		/**
+		 * A getter for the time to solution.
+		 *
+		 * @return the value of time in milliseconds, -1 if unsolved
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * A getter for the move found.
+		 *
+		 * @return the value of move
+		 */
+		public String getMove() {
+			return move;
+		}
+
+		/**
+		 * A getter for the amount of nodes searched.
+		 *
+		 * @return the value of nodes
+		 */
+		public long getNodes() {
+			return nodes;
+		}
+
+		/**
+		 * Returns the speed of the search.
+		 *
+		 * @return the amount of nodes searched per second
+		 */
+		public long getNps() {
+			return nodes * 1000 / Math.max(1, elapsedMs);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-16s %-8s %-7s %8s %5s %10d nodes %8d nps", id, solved ? "solved" : "failed", move,
+					solved ? time + " ms" : "-", solved ? "d" + solvedDepth : "d" + depth, nodes, getNps());
+		}
+	}
+
+	/**
+	 * Prints the results of a run: a line per position, how many positions were
+	 * solved within each time, and the speed of the search. If there is a
+	 * baseline, the positions whose result changed are listed as well.
+	 *
+	 * @param out      the stream to print to
+	 * @param results  the results of the run
+	 * @param baseline the results of an earlier run by id, null for none
+	 */
+	public static void report(PrintStream out, Result[] results, Map<String, Result> baseline) {
+		int solved = 0;
+		long nodes = 0;
+		long elapsed = 0;
+		long[] times = new long[results.length];
+		for (Result r : results) {
+			out.println(r);
+			if (r.solved) {
+				times[solved++] = r.time;
+			}
+			nodes += r.nodes;
+			elapsed += r.elapsedMs;
+		}
+		Arrays.sort(times, 0, solved);
+
+		out.println();
+		out.printf("Solved %d of %d (%.1f%%)%n", solved, results.length, 100.0 * solved / Math.max(1, results.length));
+		int j = 0;
+		for (long limit : TIMES) {
+			while (j < solved && times[j] <= limit) {
+				j++;
+			}
+			out.printf("  within %6d ms: %d%n", limit, j);
+			if (j == solved) {
+				break;
+			}
+		}
+		if (solved > 0) {
+			out.printf("Time to solution: median %d ms, mean %d ms%n", times[solved / 2],
+					Arrays.stream(times, 0, solved).sum() / solved);
+		}
+		out.printf("Nodes: %d, speed: %d nps%n", nodes, nodes * 1000 / Math.max(1, elapsed));
+
+		if (baseline != null) {
+			int before = 0;
+			for (Result r : baseline.values()) {
+				before += r.solved ? 1 : 0;
+			}
+			out.println();
+			out.printf("Baseline: solved %d of %d%n", before, baseline.size());
+			for (Result r : results) {
+				Result old = baseline.get(r.id);
+				if (old != null && old.solved != r.solved) {
+					out.printf("  %s %-16s %s%n", r.solved ? "+" : "-", r.id,
+							r.solved ? "now solved in " + r.time + " ms" : "no longer solved, played " + r.move);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Saves the results of a run as a baseline, one tab-separated line per
+	 * position with its id, 1 if solved or 0 if not, the time to solution, the
+	 * move found, the nodes searched and the search time.
+	 *
+	 * @param path    the path of the baseline
+	 * @param results the results of the run
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void save(Path path, Result[] results) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (Result r : results) {
+				out.write(r.id + "\t" + (r.solved ? 1 : 0) + "\t" + r.time + "\t" + r.move + "\t" + r.nodes + "\t"
+						+ r.elapsedMs);
+				out.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Loads a baseline saved by {@link #save}.
+	 *
+	 * @param path the path of the baseline
+	 * @return the results by id
+	 * @throws IOException if the file cannot be read
+	 */
+	public static Map<String, Result> load(Path path) throws IOException {
+		Map<String, Result> baseline = new HashMap<String, Result>();
+		for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+			String[] f = line.split("\t");
+			if (f.length < 6) {
+				continue;
+			}
+			baseline.put(f[0], new Result(f[0], f[1].equals("1"), Long.parseLong(f[2]), -1, f[3], 0,
+					Long.parseLong(f[4]), Long.parseLong(f[5])));
+		}
+		return baseline;
+	}
+
+	/**
+	 * Runs a test suite from the command line.
+	 *
+	 * @param args the suite, and optionally the limit per position in
+	 *             milliseconds, or in nodes if followed by "n" (such as
+	 *             "500000n"), the amount of threads, the baseline file to save
+	 *             and the baseline file of an earlier run to compare with. Any
+	 *             optional argument can be given as "-" to keep its default.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: TestSuite <suite.epd> [ms|nodes n] [threads] [save.txt] [baseline.txt]");
+			return;
+		}
+
+		try {
+			int threads = (args.length > 2 && !args[2].equals("-")) ? Integer.parseInt(args[2])
+					: Runtime.getRuntime().availableProcessors();
+			TestSuite suite = new TestSuite(threads);
+			if (args.length > 1 && !args[1].equals("-")) {
+				if (args[1].endsWith("n")) {
+					suite.setNodeLimit(Long.parseLong(args[1].substring(0, args[1].length() - 1)));
+					suite.setTimeLimit(-1);
+				} else {
+					suite.setTimeLimit(Long.parseLong(args[1]));
+				}
+			}
+			Map<String, Result> baseline = (args.length > 4) ? load(Paths.get(args[4])) : null;
+
+			Result[] results = suite.run(read(Paths.get(args[0])));
+			report(System.out, results, baseline);
+			if (args.length > 3 && !args[3].equals("-")) {
+				save(Paths.get(args[3]), results);
+			}
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+}
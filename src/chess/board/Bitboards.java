@@ -0,0 +1,265 @@
+package chess.board;
+
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which calculates the squares attacked by pieces, using bitboards.
+ * Bit n of a bitboard represents the square with index n (see
+ * {@link Square#getIndex()}). Attacks of knights, kings and pawns are looked up
+ * in precomputed tables. Attacks of sliding pieces are looked up as rays from
+ * the square of the piece: the first occupied square of a ray is found with a
+ * single bit scan, and the part of the ray behind it is cut off with the ray
+ * of that square in the same direction.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Bitboards
+ */
+public final class Bitboards {
+
+	private static final long[] KNIGHT_ATTACKS = new long[64];
+	private static final long[] KING_ATTACKS = new long[64];
+	private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+	/**
+	 * The directions of the rays, those towards higher indices first.
+	 */
+	private static final int[][] DIRECTIONS = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { -1, 1 }, { -1, 0 }, { 0, -1 },
+			{ -1, -1 }, { 1, -1 } };
+	private static final int EAST = 0;
+	private static final int NORTH = 1;
+	private static final int NORTH_EAST = 2;
+	private static final int NORTH_WEST = 3;
+	private static final int WEST = 4;
+	private static final int SOUTH = 5;
+	private static final int SOUTH_WEST = 6;
+	private static final int SOUTH_EAST = 7;
+
+	/**
+	 * The squares from a square to the edge of the board in each direction, not
+	 * including the square itself.
+	 */
+	private static final long[][] RAYS = new long[DIRECTIONS.length][64];
+
+	/**
+	 * The bitboards of the eight files, from the a file to the h file.
+	 */
+	private static final long[] FILES = new long[8];
+
+	static {
+		for (int x = 0; x < 8; x++) {
+			FILES[x] = 0x0101010101010101L << x;
+		}
+
+		for (int index = 0; index < 64; index++) {
+			int x = index % 8;
+			int y = index / 8;
+			for (int i = -2; i <= 2; i++) {
+				for (int j = -2; j <= 2; j++) {
+					if (i * i + j * j == 5) {
+						KNIGHT_ATTACKS[index] |= getBit(x + i, y + j);
+					}
+					if (Math.abs(i) <= 1 && Math.abs(j) <= 1 && (i != 0 || j != 0)) {
+						KING_ATTACKS[index] |= getBit(x + i, y + j);
+					}
+				}
+			}
+			PAWN_ATTACKS[PieceColor.WHITE.ordinal()][index] = getBit(x - 1, y + 1) | getBit(x + 1, y + 1);
+			PAWN_ATTACKS[PieceColor.BLACK.ordinal()][index] = getBit(x - 1, y - 1) | getBit(x + 1, y - 1);
+
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				for (int i = 1; i < 8; i++) {
+					RAYS[d][index] |= getBit(x + i * DIRECTIONS[d][0], y + i * DIRECTIONS[d][1]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A private constructor to prevent instantiation.
+	 */
+	private Bitboards() {
+	}
+
+	/**
+	 * Returns the bitboard with only the bit of a given square set.
+	 *
+	 * @param x the x coordinate of the square
+	 * @param y the y coordinate of the square
+	 * @return the bitboard of the square, 0 if the square is not on the board
+	 */
+	public static long getBit(int x, int y) {
+		if (x >= 0 && x < 8 && y >= 0 && y < 8) {
+			return 1L << (y * 8 + x);
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the bitboard of a file.
+	 *
+	 * @param x the x coordinate of the file
+	 * @return the bitboard of the file, 0 if the file is not on the board
+	 */
+	public static long getFile(int x) {
+		if (x >= 0 && x < 8) {
+			return FILES[x];
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the squares attacked by a piece.
+	 *
+	 * @param pt    the type of the piece
+	 * @param pc    the color of the piece (only needed for pawns)
+	 * @param index the index of the piece's square
+	 * @param occ   the bitboard of all occupied squares
+	 * @return the bitboard of the attacked squares
+	 */
+	public static long getAttacks(PieceType pt, PieceColor pc, int index, long occ) {
+		switch (pt) {
+		case PAWN:
+			return PAWN_ATTACKS[pc.ordinal()][index];
+		case KNIGHT:
+			return KNIGHT_ATTACKS[index];
+		case BISHOP:
+			return getBishopAttacks(index, occ);
+		case ROOK:
+			return getRookAttacks(index, occ);
+		case QUEEN:
+			return getBishopAttacks(index, occ) | getRookAttacks(index, occ);
+		default:
+			return KING_ATTACKS[index];
+		}
+	}
+
+	/**
+	 * Returns the squares attacked by a pawn.
+	 *
+	 * @param pc    the color of the pawn
+	 * @param index the index of the pawn's square
+	 * @return the bitboard of the attacked squares
+	 */
+	public static long getPawnAttacks(PieceColor pc, int index) {
+		return PAWN_ATTACKS[pc.ordinal()][index];
+	}
+
+	/**
+	 * Returns the squares attacked by a knight.
+	 *
+	 * @param index the index of the knight's square
+	 * @return the bitboard of the attacked squares
+	 */
+	public static long getKnightAttacks(int index) {
+		return KNIGHT_ATTACKS[index];
+	}
+
+	/**
+	 * Returns the squares attacked by a king.
+	 *
+	 * @param index the index of the king's square
+	 * @return the bitboard of the attacked squares
+	 */
+	public static long getKingAttacks(int index) {
+		return KING_ATTACKS[index];
+	}
+
+	/**
+	 * Returns the squares attacked by a rook.
+	 *
+	 * @param index the index of the rook's square
+	 * @param occ   the bitboard of all occupied squares
+	 * @return the bitboard of the attacked squares
+	 */
+	public static long getRookAttacks(int index, long occ) {
+		return getPositiveRay(EAST, index, occ) | getPositiveRay(NORTH, index, occ) | getNegativeRay(WEST, index, occ)
+				| getNegativeRay(SOUTH, index, occ);
+	}
+
+	/**
+	 * Returns the squares attacked by a bishop.
+	 *
+	 * @param index the index of the bishop's square
+	 * @param occ   the bitboard of all occupied squares
+	 * @return the bitboard of the attacked squares
+	 */
+	public static long getBishopAttacks(int index, long occ) {
+		return getPositiveRay(NORTH_EAST, index, occ) | getPositiveRay(NORTH_WEST, index, occ)
+				| getNegativeRay(SOUTH_WEST, index, occ) | getNegativeRay(SOUTH_EAST, index, occ);
+	}
+
+	/**
+	 * Returns the squares attacked by a whole set of pawns at once.
+	 *
+	 * @param pawns the bitboard of the pawns
+	 * @param pc    the color of the pawns
+	 * @return the bitboard of all squares attacked by at least one of the pawns
+	 */
+	public static long getAllPawnAttacks(long pawns, PieceColor pc) {
+		long left = pawns & ~FILES[0];
+		long right = pawns & ~FILES[7];
+		if (pc == PieceColor.WHITE) {
+			return (left << 7) | (right << 9);
+		} else {
+			return (left >>> 9) | (right >>> 7);
+		}
+	}
+
+	/**
+	 * Checks whether a square is attacked by any piece of a given color. The
+	 * attacks are looked up backwards from the square: a knight attacks the
+	 * square if a knight on the square would attack the knight, and so on.
+	 *
+	 * @param cb    the chess board
+	 * @param index the index of the square
+	 * @param by    the color of the attacking pieces
+	 * @return true if the square is attacked, false otherwise.
+	 */
+	public static boolean isAttacked(ChessBoard cb, int index, PieceColor by) {
+		long occ = cb.getOccupancy();
+		long queens = cb.getPieces(PieceType.QUEEN, by);
+		return (getPawnAttacks(by.flip(), index) & cb.getPieces(PieceType.PAWN, by)) != 0
+				|| (getKnightAttacks(index) & cb.getPieces(PieceType.KNIGHT, by)) != 0
+				|| (getKingAttacks(index) & cb.getPieces(PieceType.KING, by)) != 0
+				|| (getBishopAttacks(index, occ) & (cb.getPieces(PieceType.BISHOP, by) | queens)) != 0
+				|| (getRookAttacks(index, occ) & (cb.getPieces(PieceType.ROOK, by) | queens)) != 0;
+	}
+
+	/**
+	 * Returns the attacks of a sliding piece along a ray towards higher indices,
+	 * where the first occupied square is the lowest set bit.
+	 *
+	 * @param direction the direction of the ray
+	 * @param index     the index of the piece's square
+	 * @param occ       the bitboard of all occupied squares
+	 * @return the bitboard of the attacked squares
+	 */
+	private static long getPositiveRay(int direction, int index, long occ) {
+		long ray = RAYS[direction][index];
+		long blockers = ray & occ;
+		if (blockers == 0) {
+			return ray;
+		}
+		return ray ^ RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+	}
+
+	/**
+	 * Returns the attacks of a sliding piece along a ray towards lower indices,
+	 * where the first occupied square is the highest set bit.
+	 *
+	 * @param direction the direction of the ray
+	 * @param index     the index of the piece's square
+	 * @param occ       the bitboard of all occupied squares
+	 * @return the bitboard of the attacked squares
+	 */
+	private static long getNegativeRay(int direction, int index, long occ) {
+		long ray = RAYS[direction][index];
+		long blockers = ray & occ;
+		if (blockers == 0) {
+			return ray;
+		}
+		return ray ^ RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+	}
+}
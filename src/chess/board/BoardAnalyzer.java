@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import chess.piece.ChessPiece;
 import chess.piece.PieceColor;
+import chess.piece.PieceType;
 
 /**
  * A class capable of analyzing the features of a chess board. Since the class
@@ -108,4 +109,35 @@ public class BoardAnalyzer {
 		}
 		return true;
 	}
+
+	/**
+	 * A method which returns all of the valid moves of a player.
+	 * 
+	 * @param cb the chess board
+	 * @param pc the color of the player
+	 * @return an ArrayList containing the valid moves of every piece of the player
+	 */
+	public ArrayList<Move> getValidMoves(ChessBoard cb, PieceColor pc) {
+		ArrayList<Move> moves = new ArrayList<Move>();
+		for (ChessPiece cp : cb.getAllPieces(pc)) {
+			moves.addAll(cp.getValidMoves(cb));
+		}
+		return moves;
+	}
+
+	/**
+	 * A method which determines if a move captures a piece, including en passant
+	 * captures, where the target square is empty.
+	 * 
+	 * @param cb the chess board before the move
+	 * @param m  the move
+	 * @return true if the move captures a piece, false otherwise.
+	 */
+	public boolean isCapture(ChessBoard cb, Move m) {
+		if (!cb.isEmpty(m.getTo())) {
+			return true;
+		}
+		ChessPiece cp = cb.getPiece(m.getFrom());
+		return cp != null && cp.getPieceType() == PieceType.PAWN && m.getFrom().getX() != m.getTo().getX();
+	}
 }
@@ -3,8 +3,9 @@ package chess.board;
 import java.util.ArrayList;
 
 import chess.piece.ChessPiece;
-import chess.piece.King;
+import chess.piece.Pawn;
 import chess.piece.PieceColor;
+import chess.piece.PieceType;
 
 /**
  * A class which represents a chess board.
@@ -15,11 +16,18 @@ public class ChessBoard {
 
 	private ChessPiece[][] board;
 
+	private long hash;
+	private long pawnHash;
+
+	// One bitboard per piece color and type, indexed by color * 6 + type.
+	private long[] bitboards;
+
 	/**
 	 * Initializes a ChessBoard object by initializing the 2D array of chess pieces.
 	 */
 	public ChessBoard() {
 		board = new ChessPiece[8][8];
+		bitboards = new long[12];
 	}
 
 	/**
@@ -29,13 +37,25 @@ public class ChessBoard {
 	 */
 	public ChessBoard(ChessBoard cb) {
 		this();
+		set(cb);
+	}
+
+	/**
+	 * A method which replaces the contents of this board with a copy of a given
+	 * ChessBoard, so that a board which is used by other objects can be set up
+	 * with a new position.
+	 * 
+	 * @param cb the chess board to copy
+	 */
+	public void set(ChessBoard cb) {
 		for (int i = 0; i < 8; i++) {
 			for (int j = 0; j < 8; j++) {
-				if (cb.board[i][j] != null) {
-					this.board[i][j] = cb.board[i][j].clone();
-				}
+				this.board[i][j] = (cb.board[i][j] == null) ? null : cb.board[i][j].clone();
 			}
 		}
+		this.hash = cb.hash;
+		this.pawnHash = cb.pawnHash;
+		System.arraycopy(cb.bitboards, 0, this.bitboards, 0, 12);
 	}
 
 	/**
@@ -52,6 +72,22 @@ public class ChessBoard {
 		return null;
 	}
 
+	/**
+	 * A method which returns the chess piece on given coordinates, without having
+	 * to create a Square object.
+	 * 
+	 * @param x the x coordinate of the square
+	 * @param y the y coordinate of the square
+	 * @return the chess piece occupying the square, null if the square is empty or
+	 *         invalid.
+	 */
+	public ChessPiece getPiece(int x, int y) {
+		if (x >= 0 && x < 8 && y >= 0 && y < 8) {
+			return board[7 - y][x];
+		}
+		return null;
+	}
+
 	/**
 	 * A method which returns the square which a given chess piece is occupying.
 	 * 
@@ -79,10 +115,101 @@ public class ChessBoard {
 	 */
 	public void setPiece(Square s, ChessPiece cp) {
 		if (s.isValid()) {
-			board[7 - s.getY()][s.getX()] = cp;
+			setPiece(s.getX(), s.getY(), cp);
+		}
+	}
+
+	/**
+	 * Places a piece on given coordinates, without having to create a Square
+	 * object.
+	 * 
+	 * @param x  the x coordinate of the square, between 0 and 7
+	 * @param y  the y coordinate of the square, between 0 and 7
+	 * @param cp the piece to set, null to empty the square
+	 */
+	public void setPiece(int x, int y, ChessPiece cp) {
+		ChessPiece old = board[7 - y][x];
+		if (old != null) {
+			toggle(old, y * 8 + x);
+		}
+
+		board[7 - y][x] = cp;
+		if (cp != null) {
+			toggle(cp, y * 8 + x);
 		}
 	}
 
+	/**
+	 * Adds or removes a piece from the bitboards and hash keys of this board.
+	 * 
+	 * @param cp    the piece
+	 * @param index the index of the piece's square
+	 */
+	private void toggle(ChessPiece cp, int index) {
+		PieceType pt = cp.getPieceType();
+		bitboards[cp.getPieceColor().ordinal() * 6 + pt.ordinal()] ^= 1L << index;
+
+		long key = Zobrist.getPieceKey(cp, index);
+		hash ^= key;
+		if (pt == PieceType.PAWN || pt == PieceType.KING) {
+			pawnHash ^= key;
+		}
+	}
+
+	/**
+	 * Returns a bitboard of the squares occupied by pieces of a given type and
+	 * color. Bit n of the bitboard is set if the square with index n (see
+	 * {@link Square#getIndex()}) is occupied.
+	 * 
+	 * @param pt the piece type
+	 * @param pc the piece color
+	 * @return the bitboard of the pieces
+	 */
+	public long getPieces(PieceType pt, PieceColor pc) {
+		return bitboards[pc.ordinal() * 6 + pt.ordinal()];
+	}
+
+	/**
+	 * Returns a bitboard of the squares occupied by pieces of a given color.
+	 * 
+	 * @param pc the piece color
+	 * @return the bitboard of the pieces
+	 */
+	public long getOccupancy(PieceColor pc) {
+		int i = pc.ordinal() * 6;
+		return bitboards[i] | bitboards[i + 1] | bitboards[i + 2] | bitboards[i + 3] | bitboards[i + 4]
+				| bitboards[i + 5];
+	}
+
+	/**
+	 * Returns a bitboard of all occupied squares.
+	 * 
+	 * @return the bitboard of the pieces
+	 */
+	public long getOccupancy() {
+		return getOccupancy(PieceColor.WHITE) | getOccupancy(PieceColor.BLACK);
+	}
+
+	/**
+	 * A getter for the Zobrist hash of the pieces on this board. Castling rights,
+	 * en passant and the side to move are not included (see
+	 * {@link Zobrist#getKey(ChessBoard, PieceColor)}).
+	 * 
+	 * @return the value of hash
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * A getter for the Zobrist hash of only the pawns and kings on this board.
+	 * 
+	 * @return the value of pawnHash
+	 */
+	public long getPawnHash() {
+		return pawnHash;
+	}
+
 	/**
 	 * Moves a piece from one square to another square.
 	 * 
@@ -150,6 +277,42 @@ public class ChessBoard {
 		return this.getPiece(s) == null;
 	}
 
+	/**
+	 * Checks whether a player still has the right to castle on a given side, i.e.
+	 * whether neither the king nor the rook on that side have moved yet. Whether
+	 * castling is actually possible right now is decided by the king itself.
+	 * 
+	 * @param pc       the color of the player
+	 * @param kingside true for kingside castling, false for queenside castling
+	 * @return true if the player may still castle on that side, false otherwise.
+	 */
+	public boolean hasCastlingRight(PieceColor pc, boolean kingside) {
+		int y = (pc == PieceColor.WHITE) ? 0 : 7;
+		ChessPiece king = getPiece(4, y);
+		ChessPiece rook = getPiece(kingside ? 7 : 0, y);
+		return king != null && king.getPieceType() == PieceType.KING && king.getPieceColor() == pc
+				&& !king.hasMoved() && rook != null && rook.getPieceType() == PieceType.ROOK
+				&& rook.getPieceColor() == pc && !rook.hasMoved();
+	}
+
+	/**
+	 * Returns the file of a pawn of a given color which can be captured en passant.
+	 * Pawns can only be captured en passant on the rank they double-moved to.
+	 * 
+	 * @param pc the color of the pawn
+	 * @return the x coordinate of the pawn, -1 if there is no such pawn
+	 */
+	public int getEnPassantFile(PieceColor pc) {
+		int y = (pc == PieceColor.WHITE) ? 3 : 4;
+		for (int x = 0; x < 8; x++) {
+			ChessPiece cp = getPiece(x, y);
+			if (cp instanceof Pawn && cp.getPieceColor() == pc && ((Pawn) cp).canBeCapturedEnPassant()) {
+				return x;
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * A method which returns the position of the king of a given color
 	 * 
@@ -157,16 +320,10 @@ public class ChessBoard {
 	 * @return a Square object representing the king's spot on the board.
 	 */
 	public Square getKingPos(PieceColor pc) {
-		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
-				Square s = new Square(i, j);
-				ChessPiece cp = getPiece(s);
-				if (cp instanceof King) {
-					if (cp.getPieceColor() == pc) {
-						return s;
-					}
-				}
-			}
+		long king = getPieces(PieceType.KING, pc);
+		if (king != 0) {
+			int index = Long.numberOfTrailingZeros(king);
+			return new Square(index % 8, index / 8);
 		}
 
 		// This should never happen, since both kings are always on the board.
@@ -0,0 +1,140 @@
+package chess.board;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A class which represents a record in Extended Position Description: a
+ * position followed by a list of operations, such as
+ * {@code bm Nf3; id "test 1";}. A plain FEN, with its move counters, is read as
+ * a record without operations.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Extended_Position_Description
+ */
+public class Epd {
+
+	private final Position position;
+	private final Map<String, String> operations;
+
+	/**
+	 * Constructs an Epd object.
+	 *
+	 * @param position   the position
+	 * @param operations the operations by their opcode, with the operands as they
+	 *                   were written
+	 */
+	public Epd(Position position, Map<String, String> operations) {
+		this.position = position;
+		this.operations = operations;
+	}
+
+	/**
+	 * Parses a record.
+	 *
+	 * @param line the record in Extended Position Description or Forsyth-Edwards
+	 *             Notation
+	 * @return the parsed record
+	 * @throws IllegalArgumentException if the record is malformed
+	 */
+	public static Epd parse(String line) {
+		String[] fields = line.trim().split("\\s+", 5);
+		if (fields.length < 4) {
+			throw new IllegalArgumentException("Incomplete EPD: " + line);
+		}
+		String fen = fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3];
+		String rest = (fields.length > 4) ? fields[4].trim() : "";
+
+		// Without any operations, the rest can only be the move counters of a FEN.
+		if (!rest.isEmpty() && rest.indexOf(';') < 0) {
+			return new Epd(Fen.parse(fen + " " + rest), Collections.emptyMap());
+		}
+
+		Map<String, String> operations = new LinkedHashMap<String, String>();
+		int start = 0;
+		boolean quoted = false;
+		for (int i = 0; i < rest.length(); i++) {
+			char c = rest.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == ';' && !quoted) {
+				addOperation(operations, rest.substring(start, i));
+				start = i + 1;
+			}
+		}
+		addOperation(operations, rest.substring(start));
+
+		Position pos = Fen.parse(fen);
+		// The "hmvc" and "fmvn" operations stand in for the move counters.
+		if (operations.containsKey("hmvc") || operations.containsKey("fmvn")) {
+			pos = Fen.parse(fen + " " + operations.getOrDefault("hmvc", "0") + " "
+					+ operations.getOrDefault("fmvn", "1"));
+		}
+		return new Epd(pos, operations);
+	}
+
+	/**
+	 * Adds an operation to a map, if it is not empty.
+	 *
+	 * @param operations the map of operations
+	 * @param operation  the operation, with its opcode first
+	 */
+	private static void addOperation(Map<String, String> operations, String operation) {
+		String op = operation.trim();
+		if (op.isEmpty()) {
+			return;
+		}
+		int space = op.indexOf(' ');
+		if (space < 0) {
+			operations.put(op, "");
+		} else {
+			operations.put(op.substring(0, space), op.substring(space + 1).trim());
+		}
+	}
+
+	/**
+	 * A getter for the position.
+	 *
+	 * @return the value of position
+	 */
+	public Position getPosition() {
+		return position;
+	}
+
+	/**
+	 * Returns the operands of an operation.
+	 *
+	 * @param opcode the opcode of the operation, for example "bm"
+	 * @return the operands as they were written, or null if the record does not
+	 *         have the operation
+	 */
+	public String getOperation(String opcode) {
+		return operations.get(opcode);
+	}
+
+	/**
+	 * Returns the operand of an operation, without the quotes around a string.
+	 *
+	 * @param opcode the opcode of the operation, for example "id"
+	 * @return the operand, or null if the record does not have the operation
+	 */
+	public String getString(String opcode) {
+		String value = operations.get(opcode);
+		if (value != null && value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	/**
+	 * A getter for the operations.
+	 *
+	 * @return an unmodifiable view of the operations, in the order they were
+	 *         written
+	 */
+	public Map<String, String> getOperations() {
+		return Collections.unmodifiableMap(operations);
+	}
+}
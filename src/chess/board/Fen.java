@@ -0,0 +1,292 @@
+package chess.board;
+
+import chess.piece.ChessPiece;
+import chess.piece.Pawn;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which reads and writes positions in Forsyth-Edwards Notation. The
+ * move counters may be left out when reading, as they are in EPD records, in
+ * which case the halfmove clock is 0 and the move number 1.
+ * 
+ * Both directions walk the string and the board directly, without regular
+ * expressions or temporary objects besides the pieces and the result, since
+ * they are used on millions of positions when processing game databases.
+ * 
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Forsyth-Edwards_Notation
+ */
+public final class Fen {
+
+	/**
+	 * The FEN of the starting position.
+	 */
+	public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private static final String PIECE_LETTERS = "pnbrqk";
+	private static final PieceType[] TYPES = PieceType.values();
+
+	/**
+	 * A private constructor to prevent instantiation.
+	 */
+	private Fen() {
+	}
+
+	/**
+	 * Parses a position.
+	 * 
+	 * @param fen the position in Forsyth-Edwards Notation
+	 * @return the parsed position
+	 * @throws IllegalArgumentException if the FEN is malformed
+	 */
+	public static Position parse(String fen) {
+		int length = fen.length();
+		int i = skipSpaces(fen, 0);
+
+		ChessBoard cb = new ChessBoard();
+		int x = 0;
+		int y = 7;
+		for (; i < length && fen.charAt(i) != ' '; i++) {
+			char c = fen.charAt(i);
+			if (c == '/') {
+				x = 0;
+				y--;
+			} else if (c >= '1' && c <= '8') {
+				x += c - '0';
+			} else {
+				// Setting the 0x20 bit turns an upper case ASCII letter into lower case.
+				int type = PIECE_LETTERS.indexOf(c | 0x20);
+				if (type < 0 || x > 7 || y < 0) {
+					throw new IllegalArgumentException("Bad piece placement: " + fen);
+				}
+				PieceColor pc = (c < 'a') ? PieceColor.WHITE : PieceColor.BLACK;
+				ChessPiece cp = TYPES[type].create(pc);
+				// Castling rights are given back below.
+				cp.setHasMoved(cp.getPieceType() == PieceType.KING || cp.getPieceType() == PieceType.ROOK);
+				cb.setPiece(x, y, cp);
+				x++;
+			}
+		}
+
+		i = skipSpaces(fen, i);
+		PieceColor sideToMove;
+		if (fen.startsWith("w", i)) {
+			sideToMove = PieceColor.WHITE;
+		} else if (fen.startsWith("b", i)) {
+			sideToMove = PieceColor.BLACK;
+		} else {
+			throw new IllegalArgumentException("Bad side to move: " + fen);
+		}
+
+		i = skipSpaces(fen, i + 1);
+		if (i >= length) {
+			throw new IllegalArgumentException("Incomplete FEN: " + fen);
+		}
+		for (; i < length && fen.charAt(i) != ' '; i++) {
+			char c = fen.charAt(i);
+			if (c == '-') {
+				continue;
+			}
+			PieceColor pc = Character.isUpperCase(c) ? PieceColor.WHITE : PieceColor.BLACK;
+			int rank = (pc == PieceColor.WHITE) ? 0 : 7;
+			char side = Character.toLowerCase(c);
+			if (side != 'k' && side != 'q') {
+				throw new IllegalArgumentException("Bad castling rights: " + fen);
+			}
+			grantCastling(cb, pc, 4, rank);
+			grantCastling(cb, pc, (side == 'k') ? 7 : 0, rank);
+		}
+
+		i = skipSpaces(fen, i);
+		if (i >= length) {
+			throw new IllegalArgumentException("Incomplete FEN: " + fen);
+		}
+		if (fen.charAt(i) != '-') {
+			int file = fen.charAt(i) - 'a';
+			// The pawn which can be captured stands one rank past the target square.
+			int rank = (sideToMove == PieceColor.WHITE) ? 4 : 3;
+			ChessPiece cp = (file >= 0 && file < 8) ? cb.getPiece(file, rank) : null;
+			if (cp instanceof Pawn) {
+				((Pawn) cp).setCanBeCapturedEnPassant(true);
+			}
+		}
+		while (i < length && fen.charAt(i) != ' ') {
+			i++;
+		}
+
+		i = skipSpaces(fen, i);
+		int halfmoveClock = 0;
+		int fullmoveNumber = 1;
+		if (i < length) {
+			int end = findSpace(fen, i);
+			halfmoveClock = parseCounter(fen, i, end);
+			i = skipSpaces(fen, end);
+			if (i < length) {
+				fullmoveNumber = parseCounter(fen, i, findSpace(fen, i));
+			}
+		}
+		return new Position(cb, sideToMove, halfmoveClock, fullmoveNumber);
+	}
+
+	/**
+	 * Writes a position in Forsyth-Edwards Notation. An en passant target square
+	 * is only written when a pawn can actually be captured en passant.
+	 * 
+	 * @param pos the position
+	 * @return the FEN of the position
+	 */
+	public static String toFen(Position pos) {
+		ChessBoard cb = pos.getBoard();
+		StringBuilder sb = new StringBuilder(90);
+
+		for (int y = 7; y >= 0; y--) {
+			int empty = 0;
+			for (int x = 0; x < 8; x++) {
+				ChessPiece cp = cb.getPiece(x, y);
+				if (cp == null) {
+					empty++;
+					continue;
+				}
+				if (empty > 0) {
+					sb.append((char) ('0' + empty));
+					empty = 0;
+				}
+				char c = PIECE_LETTERS.charAt(cp.getPieceType().ordinal());
+				sb.append(cp.getPieceColor() == PieceColor.WHITE ? Character.toUpperCase(c) : c);
+			}
+			if (empty > 0) {
+				sb.append((char) ('0' + empty));
+			}
+			if (y > 0) {
+				sb.append('/');
+			}
+		}
+
+		PieceColor stm = pos.getSideToMove();
+		sb.append(stm == PieceColor.WHITE ? " w " : " b ");
+
+		int before = sb.length();
+		if (cb.hasCastlingRight(PieceColor.WHITE, true)) {
+			sb.append('K');
+		}
+		if (cb.hasCastlingRight(PieceColor.WHITE, false)) {
+			sb.append('Q');
+		}
+		if (cb.hasCastlingRight(PieceColor.BLACK, true)) {
+			sb.append('k');
+		}
+		if (cb.hasCastlingRight(PieceColor.BLACK, false)) {
+			sb.append('q');
+		}
+		if (sb.length() == before) {
+			sb.append('-');
+		}
+
+		int file = cb.getEnPassantFile(stm.flip());
+		if (file >= 0 && canCaptureEnPassant(cb, stm, file)) {
+			sb.append(' ').append((char) ('a' + file)).append(stm == PieceColor.WHITE ? '6' : '3');
+		} else {
+			sb.append(" -");
+		}
+
+		return sb.append(' ').append(pos.getHalfmoveClock()).append(' ').append(pos.getFullmoveNumber()).toString();
+	}
+
+	/**
+	 * Checks whether a pawn can capture the pawn on a given file en passant,
+	 * taking pins and checks into account.
+	 *
+	 * @param cb   the chess board
+	 * @param pc   the color of the player to move
+	 * @param file the file of the pawn which double-moved
+	 * @return true if a legal en passant capture exists, false otherwise.
+	 */
+	private static boolean canCaptureEnPassant(ChessBoard cb, PieceColor pc, int file) {
+		int y = (pc == PieceColor.WHITE) ? 4 : 3;
+		int target = (pc == PieceColor.WHITE) ? 5 : 2;
+		for (int x = file - 1; x <= file + 1; x += 2) {
+			if (x < 0 || x > 7) {
+				continue;
+			}
+			ChessPiece cp = cb.getPiece(x, y);
+			if (cp instanceof Pawn && cp.getPieceColor() == pc) {
+				for (Move m : cp.getValidMoves(cb)) {
+					if (m.getTo().getX() == file && m.getTo().getY() == target) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Marks a king or rook as not having moved, if it stands on its starting
+	 * square.
+	 * 
+	 * @param cb the chess board
+	 * @param pc the color of the piece
+	 * @param x  the x coordinate of the square
+	 * @param y  the y coordinate of the square
+	 */
+	private static void grantCastling(ChessBoard cb, PieceColor pc, int x, int y) {
+		ChessPiece cp = cb.getPiece(x, y);
+		if (cp != null && cp.getPieceColor() == pc) {
+			cp.setHasMoved(false);
+		}
+	}
+
+	/**
+	 * Skips over spaces.
+	 * 
+	 * @param s the string
+	 * @param i the index to start at
+	 * @return the index of the next character which is not a space
+	 */
+	private static int skipSpaces(String s, int i) {
+		while (i < s.length() && s.charAt(i) == ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Finds the end of a field.
+	 * 
+	 * @param s the string
+	 * @param i the index of the start of the field
+	 * @return the index of the next space, or the length of the string
+	 */
+	private static int findSpace(String s, int i) {
+		while (i < s.length() && s.charAt(i) != ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Parses a move counter.
+	 * 
+	 * @param fen   the FEN
+	 * @param start the index of the first digit
+	 * @param end   the index after the last digit
+	 * @return the value of the counter
+	 * @throws IllegalArgumentException if the counter is not a number
+	 */
+	private static int parseCounter(String fen, int start, int end) {
+		int value = 0;
+		if (start == end) {
+			throw new IllegalArgumentException("Bad move counter: " + fen);
+		}
+		for (int i = start; i < end; i++) {
+			char c = fen.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("Bad move counter: " + fen);
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
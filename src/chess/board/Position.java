@@ -0,0 +1,108 @@
+package chess.board;
+
+import chess.piece.ChessPiece;
+import chess.piece.Pawn;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which represents a complete chess position: the board, the player to
+ * move and the move counters of the fifty-move rule and the move number.
+ * Castling rights and en passant captures are stored in the pieces on the
+ * board.
+ * 
+ * @author kennangumbs
+ *
+ */
+public class Position {
+
+	private final ChessBoard board;
+	private PieceColor sideToMove;
+	private int halfmoveClock;
+	private int fullmoveNumber;
+
+	/**
+	 * Constructs a Position object.
+	 * 
+	 * @param board          the chess board
+	 * @param sideToMove     the color of the player to move
+	 * @param halfmoveClock  the amount of half moves since the last capture or pawn
+	 *                       move
+	 * @param fullmoveNumber the number of the current move, starting at 1
+	 */
+	public Position(ChessBoard board, PieceColor sideToMove, int halfmoveClock, int fullmoveNumber) {
+		this.board = board;
+		this.sideToMove = sideToMove;
+		this.halfmoveClock = halfmoveClock;
+		this.fullmoveNumber = fullmoveNumber;
+	}
+
+	/**
+	 * Plays a move for the player to move, following the same rules as the game:
+	 * a pawn which reaches the last rank is promoted, and the pawns of the other
+	 * player can no longer be captured en passant. The move counters and the
+	 * player to move are updated.
+	 * 
+	 * @param m         a valid move of the player to move
+	 * @param promotion the piece type a pawn is promoted to, null for a queen
+	 */
+	public void play(Move m, PieceType promotion) {
+		ChessPiece moving = board.getPiece(m.getFrom());
+		boolean zeroing = moving.getPieceType() == PieceType.PAWN || !board.isEmpty(m.getTo());
+
+		m.execute(board);
+
+		int lastRank = (sideToMove == PieceColor.WHITE) ? 7 : 0;
+		if (moving.getPieceType() == PieceType.PAWN && m.getTo().getY() == lastRank) {
+			board.setPiece(m.getTo(), (promotion == null ? PieceType.QUEEN : promotion).create(sideToMove));
+		}
+
+		long pawns = board.getPieces(PieceType.PAWN, sideToMove.flip());
+		for (; pawns != 0; pawns &= pawns - 1) {
+			int index = Long.numberOfTrailingZeros(pawns);
+			((Pawn) board.getPiece(index % 8, index / 8)).setCanBeCapturedEnPassant(false);
+		}
+
+		halfmoveClock = zeroing ? 0 : halfmoveClock + 1;
+		if (sideToMove == PieceColor.BLACK) {
+			fullmoveNumber++;
+		}
+		sideToMove = sideToMove.flip();
+	}
+
+	/**
+	 * A getter for the chess board.
+	 * 
+	 * @return the value of board
+	 */
+	public ChessBoard getBoard() {
+		return board;
+	}
+
+	/**
+	 * A getter for the color of the player to move.
+	 * 
+	 * @return the value of sideToMove
+	 */
+	public PieceColor getSideToMove() {
+		return sideToMove;
+	}
+
+	/**
+	 * A getter for the amount of half moves since the last capture or pawn move.
+	 * 
+	 * @return the value of halfmoveClock
+	 */
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	/**
+	 * A getter for the number of the current move.
+	 * 
+	 * @return the value of fullmoveNumber
+	 */
+	public int getFullmoveNumber() {
+		return fullmoveNumber;
+	}
+}
@@ -0,0 +1,227 @@
+package chess.board;
+
+import java.nio.ByteBuffer;
+
+import chess.piece.ChessPiece;
+import chess.piece.Pawn;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which encodes positions in a fixed-size binary format of
+ * {@value #SIZE} bytes, for storing large amounts of positions and for passing
+ * them between processes. A position is laid out as follows:
+ * 
+ * <ul>
+ * <li>8 bytes: the occupied squares, as a bitboard</li>
+ * <li>16 bytes: a 4 bit code (color * 6 + piece type) for each occupied
+ * square, from a1 upwards, two per byte with the first in the high bits</li>
+ * <li>1 byte: bit 0 is set if black is to move, bits 1 to 4 hold the castling
+ * rights K, Q, k and q</li>
+ * <li>1 byte: the file of the pawn which can be captured en passant, or 0xFF if
+ * there is none</li>
+ * <li>2 bytes: the halfmove clock</li>
+ * <li>2 bytes: the fullmove number</li>
+ * <li>2 bytes: reserved, always 0</li>
+ * </ul>
+ * 
+ * Since there are never more than 32 pieces on the board, every position fits.
+ * Encoding only reads the bitboards of the board and writes straight into the
+ * buffer, so nothing is allocated.
+ * 
+ * @author kennangumbs
+ *
+ */
+public final class PositionCodec {
+
+	/**
+	 * The size of an encoded position in bytes.
+	 */
+	public static final int SIZE = 32;
+
+	private static final int BLACK_TO_MOVE = 1;
+	private static final int WHITE_KINGSIDE = 1 << 1;
+	private static final int WHITE_QUEENSIDE = 1 << 2;
+	private static final int BLACK_KINGSIDE = 1 << 3;
+	private static final int BLACK_QUEENSIDE = 1 << 4;
+	private static final int NO_EN_PASSANT = 0xFF;
+
+	private static final PieceType[] TYPES = PieceType.values();
+	private static final PieceColor[] COLORS = PieceColor.values();
+
+	/**
+	 * A private constructor to prevent instantiation.
+	 */
+	private PositionCodec() {
+	}
+
+	/**
+	 * Encodes a position into a new array.
+	 * 
+	 * @param pos the position
+	 * @return an array of {@value #SIZE} bytes holding the position
+	 */
+	public static byte[] encode(Position pos) {
+		byte[] data = new byte[SIZE];
+		encode(pos, ByteBuffer.wrap(data));
+		return data;
+	}
+
+	/**
+	 * Encodes a position at the current position of a buffer, which is then
+	 * advanced by {@value #SIZE} bytes.
+	 * 
+	 * @param pos the position
+	 * @param out the buffer to write to
+	 */
+	public static void encode(Position pos, ByteBuffer out) {
+		ChessBoard cb = pos.getBoard();
+		long occupancy = cb.getOccupancy();
+		out.putLong(occupancy);
+
+		int pending = -1;
+		int written = 0;
+		for (long squares = occupancy; squares != 0; squares &= squares - 1) {
+			int code = getCode(cb, Long.numberOfTrailingZeros(squares));
+			if (pending < 0) {
+				pending = code;
+			} else {
+				out.put((byte) (pending << 4 | code));
+				pending = -1;
+				written++;
+			}
+		}
+		if (pending >= 0) {
+			out.put((byte) (pending << 4));
+			written++;
+		}
+		for (; written < 16; written++) {
+			out.put((byte) 0);
+		}
+
+		int flags = (pos.getSideToMove() == PieceColor.BLACK) ? BLACK_TO_MOVE : 0;
+		if (cb.hasCastlingRight(PieceColor.WHITE, true)) {
+			flags |= WHITE_KINGSIDE;
+		}
+		if (cb.hasCastlingRight(PieceColor.WHITE, false)) {
+			flags |= WHITE_QUEENSIDE;
+		}
+		if (cb.hasCastlingRight(PieceColor.BLACK, true)) {
+			flags |= BLACK_KINGSIDE;
+		}
+		if (cb.hasCastlingRight(PieceColor.BLACK, false)) {
+			flags |= BLACK_QUEENSIDE;
+		}
+		out.put((byte) flags);
+
+		int file = cb.getEnPassantFile(pos.getSideToMove().flip());
+		out.put((byte) (file >= 0 ? file : NO_EN_PASSANT));
+		out.putShort((short) Math.min(pos.getHalfmoveClock(), 0xFFFF));
+		out.putShort((short) Math.min(pos.getFullmoveNumber(), 0xFFFF));
+		out.putShort((short) 0);
+	}
+
+	/**
+	 * Decodes a position from an array.
+	 * 
+	 * @param data   the array
+	 * @param offset the index of the first byte of the position
+	 * @return the decoded position
+	 * @throws IllegalArgumentException if the data is not a valid encoding
+	 */
+	public static Position decode(byte[] data, int offset) {
+		return decode(ByteBuffer.wrap(data, offset, SIZE));
+	}
+
+	/**
+	 * Decodes a position at the current position of a buffer, which is then
+	 * advanced by {@value #SIZE} bytes.
+	 * 
+	 * @param in the buffer to read from
+	 * @return the decoded position
+	 * @throws IllegalArgumentException if the data is not a valid encoding
+	 */
+	public static Position decode(ByteBuffer in) {
+		long occupancy = in.getLong();
+		if (Long.bitCount(occupancy) > 32) {
+			throw new IllegalArgumentException("Too many pieces: " + Long.bitCount(occupancy));
+		}
+
+		ChessBoard cb = new ChessBoard();
+		int start = in.position();
+		int i = 0;
+		for (long squares = occupancy; squares != 0; squares &= squares - 1, i++) {
+			int packed = in.get(start + (i >> 1));
+			int code = ((i & 1) == 0) ? (packed >> 4) & 0xF : packed & 0xF;
+			if (code >= 12) {
+				throw new IllegalArgumentException("Bad piece code: " + code);
+			}
+
+			ChessPiece cp = TYPES[code % 6].create(COLORS[code / 6]);
+			// Castling rights are given back below.
+			cp.setHasMoved(cp.getPieceType() == PieceType.KING || cp.getPieceType() == PieceType.ROOK);
+			int index = Long.numberOfTrailingZeros(squares);
+			cb.setPiece(index % 8, index / 8, cp);
+		}
+		in.position(start + 16);
+
+		int flags = in.get() & 0xFF;
+		PieceColor sideToMove = ((flags & BLACK_TO_MOVE) != 0) ? PieceColor.BLACK : PieceColor.WHITE;
+		if ((flags & WHITE_KINGSIDE) != 0) {
+			grantCastling(cb, PieceColor.WHITE, 7);
+		}
+		if ((flags & WHITE_QUEENSIDE) != 0) {
+			grantCastling(cb, PieceColor.WHITE, 0);
+		}
+		if ((flags & BLACK_KINGSIDE) != 0) {
+			grantCastling(cb, PieceColor.BLACK, 7);
+		}
+		if ((flags & BLACK_QUEENSIDE) != 0) {
+			grantCastling(cb, PieceColor.BLACK, 0);
+		}
+
+		int file = in.get() & 0xFF;
+		if (file < 8) {
+			int rank = (sideToMove == PieceColor.WHITE) ? 4 : 3;
+			ChessPiece cp = cb.getPiece(file, rank);
+			if (cp instanceof Pawn) {
+				((Pawn) cp).setCanBeCapturedEnPassant(true);
+			}
+		}
+
+		int halfmoveClock = in.getShort() & 0xFFFF;
+		int fullmoveNumber = in.getShort() & 0xFFFF;
+		in.getShort();
+		return new Position(cb, sideToMove, halfmoveClock, fullmoveNumber);
+	}
+
+	/**
+	 * Returns the 4 bit code of the piece on a square.
+	 * 
+	 * @param cb    the chess board
+	 * @param index the index of the occupied square
+	 * @return the code of the piece
+	 */
+	private static int getCode(ChessBoard cb, int index) {
+		ChessPiece cp = cb.getPiece(index % 8, index / 8);
+		return cp.getPieceColor().ordinal() * 6 + cp.getPieceType().ordinal();
+	}
+
+	/**
+	 * Marks the king and a rook of one player as not having moved, if they stand
+	 * on their starting squares.
+	 * 
+	 * @param cb   the chess board
+	 * @param pc   the color of the player
+	 * @param rook the x coordinate of the rook
+	 */
+	private static void grantCastling(ChessBoard cb, PieceColor pc, int rook) {
+		int rank = (pc == PieceColor.WHITE) ? 0 : 7;
+		ChessPiece king = cb.getPiece(4, rank);
+		ChessPiece cp = cb.getPiece(rook, rank);
+		if (king != null && king.getPieceColor() == pc && cp != null && cp.getPieceColor() == pc) {
+			king.setHasMoved(false);
+			cp.setHasMoved(false);
+		}
+	}
+}
@@ -49,6 +49,16 @@ public class Square {
 		return y;
 	}
 
+	/**
+	 * Returns the index of this square, counting from a1 (0) to h8 (63) rank by
+	 * rank.
+	 * 
+	 * @return the index of this square
+	 */
+	public int getIndex() {
+		return y * 8 + x;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (!(o instanceof Square)) {
@@ -0,0 +1,123 @@
+package chess.board;
+
+import java.util.Random;
+
+import chess.piece.ChessPiece;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which computes Zobrist hash keys for chess positions. Every
+ * combination of piece, color and square is assigned a random 64 bit number,
+ * and the key of a position is the exclusive or of the numbers of all of its
+ * pieces. Since a piece can be added or removed with a single exclusive or,
+ * the ChessBoard keeps its key up to date incrementally.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Zobrist_Hashing
+ */
+public final class Zobrist {
+
+	private static final long[][] PIECES = new long[12][64];
+	private static final long[] CASTLING = new long[4];
+	private static final long[] EN_PASSANT = new long[8];
+
+	/**
+	 * The number which is added to the key of a position when black is to move.
+	 */
+	public static final long BLACK_TO_MOVE;
+
+	static {
+		// A fixed seed, so that keys are the same every time the program is run.
+		Random r = new Random(0x2019C4E55L);
+		for (long[] piece : PIECES) {
+			for (int i = 0; i < piece.length; i++) {
+				piece[i] = r.nextLong();
+			}
+		}
+		for (int i = 0; i < CASTLING.length; i++) {
+			CASTLING[i] = r.nextLong();
+		}
+		for (int i = 0; i < EN_PASSANT.length; i++) {
+			EN_PASSANT[i] = r.nextLong();
+		}
+		BLACK_TO_MOVE = r.nextLong();
+	}
+
+	/**
+	 * A private constructor to prevent instantiation.
+	 */
+	private Zobrist() {
+	}
+
+	/**
+	 * Returns the number assigned to a piece standing on a given square.
+	 *
+	 * @param cp    the chess piece
+	 * @param index the index of the square (see {@link Square#getIndex()})
+	 * @return the random number for the piece and square
+	 */
+	public static long getPieceKey(ChessPiece cp, int index) {
+		return getPieceKey(cp.getPieceType(), cp.getPieceColor(), index);
+	}
+
+	/**
+	 * Returns the number assigned to a piece standing on a given square.
+	 *
+	 * @param pt    the type of the piece
+	 * @param pc    the color of the piece
+	 * @param index the index of the square (see {@link Square#getIndex()})
+	 * @return the random number for the piece and square
+	 */
+	public static long getPieceKey(PieceType pt, PieceColor pc, int index) {
+		return PIECES[pc.ordinal() * 6 + pt.ordinal()][index];
+	}
+
+	/**
+	 * Computes the key of a chess board, including castling rights and en passant
+	 * captures but not the side to move.
+	 *
+	 * @param cb the chess board
+	 * @return the key of the board
+	 */
+	public static long getKey(ChessBoard cb) {
+		long key = cb.getHash();
+
+		if (cb.hasCastlingRight(PieceColor.WHITE, false)) {
+			key ^= CASTLING[0];
+		}
+		if (cb.hasCastlingRight(PieceColor.BLACK, false)) {
+			key ^= CASTLING[1];
+		}
+		if (cb.hasCastlingRight(PieceColor.WHITE, true)) {
+			key ^= CASTLING[2];
+		}
+		if (cb.hasCastlingRight(PieceColor.BLACK, true)) {
+			key ^= CASTLING[3];
+		}
+
+		for (PieceColor pc : PieceColor.values()) {
+			int x = cb.getEnPassantFile(pc);
+			if (x != -1) {
+				key ^= EN_PASSANT[x];
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Computes the key of a chess board with a given player to move.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @return the key of the position
+	 */
+	public static long getKey(ChessBoard cb, PieceColor pc) {
+		long key = getKey(cb);
+		if (pc == PieceColor.BLACK) {
+			key ^= BLACK_TO_MOVE;
+		}
+		return key;
+	}
+}
@@ -0,0 +1,566 @@
+package chess.book;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import chess.board.ChessBoard;
+import chess.board.Move;
+import chess.board.Position;
+import chess.pgn.GameSource;
+import chess.pgn.PgnGame;
+import chess.pgn.San;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which builds a Polyglot opening book from a corpus of games, which
+ * can be read by {@link PolyglotBook} and by other chess programs.
+ *
+ * The games are read by one thread and handed to worker threads in batches.
+ * Each worker plays through the first moves of its games and adds up the
+ * weight of every move in a {@link MoveTable}. A move earns points for the
+ * result of the game from the view of the player who made it, by default 2
+ * for a win, 1 for a draw and 0 for a loss, optionally multiplied by the
+ * rating of the player. When the table is full, it is sorted and written to a
+ * temporary file as a sorted run, so the memory used does not depend on the
+ * size of the corpus. Finally, the runs are merged into the book, leaving out
+ * moves played in too few games or which never scored, and the weights of
+ * each position are scaled down to fit the 16 bits of a book entry.
+ *
+ * @author kennangumbs
+ *
+ * @see http://hgm.nubati.net/book_format.html
+ */
+public class BookBuilder {
+
+	/**
+	 * The amount of moves of each game which are added to the book by default.
+	 */
+	public static final int DEFAULT_PLIES = 24;
+
+	/**
+	 * The amount of games a move is played in before it is added to the book by
+	 * default.
+	 */
+	public static final int DEFAULT_MIN_GAMES = 3;
+
+	private static final int BATCH_SIZE = 256;
+	private static final int RUN_SIZE = 1 << 21;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_WEIGHT = 0xFFFF;
+
+	private final PolyglotKey keys;
+	private final int threads;
+	private final Path tmp;
+	private final List<Path> runs;
+
+	private int plies;
+	private int minGames;
+	private int minElo;
+	private int[] points;
+	private boolean ratingWeight;
+
+	private long games;
+	private long skipped;
+	private long entries;
+
+	/**
+	 * Constructs a BookBuilder object with the default settings.
+	 *
+	 * @param keys    the Polyglot keys to store positions with
+	 * @param threads the amount of worker threads
+	 * @param tmp     the directory of the temporary files
+	 */
+	public BookBuilder(PolyglotKey keys, int threads, Path tmp) {
+		this.keys = keys;
+		this.threads = Math.max(1, threads);
+		this.tmp = tmp;
+		runs = Collections.synchronizedList(new ArrayList<>());
+
+		plies = DEFAULT_PLIES;
+		minGames = DEFAULT_MIN_GAMES;
+		points = new int[] { 2, 1, 0 };
+	}
+
+	/**
+	 * Builds a book.
+	 *
+	 * @param in  a PGN file, or a game archive if the name ends with ".bin"
+	 * @param out the book file to write
+	 * @return the amount of games added to the book
+	 * @throws IOException          if a file cannot be read or written
+	 * @throws InterruptedException if the thread is interrupted while waiting for
+	 *                              the workers
+	 */
+	public long build(Path in, Path out) throws IOException, InterruptedException {
+		BlockingQueue<List<PgnGame>> queue = new ArrayBlockingQueue<>(2 * threads);
+		Worker[] workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(queue, i);
+			workers[i].start();
+		}
+
+		try {
+			try (GameSource source = GameSource.open(in)) {
+				List<PgnGame> batch = new ArrayList<>(BATCH_SIZE);
+				PgnGame game;
+				while ((game = source.next()) != null) {
+					batch.add(game);
+					games++;
+					if (batch.size() == BATCH_SIZE) {
+						queue.put(batch);
+						batch = new ArrayList<>(BATCH_SIZE);
+					}
+				}
+				if (!batch.isEmpty()) {
+					queue.put(batch);
+				}
+			} finally {
+				// An empty batch tells a worker that there are no more games.
+				for (int i = 0; i < threads; i++) {
+					queue.put(Collections.emptyList());
+				}
+				for (Worker w : workers) {
+					w.join();
+				}
+			}
+			for (Worker w : workers) {
+				if (w.error != null) {
+					throw w.error;
+				}
+			}
+			merge(out);
+		} finally {
+			for (Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+		}
+		return games - skipped;
+	}
+
+	/**
+	 * A thread which adds batches of games to its table and writes the table to
+	 * sorted runs.
+	 */
+	private class Worker extends Thread {
+
+		private final BlockingQueue<List<PgnGame>> queue;
+		private final MoveTable table;
+		private final long[] gameKeys;
+		private final int[] gameMoves;
+		private final long[] gameWeights;
+		private IOException error;
+
+		/**
+		 * Constructs a Worker object.
+		 *
+		 * @param queue the queue of batches
+		 * @param id    the number of the worker
+		 */
+		Worker(BlockingQueue<List<PgnGame>> queue, int id) {
+			super("Book Worker " + id);
+			this.queue = queue;
+			table = new MoveTable(RUN_SIZE);
+			gameKeys = new long[plies];
+			gameMoves = new int[plies];
+			gameWeights = new long[plies];
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					List<PgnGame> batch = queue.take();
+					if (batch.isEmpty()) {
+						break;
+					}
+					// After an error the batches are still taken, so the reader is never
+					// blocked.
+					if (error != null) {
+						continue;
+					}
+					for (PgnGame g : batch) {
+						try {
+							add(g);
+						} catch (RuntimeException e) {
+							// A broken game is reported and left out, and the rest of the batch is
+							// still counted.
+							System.err.println(
+									"Skipping game " + g.getTag("White") + " - " + g.getTag("Black") + ": " + e);
+							synchronized (BookBuilder.this) {
+								skipped++;
+							}
+						}
+						if (table.isFull()) {
+							writeRun();
+						}
+					}
+				}
+				if (error == null) {
+					writeRun();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Adds the moves of a game to the table. The moves are only added once the
+		 * whole game has been read, so that a game which fails leaves the table as it
+		 * was.
+		 *
+		 * @param g the game
+		 */
+		private void add(PgnGame g) {
+			String result = g.getResult();
+			int white;
+			if (result.equals("1-0")) {
+				white = 0;
+			} else if (result.equals("1/2-1/2")) {
+				white = 1;
+			} else if (result.equals("0-1")) {
+				white = 2;
+			} else {
+				synchronized (BookBuilder.this) {
+					skipped++;
+				}
+				return;
+			}
+			int whiteElo = getElo(g.getTag("WhiteElo"));
+			int blackElo = getElo(g.getTag("BlackElo"));
+
+			int count = 0;
+			try {
+				Position pos = g.getStartPosition();
+				List<String> moves = g.getMoves();
+				for (int i = 0; i < moves.size() && i < plies; i++) {
+					String san = moves.get(i);
+					Move m = San.parse(pos, san);
+					if (m == null) {
+						break;
+					}
+					PieceType promotion = San.getPromotion(san);
+					ChessBoard cb = pos.getBoard();
+					PieceColor pc = pos.getSideToMove();
+					int elo = (pc == PieceColor.WHITE) ? whiteElo : blackElo;
+					if (elo >= minElo) {
+						// A result of the game is the opposite result for black.
+						long weight = points[(pc == PieceColor.WHITE) ? white : 2 - white];
+						if (ratingWeight) {
+							weight *= elo;
+						}
+						gameKeys[count] = keys.getKey(cb, pc);
+						gameMoves[count] = PolyglotBook.fromMove(cb, m, promotion);
+						gameWeights[count] = weight;
+						count++;
+					}
+					pos.play(m, promotion);
+				}
+			} catch (IllegalArgumentException e) {
+				// The moves up to an invalid FEN or move are still added.
+			}
+
+			for (int i = 0; i < count; i++) {
+				table.add(gameKeys[i], gameMoves[i], gameWeights[i]);
+			}
+		}
+
+		/**
+		 * Sorts the table, writes it to a new run and clears it. If the run cannot
+		 * be written, the error is kept for the builder.
+		 */
+		private void writeRun() {
+			if (table.size() == 0) {
+				return;
+			}
+			table.sort();
+			try {
+				Path run = Files.createTempFile(tmp, "run", ".tmp");
+				runs.add(run);
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+					for (int i = 0; i < table.size(); i++) {
+						out.writeLong(table.getKey(i));
+						out.writeShort(table.getMove(i));
+						out.writeLong(table.getWeight(i));
+						out.writeInt(table.getGames(i));
+					}
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+			table.clear();
+		}
+	}
+
+	/**
+	 * Reads the rating of a player from a tag.
+	 *
+	 * @param tag the value of the tag, null if the game has none
+	 * @return the rating, 0 if it is missing or not a number
+	 */
+	private static int getElo(String tag) {
+		if (tag == null) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Integer.parseInt(tag.trim()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Merges the sorted runs into the book.
+	 *
+	 * @param out the book file to write
+	 * @throws IOException if a run cannot be read or the book cannot be written
+	 */
+	private void merge(Path out) throws IOException {
+		PriorityQueue<RunReader> heap = new PriorityQueue<>(RunReader::compareTo);
+		try (DataOutputStream book = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(out), BUFFER_SIZE))) {
+			for (Path run : runs) {
+				RunReader reader = new RunReader(run);
+				if (reader.next()) {
+					heap.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+
+			// The moves of the current position, each as move, weight and games.
+			List<long[]> position = new ArrayList<>();
+			long key = 0;
+			while (!heap.isEmpty()) {
+				RunReader reader = heap.poll();
+				if (position.isEmpty() || reader.key != key) {
+					writePosition(book, key, position);
+					key = reader.key;
+				}
+				long[] last = position.isEmpty() ? null : position.get(position.size() - 1);
+				if (last != null && last[0] == reader.move) {
+					last[1] += reader.weight;
+					last[2] += reader.games;
+				} else {
+					position.add(new long[] { reader.move, reader.weight, reader.games });
+				}
+
+				if (reader.next()) {
+					heap.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+			writePosition(book, key, position);
+		} finally {
+			for (RunReader reader : heap) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes the book entries of a position and empties the list of its moves.
+	 * Moves played in too few games or with no weight are left out, the others
+	 * are written with the heaviest first, and the weights are scaled down if the
+	 * heaviest does not fit into a book entry.
+	 *
+	 * @param book     the book file
+	 * @param key      the Polyglot key of the position
+	 * @param position the moves of the position, each as move, weight and games
+	 * @throws IOException if the book cannot be written
+	 */
+	private void writePosition(DataOutputStream book, long key, List<long[]> position) throws IOException {
+		position.removeIf(m -> m[2] < minGames || m[1] <= 0);
+		position.sort((a, b) -> Long.compare(b[1], a[1]));
+		long max = position.isEmpty() ? 0 : position.get(0)[1];
+		for (long[] m : position) {
+			long weight = (max <= MAX_WEIGHT) ? m[1] : Math.max(1, m[1] * MAX_WEIGHT / max);
+			book.writeLong(key);
+			book.writeShort((int) m[0]);
+			book.writeShort((int) weight);
+			book.writeInt(0);
+			entries++;
+		}
+		position.clear();
+	}
+
+	/**
+	 * A class which reads the entries of a run one at a time.
+	 */
+	private static class RunReader implements Closeable, Comparable<RunReader> {
+
+		private final DataInputStream in;
+		private long key;
+		private int move;
+		private long weight;
+		private int games;
+
+		/**
+		 * Constructs a RunReader object.
+		 *
+		 * @param run the path of the run
+		 * @throws IOException if the run cannot be opened
+		 */
+		RunReader(Path run) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+		}
+
+		/**
+		 * Reads the next entry.
+		 *
+		 * @return true if there was an entry, false at the end of the run
+		 * @throws IOException if the run cannot be read
+		 */
+		boolean next() throws IOException {
+			try {
+				key = in.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			move = in.readShort() & 0xFFFF;
+			weight = in.readLong();
+			games = in.readInt();
+			return true;
+		}
+
+		@Override
+		public int compareTo(RunReader other) {
+			int c = Long.compareUnsigned(key, other.key);
+			return (c != 0) ? c : Integer.compare(move, other.move);
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * A setter for the amount of moves of each game which are added to the book.
+	 *
+	 * @param plies the new value of plies
+	 */
+	public void setPlies(int plies) {
+		this.plies = plies;
+	}
+
+	/**
+	 * A setter for the amount of games a move has to be played in to be added to
+	 * the book.
+	 *
+	 * @param minGames the new value of minGames
+	 */
+	public void setMinGames(int minGames) {
+		this.minGames = minGames;
+	}
+
+	/**
+	 * A setter for the rating a player needs for their moves to be added to the
+	 * book. Players without a rating count as rated 0.
+	 *
+	 * @param minElo the new value of minElo
+	 */
+	public void setMinElo(int minElo) {
+		this.minElo = minElo;
+	}
+
+	/**
+	 * Sets the points a move earns for the result of its game, from the view of
+	 * the player who made it.
+	 *
+	 * @param win  the points for a win
+	 * @param draw the points for a draw
+	 * @param loss the points for a loss
+	 */
+	public void setPoints(int win, int draw, int loss) {
+		points = new int[] { win, draw, loss };
+	}
+
+	/**
+	 * A setter for whether the points of a move are multiplied by the rating of
+	 * the player who made it, so that the moves of stronger players weigh more.
+	 * The moves of players without a rating then have no weight.
+	 *
+	 * @param ratingWeight the new value of ratingWeight
+	 */
+	public void setRatingWeight(boolean ratingWeight) {
+		this.ratingWeight = ratingWeight;
+	}
+
+	/**
+	 * A getter for the amount of entries written to the last book.
+	 *
+	 * @return the value of entries
+	 */
+	public long getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Builds a book from the command line. Any optional argument can be given as
+	 * "-" to keep its default.
+	 *
+	 * @param args the corpus, the book file, and optionally the amount of moves
+	 *             of each game to add, the amount of games a move needs, the
+	 *             rating a player needs, the points for a win, a draw and a loss
+	 *             (such as "2,1,0"), "elo" to multiply the points by the rating,
+	 *             and the amount of threads
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: BookBuilder <input.pgn|input.bin> <output.bin> [plies] [min games] [min elo]"
+					+ " [win,draw,loss] [elo] [threads]");
+			return;
+		}
+		PolyglotKey keys = PolyglotKey.getInstance();
+
+		long start = System.currentTimeMillis();
+		try {
+			int threads = (args.length > 7 && !args[7].equals("-")) ? Integer.parseInt(args[7])
+					: Runtime.getRuntime().availableProcessors();
+			Path out = Paths.get(args[1]).toAbsolutePath();
+			Path tmp = Files.createTempDirectory(out.getParent(), "book");
+			try {
+				BookBuilder builder = new BookBuilder(keys, threads, tmp);
+				if (args.length > 2 && !args[2].equals("-")) {
+					builder.setPlies(Integer.parseInt(args[2]));
+				}
+				if (args.length > 3 && !args[3].equals("-")) {
+					builder.setMinGames(Integer.parseInt(args[3]));
+				}
+				if (args.length > 4 && !args[4].equals("-")) {
+					builder.setMinElo(Integer.parseInt(args[4]));
+				}
+				if (args.length > 5 && !args[5].equals("-")) {
+					String[] p = args[5].split(",");
+					builder.setPoints(Integer.parseInt(p[0]), Integer.parseInt(p[1]), Integer.parseInt(p[2]));
+				}
+				builder.setRatingWeight(args.length > 6 && args[6].equalsIgnoreCase("elo"));
+
+				long count = builder.build(Paths.get(args[0]), out);
+				System.out.println("Added " + count + " games (" + builder.getEntries() + " entries) to " + args[1]
+						+ " in " + (System.currentTimeMillis() - start) + " ms");
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+}
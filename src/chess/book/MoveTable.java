@@ -0,0 +1,233 @@
+package chess.book;
+
+import java.util.Arrays;
+
+/**
+ * A hash table which counts the games and adds up the weights of the moves
+ * played in positions, keyed by the Polyglot key of the position and the
+ * Polyglot encoding of the move. The table is made of primitive arrays and
+ * uses open addressing, so a slot takes 22 bytes and no objects are created
+ * while counting, which keeps the memory of a {@link BookBuilder} small and
+ * predictable. There are two to four slots for every entry the table holds,
+ * so it takes 44 to 88 bytes per entry.
+ *
+ * Once the table is full, {@link #sort()} packs the entries at the front of
+ * the arrays and sorts them into the order of a book, after which they are
+ * read by index and the table is {@link #clear() cleared} for reuse.
+ *
+ * @author kennangumbs
+ *
+ * @see https://en.wikipedia.org/wiki/Open_addressing
+ */
+class MoveTable {
+
+	private final long[] keys;
+	private final short[] moves;
+	private final long[] weights;
+	private final int[] games;
+	private final int mask;
+	private final int capacity;
+	private int size;
+
+	/**
+	 * Constructs a MoveTable object.
+	 *
+	 * @param capacity the amount of entries the table holds before it is full;
+	 *                 the arrays are twice as large, so that lookups stay short
+	 */
+	MoveTable(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) * 2;
+		keys = new long[slots];
+		moves = new short[slots];
+		weights = new long[slots];
+		games = new int[slots];
+		mask = slots - 1;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Counts a game for a move.
+	 *
+	 * @param key    the Polyglot key of the position
+	 * @param move   the Polyglot encoding of the move
+	 * @param weight the weight the game adds to the move
+	 */
+	void add(long key, int move, long weight) {
+		int i = (int) mix(key ^ (long) move << 48) & mask;
+		// A slot without games is empty.
+		while (games[i] != 0 && (keys[i] != key || moves[i] != (short) move)) {
+			i = (i + 1) & mask;
+		}
+		if (games[i] == 0) {
+			keys[i] = key;
+			moves[i] = (short) move;
+			size++;
+		}
+		weights[i] += weight;
+		games[i]++;
+	}
+
+	/**
+	 * Mixes the bits of a number, so that keys which differ only in a few bits
+	 * end up in far apart slots.
+	 *
+	 * @param x the number
+	 * @return the mixed number
+	 */
+	private static long mix(long x) {
+		x = (x ^ (x >>> 33)) * 0xFF51AFD7ED558CCDL;
+		return x ^ (x >>> 33);
+	}
+
+	/**
+	 * Packs the entries at the front of the arrays and sorts them by key, as
+	 * unsigned numbers, and then by move. The table cannot be added to again
+	 * until it is cleared.
+	 */
+	void sort() {
+		int n = 0;
+		for (int i = 0; i <= mask; i++) {
+			if (games[i] != 0) {
+				swap(i, n++);
+			}
+		}
+		sort(0, size - 1);
+	}
+
+	/**
+	 * Sorts a range of the packed entries with quicksort.
+	 *
+	 * @param lo the index of the first entry
+	 * @param hi the index of the last entry
+	 */
+	private void sort(int lo, int hi) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			long pivotKey = keys[mid];
+			int pivotMove = moves[mid] & 0xFFFF;
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (compare(i, pivotKey, pivotMove) < 0) {
+					i++;
+				}
+				while (compare(j, pivotKey, pivotMove) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			// Recursing into the smaller half keeps the stack shallow.
+			if (j - lo < hi - i) {
+				sort(lo, j);
+				lo = i;
+			} else {
+				sort(i, hi);
+				hi = j;
+			}
+		}
+	}
+
+	/**
+	 * Compares an entry with a key and a move.
+	 *
+	 * @param i    the index of the entry
+	 * @param key  the key
+	 * @param move the move
+	 * @return a negative number, zero or a positive number if the entry comes
+	 *         before, at or after the key and the move
+	 */
+	private int compare(int i, long key, int move) {
+		int c = Long.compareUnsigned(keys[i], key);
+		return (c != 0) ? c : Integer.compare(moves[i] & 0xFFFF, move);
+	}
+
+	/**
+	 * Swaps two entries.
+	 *
+	 * @param i the index of the first entry
+	 * @param j the index of the second entry
+	 */
+	private void swap(int i, int j) {
+		long k = keys[i];
+		keys[i] = keys[j];
+		keys[j] = k;
+		short m = moves[i];
+		moves[i] = moves[j];
+		moves[j] = m;
+		long w = weights[i];
+		weights[i] = weights[j];
+		weights[j] = w;
+		int g = games[i];
+		games[i] = games[j];
+		games[j] = g;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	void clear() {
+		Arrays.fill(games, 0);
+		Arrays.fill(weights, 0);
+		size = 0;
+	}
+
+	/**
+	 * Checks whether the table holds as many entries as it was made for.
+	 *
+	 * @return true if the table is full, false otherwise.
+	 */
+	boolean isFull() {
+		return size >= capacity;
+	}
+
+	/**
+	 * A getter for the amount of entries.
+	 *
+	 * @return the value of size
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the key of a sorted entry.
+	 *
+	 * @param i the index of the entry
+	 * @return the Polyglot key of the position
+	 */
+	long getKey(int i) {
+		return keys[i];
+	}
+
+	/**
+	 * Returns the move of a sorted entry.
+	 *
+	 * @param i the index of the entry
+	 * @return the Polyglot encoding of the move
+	 */
+	int getMove(int i) {
+		return moves[i] & 0xFFFF;
+	}
+
+	/**
+	 * Returns the weight of a sorted entry.
+	 *
+	 * @param i the index of the entry
+	 * @return the sum of the weights of its games
+	 */
+	long getWeight(int i) {
+		return weights[i];
+	}
+
+	/**
+	 * Returns the amount of games of a sorted entry.
+	 *
+	 * @param i the index of the entry
+	 * @return the amount of games
+	 */
+	int getGames(int i) {
+		return games[i];
+	}
+}
@@ -0,0 +1,268 @@
+package chess.book;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+import chess.board.ChessBoard;
+import chess.board.Move;
+import chess.piece.ChessPiece;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which reads moves from a Polyglot (.bin) opening book. The book file
+ * is memory-mapped read-only and never copied onto the heap. It consists of 16
+ * byte entries (key, move, weight and learn data) sorted by key, so the entries
+ * of a position are found by binary search, and one of them is picked at random
+ * with a probability proportional to its weight.
+ *
+ * @author kennangumbs
+ *
+ * @see http://hgm.nubati.net/book_format.html
+ */
+public class PolyglotBook {
+
+	/**
+	 * The name of the system property which holds the path of the book used by
+	 * default.
+	 */
+	public static final String PROPERTY = "chess.book";
+
+	/**
+	 * The size of a book entry in bytes.
+	 */
+	public static final int ENTRY_SIZE = 16;
+
+	private static PolyglotBook instance;
+	private static boolean loaded;
+
+	private final MappedByteBuffer buffer;
+	private final int entries;
+	private final PolyglotKey keys;
+
+	/**
+	 * Constructs a PolyglotBook object by mapping a book file into memory.
+	 *
+	 * @param path the path of the book file
+	 * @param keys the Polyglot keys to look up positions with
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public PolyglotBook(Path path, PolyglotKey keys) throws IOException {
+		this.keys = keys;
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+		entries = buffer.capacity() / ENTRY_SIZE;
+	}
+
+	/**
+	 * A method which returns the book named by the {@value #PROPERTY} system
+	 * property, mapping it the first time it is needed.
+	 *
+	 * @return the default book, or null if none is configured
+	 */
+	public static synchronized PolyglotBook getInstance() {
+		if (!loaded) {
+			loaded = true;
+			String path = System.getProperty(PROPERTY);
+			if (path != null) {
+				try {
+					instance = new PolyglotBook(Paths.get(path), PolyglotKey.getInstance());
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Chooses a book move for a position. A move carries no promotion piece and
+	 * the players of this project always promote to a queen, so a book move which
+	 * promotes to any other piece is not returned.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @return a valid move from the book, or null if the position is not in the
+	 *         book or the chosen move is an underpromotion
+	 */
+	public Move getMove(ChessBoard cb, PieceColor pc) {
+		int move = probe(keys.getKey(cb, pc));
+		if (move == 0) {
+			return null;
+		}
+		PieceType promotion = getPromotion(move);
+		if (promotion != null && promotion != PieceType.QUEEN) {
+			return null;
+		}
+		return toMove(cb, pc, move);
+	}
+
+	/**
+	 * Picks one of the book moves of a position at random, weighted by the
+	 * weights of the entries.
+	 *
+	 * @param key the Polyglot key of the position
+	 * @return the Polyglot encoding of the move, 0 if the key is not in the book
+	 */
+	public int probe(long key) {
+		int first = findFirst(key);
+		int total = 0;
+		int last = first;
+		while (last < entries && getKey(last) == key) {
+			total += getWeight(last);
+			last++;
+		}
+		if (last == first) {
+			return 0;
+		}
+
+		// Entries with a weight of 0 are only played if all of them are 0.
+		int r = (total == 0) ? 0 : ThreadLocalRandom.current().nextInt(total);
+		for (int i = first; i < last; i++) {
+			r -= getWeight(i);
+			if (r < 0) {
+				return getMove(i);
+			}
+		}
+		return getMove(first);
+	}
+
+	/**
+	 * Finds the first entry whose key is not smaller than a given key. Keys are
+	 * sorted as unsigned numbers.
+	 *
+	 * @param key the key to look for
+	 * @return the index of the entry
+	 */
+	private int findFirst(long key) {
+		int lo = 0;
+		int hi = entries;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (Long.compareUnsigned(getKey(mid), key) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Converts a move in the Polyglot encoding to a valid move on a chess board.
+	 * Polyglot encodes castling as the king capturing its own rook. The piece a
+	 * pawn is promoted to is not part of the move, and is read with
+	 * {@link #getPromotion(int)}.
+	 *
+	 * @param cb   the chess board
+	 * @param pc   the color of the player to move
+	 * @param move the Polyglot encoding of the move
+	 * @return the matching valid move, or null if there is none
+	 */
+	public static Move toMove(ChessBoard cb, PieceColor pc, int move) {
+		int toX = move & 7;
+		int toY = (move >> 3) & 7;
+		int fromX = (move >> 6) & 7;
+		int fromY = (move >> 9) & 7;
+
+		ChessPiece cp = cb.getPiece(fromX, fromY);
+		if (cp == null || cp.getPieceColor() != pc) {
+			return null;
+		}
+		if (cp.getPieceType() == PieceType.KING && fromX == 4 && fromY == toY && (toX == 0 || toX == 7)) {
+			toX = (toX == 7) ? 6 : 2;
+		}
+
+		for (Move m : cp.getValidMoves(cb)) {
+			if (m.getTo().getX() == toX && m.getTo().getY() == toY) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the piece a move in the Polyglot encoding promotes a pawn to, which
+	 * is stored in bits 12 to 14 of the move: 1 for a knight, 2 for a bishop, 3
+	 * for a rook and 4 for a queen.
+	 *
+	 * @param move the Polyglot encoding of the move
+	 * @return the piece type the pawn is promoted to, null if the move is not a
+	 *         promotion
+	 */
+	public static PieceType getPromotion(int move) {
+		int piece = (move >> 12) & 7;
+		if (piece == 0 || piece > 4) {
+			return null;
+		}
+		return PieceType.values()[PieceType.PAWN.ordinal() + piece];
+	}
+
+	/**
+	 * Converts a move to the Polyglot encoding.
+	 *
+	 * @param cb        the chess board before the move
+	 * @param m         the move
+	 * @param promotion the piece type a pawn is promoted to, null if none
+	 * @return the Polyglot encoding of the move
+	 */
+	public static int fromMove(ChessBoard cb, Move m, PieceType promotion) {
+		int fromX = m.getFrom().getX();
+		int fromY = m.getFrom().getY();
+		int toX = m.getTo().getX();
+		int toY = m.getTo().getY();
+
+		ChessPiece cp = cb.getPiece(m.getFrom());
+		if (cp != null && cp.getPieceType() == PieceType.KING && fromX == 4 && Math.abs(toX - fromX) == 2) {
+			toX = (toX == 6) ? 7 : 0;
+		}
+
+		int promo = (promotion == null || promotion == PieceType.PAWN) ? 0 : promotion.ordinal();
+		return promo << 12 | fromY << 9 | fromX << 6 | toY << 3 | toX;
+	}
+
+	/**
+	 * A getter for the amount of entries in the book.
+	 *
+	 * @return the value of entries
+	 */
+	public int size() {
+		return entries;
+	}
+
+	/**
+	 * Reads the key of an entry.
+	 *
+	 * @param i the index of the entry
+	 * @return the key
+	 */
+	private long getKey(int i) {
+		return buffer.getLong(i * ENTRY_SIZE);
+	}
+
+	/**
+	 * Reads the move of an entry.
+	 *
+	 * @param i the index of the entry
+	 * @return the move in the Polyglot encoding
+	 */
+	private int getMove(int i) {
+		return buffer.getShort(i * ENTRY_SIZE + 8) & 0xFFFF;
+	}
+
+	/**
+	 * Reads the weight of an entry.
+	 *
+	 * @param i the index of the entry
+	 * @return the weight
+	 */
+	private int getWeight(int i) {
+		return buffer.getShort(i * ENTRY_SIZE + 10) & 0xFFFF;
+	}
+}
@@ -0,0 +1,75 @@
+package chess.eval;
+
+/**
+ * A small hash table which stores the evaluations of chess boards, so that
+ * positions which are reached several times (through transpositions or
+ * repeated quiescence searches) are only evaluated once.
+ * 
+ * The table is lockless: every entry is stored as two longs, the data and the
+ * key exclusive-or'ed with the data. An entry which was only partly written by
+ * another thread fails the key check and is treated as a miss.
+ * 
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Shared_Hash_Table#Lockless
+ */
+public class EvalCache {
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+
+	private long probes;
+	private long hits;
+
+	/**
+	 * Constructs an EvalCache object.
+	 * 
+	 * @param bits the base 2 logarithm of the amount of entries in the table
+	 */
+	public EvalCache(int bits) {
+		keys = new long[1 << bits];
+		data = new long[1 << bits];
+		mask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Looks up the evaluation of a chess board.
+	 * 
+	 * @param key the Zobrist key of the chess board
+	 * @return the stored evaluation, or NaN if the board is not in the table
+	 */
+	public float probe(long key) {
+		int i = (int) key & mask;
+		long d = data[i];
+		probes++;
+		if ((keys[i] ^ d) == key) {
+			hits++;
+			return Float.intBitsToFloat((int) d);
+		}
+		return Float.NaN;
+	}
+
+	/**
+	 * Stores the evaluation of a chess board, replacing whatever was in its slot.
+	 * 
+	 * @param key   the Zobrist key of the chess board
+	 * @param score the evaluation of the chess board
+	 */
+	public void store(long key, float score) {
+		int i = (int) key & mask;
+		long d = Float.floatToRawIntBits(score) & 0xFFFFFFFFL;
+		data[i] = d;
+		keys[i] = key ^ d;
+	}
+
+	/**
+	 * Returns the fraction of probes which found an entry. The counters are not
+	 * synchronized, so the value is only approximate when the table is shared.
+	 * 
+	 * @return the hit rate between 0 and 1
+	 */
+	public float getHitRate() {
+		return probes == 0 ? 0 : (float) hits / probes;
+	}
+}
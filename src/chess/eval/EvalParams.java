@@ -0,0 +1,401 @@
+package chess.eval;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * A class which holds the weights of the {@link TaperedEvaluator}. Every term
+ * of the evaluation has two weights in centipawns, one for the middlegame and
+ * one for the endgame, which are stored next to each other in a compact short
+ * array.
+ *
+ * Weights can be loaded from and saved to a parameter file, so that they can be
+ * tuned without recompiling. The file is a properties file with two keys per
+ * group of terms, for example {@code material.mg} and {@code material.eg}, each
+ * holding a comma separated list of values. Piece-square tables are listed from
+ * a1 to h8, rank by rank, as seen by white. Groups missing from the file keep
+ * their default values.
+ *
+ * @author kennangumbs
+ *
+ */
+public class EvalParams {
+
+	/**
+	 * The material value of each piece type.
+	 */
+	public static final int MATERIAL = 0;
+
+	/**
+	 * The piece-square tables, 64 terms per piece type.
+	 */
+	public static final int PST = MATERIAL + 6;
+
+	/**
+	 * The value of each square a piece can safely move to, per piece type.
+	 */
+	public static final int MOBILITY = PST + 6 * 64;
+
+	/**
+	 * The bonus for a passed pawn, per rank as seen by its own side.
+	 */
+	public static final int PASSED = MOBILITY + 6;
+
+	/**
+	 * The penalty for an isolated pawn.
+	 */
+	public static final int ISOLATED = PASSED + 8;
+
+	/**
+	 * The penalty for a doubled pawn.
+	 */
+	public static final int DOUBLED = ISOLATED + 1;
+
+	/**
+	 * The bonus for each pawn shielding the king.
+	 */
+	public static final int SHIELD = DOUBLED + 1;
+
+	/**
+	 * The bonus for each square next to the enemy king a piece attacks, per piece
+	 * type.
+	 */
+	public static final int KING_ATTACK = SHIELD + 1;
+
+	/**
+	 * The amount of terms.
+	 */
+	public static final int SIZE = KING_ATTACK + 6;
+
+	private static final String[] NAMES = { "material", "pst.pawn", "pst.knight", "pst.bishop", "pst.rook",
+			"pst.queen", "pst.king", "mobility", "passed", "isolated", "doubled", "shield", "king.attack" };
+	private static final int[] OFFSETS = { MATERIAL, PST, PST + 64, PST + 128, PST + 192, PST + 256, PST + 320,
+			MOBILITY, PASSED, ISOLATED, DOUBLED, SHIELD, KING_ATTACK, SIZE };
+
+	/**
+	 * The name of the system property which holds the path of the parameter file
+	 * used by default.
+	 */
+	public static final String PROPERTY = "chess.params";
+
+	private static EvalParams instance;
+
+	private final short[] values;
+
+	/**
+	 * Constructs an EvalParams object with the default weights.
+	 */
+	public EvalParams() {
+		values = new short[SIZE * 2];
+		Defaults.fill(this);
+	}
+
+	/**
+	 * A constructor which produces a copy of given weights.
+	 *
+	 * @param params the weights to copy
+	 */
+	public EvalParams(EvalParams params) {
+		values = params.values.clone();
+	}
+
+	/**
+	 * A method which returns the weights used by default, loading them from the
+	 * file named by the {@value #PROPERTY} system property if it is set.
+	 *
+	 * @return the default weights
+	 */
+	public static synchronized EvalParams getInstance() {
+		if (instance == null) {
+			String path = System.getProperty(PROPERTY);
+			if (path == null) {
+				instance = new EvalParams();
+			} else {
+				try {
+					instance = load(Paths.get(path));
+				} catch (IOException | IllegalArgumentException e) {
+					e.printStackTrace();
+					instance = new EvalParams();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Loads weights from a parameter file.
+	 *
+	 * @param path the path of the file
+	 * @return the loaded weights
+	 * @throws IOException              if the file cannot be read
+	 * @throws IllegalArgumentException if a group has the wrong number of values
+	 */
+	public static EvalParams load(Path path) throws IOException {
+		Properties props = new Properties();
+		try (BufferedReader in = Files.newBufferedReader(path)) {
+			props.load(in);
+		}
+
+		EvalParams params = new EvalParams();
+		for (int group = 0; group < NAMES.length; group++) {
+			params.read(props, group, 0, ".mg");
+			params.read(props, group, 1, ".eg");
+		}
+		return params;
+	}
+
+	/**
+	 * Saves these weights to a parameter file.
+	 *
+	 * @param path the path of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			for (int group = 0; group < NAMES.length; group++) {
+				for (int phase = 0; phase < 2; phase++) {
+					out.write(NAMES[group] + (phase == 0 ? ".mg" : ".eg") + " = ");
+					for (int term = OFFSETS[group]; term < OFFSETS[group + 1]; term++) {
+						if (term > OFFSETS[group]) {
+							out.write(',');
+						}
+						out.write(Short.toString(values[term * 2 + phase]));
+					}
+					out.newLine();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the values of a group of terms from a properties object.
+	 *
+	 * @param props  the properties
+	 * @param group  the index of the group
+	 * @param phase  0 for the middlegame values, 1 for the endgame values
+	 * @param suffix the suffix of the key
+	 */
+	private void read(Properties props, int group, int phase, String suffix) {
+		String value = props.getProperty(NAMES[group] + suffix);
+		if (value == null) {
+			return;
+		}
+
+		String[] parts = value.split(",");
+		int length = OFFSETS[group + 1] - OFFSETS[group];
+		if (parts.length != length) {
+			throw new IllegalArgumentException(
+					NAMES[group] + suffix + " needs " + length + " values, found " + parts.length);
+		}
+		for (int i = 0; i < length; i++) {
+			values[(OFFSETS[group] + i) * 2 + phase] = Short.parseShort(parts[i].trim());
+		}
+	}
+
+	/**
+	 * Returns the middlegame weight of a term.
+	 *
+	 * @param term the index of the term
+	 * @return the weight in centipawns
+	 */
+	public int getMg(int term) {
+		return values[term * 2];
+	}
+
+	/**
+	 * Returns the endgame weight of a term.
+	 *
+	 * @param term the index of the term
+	 * @return the weight in centipawns
+	 */
+	public int getEg(int term) {
+		return values[term * 2 + 1];
+	}
+
+	/**
+	 * Sets the weights of a term.
+	 *
+	 * @param term the index of the term
+	 * @param mg   the middlegame weight in centipawns
+	 * @param eg   the endgame weight in centipawns
+	 */
+	public void set(int term, int mg, int eg) {
+		values[term * 2] = (short) mg;
+		values[term * 2 + 1] = (short) eg;
+	}
+
+	/**
+	 * A getter for the array holding the weights. The middlegame weight of term i
+	 * is at index 2i and the endgame weight at index 2i + 1. The array is not
+	 * copied, so it should not be modified while it is used by an evaluator.
+	 *
+	 * @return the value of values
+	 */
+	public short[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Computes a hash of the weights, which changes whenever any weight does.
+	 *
+	 * @return the fingerprint of the weights
+	 */
+	public long getFingerprint() {
+		long h = 0xCBF29CE484222325L;
+		for (short v : values) {
+			h = hash(h, v);
+		}
+		return h;
+	}
+
+	/**
+	 * Mixes a value into a 64 bit FNV-1a hash.
+	 *
+	 * @param h the hash so far
+	 * @param v the value to mix in
+	 * @return the new hash
+	 */
+	static long hash(long h, int v) {
+		return (h ^ v) * 0x100000001B3L;
+	}
+
+	/**
+	 * A class holding the default weights.
+	 */
+	private static class Defaults {
+
+		private static final int[] MATERIAL_MG = { 82, 337, 365, 477, 1025, 0 };
+		private static final int[] MATERIAL_EG = { 94, 281, 297, 512, 936, 0 };
+
+		private static final int[] MOBILITY_MG = { 0, 4, 5, 2, 1, 0 };
+		private static final int[] MOBILITY_EG = { 0, 4, 5, 4, 2, 0 };
+
+		private static final int[] KING_ATTACK_MG = { 0, 6, 4, 5, 8, 0 };
+		private static final int[] KING_ATTACK_EG = { 0, 0, 0, 0, 0, 0 };
+
+		private static final int[] PASSED_MG = { 0, 5, 10, 15, 25, 45, 70, 0 };
+		private static final int[] PASSED_EG = { 0, 10, 15, 25, 45, 75, 120, 0 };
+
+		// The tables below are written as seen from white's side of the board, with
+		// the 8th rank on top.
+		private static final int[] PAWN_MG = {
+				0, 0, 0, 0, 0, 0, 0, 0,
+				50, 50, 50, 50, 50, 50, 50, 50,
+				10, 10, 20, 30, 30, 20, 10, 10,
+				5, 5, 10, 25, 25, 10, 5, 5,
+				0, 0, 0, 20, 20, 0, 0, 0,
+				5, -5, -10, 0, 0, -10, -5, 5,
+				5, 10, 10, -20, -20, 10, 10, 5,
+				0, 0, 0, 0, 0, 0, 0, 0 };
+		private static final int[] PAWN_EG = {
+				0, 0, 0, 0, 0, 0, 0, 0,
+				80, 80, 80, 80, 80, 80, 80, 80,
+				50, 50, 50, 50, 50, 50, 50, 50,
+				30, 30, 30, 30, 30, 30, 30, 30,
+				15, 15, 15, 15, 15, 15, 15, 15,
+				5, 5, 5, 5, 5, 5, 5, 5,
+				0, 0, 0, 0, 0, 0, 0, 0,
+				0, 0, 0, 0, 0, 0, 0, 0 };
+		private static final int[] KNIGHT = {
+				-50, -40, -30, -30, -30, -30, -40, -50,
+				-40, -20, 0, 0, 0, 0, -20, -40,
+				-30, 0, 10, 15, 15, 10, 0, -30,
+				-30, 5, 15, 20, 20, 15, 5, -30,
+				-30, 0, 15, 20, 20, 15, 0, -30,
+				-30, 5, 10, 15, 15, 10, 5, -30,
+				-40, -20, 0, 5, 5, 0, -20, -40,
+				-50, -40, -30, -30, -30, -30, -40, -50 };
+		private static final int[] BISHOP = {
+				-20, -10, -10, -10, -10, -10, -10, -20,
+				-10, 0, 0, 0, 0, 0, 0, -10,
+				-10, 0, 5, 10, 10, 5, 0, -10,
+				-10, 5, 5, 10, 10, 5, 5, -10,
+				-10, 0, 10, 10, 10, 10, 0, -10,
+				-10, 10, 10, 10, 10, 10, 10, -10,
+				-10, 5, 0, 0, 0, 0, 5, -10,
+				-20, -10, -10, -10, -10, -10, -10, -20 };
+		private static final int[] ROOK = {
+				0, 0, 0, 0, 0, 0, 0, 0,
+				5, 10, 10, 10, 10, 10, 10, 5,
+				-5, 0, 0, 0, 0, 0, 0, -5,
+				-5, 0, 0, 0, 0, 0, 0, -5,
+				-5, 0, 0, 0, 0, 0, 0, -5,
+				-5, 0, 0, 0, 0, 0, 0, -5,
+				-5, 0, 0, 0, 0, 0, 0, -5,
+				0, 0, 0, 5, 5, 0, 0, 0 };
+		private static final int[] QUEEN = {
+				-20, -10, -10, -5, -5, -10, -10, -20,
+				-10, 0, 0, 0, 0, 0, 0, -10,
+				-10, 0, 5, 5, 5, 5, 0, -10,
+				-5, 0, 5, 5, 5, 5, 0, -5,
+				0, 0, 5, 5, 5, 5, 0, -5,
+				-10, 5, 5, 5, 5, 5, 0, -10,
+				-10, 0, 5, 0, 0, 0, 0, -10,
+				-20, -10, -10, -5, -5, -10, -10, -20 };
+		private static final int[] KING_MG = {
+				-30, -40, -40, -50, -50, -40, -40, -30,
+				-30, -40, -40, -50, -50, -40, -40, -30,
+				-30, -40, -40, -50, -50, -40, -40, -30,
+				-30, -40, -40, -50, -50, -40, -40, -30,
+				-20, -30, -30, -40, -40, -30, -30, -20,
+				-10, -20, -20, -20, -20, -20, -20, -10,
+				20, 20, 0, 0, 0, 0, 20, 20,
+				20, 30, 10, 0, 0, 10, 30, 20 };
+		private static final int[] KING_EG = {
+				-50, -40, -30, -20, -20, -30, -40, -50,
+				-30, -20, -10, 0, 0, -10, -20, -30,
+				-30, -10, 20, 30, 30, 20, -10, -30,
+				-30, -10, 30, 40, 40, 30, -10, -30,
+				-30, -10, 30, 40, 40, 30, -10, -30,
+				-30, -10, 20, 30, 30, 20, -10, -30,
+				-30, -30, 0, 0, 0, 0, -30, -30,
+				-50, -30, -30, -30, -30, -30, -30, -50 };
+
+		/**
+		 * Fills a parameter object with the default weights.
+		 *
+		 * @param params the parameters to fill
+		 */
+		private static void fill(EvalParams params) {
+			for (int i = 0; i < 6; i++) {
+				params.set(MATERIAL + i, MATERIAL_MG[i], MATERIAL_EG[i]);
+				params.set(MOBILITY + i, MOBILITY_MG[i], MOBILITY_EG[i]);
+				params.set(KING_ATTACK + i, KING_ATTACK_MG[i], KING_ATTACK_EG[i]);
+			}
+			for (int i = 0; i < 8; i++) {
+				params.set(PASSED + i, PASSED_MG[i], PASSED_EG[i]);
+			}
+			params.set(ISOLATED, -10, -15);
+			params.set(DOUBLED, -10, -20);
+			params.set(SHIELD, 8, 0);
+
+			fillTable(params, 0, PAWN_MG, PAWN_EG);
+			fillTable(params, 1, KNIGHT, KNIGHT);
+			fillTable(params, 2, BISHOP, BISHOP);
+			fillTable(params, 3, ROOK, ROOK);
+			fillTable(params, 4, QUEEN, QUEEN);
+			fillTable(params, 5, KING_MG, KING_EG);
+		}
+
+		/**
+		 * Copies a piece-square table, which is written with the 8th rank on top, into
+		 * the parameters, where it is stored from a1 to h8.
+		 *
+		 * @param params the parameters to fill
+		 * @param type   the ordinal of the piece type
+		 * @param mg     the middlegame table
+		 * @param eg     the endgame table
+		 */
+		private static void fillTable(EvalParams params, int type, int[] mg, int[] eg) {
+			for (int i = 0; i < 64; i++) {
+				int index = (7 - i / 8) * 8 + i % 8;
+				params.set(PST + type * 64 + index, mg[i], eg[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package chess.eval;
+
+import chess.board.ChessBoard;
+
+/**
+ * An interface for classes which statically evaluate chess boards. Checkmate
+ * and stalemate are detected by the search, so an evaluator only has to judge
+ * positions in which the game goes on.
+ * 
+ * @author kennangumbs
+ *
+ */
+public interface Evaluator {
+
+	/**
+	 * A method which evaluates a chess board. Positive numbers indicate that white
+	 * has an advantage, and negatives indicate that black has an advantage.
+	 * 
+	 * @param cb the chess board to evaluate
+	 * @return the evaluation of the board in pawns
+	 */
+	float evaluate(ChessBoard cb);
+}
@@ -0,0 +1,35 @@
+package chess.eval;
+
+import chess.board.ChessBoard;
+
+/**
+ * An interface for evaluators which keep state along the line being searched,
+ * so that a position can be evaluated by updating the state of the position
+ * before it. The search calls {@link #push(ChessBoard, ChessBoard)} after
+ * making a move and {@link #pop()} after taking it back.
+ * 
+ * @author kennangumbs
+ *
+ */
+public interface IncrementalEvaluator extends Evaluator {
+
+	/**
+	 * A method which clears the state and starts a new line at a given board.
+	 * 
+	 * @param cb the chess board at the root of the search
+	 */
+	void reset(ChessBoard cb);
+
+	/**
+	 * A method which moves one position deeper into the line.
+	 * 
+	 * @param parent the chess board before the move
+	 * @param child  the chess board after the move
+	 */
+	void push(ChessBoard parent, ChessBoard child);
+
+	/**
+	 * A method which moves one position back along the line.
+	 */
+	void pop();
+}
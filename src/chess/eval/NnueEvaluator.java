@@ -0,0 +1,246 @@
+package chess.eval;
+
+import chess.board.ChessBoard;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * An evaluator which runs an {@link NnueNetwork}. The hidden layer is the
+ * expensive part of the network, so its accumulators are kept on a stack, one
+ * entry per position of the line being searched. When the search makes a move,
+ * the new entry is computed from the one before it by adding the weights of
+ * the features which appeared and subtracting those of the features which
+ * disappeared, which is usually two to four rows of weights. Only when a king
+ * moves do the accumulators of its side have to be computed from scratch.
+ *
+ * Every entry remembers the hash of its board, so boards which were not pushed
+ * are still evaluated correctly, just without the incremental update.
+ *
+ * The inner loops run over plain arrays without branches, so that the JIT
+ * compiler can turn them into SIMD instructions.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/NNUE
+ */
+public class NnueEvaluator implements IncrementalEvaluator {
+
+	private static final int MAX_PLY = 128;
+
+	private final NnueNetwork network;
+	private final int hidden;
+
+	/**
+	 * The accumulators of both sides for every ply, white's first.
+	 */
+	private final short[][] stack;
+	private final long[] hashes;
+	private int ply;
+	private int overflow;
+
+	private final short[] scratch;
+
+	/**
+	 * Constructs a NnueEvaluator object with the default network.
+	 */
+	public NnueEvaluator() {
+		this(NnueNetwork.getInstance());
+	}
+
+	/**
+	 * Constructs a NnueEvaluator object.
+	 *
+	 * @param network the network to evaluate with
+	 */
+	public NnueEvaluator(NnueNetwork network) {
+		this.network = network;
+		this.hidden = network.getHiddenSize();
+
+		stack = new short[MAX_PLY][2 * hidden];
+		hashes = new long[MAX_PLY];
+		scratch = new short[2 * hidden];
+	}
+
+	@Override
+	public void reset(ChessBoard cb) {
+		ply = 0;
+		overflow = 0;
+		refresh(cb, stack[0]);
+		hashes[0] = cb.getHash();
+	}
+
+	@Override
+	public void push(ChessBoard parent, ChessBoard child) {
+		if (overflow > 0 || ply == MAX_PLY - 1) {
+			overflow++;
+			return;
+		}
+
+		short[] from = stack[ply];
+		short[] to = stack[++ply];
+		hashes[ply] = child.getHash();
+		if (hashes[ply - 1] != parent.getHash()) {
+			refresh(child, to);
+			return;
+		}
+
+		for (PieceColor side : TaperedEvaluator.COLORS) {
+			int offset = side.ordinal() * hidden;
+			if (parent.getPieces(PieceType.KING, side) != child.getPieces(PieceType.KING, side)) {
+				refresh(child, side, to, offset);
+				continue;
+			}
+
+			System.arraycopy(from, offset, to, offset, hidden);
+			int king = getKing(child, side);
+			for (PieceColor pc : TaperedEvaluator.COLORS) {
+				for (int type = 0; type < PieceType.KING.ordinal(); type++) {
+					PieceType pt = TaperedEvaluator.TYPES[type];
+					long before = parent.getPieces(pt, pc);
+					long after = child.getPieces(pt, pc);
+					for (long added = after & ~before; added != 0; added &= added - 1) {
+						add(to, offset, getFeature(side, king, pt, pc, Long.numberOfTrailingZeros(added)));
+					}
+					for (long removed = before & ~after; removed != 0; removed &= removed - 1) {
+						subtract(to, offset, getFeature(side, king, pt, pc, Long.numberOfTrailingZeros(removed)));
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void pop() {
+		if (overflow > 0) {
+			overflow--;
+		} else if (ply > 0) {
+			ply--;
+		}
+	}
+
+	@Override
+	public float evaluate(ChessBoard cb) {
+		short[] acc;
+		if (overflow == 0 && hashes[ply] == cb.getHash()) {
+			acc = stack[ply];
+		} else {
+			acc = scratch;
+			refresh(cb, acc);
+		}
+
+		short[] weights = network.outputWeights;
+		int sum = 0;
+		for (int i = 0; i < 2 * hidden; i++) {
+			int v = Math.min(Math.max(acc[i], 0), NnueNetwork.ACTIVATION_MAX);
+			sum += v * weights[i];
+		}
+		return (sum + network.outputBias) / (NnueNetwork.OUTPUT_SCALE * 100f);
+	}
+
+	/**
+	 * Computes the accumulators of both sides from scratch.
+	 *
+	 * @param cb  the chess board
+	 * @param acc the array to store the accumulators in
+	 */
+	private void refresh(ChessBoard cb, short[] acc) {
+		for (PieceColor side : TaperedEvaluator.COLORS) {
+			refresh(cb, side, acc, side.ordinal() * hidden);
+		}
+	}
+
+	/**
+	 * Computes the accumulators of one side from scratch.
+	 *
+	 * @param cb     the chess board
+	 * @param side   the side whose king the features are relative to
+	 * @param acc    the array to store the accumulators in
+	 * @param offset the index of the side's first accumulator
+	 */
+	private void refresh(ChessBoard cb, PieceColor side, short[] acc, int offset) {
+		System.arraycopy(network.hiddenBias, 0, acc, offset, hidden);
+		int king = getKing(cb, side);
+		if (king < 0) {
+			return;
+		}
+		for (PieceColor pc : TaperedEvaluator.COLORS) {
+			for (int type = 0; type < PieceType.KING.ordinal(); type++) {
+				PieceType pt = TaperedEvaluator.TYPES[type];
+				for (long pieces = cb.getPieces(pt, pc); pieces != 0; pieces &= pieces - 1) {
+					add(acc, offset, getFeature(side, king, pt, pc, Long.numberOfTrailingZeros(pieces)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the weights of a feature to the accumulators of one side.
+	 *
+	 * @param acc     the accumulators
+	 * @param offset  the index of the side's first accumulator
+	 * @param feature the index of the feature
+	 */
+	private void add(short[] acc, int offset, int feature) {
+		short[] weights = network.featureWeights;
+		int row = feature * hidden;
+		for (int i = 0; i < hidden; i++) {
+			acc[offset + i] += weights[row + i];
+		}
+	}
+
+	/**
+	 * Subtracts the weights of a feature from the accumulators of one side.
+	 *
+	 * @param acc     the accumulators
+	 * @param offset  the index of the side's first accumulator
+	 * @param feature the index of the feature
+	 */
+	private void subtract(short[] acc, int offset, int feature) {
+		short[] weights = network.featureWeights;
+		int row = feature * hidden;
+		for (int i = 0; i < hidden; i++) {
+			acc[offset + i] -= weights[row + i];
+		}
+	}
+
+	/**
+	 * Returns the square of a king, as seen from its own side.
+	 *
+	 * @param cb   the chess board
+	 * @param side the color of the king
+	 * @return the index of the square, -1 if there is no king
+	 */
+	private static int getKing(ChessBoard cb, PieceColor side) {
+		long king = cb.getPieces(PieceType.KING, side);
+		if (king == 0) {
+			return -1;
+		}
+		return Long.numberOfTrailingZeros(king) ^ getFlip(side);
+	}
+
+	/**
+	 * Computes the index of a HalfKP feature. Black sees the board with its ranks
+	 * mirrored, and every side sees its own pieces before the enemy's.
+	 *
+	 * @param side   the side whose king the feature is relative to
+	 * @param king   the square of the side's king, as seen from the side
+	 * @param pt     the type of the piece
+	 * @param pc     the color of the piece
+	 * @param square the square of the piece
+	 * @return the index of the feature
+	 */
+	private static int getFeature(PieceColor side, int king, PieceType pt, PieceColor pc, int square) {
+		int piece = pt.ordinal() * 2 + (pc == side ? 0 : 1);
+		return (king * 10 + piece) * 64 + (square ^ getFlip(side));
+	}
+
+	/**
+	 * Returns the value to exclusive or a square with to mirror it for a side.
+	 *
+	 * @param side the side
+	 * @return 0 for white, 56 for black
+	 */
+	private static int getFlip(PieceColor side) {
+		return (side == PieceColor.WHITE) ? 0 : 56;
+	}
+}
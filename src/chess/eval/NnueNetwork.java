@@ -0,0 +1,154 @@
+package chess.eval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class which holds the quantized weights of an NNUE network with HalfKP
+ * inputs. Each input feature is the combination of the square of one king with
+ * a piece other than a king and its square, seen from that king's side. The
+ * features of both sides feed a hidden layer of accumulators, which are clipped
+ * to {@value #ACTIVATION_MAX} and combined by a single output neuron.
+ *
+ * A network file is little-endian and consists of the magic number, the amount
+ * of hidden neurons, the hidden biases, the feature weights (the weights of one
+ * feature next to each other), the output weights (white's accumulators first)
+ * and the output bias. All weights are 16 bit integers, except for the 32 bit
+ * output bias. The output, divided by {@value #OUTPUT_SCALE}, is in centipawns.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/NNUE
+ */
+public class NnueNetwork {
+
+	/**
+	 * The name of the system property which holds the path of the network used
+	 * by default.
+	 */
+	public static final String PROPERTY = "chess.nnue";
+
+	/**
+	 * The amount of input features of each side: a king square, one of ten
+	 * pieces and a square.
+	 */
+	public static final int FEATURES = 64 * 10 * 64;
+
+	/**
+	 * The largest value a hidden neuron passes on.
+	 */
+	public static final int ACTIVATION_MAX = 255;
+
+	/**
+	 * The factor between the output and centipawns.
+	 */
+	public static final int OUTPUT_SCALE = ACTIVATION_MAX * 64;
+
+	/**
+	 * The largest amount of hidden neurons a network may have. Beyond it, the
+	 * file would be too large to map, and the feature weights would not fit
+	 * into one array or be indexed with int arithmetic.
+	 */
+	public static final int MAX_HIDDEN = (Integer.MAX_VALUE - 12) / (2 * (FEATURES + 3));
+
+	private static final int MAGIC = 0x4555_4E4E;
+
+	private static NnueNetwork instance;
+	private static boolean loaded;
+
+	final int hidden;
+	final short[] hiddenBias;
+	final short[] featureWeights;
+	final short[] outputWeights;
+	final int outputBias;
+
+	/**
+	 * Constructs a NnueNetwork object by reading a network file. The weights are
+	 * copied onto the heap, since they are read for every update.
+	 *
+	 * @param path the path of the network file
+	 * @throws IOException if the file cannot be read or is not a network
+	 */
+	public NnueNetwork(Path path) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (ch.size() > Integer.MAX_VALUE) {
+				throw new IOException("Network too large: " + path);
+			}
+			buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if (buffer.capacity() < 8 || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a network: " + path);
+		}
+
+		hidden = buffer.getInt();
+		if (hidden <= 0 || hidden > MAX_HIDDEN) {
+			throw new IOException("Bad hidden layer size " + hidden + ": " + path);
+		}
+		long size = 8 + 2L * hidden * (FEATURES + 3) + 4;
+		if (buffer.capacity() != size) {
+			throw new IOException("Bad network size: " + path);
+		}
+
+		hiddenBias = new short[hidden];
+		featureWeights = new short[FEATURES * hidden];
+		outputWeights = new short[2 * hidden];
+		buffer.asShortBuffer().get(hiddenBias).get(featureWeights).get(outputWeights);
+		outputBias = buffer.getInt(buffer.capacity() - 4);
+	}
+
+	/**
+	 * A method which returns the network named by the {@value #PROPERTY} system
+	 * property, reading it the first time it is needed.
+	 *
+	 * @return the default network, or null if none is configured
+	 */
+	public static synchronized NnueNetwork getInstance() {
+		if (!loaded) {
+			loaded = true;
+			String path = System.getProperty(PROPERTY);
+			if (path != null) {
+				try {
+					instance = new NnueNetwork(Paths.get(path));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Computes a hash of every weight of the network, which tells networks apart
+	 * regardless of the file they were read from.
+	 *
+	 * @return the fingerprint of the network
+	 */
+	public long getFingerprint() {
+		long h = EvalParams.hash(EvalParams.hash(0xCBF29CE484222325L, hidden), outputBias);
+		for (short w : hiddenBias) {
+			h = EvalParams.hash(h, w);
+		}
+		for (short w : featureWeights) {
+			h = EvalParams.hash(h, w);
+		}
+		for (short w : outputWeights) {
+			h = EvalParams.hash(h, w);
+		}
+		return h;
+	}
+
+	/**
+	 * A getter for the amount of hidden neurons.
+	 *
+	 * @return the value of hidden
+	 */
+	public int getHiddenSize() {
+		return hidden;
+	}
+}
@@ -0,0 +1,71 @@
+package chess.eval;
+
+import chess.board.ChessBoard;
+
+/**
+ * A hash table which caches the pawn structure of chess boards. It is keyed on
+ * {@link ChessBoard#getPawnHash()}, which only covers pawns and kings, so it
+ * hits whenever a position differs from an earlier one only by its pieces.
+ * Entries are stored in the same lockless way as in the {@link EvalCache}.
+ * 
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Pawn_Hash_Table
+ */
+public class PawnHashTable {
+
+	private final EvalParams params;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+
+	private long probes;
+	private long hits;
+
+	/**
+	 * Constructs a PawnHashTable object.
+	 * 
+	 * @param bits   the base 2 logarithm of the amount of entries in the table
+	 * @param params the weights used to evaluate the pawn structure
+	 */
+	public PawnHashTable(int bits, EvalParams params) {
+		this.params = params;
+		keys = new long[1 << bits];
+		data = new long[1 << bits];
+		mask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Returns the pawn structure of a chess board, evaluating it if it is not
+	 * already in the table.
+	 * 
+	 * @param cb the chess board
+	 * @return the pawn structure, packed as described in {@link PawnStructure}
+	 */
+	public long probe(ChessBoard cb) {
+		long key = cb.getPawnHash();
+		int i = (int) key & mask;
+		long d = data[i];
+		probes++;
+		if ((keys[i] ^ d) == key) {
+			hits++;
+			return d;
+		}
+
+		d = PawnStructure.evaluate(cb, params);
+		data[i] = d;
+		keys[i] = key ^ d;
+		return d;
+	}
+
+	/**
+	 * Returns the fraction of probes which found an entry. The counters are not
+	 * synchronized, so the value is only approximate when the table is shared.
+	 * 
+	 * @return the hit rate between 0 and 1
+	 */
+	public float getHitRate() {
+		return probes == 0 ? 0 : (float) hits / probes;
+	}
+}
@@ -0,0 +1,182 @@
+package chess.eval;
+
+import chess.board.Bitboards;
+import chess.board.ChessBoard;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which evaluates the pawn structure of a chess board: passed, isolated
+ * and doubled pawns, and the pawn shield in front of each king.
+ *
+ * The result is packed into a single long so that it can be stored in a
+ * {@link PawnHashTable}. The lowest two 16 bit fields hold the middlegame and
+ * endgame scores of the pawn terms (positive for white), and the next two bytes
+ * hold the size of white's and black's pawn shields.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Pawn_Structure
+ */
+public final class PawnStructure {
+
+	/**
+	 * A private constructor to prevent instantiation.
+	 */
+	private PawnStructure() {
+	}
+
+	/**
+	 * Evaluates the pawn structure of a chess board.
+	 *
+	 * @param cb     the chess board to evaluate
+	 * @param params the weights of the pawn terms
+	 * @return the packed pawn structure
+	 */
+	public static long evaluate(ChessBoard cb, EvalParams params) {
+		int[] counts = new int[EvalParams.SHIELD - EvalParams.PASSED];
+		trace(cb, counts, -EvalParams.PASSED);
+
+		int mg = 0;
+		int eg = 0;
+		for (int i = 0; i < counts.length; i++) {
+			mg += counts[i] * params.getMg(EvalParams.PASSED + i);
+			eg += counts[i] * params.getEg(EvalParams.PASSED + i);
+		}
+
+		long shields = (long) getShieldSize(cb, PieceColor.WHITE) << 32
+				| (long) getShieldSize(cb, PieceColor.BLACK) << 40;
+		return shields | (clamp(eg) & 0xFFFFL) << 16 | (clamp(mg) & 0xFFFFL);
+	}
+
+	/**
+	 * Counts how often each pawn term applies to white, minus how often it applies
+	 * to black, and adds the counts to an array indexed by term.
+	 *
+	 * @param cb     the chess board
+	 * @param counts the array to add the counts to
+	 * @param offset the value to add to a term to get its index in the array
+	 */
+	static void trace(ChessBoard cb, int[] counts, int offset) {
+		for (PieceColor pc : TaperedEvaluator.COLORS) {
+			int sign = (pc == PieceColor.WHITE) ? 1 : -1;
+			long own = cb.getPieces(PieceType.PAWN, pc);
+			long enemy = cb.getPieces(PieceType.PAWN, pc.flip());
+
+			for (int x = 0; x < 8; x++) {
+				int count = Long.bitCount(own & Bitboards.getFile(x));
+				if (count == 0) {
+					continue;
+				}
+
+				if (count > 1) {
+					counts[EvalParams.DOUBLED + offset] += sign * (count - 1);
+				}
+				if ((own & (Bitboards.getFile(x - 1) | Bitboards.getFile(x + 1))) == 0) {
+					counts[EvalParams.ISOLATED + offset] += sign * count;
+				}
+			}
+
+			for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+				int index = Long.numberOfTrailingZeros(pawns);
+				if ((enemy & getPassedMask(pc, index)) == 0) {
+					int rank = (pc == PieceColor.WHITE) ? index / 8 : 7 - index / 8;
+					counts[EvalParams.PASSED + rank + offset] += sign;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the middlegame score stored in a packed pawn structure.
+	 *
+	 * @param entry the packed pawn structure
+	 * @return the middlegame score in centipawns (positive for white)
+	 */
+	public static int getMg(long entry) {
+		return (short) entry;
+	}
+
+	/**
+	 * Returns the endgame score stored in a packed pawn structure.
+	 *
+	 * @param entry the packed pawn structure
+	 * @return the endgame score in centipawns (positive for white)
+	 */
+	public static int getEg(long entry) {
+		return (short) (entry >>> 16);
+	}
+
+	/**
+	 * Returns the size of a pawn shield stored in a packed pawn structure.
+	 *
+	 * @param entry the packed pawn structure
+	 * @param pc    the color of the king
+	 * @return the number of pawns in front of the king
+	 */
+	public static int getShield(long entry, PieceColor pc) {
+		return (int) (entry >>> (pc == PieceColor.WHITE ? 32 : 40)) & 0xFF;
+	}
+
+	/**
+	 * Returns the squares which must be free of enemy pawns for a pawn to be
+	 * passed: the squares ahead of it on its own file and the files next to it.
+	 *
+	 * @param pc    the color of the pawn
+	 * @param index the index of the pawn's square
+	 * @return the bitboard of the squares
+	 */
+	private static long getPassedMask(PieceColor pc, int index) {
+		int x = index % 8;
+		int y = index / 8;
+		long files = Bitboards.getFile(x - 1) | Bitboards.getFile(x) | Bitboards.getFile(x + 1);
+
+		long ahead;
+		if (pc == PieceColor.WHITE) {
+			ahead = (y < 7) ? -1L << ((y + 1) * 8) : 0;
+		} else {
+			ahead = (1L << (y * 8)) - 1;
+		}
+		return files & ahead;
+	}
+
+	/**
+	 * Counts the pawns on the two rows in front of a king, on its file and the
+	 * files next to it.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the king
+	 * @return the number of pawns shielding the king
+	 */
+	static int getShieldSize(ChessBoard cb, PieceColor pc) {
+		long king = cb.getPieces(PieceType.KING, pc);
+		if (king == 0) {
+			return 0;
+		}
+
+		int index = Long.numberOfTrailingZeros(king);
+		int x = index % 8;
+		int dir = (pc == PieceColor.WHITE) ? 1 : -1;
+
+		long rows = 0;
+		for (int i = 1; i <= 2; i++) {
+			int y = index / 8 + dir * i;
+			if (y >= 0 && y < 8) {
+				rows |= 0xFFL << (y * 8);
+			}
+		}
+
+		long files = Bitboards.getFile(x - 1) | Bitboards.getFile(x) | Bitboards.getFile(x + 1);
+		return Long.bitCount(cb.getPieces(PieceType.PAWN, pc) & files & rows);
+	}
+
+	/**
+	 * Clamps a score to the range of a short.
+	 *
+	 * @param score the score
+	 * @return the clamped score
+	 */
+	private static int clamp(int score) {
+		return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score));
+	}
+}
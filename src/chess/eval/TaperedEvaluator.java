@@ -0,0 +1,199 @@
+package chess.eval;
+
+import java.util.Arrays;
+
+import chess.board.Bitboards;
+import chess.board.ChessBoard;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * The default evaluator. Every term is weighted twice, once for the middlegame
+ * and once for the endgame, and the two scores are blended by the game phase,
+ * which is computed from the pieces left on the board. The weights are looked
+ * up in the short arrays of an {@link EvalParams} object, so that they can be
+ * tuned offline.
+ *
+ * The evaluation walks the bitboards of the board directly and does not
+ * allocate any objects. The attacks of each piece are computed once and used
+ * for two terms: mobility, which counts the squares the piece can move to
+ * without being taken by a pawn, and king safety, which counts the squares
+ * next to the enemy king the piece attacks.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Tapered_Eval
+ */
+public class TaperedEvaluator implements Evaluator {
+
+	static final PieceColor[] COLORS = PieceColor.values();
+	static final PieceType[] TYPES = PieceType.values();
+
+	/**
+	 * How much each piece type counts towards the game phase.
+	 */
+	private static final int[] PHASE = { 0, 1, 1, 2, 4, 0 };
+	static final int MAX_PHASE = 24;
+
+	/**
+	 * The weights used when an evaluation is only traced.
+	 */
+	private static final short[] NO_WEIGHTS = new short[EvalParams.SIZE * 2];
+
+	private final short[] weights;
+	private final PawnHashTable pawnTable;
+
+	/**
+	 * Constructs a TaperedEvaluator object with the default weights.
+	 */
+	public TaperedEvaluator() {
+		this(EvalParams.getInstance());
+	}
+
+	/**
+	 * Constructs a TaperedEvaluator object.
+	 *
+	 * @param params the weights to evaluate with
+	 */
+	public TaperedEvaluator(EvalParams params) {
+		weights = params.getValues();
+		pawnTable = new PawnHashTable(14, params);
+	}
+
+	@Override
+	public float evaluate(ChessBoard cb) {
+		long pieces = score(cb, weights, null);
+		int mg = (int) (pieces >> 32);
+		int eg = (int) pieces;
+
+		long pawns = pawnTable.probe(cb);
+		int shield = PawnStructure.getShield(pawns, PieceColor.WHITE) - PawnStructure.getShield(pawns, PieceColor.BLACK);
+		mg += PawnStructure.getMg(pawns) + shield * weights[EvalParams.SHIELD * 2];
+		eg += PawnStructure.getEg(pawns) + shield * weights[EvalParams.SHIELD * 2 + 1];
+
+		int phase = getPhase(cb);
+		return (mg * phase + eg * (MAX_PHASE - phase)) / (MAX_PHASE * 100f);
+	}
+
+	/**
+	 * Breaks the evaluation of a chess board down into its terms. For every term,
+	 * the amount of times it applies to white minus the amount of times it
+	 * applies to black is stored, so that the middlegame score is the sum of each
+	 * count times the middlegame weight of its term, and likewise for the
+	 * endgame. This is what the {@link Tuner} learns the weights from.
+	 *
+	 * @param cb     the chess board
+	 * @param counts an array of {@link EvalParams#SIZE} elements, which is cleared
+	 *               and filled with the counts
+	 * @return the game phase, from 0 in the endgame to {@value #MAX_PHASE}
+	 */
+	static int trace(ChessBoard cb, int[] counts) {
+		Arrays.fill(counts, 0);
+		score(cb, NO_WEIGHTS, counts);
+
+		PawnStructure.trace(cb, counts, 0);
+		counts[EvalParams.SHIELD] = PawnStructure.getShieldSize(cb, PieceColor.WHITE)
+				- PawnStructure.getShieldSize(cb, PieceColor.BLACK);
+		return getPhase(cb);
+	}
+
+	/**
+	 * Scores every term of a chess board except for the pawn structure, which is
+	 * kept apart so that it can be cached. This is the one routine behind both
+	 * {@link #evaluate(ChessBoard)} and {@link #trace(ChessBoard, int[])}.
+	 *
+	 * @param cb      the chess board
+	 * @param weights the weights to score with
+	 * @param counts  an array of {@link EvalParams#SIZE} elements to add the count
+	 *                of each term to, null if only the score is needed
+	 * @return the middlegame score in the upper 32 bits and the endgame score in
+	 *         the lower 32 bits, both in centipawns (positive for white)
+	 */
+	private static long score(ChessBoard cb, short[] weights, int[] counts) {
+		long occ = cb.getOccupancy();
+		int mg = 0;
+		int eg = 0;
+
+		for (PieceColor pc : COLORS) {
+			int sign = (pc == PieceColor.WHITE) ? 1 : -1;
+			// Black's squares are mirrored, since the tables are written for white.
+			int flip = (pc == PieceColor.WHITE) ? 0 : 56;
+			long own = cb.getOccupancy(pc);
+
+			PieceColor enemy = pc.flip();
+			long safe = ~own & ~Bitboards.getAllPawnAttacks(cb.getPieces(PieceType.PAWN, enemy), enemy);
+			long kingZone = getKingZone(cb, enemy);
+
+			for (PieceType pt : TYPES) {
+				int type = pt.ordinal();
+				int material = EvalParams.MATERIAL + type;
+				int mobility = EvalParams.MOBILITY + type;
+				int kingAttack = EvalParams.KING_ATTACK + type;
+				boolean mobile = pt != PieceType.PAWN && pt != PieceType.KING;
+
+				for (long pieces = cb.getPieces(pt, pc); pieces != 0; pieces &= pieces - 1) {
+					int index = Long.numberOfTrailingZeros(pieces);
+					int pst = EvalParams.PST + type * 64 + (index ^ flip);
+
+					int pieceMg = weights[material * 2] + weights[pst * 2];
+					int pieceEg = weights[material * 2 + 1] + weights[pst * 2 + 1];
+					if (counts != null) {
+						counts[material] += sign;
+						counts[pst] += sign;
+					}
+
+					if (mobile) {
+						long attacks = Bitboards.getAttacks(pt, pc, index, occ);
+
+						int moves = Long.bitCount(attacks & safe);
+						pieceMg += moves * weights[mobility * 2];
+						pieceEg += moves * weights[mobility * 2 + 1];
+
+						int kingSquares = Long.bitCount(attacks & kingZone);
+						pieceMg += kingSquares * weights[kingAttack * 2];
+						pieceEg += kingSquares * weights[kingAttack * 2 + 1];
+
+						if (counts != null) {
+							counts[mobility] += sign * moves;
+							counts[kingAttack] += sign * kingSquares;
+						}
+					}
+
+					mg += sign * pieceMg;
+					eg += sign * pieceEg;
+				}
+			}
+		}
+		return (long) mg << 32 | (eg & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Computes the game phase from the pieces left on a chess board.
+	 *
+	 * @param cb the chess board
+	 * @return the game phase, from 0 in the endgame to {@value #MAX_PHASE}
+	 */
+	private static int getPhase(ChessBoard cb) {
+		int phase = 0;
+		for (PieceType pt : TYPES) {
+			int count = Long.bitCount(cb.getPieces(pt, PieceColor.WHITE) | cb.getPieces(pt, PieceColor.BLACK));
+			phase += count * PHASE[pt.ordinal()];
+		}
+		return Math.min(phase, MAX_PHASE);
+	}
+
+	/**
+	 * Returns the squares around a king, including the king's own square.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the king
+	 * @return the bitboard of the king zone, 0 if there is no king
+	 */
+	private static long getKingZone(ChessBoard cb, PieceColor pc) {
+		long king = cb.getPieces(PieceType.KING, pc);
+		if (king == 0) {
+			return 0;
+		}
+		return king | Bitboards.getKingAttacks(Long.numberOfTrailingZeros(king));
+	}
+}
@@ -0,0 +1,477 @@
+package chess.eval;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import chess.board.Bitboards;
+import chess.board.ChessBoard;
+import chess.board.Fen;
+import chess.board.Position;
+import chess.board.Square;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A tool which tunes the weights of the {@link TaperedEvaluator} with the
+ * Texel method: the evaluation of each position of a large set of games is
+ * turned into a predicted result with a sigmoid, and the weights are changed
+ * to make the predictions match the real results as closely as possible.
+ *
+ * When the positions are loaded, each one is first resolved with a short
+ * quiescence search, so that no captures are pending, and then broken down into
+ * the counts of the evaluation terms (see {@link TaperedEvaluator#trace}). The
+ * evaluation is linear in the weights, so the positions are never looked at
+ * again: they are stored as lists of (term, count) pairs in a few primitive
+ * arrays, and the error and its gradient are computed from those, spread over
+ * all cores. The weights are then optimized with the Adam variant of gradient
+ * descent.
+ *
+ * The positions are read from an EPD file with one position per line and the
+ * result of the game either as {@code c9 "1-0";} (or {@code "0-1"},
+ * {@code "1/2-1/2"}) or as {@code [1.0]} (or {@code [0.0]}, {@code [0.5]}).
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Texel%27s_Tuning_Method
+ */
+public class Tuner {
+
+	private static final int QUIESCENCE_DEPTH = 8;
+	private static final int BATCH_SIZE = 1 << 16;
+
+	private static final double LEARNING_RATE = 1.0;
+	private static final double BETA1 = 0.9;
+	private static final double BETA2 = 0.999;
+	private static final double EPSILON = 1e-8;
+
+	private final TaperedEvaluator evaluator;
+
+	private int positions;
+	private int[] starts;
+	private byte[] phases;
+	private byte[] results;
+
+	private int pairs;
+	private short[] terms;
+	private byte[] counts;
+
+	/**
+	 * Constructs a Tuner object without any positions.
+	 *
+	 * @param params the weights used to resolve positions with the quiescence
+	 *               search
+	 */
+	public Tuner(EvalParams params) {
+		evaluator = new TaperedEvaluator(params);
+		starts = new int[1024];
+		phases = new byte[1024];
+		results = new byte[1024];
+		terms = new short[1 << 16];
+		counts = new byte[1 << 16];
+	}
+
+	/**
+	 * Loads the positions of an EPD file. The file is read in batches, and the
+	 * positions of each batch are resolved and traced in parallel. Lines without
+	 * a result are skipped.
+	 *
+	 * @param path the path of the EPD file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void load(Path path) throws IOException {
+		try (BufferedReader in = Files.newBufferedReader(path)) {
+			List<String> batch = new ArrayList<String>(BATCH_SIZE);
+			String line;
+			while ((line = in.readLine()) != null) {
+				batch.add(line);
+				if (batch.size() == BATCH_SIZE) {
+					addBatch(batch);
+					batch.clear();
+				}
+			}
+			addBatch(batch);
+		}
+	}
+
+	/**
+	 * Resolves and traces a batch of lines in parallel and stores the results.
+	 *
+	 * @param batch the lines of the batch
+	 */
+	private void addBatch(List<String> batch) {
+		int[][] records = batch.parallelStream().map(this::toRecord).toArray(int[][]::new);
+		for (int[] record : records) {
+			if (record != null) {
+				add(record);
+			}
+		}
+	}
+
+	/**
+	 * Turns a line of the EPD file into a record: the result in half points, the
+	 * game phase and the nonzero term counts as (term, count) pairs.
+	 *
+	 * @param line the line
+	 * @return the record, or null if the line has no position or result
+	 */
+	private int[] toRecord(String line) {
+		int result = parseResult(line);
+		String[] fields = line.trim().split("\\s+");
+		if (result < 0 || fields.length < 4) {
+			return null;
+		}
+
+		Position position;
+		try {
+			position = Fen.parse(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3]);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+
+		ChessBoard[] leaf = new ChessBoard[1];
+		PieceColor pc = position.getSideToMove();
+		quiescence(position.getBoard(), pc, -Float.MAX_VALUE, Float.MAX_VALUE, QUIESCENCE_DEPTH, leaf);
+
+		int[] traced = new int[EvalParams.SIZE];
+		int phase = TaperedEvaluator.trace(leaf[0], traced);
+
+		int[] record = new int[2 + 2 * EvalParams.SIZE];
+		record[0] = result;
+		record[1] = phase;
+		int length = 2;
+		for (int term = 0; term < traced.length; term++) {
+			if (traced[term] != 0) {
+				record[length++] = term;
+				record[length++] = traced[term];
+			}
+		}
+		return Arrays.copyOf(record, length);
+	}
+
+	/**
+	 * Appends a record to the arrays. Counts which do not fit into a byte are
+	 * split over several pairs of the same term.
+	 *
+	 * @param record the record
+	 */
+	private void add(int[] record) {
+		if (positions + 1 >= starts.length) {
+			starts = Arrays.copyOf(starts, starts.length * 2);
+			phases = Arrays.copyOf(phases, phases.length * 2);
+			results = Arrays.copyOf(results, results.length * 2);
+		}
+		results[positions] = (byte) record[0];
+		phases[positions] = (byte) record[1];
+		starts[positions] = pairs;
+
+		for (int i = 2; i < record.length; i += 2) {
+			int count = record[i + 1];
+			while (count != 0) {
+				int part = Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, count));
+				if (pairs == terms.length) {
+					terms = Arrays.copyOf(terms, terms.length * 2);
+					counts = Arrays.copyOf(counts, counts.length * 2);
+				}
+				terms[pairs] = (short) record[i];
+				counts[pairs] = (byte) part;
+				pairs++;
+				count -= part;
+			}
+		}
+		positions++;
+		starts[positions] = pairs;
+	}
+
+	/**
+	 * A quiescence search which only looks at captures, used to find a quiet
+	 * position to trace. Scores are from the point of view of the player to move.
+	 * Captures are generated from the bitboards, since this runs for every loaded
+	 * position, and en passant captures are left out.
+	 *
+	 * @param cb    the chess board
+	 * @param pc    the color of the player to move
+	 * @param alpha the alpha value in alpha-beta pruning
+	 * @param beta  the beta value in alpha-beta pruning
+	 * @param depth how many more captures may be searched
+	 * @param leaf  an array which receives the quiet position at the end of the
+	 *              best line
+	 * @return the score of the position
+	 */
+	private float quiescence(ChessBoard cb, PieceColor pc, float alpha, float beta, int depth, ChessBoard[] leaf) {
+		float standPat = evaluator.evaluate(cb);
+		if (pc == PieceColor.BLACK) {
+			standPat = -standPat;
+		}
+		leaf[0] = cb;
+		if (standPat >= beta || depth == 0) {
+			return standPat;
+		}
+		alpha = Math.max(alpha, standPat);
+
+		ChessBoard[] childLeaf = new ChessBoard[1];
+		long occ = cb.getOccupancy();
+		// The most valuable victims are captured first, by the least valuable
+		// attackers, so that cutoffs come early.
+		for (int victim = PieceType.QUEEN.ordinal(); victim >= 0; victim--) {
+			long targets = cb.getPieces(TaperedEvaluator.TYPES[victim], pc.flip());
+			if (targets == 0) {
+				continue;
+			}
+			for (PieceType pt : TaperedEvaluator.TYPES) {
+				for (long pieces = cb.getPieces(pt, pc); pieces != 0; pieces &= pieces - 1) {
+					int from = Long.numberOfTrailingZeros(pieces);
+					for (long captures = Bitboards.getAttacks(pt, pc, from, occ) & targets; captures != 0; captures &= captures
+							- 1) {
+						int to = Long.numberOfTrailingZeros(captures);
+						ChessBoard sim = new ChessBoard(cb);
+						sim.movePiece(new Square(from % 8, from / 8), new Square(to % 8, to / 8));
+						if (pt == PieceType.PAWN && (to < 8 || to >= 56)) {
+							sim.setPiece(new Square(to % 8, to / 8), PieceType.QUEEN.create(pc));
+						}
+
+						long king = sim.getPieces(PieceType.KING, pc);
+						if (king != 0 && Bitboards.isAttacked(sim, Long.numberOfTrailingZeros(king), pc.flip())) {
+							continue;
+						}
+
+						float score = -quiescence(sim, pc.flip(), -beta, -alpha, depth - 1, childLeaf);
+						if (score > alpha) {
+							alpha = score;
+							leaf[0] = childLeaf[0];
+							if (alpha >= beta) {
+								return alpha;
+							}
+						}
+					}
+				}
+			}
+		}
+		return alpha;
+	}
+
+	/**
+	 * Finds the result of the game in a line of the EPD file.
+	 *
+	 * @param line the line
+	 * @return the result for white in half points, -1 if there is none
+	 */
+	private static int parseResult(String line) {
+		if (line.contains("1/2-1/2") || line.contains("[0.5]")) {
+			return 1;
+		}
+		if (line.contains("1-0") || line.contains("[1.0]")) {
+			return 2;
+		}
+		if (line.contains("0-1") || line.contains("[0.0]")) {
+			return 0;
+		}
+		return -1;
+	}
+
+	/**
+	 * A getter for the amount of loaded positions.
+	 *
+	 * @return the value of positions
+	 */
+	public int size() {
+		return positions;
+	}
+
+	/**
+	 * Finds the scaling constant of the sigmoid which fits the given weights best,
+	 * by ternary search.
+	 *
+	 * @param params the weights
+	 * @return the scaling constant
+	 */
+	public double computeK(EvalParams params) {
+		double[] weights = toWeights(params);
+		double lo = 0;
+		double hi = 4;
+		for (int i = 0; i < 40; i++) {
+			double a = lo + (hi - lo) / 3;
+			double b = hi - (hi - lo) / 3;
+			if (computeError(weights, a, null) < computeError(weights, b, null)) {
+				hi = b;
+			} else {
+				lo = a;
+			}
+		}
+		return (lo + hi) / 2;
+	}
+
+	/**
+	 * Computes the mean squared error of the predictions.
+	 *
+	 * @param params the weights
+	 * @param k      the scaling constant of the sigmoid
+	 * @return the mean squared error
+	 */
+	public double computeError(EvalParams params, double k) {
+		return computeError(toWeights(params), k, null);
+	}
+
+	/**
+	 * Optimizes the weights with Adam, starting from given weights. The weight of
+	 * the king's material is never changed.
+	 *
+	 * @param params the starting weights, which are not modified
+	 * @param k      the scaling constant of the sigmoid
+	 * @param epochs the amount of passes over all positions
+	 * @return the optimized weights
+	 */
+	public EvalParams tune(EvalParams params, double k, int epochs) {
+		double[] weights = toWeights(params);
+		double[] gradient = new double[weights.length];
+		double[] m = new double[weights.length];
+		double[] v = new double[weights.length];
+		int king = (EvalParams.MATERIAL + PieceType.KING.ordinal()) * 2;
+
+		for (int epoch = 1; epoch <= epochs; epoch++) {
+			double error = computeError(weights, k, gradient);
+			for (int i = 0; i < weights.length; i++) {
+				if (i == king || i == king + 1) {
+					continue;
+				}
+				m[i] = BETA1 * m[i] + (1 - BETA1) * gradient[i];
+				v[i] = BETA2 * v[i] + (1 - BETA2) * gradient[i] * gradient[i];
+				double mHat = m[i] / (1 - Math.pow(BETA1, epoch));
+				double vHat = v[i] / (1 - Math.pow(BETA2, epoch));
+				weights[i] -= LEARNING_RATE * mHat / (Math.sqrt(vHat) + EPSILON);
+			}
+			if (epoch % 50 == 0 || epoch == 1) {
+				System.out.println("Epoch " + epoch + ": error " + error);
+			}
+		}
+
+		EvalParams tuned = new EvalParams(params);
+		for (int term = 0; term < EvalParams.SIZE; term++) {
+			tuned.set(term, toShort(weights[term * 2]), toShort(weights[term * 2 + 1]));
+		}
+		return tuned;
+	}
+
+	/**
+	 * Computes the mean squared error of the predictions, and optionally its
+	 * gradient, in parallel. Every thread handles a slice of the positions and
+	 * sums into its own gradient, and the slices are added up at the end.
+	 *
+	 * @param weights  the weights, middlegame and endgame next to each other
+	 * @param k        the scaling constant of the sigmoid
+	 * @param gradient the array which receives the gradient, or null
+	 * @return the mean squared error
+	 */
+	private double computeError(double[] weights, double k, double[] gradient) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int slice = (positions + threads - 1) / threads;
+		boolean withGradient = gradient != null;
+
+		double[][] partial = IntStream.range(0, threads).parallel().mapToObj(t -> {
+			double[] sums = new double[weights.length + 1];
+			int end = Math.min(positions, (t + 1) * slice);
+			for (int p = t * slice; p < end; p++) {
+				int phase = phases[p];
+				double mg = 0;
+				double eg = 0;
+				for (int i = starts[p]; i < starts[p + 1]; i++) {
+					mg += counts[i] * weights[terms[i] * 2];
+					eg += counts[i] * weights[terms[i] * 2 + 1];
+				}
+				double eval = (mg * phase + eg * (TaperedEvaluator.MAX_PHASE - phase)) / TaperedEvaluator.MAX_PHASE;
+				double sigmoid = 1 / (1 + Math.pow(10, -k * eval / 400));
+				double diff = results[p] / 2.0 - sigmoid;
+				sums[weights.length] += diff * diff;
+
+				if (withGradient) {
+					double d = -2 * diff * sigmoid * (1 - sigmoid) * Math.log(10) * k / 400;
+					double dMg = d * phase / TaperedEvaluator.MAX_PHASE;
+					double dEg = d * (TaperedEvaluator.MAX_PHASE - phase) / TaperedEvaluator.MAX_PHASE;
+					for (int i = starts[p]; i < starts[p + 1]; i++) {
+						sums[terms[i] * 2] += counts[i] * dMg;
+						sums[terms[i] * 2 + 1] += counts[i] * dEg;
+					}
+				}
+			}
+			return sums;
+		}).toArray(double[][]::new);
+
+		double error = 0;
+		if (withGradient) {
+			Arrays.fill(gradient, 0);
+		}
+		for (double[] sums : partial) {
+			error += sums[weights.length];
+			if (withGradient) {
+				for (int i = 0; i < gradient.length; i++) {
+					gradient[i] += sums[i] / positions;
+				}
+			}
+		}
+		return error / positions;
+	}
+
+	/**
+	 * Copies weights into an array of doubles.
+	 *
+	 * @param params the weights
+	 * @return the weights, middlegame and endgame next to each other
+	 */
+	private static double[] toWeights(EvalParams params) {
+		short[] values = params.getValues();
+		double[] weights = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			weights[i] = values[i];
+		}
+		return weights;
+	}
+
+	/**
+	 * Rounds a weight to the nearest short.
+	 *
+	 * @param weight the weight
+	 * @return the rounded weight
+	 */
+	private static int toShort(double weight) {
+		return (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(weight)));
+	}
+
+	/**
+	 * Tunes the weights. The arguments are the EPD file, the parameter file to
+	 * write and optionally the amount of epochs. Tuning starts from the weights
+	 * named by the {@value EvalParams#PROPERTY} system property, or the defaults.
+	 *
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: Tuner <positions.epd> <output.properties> [epochs]");
+			return;
+		}
+
+		try {
+			EvalParams params = EvalParams.getInstance();
+			Tuner tuner = new Tuner(params);
+
+			long start = System.currentTimeMillis();
+			tuner.load(Paths.get(args[0]));
+			System.out.println("Loaded " + tuner.size() + " positions in " + (System.currentTimeMillis() - start) + " ms");
+
+			double k = tuner.computeK(params);
+			System.out.println("K = " + k + ", error " + tuner.computeError(params, k));
+
+			int epochs = (args.length > 2) ? Integer.parseInt(args[2]) : 500;
+			EvalParams tuned = tuner.tune(params, k, epochs);
+			System.out.println("Final error " + tuner.computeError(tuned, k));
+			tuned.save(Paths.get(args[1]));
+		} catch (IOException | NumberFormatException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package chess.explorer;
+
+import java.nio.ByteBuffer;
+
+import chess.board.Move;
+import chess.piece.PieceType;
+
+/**
+ * A class which represents the statistics of one move in one position of an
+ * opening index: how often the move was played, and how the games it was
+ * played in ended. An entry takes {@value #SIZE} bytes in an index file:
+ *
+ * <ul>
+ * <li>8 bytes: the Zobrist key of the position</li>
+ * <li>2 bytes: the move, as the index of the square it comes from times 64
+ * plus the index of the square it goes to, plus the ordinal of the piece type
+ * a pawn is promoted to times 4096</li>
+ * <li>2 bytes: reserved, always 0</li>
+ * <li>4 bytes each: the amount of games won by white, drawn and won by
+ * black</li>
+ * <li>8 bytes: the number of the first game the move was played in, counting
+ * from 0 in the order of the corpus</li>
+ * </ul>
+ *
+ * Entries are ordered by key, as an unsigned number, and then by move, which is
+ * the order of an index file.
+ *
+ * @author kennangumbs
+ *
+ */
+public class ExplorerEntry implements Comparable<ExplorerEntry> {
+
+	/**
+	 * The size of an entry in bytes.
+	 */
+	public static final int SIZE = 32;
+
+	private final long key;
+	private final int move;
+	private int white;
+	private int draws;
+	private int black;
+	private long game;
+
+	/**
+	 * Constructs an ExplorerEntry object.
+	 *
+	 * @param key   the Zobrist key of the position
+	 * @param move  the code of the move, see {@link #getCode}
+	 * @param white the amount of games won by white
+	 * @param draws the amount of drawn games
+	 * @param black the amount of games won by black
+	 * @param game  the number of the first game the move was played in
+	 */
+	public ExplorerEntry(long key, int move, int white, int draws, int black, long game) {
+		this.key = key;
+		this.move = move;
+		this.white = white;
+		this.draws = draws;
+		this.black = black;
+		this.game = game;
+	}
+
+	/**
+	 * Returns the code of a move.
+	 *
+	 * @param m         the move
+	 * @param promotion the piece type a pawn is promoted to, null if the move is
+	 *                  not a promotion
+	 * @return the code of the move
+	 */
+	public static int getCode(Move m, PieceType promotion) {
+		int code = m.getFrom().getIndex() << 6 | m.getTo().getIndex();
+		return (promotion == null) ? code : code | promotion.ordinal() << 12;
+	}
+
+	/**
+	 * Adds the games of another entry of the same position and move.
+	 *
+	 * @param other the other entry
+	 */
+	void add(ExplorerEntry other) {
+		white += other.white;
+		draws += other.draws;
+		black += other.black;
+		game = Math.min(game, other.game);
+	}
+
+	/**
+	 * Checks whether another entry is about the same position and move.
+	 *
+	 * @param other the other entry
+	 * @return true if the key and the move are the same, false otherwise.
+	 */
+	boolean isSame(ExplorerEntry other) {
+		return key == other.key && move == other.move;
+	}
+
+	/**
+	 * Writes the entry at the current position of a buffer, which is then
+	 * advanced by {@value #SIZE} bytes.
+	 *
+	 * @param out the buffer to write to
+	 */
+	void write(ByteBuffer out) {
+		out.putLong(key);
+		out.putShort((short) move);
+		out.putShort((short) 0);
+		out.putInt(white);
+		out.putInt(draws);
+		out.putInt(black);
+		out.putLong(game);
+	}
+
+	/**
+	 * Reads an entry at a given offset of a buffer.
+	 *
+	 * @param in     the buffer to read from
+	 * @param offset the offset of the entry
+	 * @return the entry
+	 */
+	static ExplorerEntry read(ByteBuffer in, int offset) {
+		return new ExplorerEntry(in.getLong(offset), in.getShort(offset + 8) & 0xFFFF, in.getInt(offset + 12),
+				in.getInt(offset + 16), in.getInt(offset + 20), in.getLong(offset + 24));
+	}
+
+	@Override
+	public int compareTo(ExplorerEntry other) {
+		int c = Long.compareUnsigned(key, other.key);
+		return (c != 0) ? c : Integer.compare(move, other.move);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ExplorerEntry && isSame((ExplorerEntry) o);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(key * 31 + move);
+	}
+
+	/**
+	 * A getter for the Zobrist key of the position.
+	 *
+	 * @return the value of key
+	 */
+	public long getKey() {
+		return key;
+	}
+
+	/**
+	 * A getter for the code of the move.
+	 *
+	 * @return the value of move
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	/**
+	 * Returns the index of the square the move comes from.
+	 *
+	 * @return the index of the square
+	 */
+	public int getFrom() {
+		return (move >>> 6) & 63;
+	}
+
+	/**
+	 * Returns the index of the square the move goes to.
+	 *
+	 * @return the index of the square
+	 */
+	public int getTo() {
+		return move & 63;
+	}
+
+	/**
+	 * Returns the piece type a pawn is promoted to by the move.
+	 *
+	 * @return the piece type, or null if the move is not a promotion
+	 */
+	public PieceType getPromotion() {
+		int type = move >>> 12;
+		return (type == 0) ? null : PieceType.values()[type];
+	}
+
+	/**
+	 * A getter for the amount of games won by white.
+	 *
+	 * @return the value of white
+	 */
+	public int getWhite() {
+		return white;
+	}
+
+	/**
+	 * A getter for the amount of drawn games.
+	 *
+	 * @return the value of draws
+	 */
+	public int getDraws() {
+		return draws;
+	}
+
+	/**
+	 * A getter for the amount of games won by black.
+	 *
+	 * @return the value of black
+	 */
+	public int getBlack() {
+		return black;
+	}
+
+	/**
+	 * Returns the amount of games the move was played in. The sum is a long,
+	 * since it may be larger than any one of the counts.
+	 *
+	 * @return the amount of games
+	 */
+	public long getGames() {
+		return (long) white + draws + black;
+	}
+
+	/**
+	 * A getter for the number of the first game the move was played in.
+	 *
+	 * @return the value of game
+	 */
+	public long getGame() {
+		return game;
+	}
+
+	@Override
+	public String toString() {
+		return getGames() + " games (+" + white + " =" + draws + " -" + black + ")";
+	}
+}
@@ -0,0 +1,262 @@
+package chess.explorer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import chess.board.ChessBoard;
+import chess.board.Fen;
+import chess.board.Move;
+import chess.board.Position;
+import chess.board.Zobrist;
+import chess.pgn.San;
+import chess.piece.ChessPiece;
+import chess.piece.PieceColor;
+
+/**
+ * A class which looks up the statistics of positions in an opening index built
+ * by {@link OpeningIndexBuilder}. The index file is memory-mapped read-only and
+ * never copied onto the heap, so even an index of millions of games is ready
+ * at once. After a header of {@value ExplorerEntry#SIZE} bytes, which holds the
+ * amount of games, it consists of {@link ExplorerEntry entries} sorted by key,
+ * so the moves of a position are found by binary search in a few microseconds.
+ * A buffer cannot be larger than 2 GB, so the file is mapped in chunks of
+ * {@value #CHUNK_SIZE} bytes; since that is a multiple of the size of an entry,
+ * no entry is split between two chunks.
+ *
+ * @author kennangumbs
+ *
+ */
+public class OpeningIndex {
+
+	/**
+	 * The name of the system property which holds the path of the index used by
+	 * default.
+	 */
+	public static final String PROPERTY = "chess.explorer";
+
+	/**
+	 * The first 8 bytes of an index file.
+	 */
+	static final long MAGIC = 0x43484553534f5831L; // "CHESSOX1"
+
+	/**
+	 * The size of the chunks the file is mapped in.
+	 */
+	static final int CHUNK_SIZE = 1 << 30;
+
+	private static OpeningIndex instance;
+	private static boolean loaded;
+
+	private final MappedByteBuffer[] chunks;
+	private final long entries;
+	private final long games;
+
+	/**
+	 * Constructs an OpeningIndex object by mapping an index file into memory.
+	 *
+	 * @param path the path of the index file
+	 * @throws IOException if the file cannot be mapped or is not an index file
+	 */
+	public OpeningIndex(Path path) throws IOException {
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = ch.size();
+			if (size < ExplorerEntry.SIZE || size % ExplorerEntry.SIZE != 0) {
+				throw new IOException("Not an opening index: " + path);
+			}
+			chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+			for (int i = 0; i < chunks.length; i++) {
+				long start = (long) i * CHUNK_SIZE;
+				chunks[i] = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+			}
+			entries = size / ExplorerEntry.SIZE - 1;
+		}
+		if (chunks[0].getLong(0) != MAGIC) {
+			throw new IOException("Not an opening index: " + path);
+		}
+		games = chunks[0].getLong(8);
+	}
+
+	/**
+	 * A method which returns the index named by the {@value #PROPERTY} system
+	 * property, mapping it the first time it is needed.
+	 *
+	 * @return the default index, or null if none is configured
+	 */
+	public static synchronized OpeningIndex getInstance() {
+		if (!loaded) {
+			loaded = true;
+			String path = System.getProperty(PROPERTY);
+			if (path != null) {
+				try {
+					instance = new OpeningIndex(Paths.get(path));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Looks up the moves played in a position.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @return the entries of the position, the most played move first
+	 */
+	public List<ExplorerEntry> probe(ChessBoard cb, PieceColor pc) {
+		return probe(Zobrist.getKey(cb, pc));
+	}
+
+	/**
+	 * Looks up the moves played in a position.
+	 *
+	 * @param key the Zobrist key of the position, including the player to move
+	 * @return the entries of the position, the most played move first
+	 */
+	public List<ExplorerEntry> probe(long key) {
+		List<ExplorerEntry> moves = new ArrayList<>();
+		for (long i = findFirst(key); i < entries && getKey(i) == key; i++) {
+			long offset = getOffset(i);
+			moves.add(ExplorerEntry.read(getChunk(offset), (int) (offset % CHUNK_SIZE)));
+		}
+		moves.sort((a, b) -> Long.compare(b.getGames(), a.getGames()));
+		return moves;
+	}
+
+	/**
+	 * Finds the first entry whose key is not smaller than a given key. Keys are
+	 * sorted as unsigned numbers.
+	 *
+	 * @param key the key to look for
+	 * @return the index of the entry
+	 */
+	private long findFirst(long key) {
+		long lo = 0;
+		long hi = entries;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			if (Long.compareUnsigned(getKey(mid), key) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the key of an entry.
+	 *
+	 * @param i the index of the entry
+	 * @return the key
+	 */
+	private long getKey(long i) {
+		long offset = getOffset(i);
+		return getChunk(offset).getLong((int) (offset % CHUNK_SIZE));
+	}
+
+	/**
+	 * Returns the chunk which holds an offset of the file.
+	 *
+	 * @param offset the offset in bytes
+	 * @return the chunk
+	 */
+	private MappedByteBuffer getChunk(long offset) {
+		return chunks[(int) (offset / CHUNK_SIZE)];
+	}
+
+	/**
+	 * Returns the offset of an entry in the file.
+	 *
+	 * @param i the index of the entry
+	 * @return the offset in bytes
+	 */
+	private static long getOffset(long i) {
+		return (i + 1) * ExplorerEntry.SIZE;
+	}
+
+	/**
+	 * Converts the move of an entry to a valid move on a chess board.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @param e  the entry
+	 * @return the matching valid move, or null if there is none
+	 */
+	public static Move toMove(ChessBoard cb, PieceColor pc, ExplorerEntry e) {
+		ChessPiece cp = cb.getPiece(e.getFrom() % 8, e.getFrom() / 8);
+		if (cp == null || cp.getPieceColor() != pc) {
+			return null;
+		}
+		for (Move m : cp.getValidMoves(cb)) {
+			if (m.getTo().getIndex() == e.getTo()) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A getter for the amount of games in the index.
+	 *
+	 * @return the value of games
+	 */
+	public long getGames() {
+		return games;
+	}
+
+	/**
+	 * A getter for the amount of entries in the index.
+	 *
+	 * @return the value of entries
+	 */
+	public long getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Prints the moves of a position from the command line, and how long it
+	 * takes to look them up.
+	 *
+	 * @param args the index file, and optionally the FEN of the position
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: OpeningIndex <index.idx> [fen]");
+			return;
+		}
+
+		try {
+			OpeningIndex index = new OpeningIndex(Paths.get(args[0]));
+			String fen = (args.length > 1) ? String.join(" ", List.of(args).subList(1, args.length)) : Fen.START;
+			Position pos = Fen.parse(fen);
+			ChessBoard cb = pos.getBoard();
+			PieceColor pc = pos.getSideToMove();
+			long key = Zobrist.getKey(cb, pc);
+
+			int rounds = 100000;
+			long start = System.nanoTime();
+			for (int i = 0; i < rounds; i++) {
+				index.probe(key);
+			}
+			double micros = (System.nanoTime() - start) / 1000.0 / rounds;
+
+			System.out.println(index.getGames() + " games, " + index.getEntries() + " entries");
+			for (ExplorerEntry e : index.probe(key)) {
+				Move m = toMove(cb, pc, e);
+				String san = (m == null) ? "?" : San.toSan(cb, pc, m, e.getPromotion());
+				System.out.printf("%-8s %s, first in game %d%n", san, e, e.getGame());
+			}
+			System.out.printf("Lookup: %.2f us%n", micros);
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,447 @@
+package chess.explorer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import chess.board.Move;
+import chess.board.Position;
+import chess.board.Zobrist;
+import chess.pgn.GameSource;
+import chess.pgn.PgnGame;
+import chess.pgn.San;
+import chess.piece.PieceType;
+
+/**
+ * A class which builds an {@link OpeningIndex} from a corpus of games, which
+ * can be far larger than the memory of the machine.
+ *
+ * The games are read by one thread and handed to worker threads in batches.
+ * Each worker plays through its games and counts the results of every move in
+ * every position in a hash table. When the table gets full, it is sorted and
+ * written to a temporary file as a sorted run, so the memory used does not
+ * depend on the size of the corpus. Finally, the runs of all workers are
+ * merged into the index, adding up the entries of the same position and move.
+ * Only the positions of the first moves of each game are indexed, since later
+ * positions are almost never reached by another game.
+ *
+ * @author kennangumbs
+ *
+ * @see https://en.wikipedia.org/wiki/External_sorting
+ */
+public class OpeningIndexBuilder {
+
+	/**
+	 * The amount of moves of each game which are indexed by default.
+	 */
+	public static final int DEFAULT_PLIES = 40;
+
+	private static final int BATCH_SIZE = 256;
+	private static final int RUN_SIZE = 1 << 19;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final int threads;
+	private final int plies;
+	private final Path tmp;
+	private final List<Path> runs;
+	private long games;
+	private long skipped;
+
+	/**
+	 * Constructs an OpeningIndexBuilder object.
+	 *
+	 * @param threads the amount of worker threads
+	 * @param plies   the amount of moves of each game to index
+	 * @param tmp     the directory of the temporary files
+	 */
+	public OpeningIndexBuilder(int threads, int plies, Path tmp) {
+		this.threads = Math.max(1, threads);
+		this.plies = plies;
+		this.tmp = tmp;
+		runs = Collections.synchronizedList(new ArrayList<>());
+	}
+
+	/**
+	 * Builds an index.
+	 *
+	 * @param in  a PGN file, or a game archive if the name ends with ".bin"
+	 * @param out the index file to write
+	 * @return the amount of games indexed
+	 * @throws IOException          if a file cannot be read or written
+	 * @throws InterruptedException if the thread is interrupted while waiting for
+	 *                              the workers
+	 */
+	public long build(Path in, Path out) throws IOException, InterruptedException {
+		BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(2 * threads);
+		Worker[] workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(queue, i);
+			workers[i].start();
+		}
+
+		try {
+			try (GameSource source = GameSource.open(in)) {
+				Batch batch = new Batch(0);
+				PgnGame game;
+				while ((game = source.next()) != null) {
+					batch.games.add(game);
+					games++;
+					if (batch.games.size() == BATCH_SIZE) {
+						queue.put(batch);
+						batch = new Batch(games);
+					}
+				}
+				queue.put(batch);
+			} finally {
+				// A batch without a number tells a worker that there are no more games.
+				for (int i = 0; i < threads; i++) {
+					queue.put(new Batch(-1));
+				}
+				for (Worker w : workers) {
+					w.join();
+				}
+			}
+			for (Worker w : workers) {
+				if (w.error != null) {
+					throw w.error;
+				}
+			}
+			merge(out);
+		} finally {
+			for (Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+		}
+		return games - skipped;
+	}
+
+	/**
+	 * A class which holds a batch of consecutive games of the corpus.
+	 */
+	private static class Batch {
+
+		private final long first;
+		private final List<PgnGame> games;
+
+		/**
+		 * Constructs a Batch object.
+		 *
+		 * @param first the number of the first game of the batch
+		 */
+		Batch(long first) {
+			this.first = first;
+			games = new ArrayList<>(BATCH_SIZE);
+		}
+	}
+
+	/**
+	 * A thread which indexes batches of games and writes its entries to sorted
+	 * runs.
+	 */
+	private class Worker extends Thread {
+
+		private final BlockingQueue<Batch> queue;
+		private final Map<ExplorerEntry, ExplorerEntry> entries;
+		private final List<ExplorerEntry> game;
+		private IOException error;
+
+		/**
+		 * Constructs a Worker object.
+		 *
+		 * @param queue the queue of batches
+		 * @param id    the number of the worker
+		 */
+		Worker(BlockingQueue<Batch> queue, int id) {
+			super("Index Worker " + id);
+			this.queue = queue;
+			entries = new HashMap<>();
+			game = new ArrayList<>(plies);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Batch batch = queue.take();
+					if (batch.first < 0) {
+						break;
+					}
+					// After an error the batches are still taken, so the reader is never
+					// blocked.
+					if (error != null) {
+						continue;
+					}
+					for (int i = 0; i < batch.games.size(); i++) {
+						long number = batch.first + i;
+						try {
+							add(batch.games.get(i), number);
+						} catch (RuntimeException e) {
+							// A broken game is reported and left out, and the rest of the batch is
+							// still indexed.
+							System.err.println("Skipping game " + (number + 1) + ": " + e);
+							skip();
+						}
+					}
+					if (entries.size() >= RUN_SIZE) {
+						writeRun();
+					}
+				}
+				if (error == null) {
+					writeRun();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Counts the moves of a game.
+		 *
+		 * @param g      the game
+		 * @param number the number of the game in the corpus
+		 */
+		private void add(PgnGame g, long number) {
+			String result = g.getResult();
+			int white = result.equals("1-0") ? 1 : 0;
+			int draws = result.equals("1/2-1/2") ? 1 : 0;
+			int black = result.equals("0-1") ? 1 : 0;
+			if (white + draws + black == 0) {
+				skip();
+				return;
+			}
+
+			game.clear();
+			try {
+				Position pos = g.getStartPosition();
+				List<String> moves = g.getMoves();
+				for (int i = 0; i < moves.size() && i < plies; i++) {
+					String san = moves.get(i);
+					Move m = San.parse(pos, san);
+					if (m == null) {
+						break;
+					}
+					PieceType promotion = San.getPromotion(san);
+					ExplorerEntry e = new ExplorerEntry(Zobrist.getKey(pos.getBoard(), pos.getSideToMove()),
+							ExplorerEntry.getCode(m, promotion), white, draws, black, number);
+					// A position which is repeated in a game still counts the game once.
+					if (!game.contains(e)) {
+						game.add(e);
+					}
+					pos.play(m, promotion);
+				}
+			} catch (IllegalArgumentException e) {
+				// The moves up to an invalid FEN or move are still counted.
+			}
+
+			for (ExplorerEntry e : game) {
+				ExplorerEntry old = entries.putIfAbsent(e, e);
+				if (old != null) {
+					old.add(e);
+				}
+			}
+		}
+
+		/**
+		 * Sorts the entries of the hash table, writes them to a new run and empties
+		 * the table. If the run cannot be written, the error is kept for the
+		 * builder.
+		 */
+		private void writeRun() {
+			if (entries.isEmpty()) {
+				return;
+			}
+			List<ExplorerEntry> sorted = new ArrayList<>(entries.keySet());
+			entries.clear();
+			Collections.sort(sorted);
+
+			try {
+				Path run = Files.createTempFile(tmp, "run", ".tmp");
+				runs.add(run);
+				try (FileChannel ch = FileChannel.open(run, StandardOpenOption.WRITE)) {
+					ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+					for (ExplorerEntry e : sorted) {
+						if (buffer.remaining() < ExplorerEntry.SIZE) {
+							writeFully(ch, buffer);
+						}
+						e.write(buffer);
+					}
+					writeFully(ch, buffer);
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * Counts a game of the corpus which is not indexed.
+	 */
+	private synchronized void skip() {
+		skipped++;
+	}
+
+	/**
+	 * Merges the sorted runs into the index.
+	 *
+	 * @param out the index file to write
+	 * @throws IOException if a run cannot be read or the index cannot be written
+	 */
+	private void merge(Path out) throws IOException {
+		PriorityQueue<RunReader> heap = new PriorityQueue<>((a, b) -> a.current.compareTo(b.current));
+		try (FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (Path run : runs) {
+				RunReader reader = new RunReader(run);
+				if (reader.next()) {
+					heap.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.putLong(OpeningIndex.MAGIC);
+			buffer.putLong(games - skipped);
+			buffer.putLong(0);
+			buffer.putLong(0);
+			ExplorerEntry last = null;
+			while (!heap.isEmpty()) {
+				RunReader reader = heap.poll();
+				ExplorerEntry e = reader.current;
+				if (reader.next()) {
+					heap.add(reader);
+				} else {
+					reader.close();
+				}
+
+				if (last != null && last.isSame(e)) {
+					last.add(e);
+					continue;
+				}
+				if (last != null) {
+					if (buffer.remaining() < ExplorerEntry.SIZE) {
+						writeFully(ch, buffer);
+					}
+					last.write(buffer);
+				}
+				last = e;
+			}
+			if (last != null) {
+				if (buffer.remaining() < ExplorerEntry.SIZE) {
+					writeFully(ch, buffer);
+				}
+				last.write(buffer);
+			}
+			writeFully(ch, buffer);
+		} finally {
+			for (RunReader reader : heap) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * A class which reads the entries of a run one at a time.
+	 */
+	private static class RunReader implements Closeable {
+
+		private final DataInputStream in;
+		private ExplorerEntry current;
+
+		/**
+		 * Constructs a RunReader object.
+		 *
+		 * @param run the path of the run
+		 * @throws IOException if the run cannot be opened
+		 */
+		RunReader(Path run) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+		}
+
+		/**
+		 * Reads the next entry into current.
+		 *
+		 * @return true if there was an entry, false at the end of the run
+		 * @throws IOException if the run cannot be read
+		 */
+		boolean next() throws IOException {
+			long key;
+			try {
+				key = in.readLong();
+			} catch (EOFException e) {
+				current = null;
+				return false;
+			}
+			int move = in.readShort() & 0xFFFF;
+			in.readShort();
+			current = new ExplorerEntry(key, move, in.readInt(), in.readInt(), in.readInt(), in.readLong());
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the contents of a buffer to a file and clears the buffer.
+	 *
+	 * @param ch     the file
+	 * @param buffer the buffer, ready to be written to
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void writeFully(FileChannel ch, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			ch.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Builds an index from the command line.
+	 *
+	 * @param args the corpus, the index file, and optionally the amount of
+	 *             threads and of moves to index of each game
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: OpeningIndexBuilder <input.pgn|input.bin> <output.idx> [threads] [plies]");
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		try {
+			int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+			int plies = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_PLIES;
+			Path out = Paths.get(args[1]).toAbsolutePath();
+			Path tmp = Files.createTempDirectory(out.getParent(), "explorer");
+			try {
+				long count = new OpeningIndexBuilder(threads, plies, tmp).build(Paths.get(args[0]), out);
+				System.out.println("Indexed " + count + " games (" + (Files.size(out) / ExplorerEntry.SIZE - 1)
+						+ " entries) to " + args[1] + " in " + (System.currentTimeMillis() - start) + " ms");
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package chess.main;
 
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
 import javax.swing.JComboBox;
 import javax.swing.JOptionPane;
 
@@ -8,12 +13,16 @@ import chess.board.ChessBoard;
 import chess.board.Move;
 import chess.board.Square;
 import chess.input.Input;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnWriter;
+import chess.pgn.San;
 import chess.piece.Bishop;
 import chess.piece.ChessPiece;
 import chess.piece.King;
 import chess.piece.Knight;
 import chess.piece.Pawn;
 import chess.piece.PieceColor;
+import chess.piece.PieceType;
 import chess.piece.Queen;
 import chess.piece.Rook;
 import chess.player.DumbChessPlayer;
@@ -36,6 +45,7 @@ public class ChessGame implements Runnable {
 
 	private ChessPanel panel;
 	private ChessBoard cb;
+	private PgnGame record;
 
 	private static final int MAX_MOVES = 1000;
 
@@ -59,6 +69,12 @@ public class ChessGame implements Runnable {
 		current = white.getItemAt(white.getSelectedIndex());
 		other = black.getItemAt(black.getSelectedIndex());
 
+		record = new PgnGame();
+		record.setTag("Event", "Casual game");
+		record.setTag("Date", new SimpleDateFormat("yyyy.MM.dd").format(new Date()));
+		record.setTag("White", current.toString());
+		record.setTag("Black", other.toString());
+
 		initBoard();
 	}
 
@@ -93,7 +109,8 @@ public class ChessGame implements Runnable {
 		cb.setPiece(new Square(6, 7), new Knight(PieceColor.BLACK));
 		cb.setPiece(new Square(7, 7), new Rook(PieceColor.BLACK));
 
-		panel.repaint();
+		panel.showExplorer(PieceColor.WHITE);
+		panel.repaintChanges();
 	}
 
 	@Override
@@ -108,23 +125,30 @@ public class ChessGame implements Runnable {
 
 				if (ba.isInCheckmate(cb, current.getPieceColor())) {
 					String msg = current.getColorName() + " is in checkmate, " + other.getColorName() + " wins.";
+					saveGame(current.getPieceColor() == PieceColor.WHITE ? "0-1" : "1-0");
 					gameOverMsg(msg, numMoves);
 					break;
 				}
 				if (ba.isInStalemate(cb, current.getPieceColor())) {
 					String msg = current.getColorName() + " is in stalemate, tie game.";
+					saveGame("1/2-1/2");
 					gameOverMsg(msg, numMoves);
 					break;
 				}
 				if (numMoves >= MAX_MOVES) {
 					String msg = "Max number of moves, tie game.";
+					saveGame("1/2-1/2");
 					gameOverMsg(msg, numMoves);
 					break;
 				}
 			}
 
 			Move move = current.chooseMove();
+			if (current instanceof Minimax) {
+				System.out.println(((Minimax) current).getLastResult());
+			}
 
+			ChessBoard before = new ChessBoard(cb);
 			move.execute(cb);
 
 			panel.setMove(move);
@@ -134,6 +158,9 @@ public class ChessGame implements Runnable {
 			if (cp instanceof Pawn && ((Pawn) cp).shouldPromote()) {
 				cb.setPiece(move.getTo(), current.choosePromotedPiece());
 			}
+			// The piece on the target square is only used by promotions.
+			PieceType promotion = cb.getPiece(move.getTo()).getPieceType();
+			record.addMove(San.toSan(before, current.getPieceColor(), move, promotion));
 
 			for (ChessPiece cp2 : cb.getAllPieces(current.getPieceColor().flip())) {
 				if (cp2 instanceof Pawn) {
@@ -141,7 +168,8 @@ public class ChessGame implements Runnable {
 				}
 			}
 
-			panel.repaint();
+			panel.showExplorer(current.getPieceColor().flip());
+			panel.repaintChanges();
 
 			switchPlayer();
 			numMoves++;
@@ -159,6 +187,25 @@ public class ChessGame implements Runnable {
 		JOptionPane.showConfirmDialog(null, msg, "Game Over!", JOptionPane.DEFAULT_OPTION);
 	}
 
+	/**
+	 * Adds the game to the PGN file named by the {@value PgnWriter#PROPERTY}
+	 * system property, if there is one.
+	 * 
+	 * @param result the result of the game
+	 */
+	private void saveGame(String result) {
+		record.setResult(result);
+		String path = System.getProperty(PgnWriter.PROPERTY);
+		if (path == null) {
+			return;
+		}
+		try (PgnWriter writer = new PgnWriter(new FileWriter(path, true))) {
+			writer.write(record);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Switches the current player after a player has made a turn.
 	 */
@@ -1,5 +1,16 @@
 package chess.main;
 
+import java.util.Arrays;
+
+import chess.analysis.AnalysisServer;
+import chess.analysis.BatchAnalyzer;
+import chess.analysis.TestSuite;
+import chess.book.BookBuilder;
+import chess.explorer.OpeningIndexBuilder;
+import chess.match.Match;
+import chess.match.SelfPlay;
+import chess.uci.UciEngine;
+
 /**
  * A chess game with both single player and multiplayer. All moves which can be
  * made in normal chess (i.e. castling, pawn promotion, and en passant) can be
@@ -11,11 +22,57 @@ package chess.main;
 public class Main {
 
 	/**
-	 * The main method
+	 * The main method. Without arguments the game window is opened. With the
+	 * argument "uci", the AI runs without a display as a UCI engine on standard
+	 * input and output, so that it can be used from chess GUIs and match tools.
+	 * With the argument "selfplay", games are played without a display (see
+	 * {@link SelfPlay#main(String[])} for the remaining arguments), and with
+	 * "match", two engines play a match (see {@link Match#main(String[])}). With
+	 * "analyze", a file of positions is analyzed (see
+	 * {@link BatchAnalyzer#main(String[])}), and with "serve", positions are
+	 * analyzed over HTTP (see {@link AnalysisServer#main(String[])}). With
+	 * "explorer", an opening index is built from a corpus of games (see
+	 * {@link OpeningIndexBuilder#main(String[])}), which the game window shows
+	 * when it is named by the {@value chess.explorer.OpeningIndex#PROPERTY} system
+	 * property. With "book", a Polyglot opening book is built (see
+	 * {@link BookBuilder#main(String[])}), and with "suite", a test suite of
+	 * tactical positions is run (see {@link TestSuite#main(String[])}).
 	 * 
-	 * @param args command-line arguments (not implemented)
+	 * @param args command-line arguments
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equalsIgnoreCase("uci")) {
+			new UciEngine(System.in, System.out).run();
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("selfplay")) {
+			SelfPlay.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("match")) {
+			Match.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("analyze")) {
+			BatchAnalyzer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("serve")) {
+			AnalysisServer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("explorer")) {
+			OpeningIndexBuilder.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("book")) {
+			BookBuilder.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("suite")) {
+			TestSuite.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 		new Thread(new ChessGame(), "Chess Game").start();
 	}
 }
@@ -0,0 +1,69 @@
+package chess.match;
+
+import java.util.function.BiFunction;
+
+import chess.board.ChessBoard;
+import chess.piece.PieceColor;
+import chess.player.Minimax;
+import chess.player.Player;
+import chess.player.SearchResult;
+
+/**
+ * A class which plays a headless game between two engines and ends it early
+ * when its result is clear from the engines' own scores. A game is
+ * adjudicated a draw once both engines have reported a score close to 0 for a
+ * number of half moves in a row, and a win once both engines have agreed for a
+ * number of half moves in a row that one side is far ahead. Only moves which
+ * were actually searched count; book and tablebase moves are skipped.
+ *
+ * @author kennangumbs
+ *
+ */
+class AdjudicatedGame extends HeadlessGame {
+
+	private final Adjudication rules;
+
+	private int drawPlies;
+	private int whiteWinPlies;
+	private int blackWinPlies;
+	private int plies;
+
+	/**
+	 * Constructs an AdjudicatedGame object.
+	 *
+	 * @param white creates the white player for a board
+	 * @param black creates the black player for a board
+	 * @param fen   the position the game starts from, in Forsyth-Edwards Notation
+	 * @param rules the limits of the adjudication
+	 */
+	AdjudicatedGame(BiFunction<PieceColor, ChessBoard, Player> white, BiFunction<PieceColor, ChessBoard, Player> black,
+			String fen, Adjudication rules) {
+		super(white, black, fen);
+		this.rules = rules;
+	}
+
+	@Override
+	protected void adjudicate(Player player) {
+		plies++;
+		if (!(player instanceof Minimax)) {
+			return;
+		}
+		SearchResult result = ((Minimax) player).getLastResult();
+		if (result == null || result.getDepth() == 0) {
+			return;
+		}
+
+		float score = result.getScore();
+		drawPlies = (Math.abs(score) <= rules.getDrawScore()) ? drawPlies + 1 : 0;
+		whiteWinPlies = (score >= rules.getResignScore()) ? whiteWinPlies + 1 : 0;
+		blackWinPlies = (score <= -rules.getResignScore()) ? blackWinPlies + 1 : 0;
+
+		if (rules.getDrawPlies() > 0 && plies >= 2 * rules.getDrawMoveNumber() && drawPlies >= rules.getDrawPlies()) {
+			end("1/2-1/2", "adjudication: draw");
+		} else if (rules.getResignPlies() > 0 && whiteWinPlies >= rules.getResignPlies()) {
+			end("1-0", "adjudication: black resigns");
+		} else if (rules.getResignPlies() > 0 && blackWinPlies >= rules.getResignPlies()) {
+			end("0-1", "adjudication: white resigns");
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package chess.match;
+
+/**
+ * A class which holds the limits used to end engine games early (see
+ * {@link AdjudicatedGame}). A limit of 0 half moves turns that kind of
+ * adjudication off.
+ *
+ * @author kennangumbs
+ *
+ */
+public class Adjudication {
+
+	/**
+	 * Adjudication which never ends a game early.
+	 */
+	public static final Adjudication NONE = new Adjudication(0, 0, 0, 0, 0);
+
+	/**
+	 * Adjudication with common limits: a draw after move 40 when both engines
+	 * score within 0.1 pawns for 10 half moves, and a resignation when both see a
+	 * side 10 pawns ahead for 6 half moves.
+	 */
+	public static final Adjudication DEFAULT = new Adjudication(40, 0.1f, 10, 10, 6);
+
+	private final int drawMoveNumber;
+	private final float drawScore;
+	private final int drawPlies;
+	private final float resignScore;
+	private final int resignPlies;
+
+	/**
+	 * Constructs an Adjudication object.
+	 *
+	 * @param drawMoveNumber the move number from which a game can be adjudicated
+	 *                       a draw
+	 * @param drawScore      the largest score, in pawns, which counts as a draw
+	 * @param drawPlies      the amount of half moves in a row with a drawn score
+	 * @param resignScore    the smallest score, in pawns, which counts as a win
+	 * @param resignPlies    the amount of half moves in a row with a won score
+	 */
+	public Adjudication(int drawMoveNumber, float drawScore, int drawPlies, float resignScore, int resignPlies) {
+		this.drawMoveNumber = drawMoveNumber;
+		this.drawScore = drawScore;
+		this.drawPlies = drawPlies;
+		this.resignScore = resignScore;
+		this.resignPlies = resignPlies;
+	}
+
+	/**
+	 * A getter for the move number from which a game can be adjudicated a draw.
+	 *
+	 * @return the value of drawMoveNumber
+	 */
+	public int getDrawMoveNumber() {
+		return drawMoveNumber;
+	}
+
+	/**
+	 * A getter for the largest score which counts as a draw.
+	 *
+	 * @return the value of drawScore
+	 */
+	public float getDrawScore() {
+		return drawScore;
+	}
+
+	/**
+	 * A getter for the amount of half moves in a row with a drawn score.
+	 *
+	 * @return the value of drawPlies
+	 */
+	public int getDrawPlies() {
+		return drawPlies;
+	}
+
+	/**
+	 * A getter for the smallest score which counts as a win.
+	 *
+	 * @return the value of resignScore
+	 */
+	public float getResignScore() {
+		return resignScore;
+	}
+
+	/**
+	 * A getter for the amount of half moves in a row with a won score.
+	 *
+	 * @return the value of resignPlies
+	 */
+	public int getResignPlies() {
+		return resignPlies;
+	}
+}
@@ -0,0 +1,239 @@
+package chess.match;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import chess.board.BoardAnalyzer;
+import chess.board.ChessBoard;
+import chess.board.Fen;
+import chess.board.Move;
+import chess.board.Position;
+import chess.board.Zobrist;
+import chess.pgn.PgnGame;
+import chess.pgn.San;
+import chess.piece.ChessPiece;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+import chess.player.Player;
+
+/**
+ * A class which plays a game between two players without a display. It follows
+ * the same rules as {@link chess.main.ChessGame}, and also ends the game in a
+ * draw by threefold repetition, the fifty-move rule or insufficient material.
+ * The moves are recorded as a {@link PgnGame}.
+ *
+ * The players are created by the game, because a player is bound to the board
+ * it plays on. Constructors with the signature {@code (PieceColor, ChessBoard)}
+ * can be passed directly, for example {@code Minimax::new}.
+ *
+ * @author kennangumbs
+ *
+ */
+public class HeadlessGame {
+
+	/**
+	 * The largest amount of half moves a game may take, after which it is a draw.
+	 */
+	public static final int MAX_MOVES = 1000;
+
+	private final Position pos;
+	private final Player white;
+	private final Player black;
+	private final PgnGame record;
+	private final Map<Long, Integer> repetitions;
+
+	private String termination;
+
+	/**
+	 * Constructs a HeadlessGame object which starts from the starting position.
+	 *
+	 * @param white creates the white player for a board
+	 * @param black creates the black player for a board
+	 */
+	public HeadlessGame(BiFunction<PieceColor, ChessBoard, Player> white,
+			BiFunction<PieceColor, ChessBoard, Player> black) {
+		this(white, black, Fen.START);
+	}
+
+	/**
+	 * Constructs a HeadlessGame object.
+	 *
+	 * @param white creates the white player for a board
+	 * @param black creates the black player for a board
+	 * @param fen   the position the game starts from, in Forsyth-Edwards Notation
+	 */
+	public HeadlessGame(BiFunction<PieceColor, ChessBoard, Player> white,
+			BiFunction<PieceColor, ChessBoard, Player> black, String fen) {
+		pos = Fen.parse(fen);
+		this.white = white.apply(PieceColor.WHITE, pos.getBoard());
+		this.black = black.apply(PieceColor.BLACK, pos.getBoard());
+		repetitions = new HashMap<Long, Integer>();
+
+		record = new PgnGame();
+		record.setTag("White", this.white.toString());
+		record.setTag("Black", this.black.toString());
+		if (!fen.equals(Fen.START)) {
+			record.setTag("SetUp", "1");
+			record.setTag("FEN", fen);
+		}
+	}
+
+	/**
+	 * Plays the game until it is over.
+	 *
+	 * @return the record of the game, with its result and a Termination tag
+	 */
+	public PgnGame play() {
+		BoardAnalyzer ba = BoardAnalyzer.getInstance();
+		ChessBoard cb = pos.getBoard();
+
+		Player last = null;
+		for (int numMoves = 0; termination == null; numMoves++) {
+			PieceColor pc = pos.getSideToMove();
+			ArrayList<Move> moves = ba.getValidMoves(cb, pc);
+			if (moves.isEmpty()) {
+				if (ba.isInCheck(cb, pc)) {
+					end(pc == PieceColor.WHITE ? "0-1" : "1-0", "checkmate");
+				} else {
+					end("1/2-1/2", "stalemate");
+				}
+				break;
+			}
+			if (isDrawn(numMoves)) {
+				break;
+			}
+			if (last != null) {
+				adjudicate(last);
+				if (termination != null) {
+					break;
+				}
+			}
+
+			Player current = (pc == PieceColor.WHITE) ? white : black;
+			Move move = current.chooseMove();
+			if (move == null) {
+				end(pc == PieceColor.WHITE ? "0-1" : "1-0", "no move from " + current);
+				break;
+			}
+
+			PieceType promotion = null;
+			ChessPiece cp = cb.getPiece(move.getFrom());
+			int lastRank = (pc == PieceColor.WHITE) ? 7 : 0;
+			if (cp.getPieceType() == PieceType.PAWN && move.getTo().getY() == lastRank) {
+				promotion = current.choosePromotedPiece().getPieceType();
+			}
+
+			record.addMove(San.toSan(cb, pc, move, promotion));
+			pos.play(move, promotion);
+			last = current;
+		}
+		return record;
+	}
+
+	/**
+	 * Called after every move which did not end the game by the rules, to give
+	 * subclasses a chance to end the game early with {@link #end}. By default
+	 * nothing happens.
+	 *
+	 * @param player the player who made the last move
+	 */
+	protected void adjudicate(Player player) {
+	}
+
+	/**
+	 * Ends the game.
+	 *
+	 * @param result      the result, "1-0", "0-1" or "1/2-1/2"
+	 * @param termination the reason the game ended
+	 */
+	protected void end(String result, String termination) {
+		this.termination = termination;
+		record.setResult(result);
+		record.setTag("Termination", termination);
+	}
+
+	/**
+	 * Checks whether the game is drawn by the rules, and ends it if it is.
+	 *
+	 * @param numMoves the amount of half moves played so far
+	 * @return true if the game is drawn, false otherwise.
+	 */
+	private boolean isDrawn(int numMoves) {
+		ChessBoard cb = pos.getBoard();
+		long key = Zobrist.getKey(cb, pos.getSideToMove());
+		if (repetitions.merge(key, 1, Integer::sum) >= 3) {
+			end("1/2-1/2", "threefold repetition");
+		} else if (pos.getHalfmoveClock() >= 100) {
+			end("1/2-1/2", "fifty-move rule");
+		} else if (isInsufficientMaterial(cb)) {
+			end("1/2-1/2", "insufficient material");
+		} else if (numMoves >= MAX_MOVES) {
+			end("1/2-1/2", "max number of moves");
+		}
+		return termination != null;
+	}
+
+	/**
+	 * Checks whether neither player can possibly checkmate: only the kings are
+	 * left, with at most one knight or bishop.
+	 *
+	 * @param cb the chess board
+	 * @return true if the material is insufficient, false otherwise.
+	 */
+	private static boolean isInsufficientMaterial(ChessBoard cb) {
+		long minors = 0;
+		long kings = 0;
+		for (PieceColor pc : PieceColor.values()) {
+			minors |= cb.getPieces(PieceType.KNIGHT, pc) | cb.getPieces(PieceType.BISHOP, pc);
+			kings |= cb.getPieces(PieceType.KING, pc);
+		}
+		return cb.getOccupancy() == (kings | minors) && Long.bitCount(minors) <= 1;
+	}
+
+	/**
+	 * A getter for the current position.
+	 *
+	 * @return the value of pos
+	 */
+	public Position getPosition() {
+		return pos;
+	}
+
+	/**
+	 * A getter for the record of the game.
+	 *
+	 * @return the value of record
+	 */
+	public PgnGame getRecord() {
+		return record;
+	}
+
+	/**
+	 * A getter for the reason the game ended.
+	 *
+	 * @return the value of termination, null if the game is not over
+	 */
+	public String getTermination() {
+		return termination;
+	}
+
+	/**
+	 * A getter for the white player.
+	 *
+	 * @return the value of white
+	 */
+	public Player getWhite() {
+		return white;
+	}
+
+	/**
+	 * A getter for the black player.
+	 *
+	 * @return the value of black
+	 */
+	public Player getBlack() {
+		return black;
+	}
+}
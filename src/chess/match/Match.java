@@ -0,0 +1,332 @@
+package chess.match;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import chess.board.ChessBoard;
+import chess.board.Fen;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnWriter;
+import chess.piece.PieceColor;
+import chess.player.Player;
+
+/**
+ * A tool which plays a match between two engines to find out whether one is
+ * stronger than the other. Every opening is played twice, once with each
+ * engine as white, and the two games of a pair run one after the other on one
+ * of a fixed pool of threads. Games are adjudicated when the engines agree on
+ * the result, and the match stops as soon as a {@link Sprt} reaches a
+ * decision, or when the given amount of pairs has been played. A pair in which
+ * a game fails is not counted, and the amount of such pairs is reported with
+ * the score, so that a result over fewer pairs is never mistaken for a full
+ * one.
+ *
+ * @author kennangumbs
+ *
+ */
+public class Match {
+
+	private final String nameA;
+	private final String nameB;
+	private final BiFunction<PieceColor, ChessBoard, Player> engineA;
+	private final BiFunction<PieceColor, ChessBoard, Player> engineB;
+	private final int threads;
+
+	private List<String> openings;
+	private Adjudication adjudication;
+	private Sprt sprt;
+	private PgnWriter writer;
+
+	private final int[] pairs;
+	private int wins;
+	private int losses;
+	private int draws;
+	private int failed;
+	private Sprt.Decision decision;
+
+	/**
+	 * Constructs a Match object.
+	 *
+	 * @param nameA   the name of the first engine
+	 * @param engineA creates the first engine for a board
+	 * @param nameB   the name of the second engine
+	 * @param engineB creates the second engine for a board
+	 * @param threads the amount of game pairs played at the same time
+	 */
+	public Match(String nameA, BiFunction<PieceColor, ChessBoard, Player> engineA, String nameB,
+			BiFunction<PieceColor, ChessBoard, Player> engineB, int threads) {
+		this.nameA = nameA;
+		this.nameB = nameB;
+		this.engineA = engineA;
+		this.engineB = engineB;
+		this.threads = threads;
+		openings = Collections.singletonList(Fen.START);
+		adjudication = Adjudication.DEFAULT;
+		pairs = new int[5];
+		decision = Sprt.Decision.CONTINUE;
+	}
+
+	/**
+	 * A setter for the openings. Pairs go through the openings in order, starting
+	 * over after the last one.
+	 *
+	 * @param openings the starting positions in Forsyth-Edwards Notation
+	 */
+	public void setOpenings(List<String> openings) {
+		this.openings = new ArrayList<String>(openings);
+	}
+
+	/**
+	 * A setter for the adjudication limits.
+	 *
+	 * @param adjudication the new limits, {@link Adjudication#NONE} to play every
+	 *                     game to the end
+	 */
+	public void setAdjudication(Adjudication adjudication) {
+		this.adjudication = adjudication;
+	}
+
+	/**
+	 * A setter for the test which can stop the match early.
+	 *
+	 * @param sprt the test, null to always play every pair
+	 */
+	public void setSprt(Sprt sprt) {
+		this.sprt = sprt;
+	}
+
+	/**
+	 * A setter for the writer the finished games are written to.
+	 *
+	 * @param writer the writer, null to not write the games
+	 */
+	public void setWriter(PgnWriter writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Plays game pairs until the test reaches a decision or the given amount of
+	 * pairs has been played. Pairs which are already running when the decision is
+	 * reached are finished and counted.
+	 *
+	 * @param maxPairs the largest amount of pairs to play
+	 * @return the decision of the test, {@link Sprt.Decision#CONTINUE} if there
+	 *         is no test or it did not finish
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public Sprt.Decision run(int maxPairs) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < maxPairs; i++) {
+			int round = i + 1;
+			String fen = openings.get(i % openings.size());
+			pool.execute(() -> {
+				if (isDecided()) {
+					return;
+				}
+				try {
+					PgnGame first = play(engineA, nameA, engineB, nameB, fen, round + ".1");
+					PgnGame second = play(engineB, nameB, engineA, nameA, fen, round + ".2");
+					finish(first, second);
+				} catch (RuntimeException e) {
+					fail(round, e);
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		return decision;
+	}
+
+	/**
+	 * Plays one game of a pair.
+	 *
+	 * @param white     creates the white engine
+	 * @param whiteName the name of the white engine
+	 * @param black     creates the black engine
+	 * @param blackName the name of the black engine
+	 * @param fen       the opening
+	 * @param round     the round of the game
+	 * @return the record of the game
+	 */
+	private PgnGame play(BiFunction<PieceColor, ChessBoard, Player> white, String whiteName,
+			BiFunction<PieceColor, ChessBoard, Player> black, String blackName, String fen, String round) {
+		PgnGame record = new AdjudicatedGame(white, black, fen, adjudication).play();
+		record.setTag("Event", nameA + " vs " + nameB);
+		record.setTag("Round", round);
+		record.setTag("White", whiteName);
+		record.setTag("Black", blackName);
+		return record;
+	}
+
+	/**
+	 * Counts the results of a finished pair, writes its games and updates the
+	 * test.
+	 *
+	 * @param first  the game with the first engine as white
+	 * @param second the game with the first engine as black
+	 */
+	private synchronized void finish(PgnGame first, PgnGame second) {
+		int points = count(getPoints(first.getResult())) + count(2 - getPoints(second.getResult()));
+		pairs[points]++;
+		if (sprt != null && decision == Sprt.Decision.CONTINUE) {
+			decision = sprt.getDecision(pairs);
+		}
+
+		if (writer != null) {
+			try {
+				writer.write(first);
+				writer.write(second);
+				writer.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		System.out.println(this);
+	}
+
+	/**
+	 * Counts a pair which could not be played to the end and reports why.
+	 *
+	 * @param round the round of the pair
+	 * @param e     the cause of the failure
+	 */
+	private synchronized void fail(int round, RuntimeException e) {
+		failed++;
+		System.err.println("Pair " + round + " failed and is not counted:");
+		e.printStackTrace();
+	}
+
+	/**
+	 * Counts a game for the first engine.
+	 *
+	 * @param points the points of the first engine, 0 for a loss, 1 for a draw
+	 *               and 2 for a win
+	 * @return the points
+	 */
+	private int count(int points) {
+		if (points == 2) {
+			wins++;
+		} else if (points == 1) {
+			draws++;
+		} else {
+			losses++;
+		}
+		return points;
+	}
+
+	/**
+	 * Converts a result to the points of white, counting half points as 1.
+	 *
+	 * @param result the result of a game
+	 * @return 2 for a win of white, 1 for a draw and 0 for a loss
+	 */
+	private static int getPoints(String result) {
+		switch (result) {
+		case "1-0":
+			return 2;
+		case "0-1":
+			return 0;
+		default:
+			return 1;
+		}
+	}
+
+	/**
+	 * Checks whether the test has reached a decision.
+	 *
+	 * @return true if the match can stop, false otherwise.
+	 */
+	private synchronized boolean isDecided() {
+		return decision != Sprt.Decision.CONTINUE;
+	}
+
+	/**
+	 * A getter for the amount of pairs in which the first engine scored 0, 0.5,
+	 * 1, 1.5 and 2 points.
+	 *
+	 * @return a copy of the counts
+	 */
+	public synchronized int[] getPairs() {
+		return pairs.clone();
+	}
+
+	/**
+	 * A getter for the amount of pairs which were not counted because a game
+	 * failed.
+	 *
+	 * @return the value of failed
+	 */
+	public synchronized int getFailedPairs() {
+		return failed;
+	}
+
+	@Override
+	public synchronized String toString() {
+		double[] elo = Sprt.getElo(pairs);
+		String s = String.format("Score of %s vs %s: %d - %d - %d [%.3f] %d, Elo %.1f +/- %.1f", nameA, nameB, wins,
+				losses, draws, (wins + draws / 2.0) / Math.max(1, wins + losses + draws), wins + losses + draws,
+				elo[0], elo[1]);
+		if (sprt != null) {
+			s += String.format(", LLR %.2f (%.2f, %.2f) %s", sprt.getLlr(pairs), sprt.getLowerBound(),
+					sprt.getUpperBound(), decision);
+		}
+		if (failed > 0) {
+			s += ", " + failed + " failed pairs not counted";
+		}
+		return s;
+	}
+
+	/**
+	 * Plays a match from the command line.
+	 *
+	 * @param args the two engines (see {@link SelfPlay#parsePlayer(String)}), the
+	 *             largest amount of pairs, and optionally the file of openings,
+	 *             the PGN file to write, the amount of threads, and elo0 and elo1
+	 *             of the test (by default 0 and 5, with error rates of 5%)
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println("Usage: Match <engineA> <engineB> <pairs> [openings.epd] [output.pgn] [threads]"
+					+ " [elo0 elo1]");
+			return;
+		}
+
+		try {
+			int threads = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+			Match match = new Match(args[0], SelfPlay.parsePlayer(args[0]), args[1], SelfPlay.parsePlayer(args[1]),
+					threads);
+			if (args.length > 3 && !args[3].equals("-")) {
+				match.setOpenings(SelfPlay.readOpenings(Paths.get(args[3])));
+			}
+			double elo0 = (args.length > 7) ? Double.parseDouble(args[6]) : 0;
+			double elo1 = (args.length > 7) ? Double.parseDouble(args[7]) : 5;
+			match.setSprt(new Sprt(elo0, elo1, 0.05, 0.05));
+
+			long start = System.currentTimeMillis();
+			Sprt.Decision decision;
+			if (args.length > 4 && !args[4].equals("-")) {
+				try (PgnWriter writer = new PgnWriter(new BufferedWriter(new FileWriter(args[4])))) {
+					match.setWriter(writer);
+					decision = match.run(Integer.parseInt(args[2]));
+				}
+			} else {
+				decision = match.run(Integer.parseInt(args[2]));
+			}
+			System.out.println("Finished in " + (System.currentTimeMillis() - start) + " ms: " + decision);
+			if (match.getFailedPairs() > 0) {
+				System.out.println(match);
+			}
+		} catch (IOException | InterruptedException | IllegalArgumentException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,305 @@
+package chess.match;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import chess.board.ChessBoard;
+import chess.board.Fen;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnWriter;
+import chess.piece.PieceColor;
+import chess.player.DumbChessPlayer;
+import chess.player.Minimax;
+import chess.player.Player;
+
+/**
+ * A tool which plays many games between two players without a display, to test
+ * changes to the AI. The games run on a fixed pool of threads, one game per
+ * thread at a time, so that the engines of at most that many games are in
+ * memory at once. Every finished game is counted and written to a PGN file.
+ *
+ * @author kennangumbs
+ *
+ */
+public class SelfPlay {
+
+	private final BiFunction<PieceColor, ChessBoard, Player> white;
+	private final BiFunction<PieceColor, ChessBoard, Player> black;
+	private final int threads;
+
+	private List<String> openings;
+	private PgnWriter writer;
+
+	private final AtomicInteger whiteWins;
+	private final AtomicInteger blackWins;
+	private final AtomicInteger draws;
+
+	/**
+	 * Constructs a SelfPlay object.
+	 *
+	 * @param white   creates the white player of every game
+	 * @param black   creates the black player of every game
+	 * @param threads the amount of games played at the same time
+	 */
+	public SelfPlay(BiFunction<PieceColor, ChessBoard, Player> white,
+			BiFunction<PieceColor, ChessBoard, Player> black, int threads) {
+		this.white = white;
+		this.black = black;
+		this.threads = threads;
+		openings = Collections.singletonList(Fen.START);
+		whiteWins = new AtomicInteger();
+		blackWins = new AtomicInteger();
+		draws = new AtomicInteger();
+	}
+
+	/**
+	 * A setter for the positions the games start from. The games go through the
+	 * positions in order, starting over after the last one.
+	 *
+	 * @param openings the starting positions in Forsyth-Edwards Notation
+	 */
+	public void setOpenings(List<String> openings) {
+		this.openings = new ArrayList<String>(openings);
+	}
+
+	/**
+	 * A setter for the writer the finished games are written to.
+	 *
+	 * @param writer the writer, null to not write the games
+	 */
+	public void setWriter(PgnWriter writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Plays a given amount of games and waits until all of them are over.
+	 *
+	 * @param games the amount of games
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void run(int games) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < games; i++) {
+			int round = i + 1;
+			String fen = openings.get(i % openings.size());
+			pool.execute(() -> {
+				try {
+					HeadlessGame game = new HeadlessGame(white, black, fen);
+					PgnGame record = game.play();
+					record.setTag("Event", "Self-play");
+					record.setTag("Round", Integer.toString(round));
+					finish(record);
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Counts the result of a finished game and writes the game.
+	 *
+	 * @param record the record of the game
+	 */
+	private void finish(PgnGame record) {
+		switch (record.getResult()) {
+		case "1-0":
+			whiteWins.incrementAndGet();
+			break;
+		case "0-1":
+			blackWins.incrementAndGet();
+			break;
+		default:
+			draws.incrementAndGet();
+		}
+
+		if (writer != null) {
+			synchronized (writer) {
+				try {
+					writer.write(record);
+					writer.flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		System.out.println("Game " + record.getTag("Round") + ": " + record.getResult() + " ("
+				+ record.getTag("Termination") + "), " + this);
+	}
+
+	/**
+	 * A getter for the amount of games white has won.
+	 *
+	 * @return the amount of wins
+	 */
+	public int getWhiteWins() {
+		return whiteWins.get();
+	}
+
+	/**
+	 * A getter for the amount of games black has won.
+	 *
+	 * @return the amount of wins
+	 */
+	public int getBlackWins() {
+		return blackWins.get();
+	}
+
+	/**
+	 * A getter for the amount of drawn games.
+	 *
+	 * @return the amount of draws
+	 */
+	public int getDraws() {
+		return draws.get();
+	}
+
+	@Override
+	public String toString() {
+		return "white " + whiteWins + ", black " + blackWins + ", draws " + draws;
+	}
+
+	/**
+	 * Creates players from a short description: "random" for a
+	 * {@link DumbChessPlayer}, and "minimax" for a {@link Minimax}, optionally
+	 * followed by limits separated by colons. A bare number is the search depth,
+	 * as in "minimax:4", and "depth=", "movetime=" (in milliseconds) and "nodes="
+	 * set the limits of each move, as in "minimax:movetime=100" or
+	 * "minimax:depth=8:nodes=20000". Without a depth, a player with a time or node
+	 * limit searches as deep as that limit allows.
+	 *
+	 * The engines of a match never use the analysis cache: a cache shared by both
+	 * players, and kept from one game to the next, would let one engine play the
+	 * other's analysis and the games depend on the order they were played in.
+	 *
+	 * @param spec the description of the player
+	 * @return a function which creates the player
+	 * @throws IllegalArgumentException if the description is not known
+	 */
+	public static BiFunction<PieceColor, ChessBoard, Player> parsePlayer(String spec) {
+		String[] parts = spec.split(":");
+		switch (parts[0].toLowerCase()) {
+		case "random":
+			if (parts.length > 1) {
+				throw new IllegalArgumentException("Unknown player: " + spec);
+			}
+			return DumbChessPlayer::new;
+		case "minimax":
+			int depth = 0;
+			long movetime = 0;
+			long nodes = 0;
+			for (int i = 1; i < parts.length; i++) {
+				int eq = parts[i].indexOf('=');
+				String key = (eq < 0) ? "depth" : parts[i].substring(0, eq).toLowerCase();
+				String value = parts[i].substring(eq + 1);
+				switch (key) {
+				case "depth":
+					depth = Integer.parseInt(value);
+					break;
+				case "movetime":
+					movetime = Long.parseLong(value);
+					break;
+				case "nodes":
+					nodes = Long.parseLong(value);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown player option: " + parts[i]);
+				}
+			}
+			if (depth == 0 && (movetime > 0 || nodes > 0)) {
+				depth = Minimax.MAX_DEPTH;
+			}
+
+			int depthLimit = depth;
+			long timeLimit = movetime;
+			long nodeLimit = nodes;
+			return (pc, cb) -> {
+				Minimax m = new Minimax(pc, cb);
+				m.setAnalysisCache(null);
+				if (depthLimit > 0) {
+					m.setDepthLimit(depthLimit);
+				}
+				if (timeLimit > 0) {
+					m.setTimeLimit(timeLimit);
+				}
+				m.setNodeLimit(nodeLimit);
+				return m;
+			};
+		default:
+			throw new IllegalArgumentException("Unknown player: " + spec);
+		}
+	}
+
+	/**
+	 * Reads a file of starting positions, one per line in Forsyth-Edwards
+	 * Notation or as EPD records, whose operations are left out.
+	 *
+	 * @param path the path of the file
+	 * @return the positions in Forsyth-Edwards Notation
+	 * @throws IOException if the file cannot be read
+	 */
+	static List<String> readOpenings(Path path) throws IOException {
+		List<String> openings = new ArrayList<String>();
+		for (String line : Files.readAllLines(path)) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length < 4) {
+				continue;
+			}
+			if (line.indexOf(';') >= 0) {
+				openings.add(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3]);
+			} else {
+				openings.add(line.trim());
+			}
+		}
+		return openings;
+	}
+
+	/**
+	 * Plays a series of games from the command line.
+	 *
+	 * @param args the amount of games, the white and black players (see
+	 *             {@link #parsePlayer(String)}), and optionally the PGN file to
+	 *             write, the amount of threads and a file of starting positions
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println("Usage: SelfPlay <games> <white> <black> [output.pgn] [threads] [openings.epd]");
+			return;
+		}
+
+		try {
+			int threads = (args.length > 4) ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+			SelfPlay selfPlay = new SelfPlay(parsePlayer(args[1]), parsePlayer(args[2]), threads);
+			if (args.length > 5) {
+				selfPlay.setOpenings(readOpenings(Paths.get(args[5])));
+			}
+
+			long start = System.currentTimeMillis();
+			if (args.length > 3) {
+				try (PgnWriter writer = new PgnWriter(new BufferedWriter(new FileWriter(args[3])))) {
+					selfPlay.setWriter(writer);
+					selfPlay.run(Integer.parseInt(args[0]));
+				}
+			} else {
+				selfPlay.run(Integer.parseInt(args[0]));
+			}
+			System.out.println("Finished in " + (System.currentTimeMillis() - start) + " ms: " + selfPlay);
+		} catch (IOException | InterruptedException | IllegalArgumentException e) {
+			e.printStackTrace();
+		}
+	}
+}
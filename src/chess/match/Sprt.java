@@ -0,0 +1,203 @@
+package chess.match;
+
+/**
+ * A class which runs a sequential probability ratio test on the results of a
+ * match. The test decides between two hypotheses about the Elo difference of
+ * the engines, H0: the difference is elo0, and H1: the difference is elo1. The
+ * log-likelihood ratio of the results is compared with two bounds derived from
+ * the allowed error rates, and the match can stop as soon as one of them is
+ * crossed.
+ *
+ * Since games are played in pairs with reversed colors, the results are
+ * counted per pair, in five groups by the points the first engine scored in the
+ * pair (0, 0.5, 1, 1.5 or 2). The likelihood ratio is computed with the normal
+ * approximation of the generalized SPRT, using the variance of the pair scores,
+ * which accounts for the correlation between the two games of a pair.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Sequential_Probability_Ratio_Test
+ */
+public class Sprt {
+
+	/**
+	 * The outcome of the test.
+	 */
+	public enum Decision {
+		/**
+		 * There are not enough results yet.
+		 */
+		CONTINUE,
+		/**
+		 * H0 is accepted: the Elo difference is elo0 rather than elo1.
+		 */
+		H0,
+		/**
+		 * H1 is accepted: the Elo difference is elo1 rather than elo0.
+		 */
+		H1
+	}
+
+	private final double elo0;
+	private final double elo1;
+	private final double lower;
+	private final double upper;
+
+	/**
+	 * Constructs a Sprt object.
+	 *
+	 * @param elo0  the Elo difference of H0
+	 * @param elo1  the Elo difference of H1
+	 * @param alpha the probability of accepting H1 when H0 is true
+	 * @param beta  the probability of accepting H0 when H1 is true
+	 */
+	public Sprt(double elo0, double elo1, double alpha, double beta) {
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+		lower = Math.log(beta / (1 - alpha));
+		upper = Math.log((1 - beta) / alpha);
+	}
+
+	/**
+	 * Computes the log-likelihood ratio of a set of results.
+	 *
+	 * @param pairs the amount of pairs in which the first engine scored 0, 0.5,
+	 *              1, 1.5 and 2 points
+	 * @return the log-likelihood ratio, 0 if there are too few results
+	 */
+	public double getLlr(int[] pairs) {
+		int n = 0;
+		for (int count : pairs) {
+			n += count;
+		}
+		double mean = getMean(pairs);
+		double variance = getVariance(pairs, mean);
+		if (n == 0 || variance == 0) {
+			return 0;
+		}
+
+		double s0 = getScore(elo0);
+		double s1 = getScore(elo1);
+		return n * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance);
+	}
+
+	/**
+	 * Decides whether the test is over.
+	 *
+	 * @param pairs the amount of pairs in which the first engine scored 0, 0.5,
+	 *              1, 1.5 and 2 points
+	 * @return the decision
+	 */
+	public Decision getDecision(int[] pairs) {
+		double llr = getLlr(pairs);
+		if (llr >= upper) {
+			return Decision.H1;
+		}
+		if (llr <= lower) {
+			return Decision.H0;
+		}
+		return Decision.CONTINUE;
+	}
+
+	/**
+	 * A getter for the bound below which H0 is accepted.
+	 *
+	 * @return the value of lower
+	 */
+	public double getLowerBound() {
+		return lower;
+	}
+
+	/**
+	 * A getter for the bound above which H1 is accepted.
+	 *
+	 * @return the value of upper
+	 */
+	public double getUpperBound() {
+		return upper;
+	}
+
+	@Override
+	public String toString() {
+		return "SPRT elo0 " + elo0 + ", elo1 " + elo1;
+	}
+
+	/**
+	 * Estimates the Elo difference of a set of results, with the margin of its
+	 * 95% confidence interval.
+	 *
+	 * @param pairs the amount of pairs in which the first engine scored 0, 0.5,
+	 *              1, 1.5 and 2 points
+	 * @return the Elo difference and its margin, NaN if there are no results
+	 */
+	public static double[] getElo(int[] pairs) {
+		int n = 0;
+		for (int count : pairs) {
+			n += count;
+		}
+		if (n == 0) {
+			return new double[] { Double.NaN, Double.NaN };
+		}
+
+		double mean = getMean(pairs);
+		double error = 1.959964 * Math.sqrt(getVariance(pairs, mean) / n);
+		double elo = toElo(mean);
+		double margin = (toElo(Math.min(mean + error, 0.9999)) - toElo(Math.max(mean - error, 0.0001))) / 2;
+		return new double[] { elo, margin };
+	}
+
+	/**
+	 * Converts an Elo difference to the expected score.
+	 *
+	 * @param elo the Elo difference
+	 * @return the expected score, between 0 and 1
+	 */
+	public static double getScore(double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+
+	/**
+	 * Converts a score to an Elo difference.
+	 *
+	 * @param score the score, between 0 and 1
+	 * @return the Elo difference
+	 */
+	public static double toElo(double score) {
+		double s = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+		return -400 * Math.log10(1 / s - 1);
+	}
+
+	/**
+	 * Computes the average score per game of the first engine.
+	 *
+	 * @param pairs the counts of the pair results
+	 * @return the average score, between 0 and 1
+	 */
+	private static double getMean(int[] pairs) {
+		int n = 0;
+		double sum = 0;
+		for (int i = 0; i < pairs.length; i++) {
+			n += pairs[i];
+			sum += pairs[i] * i / 4.0;
+		}
+		return (n == 0) ? 0.5 : sum / n;
+	}
+
+	/**
+	 * Computes the variance of the pair scores.
+	 *
+	 * @param pairs the counts of the pair results
+	 * @param mean  the average score
+	 * @return the variance
+	 */
+	private static double getVariance(int[] pairs, double mean) {
+		int n = 0;
+		double sum = 0;
+		for (int i = 0; i < pairs.length; i++) {
+			double d = i / 4.0 - mean;
+			n += pairs[i];
+			sum += pairs[i] * d * d;
+		}
+		return (n == 0) ? 0 : sum / n;
+	}
+}
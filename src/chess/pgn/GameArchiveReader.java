@@ -0,0 +1,195 @@
+package chess.pgn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import chess.board.Position;
+
+/**
+ * A class which reads the games of an archive written by
+ * {@link GameArchiveWriter}, one block at a time.
+ *
+ * @author kennangumbs
+ *
+ */
+public class GameArchiveReader implements GameSource {
+
+	private final DataInputStream in;
+	private final Inflater inflater;
+	private byte[] raw;
+	private byte[] stored;
+	private ByteBuffer block;
+	private int games;
+
+	/**
+	 * Constructs a GameArchiveReader object which reads from a file.
+	 *
+	 * @param path the path of the archive
+	 * @throws IOException if the file cannot be opened or is not an archive
+	 */
+	public GameArchiveReader(Path path) throws IOException {
+		this(new BufferedInputStream(Files.newInputStream(path)));
+	}
+
+	/**
+	 * Constructs a GameArchiveReader object which reads from a stream.
+	 *
+	 * @param in the stream to read from, which is closed with the reader
+	 * @throws IOException if the stream cannot be read or is not an archive
+	 */
+	public GameArchiveReader(InputStream in) throws IOException {
+		this.in = new DataInputStream(in);
+		inflater = new Inflater();
+		raw = new byte[0];
+		stored = new byte[0];
+
+		byte[] magic = new byte[GameArchiveWriter.MAGIC.length];
+		this.in.readFully(magic);
+		if (!Arrays.equals(magic, GameArchiveWriter.MAGIC)) {
+			throw new IOException("Not a game archive");
+		}
+	}
+
+	@Override
+	public PgnGame next() throws IOException {
+		return nextBlock() ? GameCodec.decode(block) : null;
+	}
+
+	/**
+	 * Plays through the next game without writing the notation of its moves,
+	 * which is much faster than reading it.
+	 *
+	 * @param visitor called with the position after every move, null for none.
+	 *                The same position object is passed every time and is
+	 *                changed by the next move.
+	 * @return the game without its moves, or null if the end of the archive has
+	 *         been reached
+	 * @throws IOException if the archive cannot be read
+	 */
+	public PgnGame next(Consumer<Position> visitor) throws IOException {
+		return nextBlock() ? GameCodec.replay(block, visitor) : null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		in.close();
+	}
+
+	/**
+	 * Makes sure that the current block has a game left, reading the next block
+	 * if it does not.
+	 *
+	 * @return true if there is a game, false at the end of the archive
+	 * @throws IOException if the next block cannot be read
+	 */
+	private boolean nextBlock() throws IOException {
+		while (games == 0) {
+			int flags = in.read();
+			if (flags == -1) {
+				return false;
+			}
+			games = readVarint();
+			int size = readVarint();
+			int length = readVarint();
+
+			if (raw.length < size) {
+				raw = new byte[size];
+			}
+			if ((flags & GameArchiveWriter.COMPRESSED) == 0) {
+				in.readFully(raw, 0, size);
+			} else {
+				if (stored.length < length) {
+					stored = new byte[length];
+				}
+				in.readFully(stored, 0, length);
+				inflater.reset();
+				inflater.setInput(stored, 0, length);
+				try {
+					if (inflater.inflate(raw, 0, size) != size) {
+						throw new IOException("Truncated block");
+					}
+				} catch (DataFormatException e) {
+					throw new IOException(e);
+				}
+			}
+			block = ByteBuffer.wrap(raw, 0, size);
+		}
+		games--;
+		return true;
+	}
+
+	/**
+	 * Reads a varint from the stream.
+	 *
+	 * @return the number
+	 * @throws IOException if the stream ends in the middle of the number
+	 */
+	private int readVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.read();
+			if (b == -1) {
+				throw new EOFException();
+			}
+			value |= (b & 0x7F) << shift;
+			if (b < 0x80) {
+				return value;
+			}
+		}
+		throw new IOException("Varint too long");
+	}
+
+	/**
+	 * Converts an archive back into PGN from the command line, or only replays
+	 * it to measure how fast it can be read.
+	 *
+	 * @param args the archive, and optionally the PGN file to write, or "-" for
+	 *             standard output
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: GameArchiveReader <input.bin> [output.pgn|-]");
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		int count = 0;
+		long[] positions = new long[1];
+		try (GameArchiveReader reader = new GameArchiveReader(Paths.get(args[0]))) {
+			if (args.length > 1) {
+				BufferedWriter out = new BufferedWriter(args[1].equals("-") ? new OutputStreamWriter(System.out)
+						: Files.newBufferedWriter(Paths.get(args[1])));
+				try (PgnWriter writer = new PgnWriter(out)) {
+					PgnGame game;
+					while ((game = reader.next()) != null) {
+						writer.write(game);
+						count++;
+					}
+				}
+			} else {
+				while (reader.next(pos -> positions[0]++) != null) {
+					count++;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+			return;
+		}
+		System.err.println("Read " + count + " games (" + positions[0] + " positions) in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+}
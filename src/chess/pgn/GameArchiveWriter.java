@@ -0,0 +1,179 @@
+package chess.pgn;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.Deflater;
+
+/**
+ * A class which writes games to an archive of games encoded by
+ * {@link GameCodec}. The archive starts with the 4 bytes "CHGA" and a version
+ * byte, and the games follow in blocks of about 64 KB, so that the reader
+ * never has to hold more than one block. Each block is laid out as a flags
+ * byte (bit 0 is set if the block is compressed), varints holding the amount
+ * of games, the size of the games and the size of the stored data, and then
+ * the stored data.
+ *
+ * The move indices of a game are far from random, since the first moves of
+ * the ordered move list are played much more often than the last ones, so the
+ * blocks can be compressed with Deflate, which roughly halves their size
+ * again.
+ *
+ * @author kennangumbs
+ *
+ */
+public class GameArchiveWriter implements Closeable {
+
+	/**
+	 * The bytes an archive starts with.
+	 */
+	static final byte[] MAGIC = { 'C', 'H', 'G', 'A', 1 };
+
+	/**
+	 * The flag of a compressed block.
+	 */
+	static final int COMPRESSED = 1;
+
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	private final OutputStream out;
+	private final boolean compress;
+	private final ByteArrayOutputStream block;
+	private final Deflater deflater;
+	private byte[] stored;
+	private int games;
+
+	/**
+	 * Constructs a GameArchiveWriter object and writes the start of the archive.
+	 *
+	 * @param out      the stream to write to, which is closed with this writer
+	 * @param compress true to compress the blocks, false to store them as they are
+	 * @throws IOException if the start of the archive cannot be written
+	 */
+	public GameArchiveWriter(OutputStream out, boolean compress) throws IOException {
+		this.out = out;
+		this.compress = compress;
+		block = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+		deflater = new Deflater();
+		stored = new byte[BLOCK_SIZE];
+		out.write(MAGIC);
+	}
+
+	/**
+	 * Writes a game.
+	 *
+	 * @param game the game
+	 * @throws IOException              if the block of the game cannot be written
+	 * @throws IllegalArgumentException if a move of the game is not valid
+	 */
+	public void write(PgnGame game) throws IOException {
+		byte[] data = GameCodec.encode(game);
+		block.write(data, 0, data.length);
+		games++;
+		if (block.size() >= BLOCK_SIZE) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Writes the games which are not written yet as a block, and flushes the
+	 * underlying stream.
+	 *
+	 * @throws IOException if the block cannot be written
+	 */
+	public void flush() throws IOException {
+		writeBlock();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			deflater.end();
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the current block, if it holds any games.
+	 *
+	 * @throws IOException if the block cannot be written
+	 */
+	private void writeBlock() throws IOException {
+		if (games == 0) {
+			return;
+		}
+		byte[] raw = block.toByteArray();
+		int length = raw.length;
+		byte[] data = raw;
+		int flags = 0;
+		if (compress) {
+			deflater.reset();
+			deflater.setInput(raw);
+			deflater.finish();
+			if (stored.length < raw.length + 64) {
+				stored = new byte[raw.length + 64];
+			}
+			int size = deflater.deflate(stored);
+			if (deflater.finished() && size < raw.length) {
+				data = stored;
+				length = size;
+				flags = COMPRESSED;
+			}
+		}
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream(16);
+		header.write(flags);
+		GameCodec.writeVarint(header, games);
+		GameCodec.writeVarint(header, raw.length);
+		GameCodec.writeVarint(header, length);
+		header.writeTo(out);
+		out.write(data, 0, length);
+
+		block.reset();
+		games = 0;
+	}
+
+	/**
+	 * Converts a PGN file into an archive from the command line.
+	 *
+	 * @param args the PGN file, the archive, and optionally "raw" to not compress
+	 *             the archive
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: GameArchiveWriter <input.pgn> <output.bin> [raw]");
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		int count = 0;
+		int skipped = 0;
+		boolean compress = args.length < 3 || !args[2].equals("raw");
+		try (PgnReader reader = new PgnReader(Paths.get(args[0]));
+				GameArchiveWriter writer = new GameArchiveWriter(
+						new BufferedOutputStream(Files.newOutputStream(Paths.get(args[1]))), compress)) {
+			PgnGame game;
+			while ((game = reader.next()) != null) {
+				try {
+					writer.write(game);
+					count++;
+				} catch (IllegalArgumentException e) {
+					System.err.println(e.getMessage());
+					skipped++;
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		System.out.println("Wrote " + count + " games (" + skipped + " skipped) to " + args[1] + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -0,0 +1,429 @@
+package chess.pgn;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import chess.board.Bitboards;
+import chess.board.ChessBoard;
+import chess.board.Fen;
+import chess.board.Move;
+import chess.board.Position;
+import chess.board.PositionCodec;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which encodes games in a compact binary format. Every move is stored
+ * as its index in the ordered list of valid moves of the position it is played
+ * in, which always fits into one byte, since no position has more than 218
+ * valid moves. The moves are ordered by the square they come from, then the
+ * square they go to, and then the piece a pawn is promoted to, queen first. A
+ * game is laid out as follows:
+ *
+ * <ul>
+ * <li>a varint holding the amount of tags, followed by the name and value of
+ * each tag, each a varint length and that many bytes of UTF-8. The Result and
+ * FEN tags are not among them.</li>
+ * <li>1 byte: bits 0 and 1 hold the result (*, 1-0, 0-1 or 1/2-1/2), and bit 2
+ * is set if the game does not start from the starting position</li>
+ * <li>{@value PositionCodec#SIZE} bytes: the starting position, encoded by
+ * {@link PositionCodec}, only if bit 2 is set</li>
+ * <li>a varint holding the amount of moves, followed by one byte per move</li>
+ * </ul>
+ *
+ * A game takes about one byte per move and a few dozen bytes for its tags,
+ * several times less than in PGN. Decoding a move only takes generating the
+ * valid moves of one position with the attack bitboards, and the notation of
+ * the moves is only written if a {@link PgnGame} is asked for.
+ *
+ * @author kennangumbs
+ *
+ */
+public final class GameCodec {
+
+	private static final String[] RESULTS = { PgnGame.UNKNOWN_RESULT, "1-0", "0-1", "1/2-1/2" };
+	private static final int SET_UP = 1 << 2;
+
+	// The index of each promotion in the order of the moves.
+	private static final PieceType[] PROMOTIONS = { PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP,
+			PieceType.KNIGHT };
+	private static final PieceType[] PIECES = { PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN,
+			PieceType.KING };
+
+	// No position has more valid moves.
+	private static final int MAX_MOVES = 256;
+
+	/**
+	 * A private constructor to prevent instantiation.
+	 */
+	private GameCodec() {
+	}
+
+	/**
+	 * Encodes a game.
+	 *
+	 * @param game the game
+	 * @return the encoded game
+	 * @throws IllegalArgumentException if a move of the game is not valid
+	 */
+	public static byte[] encode(PgnGame game) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64 + game.getMoves().size());
+
+		Map<String, String> tags = game.getTags();
+		int count = 0;
+		for (String name : tags.keySet()) {
+			count += isImplied(name) ? 0 : 1;
+		}
+		writeVarint(out, count);
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			if (!isImplied(tag.getKey())) {
+				writeString(out, tag.getKey());
+				writeString(out, tag.getValue());
+			}
+		}
+
+		Position pos = game.getStartPosition();
+		boolean setUp = tags.containsKey("FEN");
+		out.write(Math.max(0, Arrays.asList(RESULTS).indexOf(game.getResult())) | (setUp ? SET_UP : 0));
+		if (setUp) {
+			out.write(PositionCodec.encode(pos), 0, PositionCodec.SIZE);
+		}
+
+		int[] codes = new int[MAX_MOVES];
+		writeVarint(out, game.getMoves().size());
+		for (String san : game.getMoves()) {
+			Move m = San.parse(pos, san);
+			if (m == null) {
+				throw new IllegalArgumentException("Invalid move " + san + " in " + game);
+			}
+			PieceType promotion = San.getPromotion(san);
+			ChessBoard cb = pos.getBoard();
+			int code = (m.getFrom().getIndex() << 6 | m.getTo().getIndex()) << 2;
+			if (promotion != null && isPromotion(cb, code)) {
+				code += Arrays.asList(PROMOTIONS).indexOf(promotion);
+			}
+
+			// The index is the amount of valid moves which come before the move.
+			int size = getMoves(cb, pos.getSideToMove(), codes);
+			int index = 0;
+			boolean found = false;
+			for (int i = 0; i < size; i++) {
+				index += (codes[i] < code) ? 1 : 0;
+				found |= codes[i] == code;
+			}
+			if (!found) {
+				throw new IllegalArgumentException("Unencodable move " + san + " in " + game);
+			}
+			out.write(index);
+			pos.play(m, promotion);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes a game at the current position of a buffer, which is then advanced
+	 * past it.
+	 *
+	 * @param in the buffer to read from
+	 * @return the game, with its moves in Standard Algebraic Notation
+	 * @throws IllegalArgumentException if the data is not a valid game
+	 */
+	public static PgnGame decode(ByteBuffer in) {
+		PgnGame game = new PgnGame();
+		Position pos = readHeader(in, game);
+		int[] codes = new int[MAX_MOVES];
+		int moves = readVarint(in);
+		for (int i = 0; i < moves; i++) {
+			ChessBoard cb = pos.getBoard();
+			PieceColor pc = pos.getSideToMove();
+			int code = readMove(in, cb, pc, codes);
+			Move m = toMove(cb, pc, code);
+			PieceType promotion = isPromotion(cb, code) ? PROMOTIONS[code & 3] : null;
+			game.addMove(San.toSan(cb, pc, m, promotion));
+			pos.play(m, promotion);
+		}
+		return game;
+	}
+
+	/**
+	 * Plays through a game at the current position of a buffer, which is then
+	 * advanced past it, without writing the notation of its moves.
+	 *
+	 * @param in      the buffer to read from
+	 * @param visitor called with the position after every move, null for none.
+	 *                The same position object is passed every time and is
+	 *                changed by the next move.
+	 * @return the game without its moves
+	 * @throws IllegalArgumentException if the data is not a valid game
+	 */
+	public static PgnGame replay(ByteBuffer in, Consumer<Position> visitor) {
+		PgnGame game = new PgnGame();
+		Position pos = readHeader(in, game);
+		int[] codes = new int[MAX_MOVES];
+		int moves = readVarint(in);
+		for (int i = 0; i < moves; i++) {
+			ChessBoard cb = pos.getBoard();
+			PieceColor pc = pos.getSideToMove();
+			int code = readMove(in, cb, pc, codes);
+			pos.play(toMove(cb, pc, code), isPromotion(cb, code) ? PROMOTIONS[code & 3] : null);
+			if (visitor != null) {
+				visitor.accept(pos);
+			}
+		}
+		return game;
+	}
+
+	/**
+	 * Reads the tags, the result and the starting position of a game.
+	 *
+	 * @param in   the buffer to read from
+	 * @param game the game to add the tags and the result to
+	 * @return the starting position
+	 */
+	private static Position readHeader(ByteBuffer in, PgnGame game) {
+		int count = readVarint(in);
+		for (int i = 0; i < count; i++) {
+			game.setTag(readString(in), readString(in));
+		}
+		int flags = in.get();
+		game.setResult(RESULTS[flags & 3]);
+		if ((flags & SET_UP) == 0) {
+			return Fen.parse(Fen.START);
+		}
+		Position pos = PositionCodec.decode(in);
+		game.setTag("FEN", Fen.toFen(pos));
+		return pos;
+	}
+
+	/**
+	 * Reads the index of a move and turns it into the code of the move.
+	 *
+	 * @param in    the buffer to read from
+	 * @param cb    the chess board
+	 * @param pc    the color of the player to move
+	 * @param codes an array to generate the moves into
+	 * @return the code of the move
+	 */
+	private static int readMove(ByteBuffer in, ChessBoard cb, PieceColor pc, int[] codes) {
+		int index = in.get() & 0xFF;
+		int size = getMoves(cb, pc, codes);
+		if (index >= size) {
+			throw new IllegalArgumentException("Invalid move index " + index + " of " + size);
+		}
+		Arrays.sort(codes, 0, size);
+		return codes[index];
+	}
+
+	/**
+	 * Generates the codes of the valid moves of a player, in no particular order.
+	 * The code of a move holds the index of the square it comes from, the index
+	 * of the square it goes to, and the index of the piece a pawn is promoted to
+	 * in {@link #PROMOTIONS}, so that sorting the codes sorts the moves.
+	 *
+	 * The moves are generated with the attack bitboards and checked with
+	 * {@link San#isLegal}, which is much faster than asking every piece for its
+	 * valid moves; only en passant captures, which are rare, do that.
+	 *
+	 * @param cb    the chess board
+	 * @param pc    the color of the player to move
+	 * @param codes the array to write the codes to
+	 * @return the amount of moves
+	 */
+	private static int getMoves(ChessBoard cb, PieceColor pc, int[] codes) {
+		int size = 0;
+		long occ = cb.getOccupancy();
+		long own = cb.getOccupancy(pc);
+		long enemies = cb.getOccupancy(pc.flip());
+
+		// Unless the king is in check, only the king and the pieces on a line with
+		// it can make an illegal move, so only those moves need to be checked.
+		long kingBits = cb.getPieces(PieceType.KING, pc);
+		long checked = -1L;
+		if (kingBits != 0) {
+			int king = Long.numberOfTrailingZeros(kingBits);
+			checked = kingBits;
+			if (San.isLegal(cb, pc, king, king)) {
+				checked |= Bitboards.getBishopAttacks(king, 0) | Bitboards.getRookAttacks(king, 0);
+			} else {
+				checked = -1L;
+			}
+		}
+
+		for (PieceType pt : PIECES) {
+			for (long pieces = cb.getPieces(pt, pc); pieces != 0; pieces &= pieces - 1) {
+				int from = Long.numberOfTrailingZeros(pieces);
+				long targets = Bitboards.getAttacks(pt, pc, from, occ) & ~own;
+				for (; targets != 0; targets &= targets - 1) {
+					int to = Long.numberOfTrailingZeros(targets);
+					if ((checked & (1L << from)) == 0 || San.isLegal(cb, pc, from, to)) {
+						codes[size++] = (from << 6 | to) << 2;
+					}
+				}
+			}
+		}
+
+		int dir = (pc == PieceColor.WHITE) ? 8 : -8;
+		int startRank = (pc == PieceColor.WHITE) ? 1 : 6;
+		long pawns = cb.getPieces(PieceType.PAWN, pc);
+		for (long p = pawns; p != 0; p &= p - 1) {
+			int from = Long.numberOfTrailingZeros(p);
+			long targets = Bitboards.getPawnAttacks(pc, from) & enemies;
+			int to = from + dir;
+			if ((occ & (1L << to)) == 0) {
+				targets |= 1L << to;
+				if (from / 8 == startRank && (occ & (1L << (to + dir))) == 0) {
+					targets |= 1L << (to + dir);
+				}
+			}
+			for (; targets != 0; targets &= targets - 1) {
+				to = Long.numberOfTrailingZeros(targets);
+				if ((checked & (1L << from)) == 0 || San.isLegal(cb, pc, from, to)) {
+					int code = (from << 6 | to) << 2;
+					codes[size++] = code;
+					if (to / 8 == 0 || to / 8 == 7) {
+						for (int i = 1; i < PROMOTIONS.length; i++) {
+							codes[size++] = code + i;
+						}
+					}
+				}
+			}
+		}
+
+		int file = cb.getEnPassantFile(pc.flip());
+		if (file >= 0) {
+			int target = ((pc == PieceColor.WHITE) ? 5 : 2) * 8 + file;
+			for (long p = Bitboards.getPawnAttacks(pc.flip(), target) & pawns; p != 0; p &= p - 1) {
+				int from = Long.numberOfTrailingZeros(p);
+				for (Move m : cb.getPiece(from % 8, from / 8).getValidMoves(cb)) {
+					if (m.getTo().getIndex() == target) {
+						codes[size++] = (from << 6 | target) << 2;
+					}
+				}
+			}
+		}
+
+		// A king may not castle out of, through or into check.
+		int king = (pc == PieceColor.WHITE) ? 4 : 60;
+		for (int side = -1; side <= 1; side += 2) {
+			long between = (side > 0) ? 0x60L << (king - 4) : 0xEL << (king - 4);
+			if (cb.hasCastlingRight(pc, side > 0) && (occ & between) == 0 && San.isLegal(cb, pc, king, king)
+					&& San.isLegal(cb, pc, king, king + side) && San.isLegal(cb, pc, king, king + 2 * side)) {
+				codes[size++] = (king << 6 | king + 2 * side) << 2;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Creates the move with a given code.
+	 *
+	 * @param cb   the chess board
+	 * @param pc   the color of the player to move
+	 * @param code the code of a valid move, see {@link #getMoves}
+	 * @return the move
+	 */
+	private static Move toMove(ChessBoard cb, PieceColor pc, int code) {
+		int from = code >>> 8;
+		int to = (code >>> 2) & 63;
+		PieceType pt = cb.getPiece(from % 8, from / 8).getPieceType();
+		if (pt == PieceType.KING && Math.abs(to - from) == 2) {
+			return San.getCastle(cb, pc, to < from);
+		}
+		if (pt == PieceType.PAWN && Math.abs(to - from) == 16) {
+			return new San.DoublePush(from, to);
+		}
+		if (pt == PieceType.PAWN && (from - to) % 8 != 0 && (cb.getOccupancy() & (1L << to)) == 0) {
+			for (Move m : cb.getPiece(from % 8, from / 8).getValidMoves(cb)) {
+				if (m.getTo().getIndex() == to) {
+					return m;
+				}
+			}
+		}
+		return new Move(San.toSquare(from), San.toSquare(to));
+	}
+
+	/**
+	 * Checks whether a move promotes a pawn.
+	 *
+	 * @param cb   the chess board before the move
+	 * @param code the code of the move
+	 * @return true if the move promotes a pawn, false otherwise.
+	 */
+	private static boolean isPromotion(ChessBoard cb, int code) {
+		int from = code >>> 8;
+		int y = (code >>> 5) & 7;
+		return (y == 0 || y == 7) && cb.getPiece(from % 8, from / 8).getPieceType() == PieceType.PAWN;
+	}
+
+	/**
+	 * Checks whether a tag is stored in the header instead of with the other
+	 * tags.
+	 *
+	 * @param name the name of the tag
+	 * @return true if the tag is the Result or FEN tag, false otherwise.
+	 */
+	private static boolean isImplied(String name) {
+		return name.equals("Result") || name.equals("FEN");
+	}
+
+	/**
+	 * Writes an unsigned number in as many bytes as it needs, 7 bits per byte,
+	 * lowest bits first. The highest bit of a byte is set if another one follows.
+	 *
+	 * @param out   the stream to write to
+	 * @param value the number, not negative
+	 */
+	static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Reads a number written by {@link #writeVarint}.
+	 *
+	 * @param in the buffer to read from
+	 * @return the number
+	 */
+	static int readVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Varint too long");
+	}
+
+	/**
+	 * Writes a string as its length in bytes followed by its bytes in UTF-8.
+	 *
+	 * @param out the stream to write to
+	 * @param s   the string
+	 */
+	private static void writeString(ByteArrayOutputStream out, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarint(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString}.
+	 *
+	 * @param in the buffer to read from
+	 * @return the string
+	 */
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[readVarint(in)];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,38 @@
+package chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * An interface for anything which reads the games of a corpus one at a time,
+ * whatever its format.
+ *
+ * @author kennangumbs
+ *
+ */
+public interface GameSource extends Closeable {
+
+	/**
+	 * Reads the next game.
+	 *
+	 * @return the game, or null if the end of the corpus has been reached
+	 * @throws IOException if the corpus cannot be read
+	 */
+	PgnGame next() throws IOException;
+
+	/**
+	 * Opens a file of games.
+	 *
+	 * @param path a PGN file, or a {@link GameArchiveReader game archive} if the
+	 *             name ends with ".bin"
+	 * @return the source of the games of the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	static GameSource open(Path path) throws IOException {
+		if (path.toString().endsWith(".bin")) {
+			return new GameArchiveReader(path);
+		}
+		return new PgnReader(path);
+	}
+}
@@ -0,0 +1,149 @@
+package chess.pgn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import chess.board.Fen;
+import chess.board.Move;
+import chess.board.Position;
+
+/**
+ * A class which represents a game in Portable Game Notation: its tag pairs,
+ * its moves in Standard Algebraic Notation and its result. The moves are only
+ * resolved on a board when the game is replayed, so reading a game is cheap.
+ *
+ * @author kennangumbs
+ *
+ * @see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm
+ */
+public class PgnGame {
+
+	/**
+	 * The result of a game which is still going on or whose result is unknown.
+	 */
+	public static final String UNKNOWN_RESULT = "*";
+
+	private final Map<String, String> tags;
+	private final List<String> moves;
+	private String result;
+
+	/**
+	 * Constructs an empty PgnGame object.
+	 */
+	public PgnGame() {
+		tags = new LinkedHashMap<String, String>();
+		moves = new ArrayList<String>();
+		result = UNKNOWN_RESULT;
+	}
+
+	/**
+	 * Returns the value of a tag.
+	 *
+	 * @param name the name of the tag
+	 * @return the value of the tag, or null if the game does not have it
+	 */
+	public String getTag(String name) {
+		return tags.get(name);
+	}
+
+	/**
+	 * Sets the value of a tag.
+	 *
+	 * @param name  the name of the tag
+	 * @param value the new value of the tag
+	 */
+	public void setTag(String name, String value) {
+		tags.put(name, value);
+	}
+
+	/**
+	 * A getter for the tags, in the order they were set.
+	 *
+	 * @return an unmodifiable view of the tags
+	 */
+	public Map<String, String> getTags() {
+		return Collections.unmodifiableMap(tags);
+	}
+
+	/**
+	 * Adds a move to the end of the game.
+	 *
+	 * @param san the move in Standard Algebraic Notation
+	 */
+	public void addMove(String san) {
+		moves.add(san);
+	}
+
+	/**
+	 * A getter for the moves.
+	 *
+	 * @return an unmodifiable view of the moves in Standard Algebraic Notation
+	 */
+	public List<String> getMoves() {
+		return Collections.unmodifiableList(moves);
+	}
+
+	/**
+	 * A getter for the result.
+	 *
+	 * @return "1-0", "0-1", "1/2-1/2" or {@value #UNKNOWN_RESULT}
+	 */
+	public String getResult() {
+		return result;
+	}
+
+	/**
+	 * A setter for the result. The Result tag is updated as well.
+	 *
+	 * @param result the new result
+	 */
+	public void setResult(String result) {
+		this.result = result;
+		tags.put("Result", result);
+	}
+
+	/**
+	 * Returns the position the game starts from, which is given by the FEN tag
+	 * or else the starting position.
+	 *
+	 * @return a new copy of the starting position
+	 */
+	public Position getStartPosition() {
+		String fen = tags.get("FEN");
+		return Fen.parse(fen == null ? Fen.START : fen);
+	}
+
+	/**
+	 * Plays through the moves of the game.
+	 *
+	 * @param visitor called with the position after every move, null for none.
+	 *                The same position object is passed every time and is
+	 *                changed by the next move.
+	 * @return the position at the end of the game
+	 * @throws IllegalArgumentException if a move is not valid
+	 */
+	public Position replay(Consumer<Position> visitor) {
+		Position pos = getStartPosition();
+		for (int i = 0; i < moves.size(); i++) {
+			String san = moves.get(i);
+			Move m = San.parse(pos, san);
+			if (m == null) {
+				throw new IllegalArgumentException("Invalid move " + (i / 2 + 1) + ". " + san + " in " + this);
+			}
+			pos.play(m, San.getPromotion(san));
+			if (visitor != null) {
+				visitor.accept(pos);
+			}
+		}
+		return pos;
+	}
+
+	@Override
+	public String toString() {
+		return tags.getOrDefault("White", "?") + " - " + tags.getOrDefault("Black", "?") + " " + result;
+	}
+}
@@ -0,0 +1,288 @@
+package chess.pgn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A class which reads the games of a PGN file one at a time. The file is read
+ * through a fixed-size buffer, so the memory used does not depend on the size
+ * of the file, only on the size of the largest game.
+ *
+ * Comments, variations, numeric annotation glyphs and move numbers are
+ * skipped; only the tags, the moves of the main line and the result are kept.
+ *
+ * @author kennangumbs
+ *
+ * @see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm
+ */
+public class PgnReader implements GameSource {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final ReadableByteChannel ch;
+	private final ByteBuffer buffer;
+	private final StringBuilder token;
+	private byte[] bytes;
+
+	private int pushback;
+	private boolean atLineStart;
+
+	/**
+	 * Constructs a PgnReader object which reads from a file.
+	 *
+	 * @param path the path of the PGN file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public PgnReader(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	/**
+	 * Constructs a PgnReader object which reads from a channel.
+	 *
+	 * @param ch the channel to read from, which is closed with the reader
+	 */
+	public PgnReader(ReadableByteChannel ch) {
+		this.ch = ch;
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.flip();
+		token = new StringBuilder();
+		bytes = new byte[256];
+		pushback = -1;
+		atLineStart = true;
+	}
+
+	@Override
+	public PgnGame next() throws IOException {
+		PgnGame game = null;
+		int depth = 0;
+		boolean inMoves = false;
+
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '%' && atLineStart) {
+				skipLine();
+				continue;
+			}
+			atLineStart = c == '\n';
+			if (c <= ' ') {
+				continue;
+			}
+			if (game == null) {
+				game = new PgnGame();
+			}
+
+			switch (c) {
+			case '[':
+				if (inMoves) {
+					// A new game started without a result.
+					pushback = c;
+					return game;
+				}
+				readTag(game);
+				break;
+			case '{':
+				skipUntil('}');
+				break;
+			case ';':
+				skipLine();
+				break;
+			case '(':
+				depth++;
+				break;
+			case ')':
+				depth = Math.max(0, depth - 1);
+				break;
+			default:
+				inMoves = true;
+				readSymbol(c);
+				if (depth > 0 || token.charAt(0) == '$') {
+					break;
+				}
+				if (isResult()) {
+					game.setResult(token.toString());
+					return game;
+				}
+				addMove(game);
+			}
+		}
+		return game;
+	}
+
+	@Override
+	public void close() throws IOException {
+		ch.close();
+	}
+
+	/**
+	 * Reads a tag pair, after its opening bracket.
+	 *
+	 * @param game the game to add the tag to
+	 * @throws IOException if the file cannot be read
+	 */
+	private void readTag(PgnGame game) throws IOException {
+		int c = read();
+		while (c == ' ' || c == '\t') {
+			c = read();
+		}
+		token.setLength(0);
+		while (c > ' ' && c != '"' && c != ']') {
+			token.append((char) c);
+			c = read();
+		}
+		String name = token.toString();
+
+		while (c != '"' && c != ']' && c != -1) {
+			c = read();
+		}
+		if (c == '"') {
+			// Tag values may hold any characters, so they are collected as bytes and
+			// decoded as UTF-8, which ASCII is a part of.
+			int length = 0;
+			while ((c = read()) != '"' && c != -1) {
+				if (c == '\\') {
+					c = read();
+				}
+				if (length == bytes.length) {
+					bytes = Arrays.copyOf(bytes, 2 * length);
+				}
+				bytes[length++] = (byte) c;
+			}
+			game.setTag(name, new String(bytes, 0, length, StandardCharsets.UTF_8));
+			skipUntil(']');
+		}
+		if (name.equals("Result")) {
+			game.setResult(game.getTag(name));
+		}
+	}
+
+	/**
+	 * Reads a symbol, such as a move, a move number or a result, into the token
+	 * buffer.
+	 *
+	 * @param first the first character of the symbol
+	 * @throws IOException if the file cannot be read
+	 */
+	private void readSymbol(int first) throws IOException {
+		token.setLength(0);
+		token.append((char) first);
+		int c;
+		while ((c = read()) != -1) {
+			if (c <= ' ' || c == '{' || c == '}' || c == '(' || c == ')' || c == '[' || c == ';' || c == '$') {
+				pushback = c;
+				break;
+			}
+			token.append((char) c);
+		}
+	}
+
+	/**
+	 * Adds the move in the token buffer to a game, leaving out a move number in
+	 * front of it, as in "1.e4", and annotations such as "!?" after it.
+	 *
+	 * @param game the game
+	 */
+	private void addMove(PgnGame game) {
+		int start = 0;
+		int end = token.length();
+		while (start < end && Character.isDigit(token.charAt(start))) {
+			start++;
+		}
+		if (start > 0) {
+			// Without a dot, digits are not a move number.
+			if (start == end || token.charAt(start) != '.') {
+				return;
+			}
+			while (start < end && token.charAt(start) == '.') {
+				start++;
+			}
+		}
+		while (end > start && (token.charAt(end - 1) == '!' || token.charAt(end - 1) == '?')) {
+			end--;
+		}
+		if (start < end) {
+			game.addMove(token.substring(start, end));
+		}
+	}
+
+	/**
+	 * Checks whether the symbol in the token buffer is a game result.
+	 *
+	 * @return true if the symbol is a result, false otherwise.
+	 */
+	private boolean isResult() {
+		return isToken("1-0") || isToken("0-1") || isToken("1/2-1/2") || isToken(PgnGame.UNKNOWN_RESULT);
+	}
+
+	/**
+	 * Compares the token buffer with a string, without copying the buffer.
+	 *
+	 * @param s the string
+	 * @return true if the token buffer holds the string, false otherwise.
+	 */
+	private boolean isToken(String s) {
+		if (token.length() != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (token.charAt(i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Skips characters up to and including a given character.
+	 *
+	 * @param end the character to stop at
+	 * @throws IOException if the file cannot be read
+	 */
+	private void skipUntil(char end) throws IOException {
+		int c;
+		while ((c = read()) != end && c != -1) {
+		}
+	}
+
+	/**
+	 * Skips the rest of a line.
+	 *
+	 * @throws IOException if the file cannot be read
+	 */
+	private void skipLine() throws IOException {
+		skipUntil('\n');
+		atLineStart = true;
+	}
+
+	/**
+	 * Reads a byte, refilling the buffer when it is empty.
+	 *
+	 * @return the byte, or -1 at the end of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private int read() throws IOException {
+		if (pushback != -1) {
+			int c = pushback;
+			pushback = -1;
+			return c;
+		}
+		if (!buffer.hasRemaining()) {
+			buffer.clear();
+			int n;
+			do {
+				n = ch.read(buffer);
+			} while (n == 0);
+			buffer.flip();
+			if (n < 0) {
+				return -1;
+			}
+		}
+		return buffer.get() & 0xFF;
+	}
+}
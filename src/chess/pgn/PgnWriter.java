@@ -0,0 +1,152 @@
+package chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import chess.board.Position;
+import chess.piece.PieceColor;
+
+/**
+ * A class which writes games in Portable Game Notation. The tags of the Seven
+ * Tag Roster are always written first, in their standard order, and the
+ * movetext is wrapped so that no line is longer than 80 characters.
+ *
+ * @author kennangumbs
+ *
+ * @see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm
+ */
+public class PgnWriter implements Closeable {
+
+	/**
+	 * The name of the system property which holds the path of the file the games
+	 * played in the GUI are added to.
+	 */
+	public static final String PROPERTY = "chess.pgn";
+
+	private static final String[] ROSTER = { "Event", "Site", "Date", "Round", "White", "Black", "Result" };
+	private static final int LINE_LENGTH = 80;
+
+	private final Writer out;
+
+	/**
+	 * Constructs a PgnWriter object.
+	 *
+	 * @param out the writer to write the games to, which is closed with this
+	 *            writer
+	 */
+	public PgnWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes a game, followed by an empty line.
+	 *
+	 * @param game the game
+	 * @throws IOException if the game cannot be written
+	 */
+	public void write(PgnGame game) throws IOException {
+		Map<String, String> tags = game.getTags();
+		for (String name : ROSTER) {
+			String value = tags.get(name);
+			if (value == null) {
+				value = name.equals("Date") ? "????.??.??" : name.equals("Result") ? game.getResult() : "?";
+			}
+			writeTag(name, value);
+		}
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			if (!isRoster(tag.getKey())) {
+				writeTag(tag.getKey(), tag.getValue());
+			}
+		}
+		out.write('\n');
+
+		Position start = game.getStartPosition();
+		int number = start.getFullmoveNumber();
+		boolean white = start.getSideToMove() == PieceColor.WHITE;
+
+		StringBuilder line = new StringBuilder(LINE_LENGTH);
+		boolean first = true;
+		for (String san : game.getMoves()) {
+			if (white) {
+				append(line, number + ".");
+			} else if (first) {
+				append(line, number + "...");
+			}
+			append(line, san);
+			if (!white) {
+				number++;
+			}
+			white = !white;
+			first = false;
+		}
+		append(line, game.getResult());
+		out.write(line.toString());
+		out.write("\n\n");
+	}
+
+	/**
+	 * Flushes the underlying writer.
+	 *
+	 * @throws IOException if the writer cannot be flushed
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Appends a symbol to the current line of movetext, starting a new line first
+	 * if the symbol does not fit.
+	 *
+	 * @param line   the current line
+	 * @param symbol the symbol
+	 * @throws IOException if a full line cannot be written
+	 */
+	private void append(StringBuilder line, String symbol) throws IOException {
+		if (line.length() > 0 && line.length() + 1 + symbol.length() > LINE_LENGTH) {
+			out.write(line.toString());
+			out.write('\n');
+			line.setLength(0);
+		}
+		if (line.length() > 0) {
+			line.append(' ');
+		}
+		line.append(symbol);
+	}
+
+	/**
+	 * Writes a tag pair, escaping quotes and backslashes in its value.
+	 *
+	 * @param name  the name of the tag
+	 * @param value the value of the tag
+	 * @throws IOException if the tag cannot be written
+	 */
+	private void writeTag(String name, String value) throws IOException {
+		out.write('[');
+		out.write(name);
+		out.write(" \"");
+		out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+		out.write("\"]\n");
+	}
+
+	/**
+	 * Checks whether a tag is part of the Seven Tag Roster.
+	 *
+	 * @param name the name of the tag
+	 * @return true if the tag is part of the roster, false otherwise.
+	 */
+	private static boolean isRoster(String name) {
+		for (String tag : ROSTER) {
+			if (tag.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,665 @@
+package chess.pgn;
+
+import chess.board.Bitboards;
+import chess.board.ChessBoard;
+import chess.board.Move;
+import chess.board.Position;
+import chess.board.Square;
+import chess.piece.ChessPiece;
+import chess.piece.Pawn;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which reads and writes moves in Standard Algebraic Notation, for
+ * example "Nf3", "exd5", "e8=Q+" or "O-O", and in long algebraic notation, for
+ * example "Ng1-f3" or "e2e4".
+ *
+ * Instead of generating every valid move and comparing them with the notation,
+ * a move is resolved backwards from its target square: the pieces which could
+ * reach the square are looked up with the attack bitboards, and only those are
+ * checked for pins. Only castling and en passant captures, which are rare, ask
+ * the piece for its moves. In the same way, a check is found by looking up the
+ * attacks on the king with the pieces as they are after the move, and the
+ * board is only copied to tell a check from a checkmate.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Algebraic_Chess_Notation
+ */
+public final class San {
+
+	private static final String PIECE_LETTERS = "PNBRQK";
+	private static final PieceType[] ESCAPES = { PieceType.KING, PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP,
+			PieceType.KNIGHT };
+
+	/**
+	 * A private constructor to prevent instantiation.
+	 */
+	private San() {
+	}
+
+	/**
+	 * Finds the move described by a move in Standard Algebraic Notation.
+	 * Annotations such as "+", "#", "!" and "?" are ignored, and a missing "=" in
+	 * front of a promotion is accepted.
+	 *
+	 * @param pos the position
+	 * @param san the move in Standard Algebraic Notation
+	 * @return the move, or null if it is not valid or ambiguous
+	 */
+	public static Move parse(Position pos, String san) {
+		ChessBoard cb = pos.getBoard();
+		PieceColor pc = pos.getSideToMove();
+
+		int end = getEnd(san);
+		if (isCastling(san, end)) {
+			return getCastle(cb, pc, end >= 5);
+		}
+		if (getPromotion(san) != null) {
+			end -= (san.charAt(end - 2) == '=') ? 2 : 1;
+		}
+		if (end < 2) {
+			return null;
+		}
+
+		PieceType pt = PieceType.PAWN;
+		int i = 0;
+		int type = PIECE_LETTERS.indexOf(san.charAt(0));
+		if (type > 0) {
+			pt = PieceType.values()[type];
+			i = 1;
+		}
+
+		int toX = san.charAt(end - 2) - 'a';
+		int toY = san.charAt(end - 1) - '1';
+		if (toX < 0 || toX > 7 || toY < 0 || toY > 7) {
+			return null;
+		}
+		int to = toY * 8 + toX;
+
+		// Whatever is left between the piece and the target square narrows down the
+		// square the piece comes from.
+		long mask = -1L;
+		boolean capture = false;
+		for (; i < end - 2; i++) {
+			char c = san.charAt(i);
+			if (c >= 'a' && c <= 'h') {
+				mask &= Bitboards.getFile(c - 'a');
+				// A pawn coming from another file always captures, even when the "x" is
+				// left out.
+				capture |= pt == PieceType.PAWN && c - 'a' != toX;
+			} else if (c >= '1' && c <= '8') {
+				mask &= 0xFFL << (8 * (c - '1'));
+			} else if (c == 'x' || c == ':') {
+				capture = true;
+			} else if (c != '-') {
+				return null;
+			}
+		}
+
+		long own = cb.getOccupancy(pc);
+		if ((own & (1L << to)) != 0) {
+			return null;
+		}
+
+		if (pt == PieceType.PAWN) {
+			return getPawnMove(cb, pc, to, mask, capture);
+		}
+
+		long candidates = Bitboards.getAttacks(pt, pc, to, cb.getOccupancy()) & cb.getPieces(pt, pc) & mask;
+		return getOnlyLegal(cb, pc, candidates, to);
+	}
+
+	/**
+	 * Returns the piece type a move in Standard Algebraic Notation promotes to.
+	 * The letter of the piece may also be lower case, as in UCI.
+	 *
+	 * @param san the move in Standard Algebraic Notation
+	 * @return the type of the promotion, or null if the move is not a promotion
+	 */
+	public static PieceType getPromotion(String san) {
+		int end = getEnd(san);
+		if (end < 3 || san.charAt(0) < 'a' || san.charAt(0) > 'h') {
+			return null;
+		}
+		int type = PIECE_LETTERS.indexOf(Character.toUpperCase(san.charAt(end - 1)));
+		return (type > 0 && type < 5) ? PieceType.values()[type] : null;
+	}
+
+	/**
+	 * Writes a move in Standard Algebraic Notation, including the "+" or "#" of a
+	 * check or checkmate.
+	 *
+	 * @param cb        the chess board before the move
+	 * @param pc        the color of the player making the move
+	 * @param m         a valid move
+	 * @param promotion the piece type a pawn is promoted to, null for a queen
+	 * @return the move in Standard Algebraic Notation
+	 */
+	public static String toSan(ChessBoard cb, PieceColor pc, Move m, PieceType promotion) {
+		StringBuilder sb = new StringBuilder(8);
+		ChessPiece cp = cb.getPiece(m.getFrom());
+		PieceType pt = cp.getPieceType();
+		int from = m.getFrom().getIndex();
+		int to = m.getTo().getIndex();
+		int dx = m.getTo().getX() - m.getFrom().getX();
+		boolean capture = !cb.isEmpty(m.getTo());
+
+		if (pt == PieceType.KING && Math.abs(dx) == 2) {
+			sb.append(dx > 0 ? "O-O" : "O-O-O");
+		} else if (pt == PieceType.PAWN) {
+			if (dx != 0) {
+				sb.append((char) ('a' + m.getFrom().getX())).append('x');
+			}
+			sb.append(m.getTo());
+			if (m.getTo().getY() == 0 || m.getTo().getY() == 7) {
+				sb.append('=').append(PIECE_LETTERS.charAt((promotion == null ? PieceType.QUEEN : promotion).ordinal()));
+			}
+		} else {
+			sb.append(PIECE_LETTERS.charAt(pt.ordinal()));
+
+			long others = Bitboards.getAttacks(pt, pc, to, cb.getOccupancy()) & cb.getPieces(pt, pc) & ~(1L << from);
+			boolean sameFile = false;
+			boolean sameRank = false;
+			boolean ambiguous = false;
+			for (; others != 0; others &= others - 1) {
+				int other = Long.numberOfTrailingZeros(others);
+				if (isLegal(cb, pc, other, to)) {
+					ambiguous = true;
+					sameFile |= other % 8 == from % 8;
+					sameRank |= other / 8 == from / 8;
+				}
+			}
+			if (ambiguous && (!sameFile || sameRank)) {
+				sb.append((char) ('a' + from % 8));
+			}
+			if (ambiguous && sameFile) {
+				sb.append((char) ('1' + from / 8));
+			}
+			if (capture) {
+				sb.append('x');
+			}
+			sb.append(m.getTo());
+		}
+
+		appendCheck(sb, cb, pc, m, promotion);
+		return sb.toString();
+	}
+
+	/**
+	 * Writes a move in long algebraic notation, which names both squares of the
+	 * move, for example "Ng1-f3", "e7xd8=Q+" or "O-O".
+	 *
+	 * @param cb        the chess board before the move
+	 * @param pc        the color of the player making the move
+	 * @param m         a valid move
+	 * @param promotion the piece type a pawn is promoted to, null for a queen
+	 * @return the move in long algebraic notation
+	 */
+	public static String toLan(ChessBoard cb, PieceColor pc, Move m, PieceType promotion) {
+		StringBuilder sb = new StringBuilder(10);
+		PieceType pt = cb.getPiece(m.getFrom()).getPieceType();
+		int dx = m.getTo().getX() - m.getFrom().getX();
+
+		if (pt == PieceType.KING && Math.abs(dx) == 2) {
+			sb.append(dx > 0 ? "O-O" : "O-O-O");
+		} else {
+			if (pt != PieceType.PAWN) {
+				sb.append(PIECE_LETTERS.charAt(pt.ordinal()));
+			}
+			boolean capture = !cb.isEmpty(m.getTo()) || (pt == PieceType.PAWN && dx != 0);
+			sb.append(m.getFrom()).append(capture ? 'x' : '-').append(m.getTo());
+			if (pt == PieceType.PAWN && (m.getTo().getY() == 0 || m.getTo().getY() == 7)) {
+				sb.append('=').append(PIECE_LETTERS.charAt((promotion == null ? PieceType.QUEEN : promotion).ordinal()));
+			}
+		}
+
+		appendCheck(sb, cb, pc, m, promotion);
+		return sb.toString();
+	}
+
+	/**
+	 * Finds the move described by a move in long algebraic notation. Besides
+	 * "Ng1-f3" and "e7xd8=Q", the coordinates of UCI such as "g1f3" and "e7d8q"
+	 * are accepted, and castling may be written as "O-O", as the king moving two
+	 * squares or as the king capturing its own rook.
+	 *
+	 * @param pos the position
+	 * @param lan the move in long algebraic notation
+	 * @return the move, or null if it is not valid
+	 */
+	public static Move parseLan(Position pos, String lan) {
+		ChessBoard cb = pos.getBoard();
+		PieceColor pc = pos.getSideToMove();
+
+		int end = getEnd(lan);
+		if (isCastling(lan, end)) {
+			return getCastle(cb, pc, end >= 5);
+		}
+		if (end < 4) {
+			return null;
+		}
+
+		int i = 0;
+		int type = PIECE_LETTERS.indexOf(lan.charAt(0));
+		if (type >= 0) {
+			i = 1;
+		}
+		int from = getSquare(lan, i, end);
+		i += 2;
+		if (i < end && "-x:".indexOf(lan.charAt(i)) >= 0) {
+			i++;
+		}
+		int to = getSquare(lan, i, end);
+		i += 2;
+		// Only a promotion may follow the target square.
+		if (i < end && lan.charAt(i) == '=') {
+			i++;
+		}
+		if (from < 0 || to < 0 || i < end - 1 || (i == end - 1 && getPromotion(lan) == null)) {
+			return null;
+		}
+
+		ChessPiece cp = cb.getPiece(from % 8, from / 8);
+		if (cp == null || cp.getPieceColor() != pc || (type >= 0 && cp.getPieceType().ordinal() != type)) {
+			return null;
+		}
+		PieceType pt = cp.getPieceType();
+		long own = cb.getOccupancy(pc);
+		if (pt == PieceType.KING && from / 8 == to / 8
+				&& (Math.abs(to - from) == 2 || (cb.getPieces(PieceType.ROOK, pc) & (1L << to)) != 0)) {
+			return getCastle(cb, pc, to < from);
+		}
+		if ((own & (1L << to)) != 0) {
+			return null;
+		}
+		if (pt == PieceType.PAWN) {
+			return getPawnMove(cb, pc, to, 1L << from, (to - from) % 8 != 0);
+		}
+		if ((Bitboards.getAttacks(pt, pc, from, cb.getOccupancy()) & (1L << to)) == 0 || !isLegal(cb, pc, from, to)) {
+			return null;
+		}
+		return new Move(toSquare(from), toSquare(to));
+	}
+
+	/**
+	 * Reads the name of a square, such as "e4".
+	 *
+	 * @param s   the string holding the name
+	 * @param i   the index of the name in the string
+	 * @param end the index after the last character which may be read
+	 * @return the index of the square, or -1 if there is no square at the index
+	 */
+	private static int getSquare(String s, int i, int end) {
+		if (i + 2 > end) {
+			return -1;
+		}
+		int x = s.charAt(i) - 'a';
+		int y = s.charAt(i + 1) - '1';
+		return (x < 0 || x > 7 || y < 0 || y > 7) ? -1 : y * 8 + x;
+	}
+
+	/**
+	 * Appends "+" to a move which gives check, or "#" if it gives checkmate.
+	 * Whether the move gives check is looked up with the attack bitboards; only
+	 * a move which does needs a copy of the board, to look for a way out of the
+	 * check.
+	 *
+	 * @param sb        the notation of the move
+	 * @param cb        the chess board before the move
+	 * @param pc        the color of the player making the move
+	 * @param m         a valid move
+	 * @param promotion the piece type a pawn is promoted to, null for a queen
+	 */
+	private static void appendCheck(StringBuilder sb, ChessBoard cb, PieceColor pc, Move m, PieceType promotion) {
+		if (!givesCheck(cb, pc, m, promotion)) {
+			return;
+		}
+		ChessBoard sim = new ChessBoard(cb);
+		m.execute(sim);
+		if (isPromotion(cb, m)) {
+			sim.setPiece(m.getTo(), (promotion == null ? PieceType.QUEEN : promotion).create(pc));
+		}
+		sb.append(canEscapeCheck(sim, pc.flip()) ? '+' : '#');
+	}
+
+	/**
+	 * Checks whether a move promotes a pawn.
+	 *
+	 * @param cb the chess board before the move
+	 * @param m  the move
+	 * @return true if a pawn reaches the last rank, false otherwise.
+	 */
+	private static boolean isPromotion(ChessBoard cb, Move m) {
+		return cb.getPiece(m.getFrom()).getPieceType() == PieceType.PAWN
+				&& (m.getTo().getY() == 0 || m.getTo().getY() == 7);
+	}
+
+	/**
+	 * Checks whether a move gives check, without playing it. The pieces of the
+	 * moving player are looked up as they are after the move, including the rook
+	 * of a castle and the pawn captured en passant, so discovered checks are
+	 * found as well.
+	 *
+	 * @param cb        the chess board before the move
+	 * @param pc        the color of the player making the move
+	 * @param m         a valid move
+	 * @param promotion the piece type a pawn is promoted to, null for a queen
+	 * @return true if the move gives check, false otherwise.
+	 */
+	static boolean givesCheck(ChessBoard cb, PieceColor pc, Move m, PieceType promotion) {
+		PieceColor opponent = pc.flip();
+		long kingBits = cb.getPieces(PieceType.KING, opponent);
+		if (kingBits == 0) {
+			return false;
+		}
+		int king = Long.numberOfTrailingZeros(kingBits);
+		int from = m.getFrom().getIndex();
+		int to = m.getTo().getIndex();
+		long fromBit = 1L << from;
+		long toBit = 1L << to;
+
+		PieceType pt = cb.getPiece(m.getFrom()).getPieceType();
+		PieceType after = pt;
+		if (isPromotion(cb, m)) {
+			after = (promotion == null) ? PieceType.QUEEN : promotion;
+		}
+		long occ = (cb.getOccupancy() & ~fromBit) | toBit;
+		long rookFrom = 0;
+		long rookTo = 0;
+		if (pt == PieceType.KING && Math.abs(to - from) == 2) {
+			rookFrom = 1L << ((to > from) ? from + 3 : from - 4);
+			rookTo = 1L << ((from + to) / 2);
+			occ = (occ & ~rookFrom) | rookTo;
+		} else if (pt == PieceType.PAWN && (to - from) % 8 != 0 && (cb.getOccupancy() & toBit) == 0) {
+			occ &= ~(1L << (to - ((pc == PieceColor.WHITE) ? 8 : -8)));
+		}
+
+		long pawns = getPiecesAfter(cb, pc, PieceType.PAWN, fromBit, toBit, after);
+		long knights = getPiecesAfter(cb, pc, PieceType.KNIGHT, fromBit, toBit, after);
+		long queens = getPiecesAfter(cb, pc, PieceType.QUEEN, fromBit, toBit, after);
+		long diagonal = getPiecesAfter(cb, pc, PieceType.BISHOP, fromBit, toBit, after) | queens;
+		long straight = (getPiecesAfter(cb, pc, PieceType.ROOK, fromBit, toBit, after) & ~rookFrom) | rookTo | queens;
+		return (Bitboards.getPawnAttacks(opponent, king) & pawns) != 0
+				|| (Bitboards.getKnightAttacks(king) & knights) != 0
+				|| (Bitboards.getBishopAttacks(king, occ) & diagonal) != 0
+				|| (Bitboards.getRookAttacks(king, occ) & straight) != 0;
+	}
+
+	/**
+	 * Returns the pieces of a type as they are after a move.
+	 *
+	 * @param cb      the chess board before the move
+	 * @param pc      the color of the player making the move
+	 * @param pt      the type of the pieces
+	 * @param fromBit the bit of the square the piece moves from
+	 * @param toBit   the bit of the square the piece moves to
+	 * @param after   the type of the moving piece after the move
+	 * @return the bitboard of the pieces
+	 */
+	private static long getPiecesAfter(ChessBoard cb, PieceColor pc, PieceType pt, long fromBit, long toBit,
+			PieceType after) {
+		long pieces = cb.getPieces(pt, pc) & ~fromBit;
+		return (pt == after) ? pieces | toBit : pieces;
+	}
+
+	/**
+	 * Checks whether a player in check has a move out of it, using the same
+	 * attack lookups as {@link #isLegal}. Castling is not looked at, since it is
+	 * never possible in check.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the player in check
+	 * @return true if the player has a legal move, false if it is checkmate
+	 */
+	static boolean canEscapeCheck(ChessBoard cb, PieceColor pc) {
+		long occ = cb.getOccupancy();
+		long own = cb.getOccupancy(pc);
+		for (PieceType pt : ESCAPES) {
+			for (long pieces = cb.getPieces(pt, pc); pieces != 0; pieces &= pieces - 1) {
+				int from = Long.numberOfTrailingZeros(pieces);
+				for (long targets = Bitboards.getAttacks(pt, pc, from, occ) & ~own; targets != 0; targets &= targets
+						- 1) {
+					if (isLegal(cb, pc, from, Long.numberOfTrailingZeros(targets))) {
+						return true;
+					}
+				}
+			}
+		}
+
+		int dir = (pc == PieceColor.WHITE) ? 8 : -8;
+		int startRank = (pc == PieceColor.WHITE) ? 1 : 6;
+		long enemies = cb.getOccupancy(pc.flip());
+		long pawns = cb.getPieces(PieceType.PAWN, pc);
+		for (long p = pawns; p != 0; p &= p - 1) {
+			int from = Long.numberOfTrailingZeros(p);
+			long targets = Bitboards.getPawnAttacks(pc, from) & enemies;
+			int to = from + dir;
+			if ((occ & (1L << to)) == 0) {
+				targets |= 1L << to;
+				if (from / 8 == startRank && (occ & (1L << (to + dir))) == 0) {
+					targets |= 1L << (to + dir);
+				}
+			}
+			for (; targets != 0; targets &= targets - 1) {
+				if (isLegal(cb, pc, from, Long.numberOfTrailingZeros(targets))) {
+					return true;
+				}
+			}
+		}
+
+		// An en passant capture also removes a pawn beside the target square, so it
+		// is left to the pawn itself.
+		int file = cb.getEnPassantFile(pc.flip());
+		if (file >= 0) {
+			int target = ((pc == PieceColor.WHITE) ? 5 : 2) * 8 + file;
+			for (long p = Bitboards.getPawnAttacks(pc.flip(), target) & pawns; p != 0; p &= p - 1) {
+				int from = Long.numberOfTrailingZeros(p);
+				for (Move m : cb.getPiece(from % 8, from / 8).getValidMoves(cb)) {
+					if (m.getTo().getIndex() == target) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the end of a move, leaving out check marks and annotations.
+	 *
+	 * @param san the move in Standard Algebraic Notation
+	 * @return the index after the last character of the move itself
+	 */
+	private static int getEnd(String san) {
+		int end = san.length();
+		while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+			end--;
+		}
+		return end;
+	}
+
+	/**
+	 * Checks whether a move is a castle. Both letters and zeros are accepted.
+	 *
+	 * @param san the move in Standard Algebraic Notation
+	 * @param end the index after the last character of the move
+	 * @return true if the move is a castle, false otherwise.
+	 */
+	private static boolean isCastling(String san, int end) {
+		return (end == 3 || end == 5) && (san.startsWith("O-O") || san.startsWith("0-0"))
+				&& (end == 3 || san.charAt(3) == '-');
+	}
+
+	/**
+	 * Finds a castle among the moves of the king.
+	 *
+	 * @param cb        the chess board
+	 * @param pc        the color of the king
+	 * @param queenside true for a queenside castle, false for a kingside one
+	 * @return the castle, or null if it is not valid
+	 */
+	static Move getCastle(ChessBoard cb, PieceColor pc, boolean queenside) {
+		long king = cb.getPieces(PieceType.KING, pc);
+		if (king == 0) {
+			return null;
+		}
+		int index = Long.numberOfTrailingZeros(king);
+		ChessPiece cp = cb.getPiece(index % 8, index / 8);
+		int toX = queenside ? 2 : 6;
+		for (Move m : cp.getValidMoves(cb)) {
+			if (m.getTo().getX() == toX && m.getFrom().getX() == 4) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds a pawn move.
+	 *
+	 * @param cb      the chess board
+	 * @param pc      the color of the pawn
+	 * @param to      the index of the target square
+	 * @param mask    the squares the pawn may come from
+	 * @param capture true if the move is written as a capture
+	 * @return the move, or null if it is not valid or ambiguous
+	 */
+	private static Move getPawnMove(ChessBoard cb, PieceColor pc, int to, long mask, boolean capture) {
+		long pawns = cb.getPieces(PieceType.PAWN, pc);
+		int dir = (pc == PieceColor.WHITE) ? 8 : -8;
+		long target = 1L << to;
+
+		if (capture) {
+			long candidates = Bitboards.getPawnAttacks(pc.flip(), to) & pawns & mask;
+			if ((cb.getOccupancy(pc.flip()) & target) != 0) {
+				return getOnlyLegal(cb, pc, candidates, to);
+			}
+
+			// Capturing onto an empty square can only be an en passant capture.
+			for (; candidates != 0; candidates &= candidates - 1) {
+				int from = Long.numberOfTrailingZeros(candidates);
+				ChessPiece cp = cb.getPiece(from % 8, from / 8);
+				for (Move m : cp.getValidMoves(cb)) {
+					if (m.getTo().getIndex() == to) {
+						return m;
+					}
+				}
+			}
+			return null;
+		}
+
+		if ((cb.getOccupancy() & target) != 0 || to - dir < 0 || to - dir > 63) {
+			return null;
+		}
+		int from = to - dir;
+		pawns &= mask;
+		if ((pawns & (1L << from)) == 0) {
+			// Only a pawn on its starting rank may move two squares.
+			int start = to - 2 * dir;
+			int startRank = (pc == PieceColor.WHITE) ? 1 : 6;
+			if ((cb.getOccupancy() & (1L << from)) != 0 || start < 0 || start > 63 || start / 8 != startRank
+					|| (pawns & (1L << start)) == 0 || !isLegal(cb, pc, start, to)) {
+				return null;
+			}
+			return new DoublePush(start, to);
+		}
+		if (!isLegal(cb, pc, from, to)) {
+			return null;
+		}
+		return new Move(toSquare(from), toSquare(to));
+	}
+
+	/**
+	 * Picks the one candidate which can legally move to a square.
+	 *
+	 * @param cb         the chess board
+	 * @param pc         the color of the moving player
+	 * @param candidates the bitboard of the pieces which could move to the square
+	 * @param to         the index of the target square
+	 * @return the move, or null if no candidate or more than one can move
+	 */
+	private static Move getOnlyLegal(ChessBoard cb, PieceColor pc, long candidates, int to) {
+		int found = -1;
+		for (; candidates != 0; candidates &= candidates - 1) {
+			int from = Long.numberOfTrailingZeros(candidates);
+			if (isLegal(cb, pc, from, to)) {
+				if (found >= 0) {
+					return null;
+				}
+				found = from;
+			}
+		}
+		return (found < 0) ? null : new Move(toSquare(found), toSquare(to));
+	}
+
+	/**
+	 * Checks whether moving a piece leaves its own king in check, by looking up
+	 * the attacks on the king with the occupancy after the move.
+	 *
+	 * @param cb   the chess board
+	 * @param pc   the color of the moving piece
+	 * @param from the index of the square the piece moves from
+	 * @param to   the index of the square the piece moves to
+	 * @return true if the move is legal, false otherwise.
+	 */
+	static boolean isLegal(ChessBoard cb, PieceColor pc, int from, int to) {
+		long kingBits = cb.getPieces(PieceType.KING, pc);
+		if (kingBits == 0) {
+			return true;
+		}
+		int king = Long.numberOfTrailingZeros(kingBits);
+		if (king == from) {
+			king = to;
+		}
+
+		long occ = (cb.getOccupancy() & ~(1L << from)) | (1L << to);
+		long enemies = ~(1L << to);
+		PieceColor by = pc.flip();
+		long queens = cb.getPieces(PieceType.QUEEN, by);
+		return (Bitboards.getPawnAttacks(pc, king) & cb.getPieces(PieceType.PAWN, by) & enemies) == 0
+				&& (Bitboards.getKnightAttacks(king) & cb.getPieces(PieceType.KNIGHT, by) & enemies) == 0
+				&& (Bitboards.getKingAttacks(king) & cb.getPieces(PieceType.KING, by)) == 0
+				&& (Bitboards.getBishopAttacks(king, occ) & (cb.getPieces(PieceType.BISHOP, by) | queens)
+						& enemies) == 0
+				&& (Bitboards.getRookAttacks(king, occ) & (cb.getPieces(PieceType.ROOK, by) | queens) & enemies) == 0;
+	}
+
+	/**
+	 * Converts the index of a square to a Square object.
+	 *
+	 * @param index the index of the square
+	 * @return the square
+	 */
+	static Square toSquare(int index) {
+		return new Square(index % 8, index / 8);
+	}
+
+	/**
+	 * A class which represents a pawn moving two squares forward. Just like the
+	 * moves generated by the pawn itself, it allows the pawn to be captured en
+	 * passant afterwards.
+	 */
+	static class DoublePush extends Move {
+
+		/**
+		 * Constructs a DoublePush object.
+		 *
+		 * @param from the index of the square the pawn moves from
+		 * @param to   the index of the square the pawn moves to
+		 */
+		DoublePush(int from, int to) {
+			super(toSquare(from), toSquare(to));
+		}
+
+		@Override
+		public ChessPiece execute(ChessBoard cb) {
+			ChessPiece cp = cb.getPiece(getFrom());
+			if (cp instanceof Pawn) {
+				((Pawn) cp).setCanBeCapturedEnPassant(true);
+			}
+			return super.execute(cb);
+		}
+	}
+}
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 
 import chess.board.ChessBoard;
 import chess.board.Move;
-import chess.rendering.Icon;
 
 /**
  * A class which represents a bishop.
@@ -20,7 +19,12 @@ public class Bishop extends ChessPiece {
 	 * @param pc the color of the bishop
 	 */
 	public Bishop(PieceColor pc) {
-		super(pc, Icon.WHITE_BISHOP, Icon.BLACK_BISHOP);
+		super(pc);
+	}
+
+	@Override
+	public PieceType getPieceType() {
+		return PieceType.BISHOP;
 	}
 
 	@Override
@@ -6,7 +6,6 @@ import chess.board.BoardAnalyzer;
 import chess.board.ChessBoard;
 import chess.board.Move;
 import chess.board.Square;
-import chess.rendering.Icon;
 
 /**
  * An abstract class which represents a chess piece.
@@ -17,25 +16,15 @@ public abstract class ChessPiece implements Cloneable {
 
 	private final PieceColor pc;
 
-	private final Icon icon;
-
 	private boolean hasMoved;
 
 	/**
 	 * Constructs a chess piece object.
 	 * 
-	 * @param pc    the color of the piece
-	 * @param white the path to the image of the white version of the piece
-	 * @param black the path to the image of the black version of the piece
+	 * @param pc the color of the piece
 	 */
-	public ChessPiece(PieceColor pc, Icon white, Icon black) {
+	public ChessPiece(PieceColor pc) {
 		this.pc = pc;
-
-		if (pc == PieceColor.WHITE) {
-			icon = white;
-		} else {
-			icon = black;
-		}
 	}
 
 	/**
@@ -71,6 +60,13 @@ public abstract class ChessPiece implements Cloneable {
 	 */
 	public abstract ArrayList<Move> getPreliminaryMoves(ChessBoard cb);
 
+	/**
+	 * A method which returns the type of this chess piece.
+	 * 
+	 * @return the type of this chess piece
+	 */
+	public abstract PieceType getPieceType();
+
 	/**
 	 * A method which returns all of the moves available by traveling in a certain
 	 * direction.
@@ -138,15 +134,6 @@ public abstract class ChessPiece implements Cloneable {
 		return pc;
 	}
 
-	/**
-	 * A getter method for the icon of this chess piece
-	 * 
-	 * @return the icon of this chess piece
-	 */
-	public Icon getIcon() {
-		return icon;
-	}
-
 	/**
 	 * A method which determines if this piece has moved
 	 * 
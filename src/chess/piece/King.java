@@ -6,7 +6,6 @@ import chess.board.BoardAnalyzer;
 import chess.board.ChessBoard;
 import chess.board.Move;
 import chess.board.Square;
-import chess.rendering.Icon;
 
 /**
  * A class which represents a king.
@@ -24,7 +23,12 @@ public class King extends ChessPiece {
 	 * @param pc the color of the king
 	 */
 	public King(PieceColor pc) {
-		super(pc, Icon.WHITE_KING, Icon.BLACK_KING);
+		super(pc);
+	}
+
+	@Override
+	public PieceType getPieceType() {
+		return PieceType.KING;
 	}
 
 	@Override
@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import chess.board.ChessBoard;
 import chess.board.Move;
 import chess.board.Square;
-import chess.rendering.Icon;
 
 /**
  * A class which represents a knight.
@@ -21,7 +20,12 @@ public class Knight extends ChessPiece {
 	 * @param pc the color of the knight
 	 */
 	public Knight(PieceColor pc) {
-		super(pc, Icon.WHITE_KNIGHT, Icon.BLACK_KNIGHT);
+		super(pc);
+	}
+
+	@Override
+	public PieceType getPieceType() {
+		return PieceType.KNIGHT;
 	}
 
 	@Override
@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import chess.board.ChessBoard;
 import chess.board.Move;
 import chess.board.Square;
-import chess.rendering.Icon;
 
 /**
  * A class which represents a pawn.
@@ -24,7 +23,12 @@ public class Pawn extends ChessPiece {
 	 * @param pc the color of the pawn
 	 */
 	public Pawn(PieceColor pc) {
-		super(pc, Icon.WHITE_PAWN, Icon.BLACK_PAWN);
+		super(pc);
+	}
+
+	@Override
+	public PieceType getPieceType() {
+		return PieceType.PAWN;
 	}
 
 	@Override
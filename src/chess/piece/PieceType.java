@@ -0,0 +1,34 @@
+package chess.piece;
+
+/**
+ * An enum representing the type of a chess piece, independent of its color.
+ * 
+ * @author kennangumbs
+ *
+ */
+public enum PieceType {
+	PAWN, KNIGHT, BISHOP, ROOK, QUEEN, KING;
+
+	/**
+	 * Creates a new piece of this type.
+	 * 
+	 * @param pc the color of the piece
+	 * @return the new piece
+	 */
+	public ChessPiece create(PieceColor pc) {
+		switch (this) {
+		case PAWN:
+			return new Pawn(pc);
+		case KNIGHT:
+			return new Knight(pc);
+		case BISHOP:
+			return new Bishop(pc);
+		case ROOK:
+			return new Rook(pc);
+		case QUEEN:
+			return new Queen(pc);
+		default:
+			return new King(pc);
+		}
+	}
+}
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 
 import chess.board.ChessBoard;
 import chess.board.Move;
-import chess.rendering.Icon;
 
 /**
  * A class which represents a queen.
@@ -20,7 +19,12 @@ public class Queen extends ChessPiece {
 	 * @param pc the color of the queen
 	 */
 	public Queen(PieceColor pc) {
-		super(pc, Icon.WHITE_QUEEN, Icon.BLACK_QUEEN);
+		super(pc);
+	}
+
+	@Override
+	public PieceType getPieceType() {
+		return PieceType.QUEEN;
 	}
 
 	@Override
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 
 import chess.board.ChessBoard;
 import chess.board.Move;
-import chess.rendering.Icon;
 
 /**
  * A class which represents a rook.
@@ -20,7 +19,12 @@ public class Rook extends ChessPiece {
 	 * @param pc the color of the rook
 	 */
 	public Rook(PieceColor pc) {
-		super(pc, Icon.WHITE_ROOK, Icon.BLACK_ROOK);
+		super(pc);
+	}
+
+	@Override
+	public PieceType getPieceType() {
+		return PieceType.ROOK;
 	}
 
 	@Override
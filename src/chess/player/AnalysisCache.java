@@ -0,0 +1,291 @@
+package chess.player;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import chess.board.Move;
+import chess.eval.EvalParams;
+import chess.eval.NnueNetwork;
+
+/**
+ * A table of deep search results which is kept in a file, so that positions
+ * which are analyzed again and again, such as the opening and test positions,
+ * are only searched once, even across restarts. {@link Minimax} looks up the
+ * root position before a search and stores the positions of the principal
+ * variation after it.
+ *
+ * The file has a fixed size and is memory-mapped, so it is never read onto the
+ * heap. After a 24 byte header, it consists of buckets of two entries, which
+ * are stored like the entries of a {@link TranspositionTable}: the data and the
+ * key exclusive-or'ed with the data. The first entry of a bucket keeps the
+ * deepest result, and the second one the latest. Because a torn or half written
+ * entry does not match its key, any number of threads and processes can map
+ * the same file at the same time without locking; the worst a race can do is
+ * lose a result.
+ *
+ * The header holds a fingerprint of the evaluation and search which produced
+ * the results, and the fingerprint is also mixed into the key of every entry.
+ * A file with another fingerprint is cleared in place when it is opened; a
+ * process which still has it mapped with the old fingerprint stops storing, and
+ * since its entries are keyed with another fingerprint, scores of a different
+ * network, different weights or an older search never match a new lookup.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Persistent_Hash_Table
+ */
+public class AnalysisCache {
+
+	/**
+	 * The name of the system property which holds the path of the cache used by
+	 * default.
+	 */
+	public static final String PROPERTY = "chess.cache";
+
+	/**
+	 * The name of the system property which holds the size in megabytes of a
+	 * cache file which does not exist yet.
+	 */
+	public static final String SIZE_PROPERTY = "chess.cache.mb";
+
+	/**
+	 * The shallowest search which is worth storing.
+	 */
+	public static final int MIN_DEPTH = 3;
+
+	private static final long MAGIC = 0x4348455353414331L; // "CHESSAC1"
+	private static final int HEADER_SIZE = 24;
+	private static final int ENTRY_SIZE = 16;
+	private static final int BUCKET_SIZE = 2 * ENTRY_SIZE;
+	private static final int DEFAULT_MB = 64;
+	private static final int MAX_MB = 1024;
+
+	private static AnalysisCache instance;
+	private static boolean loaded;
+
+	private final MappedByteBuffer buffer;
+	private final long mask;
+	private final long fingerprint;
+
+	/**
+	 * Constructs an AnalysisCache object by mapping a cache file into memory. If
+	 * the file does not exist or is empty, it is created with the given size;
+	 * otherwise it keeps its own size. A file with another fingerprint is cleared
+	 * in place, since other processes may still have it mapped.
+	 *
+	 * @param path        the path of the cache file
+	 * @param mb          the size of a new file in megabytes, rounded down to a
+	 *                    power of two and at most 1024
+	 * @param fingerprint the fingerprint of the evaluation and search which use
+	 *                    the cache, see {@link #getDefaultFingerprint()}
+	 * @throws IOException if the file cannot be created or mapped, or is not a
+	 *                     cache file
+	 */
+	public AnalysisCache(Path path, int mb, long fingerprint) throws IOException {
+		this.fingerprint = fingerprint;
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			// The lock keeps two processes from creating or clearing the same file at
+			// once.
+			FileLock lock = ch.lock();
+			try {
+				if (ch.size() == 0) {
+					long bytes = (long) Math.max(1, Math.min(mb, MAX_MB)) * 1024 * 1024;
+					long buckets = Long.highestOneBit(bytes / BUCKET_SIZE);
+					buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + buckets * BUCKET_SIZE);
+					buffer.putLong(8, buckets);
+					buffer.putLong(16, fingerprint);
+					buffer.putLong(0, MAGIC);
+					buffer.force();
+					mask = buckets - 1;
+				} else {
+					// A file which is not a cache is never truncated, since it may be mapped.
+					long buckets = readBuckets(ch);
+					if (buckets == 0) {
+						throw new IOException("Not an analysis cache: " + path);
+					}
+					buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + buckets * BUCKET_SIZE);
+					mask = buckets - 1;
+					if (buffer.getLong(16) != fingerprint) {
+						System.err.println("Analysis cache was written by another evaluation, clearing it");
+						clear();
+					}
+				}
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Reads the amount of buckets from the header of a file.
+	 *
+	 * @param ch the file
+	 * @return the amount of buckets, or 0 if the file is not a complete cache file
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long readBuckets(FileChannel ch) throws IOException {
+		if (ch.size() < HEADER_SIZE) {
+			return 0;
+		}
+		MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		long buckets = header.getLong(8);
+		if (header.getLong(0) != MAGIC || buckets <= 0 || buckets > (long) MAX_MB * 1024 * 1024 / BUCKET_SIZE
+				|| Long.bitCount(buckets) != 1 || ch.size() != HEADER_SIZE + buckets * BUCKET_SIZE) {
+			return 0;
+		}
+		return buckets;
+	}
+
+	/**
+	 * Takes the file over for this fingerprint and empties every bucket, keeping
+	 * its size. The fingerprint is written first, so that a process with the old
+	 * fingerprint stops storing before the entries are erased.
+	 */
+	private void clear() {
+		buffer.putLong(16, fingerprint);
+		for (int i = HEADER_SIZE; i < buffer.capacity(); i += 8) {
+			buffer.putLong(i, 0);
+		}
+		buffer.force();
+	}
+
+	/**
+	 * A method which returns the cache named by the {@value #PROPERTY} system
+	 * property, mapping it the first time it is needed. A new file gets the size
+	 * named by the {@value #SIZE_PROPERTY} property.
+	 *
+	 * @return the default cache, or null if none is configured
+	 */
+	public static synchronized AnalysisCache getInstance() {
+		if (!loaded) {
+			loaded = true;
+			String path = System.getProperty(PROPERTY);
+			if (path != null) {
+				try {
+					instance = new AnalysisCache(Paths.get(path), Integer.getInteger(SIZE_PROPERTY, DEFAULT_MB),
+							getDefaultFingerprint());
+					Runtime.getRuntime().addShutdownHook(new Thread(instance::flush, "Analysis Cache"));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Computes the fingerprint of the default evaluation, the one a {@link Minimax}
+	 * uses unless it is given another evaluator: the network named by the
+	 * {@value NnueNetwork#PROPERTY} property if there is one, and the weights of
+	 * the handcrafted evaluation otherwise, together with
+	 * {@link Minimax#SEARCH_VERSION}.
+	 *
+	 * @return the fingerprint
+	 */
+	public static long getDefaultFingerprint() {
+		NnueNetwork network = NnueNetwork.getInstance();
+		long eval = (network != null) ? network.getFingerprint() : ~EvalParams.getInstance().getFingerprint();
+		return eval * 31 + Minimax.SEARCH_VERSION;
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @param key the Zobrist key of the position, including the player to move
+	 * @return the deepest entry of the position, 0 if the position is not in the
+	 *         cache. The entry is read with the static methods of
+	 *         {@link TranspositionTable}.
+	 */
+	public long probe(long key) {
+		key ^= fingerprint;
+		int i = getBucket(key);
+		long first = read(i, key);
+		long second = read(i + ENTRY_SIZE, key);
+		if (first == 0 || (second != 0 && TranspositionTable.getDepth(second) > TranspositionTable.getDepth(first))) {
+			return second;
+		}
+		return first;
+	}
+
+	/**
+	 * Stores the result of a search. Results shallower than {@value #MIN_DEPTH}
+	 * are ignored, and so is every result once another process has taken the file
+	 * over for another fingerprint.
+	 *
+	 * @param key   the Zobrist key of the position, including the player to move
+	 * @param score the score of the position
+	 * @param depth the depth the position was searched to
+	 * @param bound {@link TranspositionTable#EXACT},
+	 *              {@link TranspositionTable#UPPER} or
+	 *              {@link TranspositionTable#LOWER}
+	 * @param move  the best move, null if none
+	 */
+	public void store(long key, float score, int depth, int bound, Move move) {
+		if (depth < MIN_DEPTH || buffer.getLong(16) != fingerprint) {
+			return;
+		}
+		key ^= fingerprint;
+		int i = getBucket(key);
+		long d = TranspositionTable.pack(score, depth, bound, move);
+		long old = buffer.getLong(i + 8);
+		boolean sameKey = old != 0 && (buffer.getLong(i) ^ old) == key;
+		if (sameKey && TranspositionTable.getDepth(old) > depth) {
+			return;
+		}
+		if (old == 0 || sameKey || TranspositionTable.getDepth(old) <= depth) {
+			write(i, key, d);
+		} else {
+			write(i + ENTRY_SIZE, key, d);
+		}
+	}
+
+	/**
+	 * Writes every change to the file to the disk.
+	 */
+	public void flush() {
+		buffer.force();
+	}
+
+	/**
+	 * Returns the offset of the bucket of a key.
+	 *
+	 * @param key the Zobrist key
+	 * @return the offset in bytes
+	 */
+	private int getBucket(long key) {
+		return (int) (HEADER_SIZE + (key & mask) * BUCKET_SIZE);
+	}
+
+	/**
+	 * Reads an entry if it belongs to a key.
+	 *
+	 * @param offset the offset of the entry
+	 * @param key    the Zobrist key
+	 * @return the data of the entry, 0 if it is empty or belongs to another key
+	 */
+	private long read(int offset, long key) {
+		long d = buffer.getLong(offset + 8);
+		if (d != 0 && (buffer.getLong(offset) ^ d) == key) {
+			return d;
+		}
+		return 0;
+	}
+
+	/**
+	 * Writes an entry.
+	 *
+	 * @param offset the offset of the entry
+	 * @param key    the Zobrist key
+	 * @param d      the data of the entry
+	 */
+	private void write(int offset, long key, long d) {
+		buffer.putLong(offset + 8, d);
+		buffer.putLong(offset, key ^ d);
+	}
+}
@@ -1,6 +1,7 @@
 package chess.player;
 
 import java.util.ArrayList;
+import java.util.Collections;
 
 import chess.board.ChessBoard;
 import chess.board.Move;
@@ -48,23 +49,20 @@ public class Human extends Player {
 			} while (!canMovePiece(cp));
 
 			ArrayList<Move> valid = cp.getValidMoves(getChessBoard());
-			panel.getValid().addAll(valid);
-			panel.repaint();
+			panel.setValid(valid);
 
 			Square to;
 			do {
 				to = ChessPanel.getSquareLocation(input.waitForInput());
 				for (Move m : valid) {
 					if (m.getTo().equals(to)) {
-						panel.getValid().clear();
-						panel.repaint();
+						panel.setValid(Collections.emptyList());
 						return m;
 					}
 				}
 			} while (!to.equals(from));
 
-			panel.getValid().clear();
-			panel.repaint();
+			panel.setValid(Collections.emptyList());
 		}
 	}
 
@@ -1,18 +1,29 @@
 package chess.player;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 import chess.board.BoardAnalyzer;
 import chess.board.ChessBoard;
 import chess.board.Move;
-import chess.board.Square;
-import chess.piece.Bishop;
+import chess.board.Position;
+import chess.board.Zobrist;
+import chess.book.PolyglotBook;
+import chess.eval.EvalCache;
+import chess.eval.Evaluator;
+import chess.eval.IncrementalEvaluator;
+import chess.eval.NnueEvaluator;
+import chess.eval.NnueNetwork;
+import chess.eval.TaperedEvaluator;
 import chess.piece.ChessPiece;
-import chess.piece.Knight;
-import chess.piece.Pawn;
 import chess.piece.PieceColor;
+import chess.piece.PieceType;
 import chess.piece.Queen;
-import chess.piece.Rook;
+import chess.tablebase.Bitbases;
+import chess.tablebase.SyzygyTablebase;
+import chess.tablebase.Tablebase;
+import chess.tablebase.Wdl;
 
 /**
  * Represents a Chess AI which utilizes the Minimax algorithm to choose moves.
@@ -26,98 +37,600 @@ public class Minimax extends Player {
 	private static final int HARD_LIMIT = -40;
 	private static final int MAX_MS = 100000;
 
-	private long start;
+	/**
+	 * The version of the search, which is raised whenever a change to the search
+	 * changes the scores it reports, so that results kept in an
+	 * {@link AnalysisCache} by an older version are thrown away.
+	 */
+	public static final int SEARCH_VERSION = 1;
+
+	/**
+	 * The deepest iteration a search can reach, for searches without a depth
+	 * limit.
+	 */
+	public static final int MAX_DEPTH = 64;
+	private static final int MAX_PLY = MAX_DEPTH - HARD_LIMIT + 1;
+
+	/**
+	 * The score of a position which the tablebase reports as won. It is higher
+	 * than any evaluation but lower than a checkmate.
+	 */
+	private static final float TB_WIN = 10000;
+
+	private final SearchController controller;
+	private final Evaluator evaluator;
+	private final IncrementalEvaluator incremental;
+	private final EvalCache evalCache;
+	private TranspositionTable table;
+	private AnalysisCache cache;
+	private PolyglotBook book;
+	private Tablebase tablebase;
+
+	private ArrayList<Move> rootMoves;
+	private ArrayList<Move> searchMoves;
+	private int rootDepth;
 	private int maxDepth;
-	private Move bestMove;
+
+	private final Move[][] pv;
+	private final int[] pvLength;
+	private SearchResult lastResult;
+
+	private int depthLimit;
+	private long nodeLimit;
+	private long timeLimit;
+	private Consumer<SearchResult> listener;
 
 	/**
-	 * Constructs a Minimax object.
+	 * Constructs a Minimax object which uses the default evaluator: the network
+	 * named by the {@value NnueNetwork#PROPERTY} system property if there is one,
+	 * and the handcrafted evaluation otherwise.
 	 * 
 	 * @param pc the player's color
 	 * @param cb the chess board where the game is taking place.
 	 */
 	public Minimax(PieceColor pc, ChessBoard cb) {
+		this(pc, cb, (NnueNetwork.getInstance() != null) ? new NnueEvaluator() : new TaperedEvaluator());
+	}
+
+	/**
+	 * Constructs a Minimax object.
+	 * 
+	 * @param pc        the player's color
+	 * @param cb        the chess board where the game is taking place.
+	 * @param evaluator the evaluator used to score positions
+	 */
+	public Minimax(PieceColor pc, ChessBoard cb, Evaluator evaluator) {
 		super(pc, cb);
+
+		this.evaluator = evaluator;
+		this.incremental = (evaluator instanceof IncrementalEvaluator) ? (IncrementalEvaluator) evaluator : null;
+		controller = new SearchController();
+		evalCache = new EvalCache(16);
+		table = new TranspositionTable(18);
+		pv = new Move[MAX_PLY][MAX_PLY];
+		pvLength = new int[MAX_PLY];
+		depthLimit = DEPTH;
+		timeLimit = MAX_MS;
+		book = PolyglotBook.getInstance();
+		cache = AnalysisCache.getInstance();
+		tablebase = SyzygyTablebase.getInstance();
+		if (tablebase == null) {
+			tablebase = Bitbases.getInstance();
+		}
 	}
 
+	/**
+	 * Chooses a move using iterative deepening. Positions which are in the
+	 * opening book are not searched at all, and in positions which are in the
+	 * tablebase only the moves which keep the best result are searched. The
+	 * result of the search is available from {@link #getLastResult()}.
+	 */
 	@Override
 	public Move chooseMove() {
-		bestMove = null;
+		if (book != null) {
+			Move move = book.getMove(getChessBoard(), getPieceColor());
+			if (move != null) {
+				lastResult = new SearchResult(Arrays.asList(new PvLine(0, Arrays.asList(move))), 0, 0, 0, 0);
+				return move;
+			}
+		}
+
+		rootMoves = BoardAnalyzer.getInstance().getValidMoves(getChessBoard(), getPieceColor());
+		if (tablebase != null) {
+			Move move = probeRoot(getChessBoard(), getPieceColor());
+			if (move != null) {
+				lastResult = new SearchResult(Arrays.asList(new PvLine(0, Arrays.asList(move))), 0, 0, 0, 0);
+				return move;
+			}
+		}
+
+		lastResult = search(1);
+		return lastResult.getBestMove();
+	}
+
+	/**
+	 * Analyzes the current position in Multi-PV mode: the best few root moves
+	 * are each given an exact score and a principal variation. The opening book
+	 * and the tablebase are not used to narrow down the root moves.
+	 * 
+	 * @param lines the amount of root moves to analyze
+	 * @return the result of the analysis, best line first
+	 */
+	public SearchResult analyze(int lines) {
+		rootMoves = BoardAnalyzer.getInstance().getValidMoves(getChessBoard(), getPieceColor());
+		lastResult = search(lines);
+		return lastResult;
+	}
+
+	/**
+	 * A getter for the result of the last search.
+	 * 
+	 * @return the value of lastResult, null if nothing has been searched yet
+	 */
+	public SearchResult getLastResult() {
+		return lastResult;
+	}
+
+	/**
+	 * Searches the root moves using iterative deepening. Each iteration searches
+	 * one move deeper than the last one, and the lines of the deepest completed
+	 * iteration are returned. If the search is stopped, the unfinished iteration
+	 * is thrown away. The listener, if there is one, is told about every
+	 * completed iteration.
+	 * 
+	 * Every iteration searches the root once per line, each time without the root
+	 * moves of the lines found before, so that every line gets an exact score.
+	 * The searches share the transposition table, so the later ones are mostly
+	 * answered from it.
+	 * 
+	 * A single line which the analysis cache already knows to the depth limit is
+	 * not searched at all, and the principal variation of every search is stored
+	 * in the cache.
+	 * 
+	 * @param lines the amount of lines to find
+	 * @return the result of the search
+	 */
+	private SearchResult search(int lines) {
+		ChessBoard cb = getChessBoard();
+		PieceColor pc = getPieceColor();
+		ArrayList<PvLine> best = new ArrayList<PvLine>();
+		int completedDepth = 0;
+		maxDepth = 0;
+
+		if (cache != null && lines == 1) {
+			SearchResult cached = probeCache(cb, pc);
+			if (cached != null) {
+				if (listener != null) {
+					listener.accept(cached);
+				}
+				return cached;
+			}
+		}
+
+		if (incremental != null) {
+			incremental.reset(cb);
+		}
+
+		controller.start(timeLimit, nodeLimit);
+		try {
+			for (rootDepth = 1; rootDepth <= depthLimit; rootDepth++) {
+				ArrayList<PvLine> found = new ArrayList<PvLine>();
+				searchMoves = new ArrayList<Move>(rootMoves);
+
+				while (found.size() < lines && !searchMoves.isEmpty()) {
+					float score = minimax(cb, pc, rootDepth, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+					PvLine line = new PvLine(score, new ArrayList<Move>(Arrays.asList(pv[0]).subList(0, pvLength[0])));
+					found.add(line);
+					searchMoves.remove(line.getMove());
+				}
+
+				best = found;
+				completedDepth = rootDepth;
+				if (listener != null) {
+					listener.accept(new SearchResult(best, completedDepth, maxDepth, controller.getNodes(),
+							controller.getElapsedMs()));
+				}
+
+				// The next iteration searches the best moves of this one first.
+				for (int i = found.size() - 1; i >= 0; i--) {
+					rootMoves.remove(found.get(i).getMove());
+					rootMoves.add(0, found.get(i).getMove());
+				}
+			}
+		} catch (SearchAbortedException e) {
+			// The unfinished iteration is discarded.
+		} finally {
+			controller.finish();
+		}
+
+		if (best.isEmpty() && !rootMoves.isEmpty()) {
+			best.add(new PvLine(0, Arrays.asList(rootMoves.get(0))));
+		} else if (cache != null && !best.isEmpty()) {
+			storeCache(cb, pc, best.get(0), completedDepth);
+		}
+		return new SearchResult(best, completedDepth, maxDepth, controller.getNodes(), controller.getElapsedMs());
+	}
+
+	/**
+	 * Looks up the root position in the analysis cache.
+	 * 
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @return the cached result, or null if the position has not been searched to
+	 *         the depth limit yet
+	 */
+	private SearchResult probeCache(ChessBoard cb, PieceColor pc) {
+		long entry = cache.probe(Zobrist.getKey(cb, pc));
+		if (entry == 0 || TranspositionTable.getBound(entry) != TranspositionTable.EXACT
+				|| TranspositionTable.getDepth(entry) < depthLimit) {
+			return null;
+		}
+		for (Move m : rootMoves) {
+			if (TranspositionTable.isMove(entry, m)) {
+				int depth = TranspositionTable.getDepth(entry);
+				PvLine line = new PvLine(TranspositionTable.getScore(entry), Arrays.asList(m));
+				return new SearchResult(Arrays.asList(line), depth, depth, 0, 0);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the positions of a principal variation in the analysis cache, each
+	 * with the depth which was left when it was reached. Checkmates are not
+	 * stored, because their distance is only known from the length of the line.
+	 * 
+	 * @param cb    the chess board at the root
+	 * @param pc    the color of the player to move
+	 * @param line  the principal variation
+	 * @param depth the depth of the search
+	 */
+	private void storeCache(ChessBoard cb, PieceColor pc, PvLine line, int depth) {
+		float score = line.getScore();
+		if (Math.abs(score) >= 999999) {
+			return;
+		}
+		ChessBoard sim = new ChessBoard(cb);
+		for (Move m : line.getMoves()) {
+			if (depth < AnalysisCache.MIN_DEPTH) {
+				break;
+			}
+			cache.store(Zobrist.getKey(sim, pc), score, depth, TranspositionTable.EXACT, m);
+			m.execute(sim);
+			pc = pc.flip();
+			depth--;
+		}
+	}
+
+	/**
+	 * Stops the search which is currently running. The move of the deepest
+	 * completed iteration will be played. This method is safe to call from any
+	 * thread.
+	 */
+	public void stop() {
+		controller.stop();
+	}
+
+	/**
+	 * Clears a stop requested with {@link #stop()}. Starting a search does not
+	 * clear it, so that a stop which arrives before the search has started is not
+	 * lost; it has to be cleared by the thread which starts the search, before
+	 * the search thread is started.
+	 */
+	public void resetStop() {
+		controller.reset();
+	}
+
+	/**
+	 * A setter for the opening book. By default the book named by the
+	 * {@value PolyglotBook#PROPERTY} system property is used.
+	 * 
+	 * @param book the new opening book, null to always search
+	 */
+	public void setBook(PolyglotBook book) {
+		this.book = book;
+	}
+
+	/**
+	 * A setter for the deepest iteration of the search.
+	 * 
+	 * @param depthLimit the new depth limit, at most {@value #MAX_DEPTH}
+	 */
+	public void setDepthLimit(int depthLimit) {
+		this.depthLimit = Math.max(1, Math.min(depthLimit, MAX_DEPTH));
+	}
+
+	/**
+	 * A setter for the maximum amount of nodes a search may visit.
+	 * 
+	 * @param nodeLimit the new node limit, 0 for no limit
+	 */
+	public void setNodeLimit(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * A setter for the maximum amount of time a search may take.
+	 * 
+	 * @param timeLimit the new time limit in milliseconds, a negative number for no
+	 *                  limit
+	 */
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * A setter for the listener which is told about every completed iteration of
+	 * a search. It is called on the thread which runs the search.
+	 * 
+	 * @param listener the new listener, null for none
+	 */
+	public void setListener(Consumer<SearchResult> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * A setter for the transposition table, so that one table can be kept across
+	 * several Minimax objects or shared between searches running at the same
+	 * time.
+	 * 
+	 * @param table the new transposition table
+	 */
+	public void setTranspositionTable(TranspositionTable table) {
+		this.table = table;
+	}
 
-		start = System.currentTimeMillis();
-		float best = minimax(getChessBoard(), getPieceColor(), DEPTH, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
-		float secs = (System.currentTimeMillis() - start) / 1000f;
-		System.out.println("Move score: " + best + " (Max Depth: " + maxDepth + ", Time elapsed: " + secs + "s)");
-		return bestMove;
+	/**
+	 * A setter for the analysis cache. By default the cache named by the
+	 * {@value AnalysisCache#PROPERTY} system property is used.
+	 * 
+	 * @param cache the new analysis cache, null to never use one
+	 */
+	public void setAnalysisCache(AnalysisCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * A setter for the endgame tablebase. By default the Syzygy tablebase
+	 * configured by the {@value SyzygyTablebase#PATH_PROPERTY} system property is
+	 * used, or the bitbases in the {@value Bitbases#PROPERTY} directory if there is
+	 * none.
+	 * 
+	 * @param tablebase the new tablebase, null to never probe
+	 */
+	public void setTablebase(Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	/**
+	 * Probes the tablebase for the results of all root moves. The root moves are
+	 * narrowed down to those which keep the best result. If the tablebase also
+	 * knows the distances to zeroing of the remaining moves and the position is
+	 * not a draw, the best of them is returned right away.
+	 * 
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @return the move to play, or null if the root moves still have to be
+	 *         searched
+	 */
+	private Move probeRoot(ChessBoard cb, PieceColor pc) {
+		if (Long.bitCount(cb.getOccupancy()) > tablebase.getMaxPieces() || rootMoves.isEmpty()) {
+			return null;
+		}
+
+		Wdl[] results = new Wdl[rootMoves.size()];
+		Wdl best = Wdl.LOSS;
+		for (int i = 0; i < results.length; i++) {
+			ChessBoard sim = playRootMove(cb, pc, rootMoves.get(i));
+
+			Wdl wdl = tablebase.probeWdl(sim, pc.flip());
+			if (wdl == null) {
+				return null;
+			}
+			results[i] = wdl.flip();
+			if (results[i].compareTo(best) > 0) {
+				best = results[i];
+			}
+		}
+
+		ArrayList<Move> kept = new ArrayList<Move>();
+		Move bestDtzMove = null;
+		int bestDistance = 0;
+		boolean dtzKnown = true;
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] != best) {
+				continue;
+			}
+			Move m = rootMoves.get(i);
+			kept.add(m);
+
+			ChessBoard sim = playRootMove(cb, pc, m);
+			int dtz = tablebase.probeDtz(sim, pc.flip());
+			if (dtz == Tablebase.UNKNOWN_DTZ) {
+				dtzKnown = false;
+				continue;
+			}
+
+			// Captures, en passant included, and pawn moves reset the distance themselves.
+			boolean zeroing = BoardAnalyzer.getInstance().isCapture(cb, m)
+					|| cb.getPiece(m.getFrom()).getPieceType() == PieceType.PAWN;
+			int distance = zeroing ? 1 : Math.abs(dtz) + 1;
+
+			// Get to the next zeroing move as fast as possible when winning, and delay it
+			// as long as possible when losing.
+			boolean winning = best.compareTo(Wdl.DRAW) > 0;
+			if (bestDtzMove == null || (winning ? distance < bestDistance : distance > bestDistance)) {
+				bestDtzMove = m;
+				bestDistance = distance;
+			}
+		}
+
+		rootMoves = kept;
+		if (best != Wdl.DRAW && dtzKnown) {
+			return bestDtzMove;
+		}
+		return null;
+	}
+
+	/**
+	 * Plays a root move on a copy of a chess board for probing. Unlike the search,
+	 * the move is played in full: a pawn reaching the last rank becomes a queen and
+	 * the en passant rights of the opponent are cleared, so that the tablebase
+	 * sees the real material and position.
+	 * 
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @param m  the root move
+	 * @return the board after the move
+	 */
+	private ChessBoard playRootMove(ChessBoard cb, PieceColor pc, Move m) {
+		ChessBoard sim = new ChessBoard(cb);
+		new Position(sim, pc, 0, 1).play(m, null);
+		return sim;
 	}
 
 	/**
 	 * A recursive method which implements the minimax algorithm, alpha-beta
-	 * pruning to choose a move.
+	 * pruning to choose a move. Results are stored in the transposition table,
+	 * and the best move of each position is recorded in the principal variation
+	 * table, indexed by the distance from the root.
 	 * 
-	 * @param cb    the chess board on which the game is taking place
-	 * @param pc    the color of the player
-	 * @param depth how many moves ahead currently being checked
-	 * @param alpha the alpha value in alpha-beta pruning
-	 * @param beta  the beta value in alpha-beta pruning
+	 * @param cb         the chess board on which the game is taking place
+	 * @param pc         the color of the player
+	 * @param depth      how many moves ahead currently being checked
+	 * @param alpha      the alpha value in alpha-beta pruning
+	 * @param beta       the beta value in alpha-beta pruning
+	 * @param overSearch whether the search should continue past a depth of 0
 	 * @return a double representing the "score" of the most optimal move.
+	 * @throws SearchAbortedException if the search has been stopped
 	 * 
 	 * @see https://www.geeksforgeeks.org/minimax-algorithm-in-game-theory-set-1-introduction/
 	 * @see https://www.geeksforgeeks.org/minimax-algorithm-in-game-theory-set-4-alpha-beta-pruning/
 	 */
 	private float minimax(ChessBoard cb, PieceColor pc, int depth, float alpha, float beta, boolean overSearch) {
+		controller.checkpoint();
+		int ply = rootDepth - depth;
+		pvLength[ply] = ply;
+
+		if (depth < rootDepth && tablebase != null && Long.bitCount(cb.getOccupancy()) <= tablebase.getMaxPieces()) {
+			Wdl wdl = tablebase.probeWdl(cb, pc);
+			if (wdl != null) {
+				maxDepth = Math.max(rootDepth - depth, maxDepth);
+				return getTablebaseScore(cb, pc, wdl);
+			}
+		}
+
 		BoardAnalyzer ba = BoardAnalyzer.getInstance();
-		if (depth == HARD_LIMIT || (depth <= 0 && !overSearch) || System.currentTimeMillis() - start > MAX_MS || ba.noMovesAvalible(cb, pc)) {
-			maxDepth = Math.max(DEPTH - depth, maxDepth);
+		if (depth == HARD_LIMIT || (depth <= 0 && !overSearch) || ba.noMovesAvalible(cb, pc)) {
+			maxDepth = Math.max(rootDepth - depth, maxDepth);
 			return getScore(cb);
 		}
 
+		long key = 0;
+		long entry = 0;
+		if (depth > 0 && depth < rootDepth) {
+			key = Zobrist.getKey(cb, pc);
+			entry = table.probe(key);
+			if (entry != 0 && TranspositionTable.getDepth(entry) >= depth) {
+				float score = TranspositionTable.getScore(entry);
+				int bound = TranspositionTable.getBound(entry);
+				if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+						|| (bound == TranspositionTable.UPPER && score <= alpha)) {
+					return score;
+				}
+			}
+		}
+
+		float alphaOrig = alpha;
+		float betaOrig = beta;
 		float best;
 		if (pc == PieceColor.WHITE) {
 			best = Integer.MIN_VALUE;
 		} else {
 			best = Integer.MAX_VALUE;
 		}
-		outerLoop: for (ChessPiece cp : cb.getAllPieces(pc)) {
-			for (Move m : cp.getValidMoves(cb)) {
-				ChessBoard sim = new ChessBoard(cb);
-				m.execute(sim);
-
-				boolean quiescence = !cb.isEmpty(m.getTo()) || ba.isInCheck(cb, pc);
-				float score = minimax(sim, pc.flip(), depth - 1, alpha, beta, quiescence);
-
-				if (pc == PieceColor.WHITE) {
-					if (score > best) {
-						best = score;
-						if (depth == DEPTH) {
-							bestMove = m;
-						}
-					}
-
-					alpha = Math.max(alpha, score);
-				} else {
-					if (score < best) {
-						best = score;
-						if (depth == DEPTH) {
-							bestMove = m;
-						}
-					}
-
-					beta = Math.min(beta, score);
-				}
+		Move bestMove = null;
+		ArrayList<Move> moves = (depth == rootDepth) ? searchMoves : ba.getValidMoves(cb, pc);
+		if (entry != 0) {
+			orderMoves(moves, entry);
+		}
+		for (Move m : moves) {
+			ChessBoard sim = new ChessBoard(cb);
+			m.execute(sim);
+			if (incremental != null) {
+				incremental.push(cb, sim);
+			}
 
-				if (alpha >= beta) {
-					break outerLoop;
-				}
+			boolean quiescence = !cb.isEmpty(m.getTo()) || ba.isInCheck(cb, pc);
+			float score = minimax(sim, pc.flip(), depth - 1, alpha, beta, quiescence);
+			if (incremental != null) {
+				incremental.pop();
+			}
+
+			if (pc == PieceColor.WHITE ? score > best : score < best) {
+				best = score;
+				bestMove = m;
+				updatePv(ply, m);
 			}
+
+			if (pc == PieceColor.WHITE) {
+				alpha = Math.max(alpha, score);
+			} else {
+				beta = Math.min(beta, score);
+			}
+
+			if (alpha >= beta) {
+				break;
+			}
+		}
+
+		if (depth > 0 && depth < rootDepth) {
+			int bound = TranspositionTable.EXACT;
+			if (best <= alphaOrig) {
+				bound = TranspositionTable.UPPER;
+			} else if (best >= betaOrig) {
+				bound = TranspositionTable.LOWER;
+			}
+			table.store(key, best, depth, bound, bestMove);
 		}
 		return best;
 	}
 
+	/**
+	 * Makes a move the first move of its principal variation, followed by the
+	 * principal variation of the position after it.
+	 * 
+	 * @param ply the distance of the position from the root
+	 * @param m   the new best move of the position
+	 */
+	private void updatePv(int ply, Move m) {
+		pv[ply][ply] = m;
+		int length = Math.max(pvLength[ply + 1], ply + 1);
+		System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, length - ply - 1);
+		pvLength[ply] = length;
+	}
+
+	/**
+	 * Moves the best move stored in the transposition table to the front of a
+	 * list of moves, since it is the most likely to cause a cutoff.
+	 * 
+	 * @param moves the moves of a position
+	 * @param entry the transposition table entry of the position
+	 */
+	private static void orderMoves(ArrayList<Move> moves, long entry) {
+		for (int i = 1; i < moves.size(); i++) {
+			if (TranspositionTable.isMove(entry, moves.get(i))) {
+				moves.add(0, moves.remove(i));
+				return;
+			}
+		}
+	}
+
 	/**
 	 * A method which evaluates the state of a chess board, and returns a score.
 	 * Positive numbers indicate that white has an advantage, and negatives indicate
-	 * that black has an advantage.
+	 * that black has an advantage. Evaluations are cached, so a board which is
+	 * reached several times is only evaluated once.
 	 * 
 	 * @param cb the chess board to evaluate
 	 * @return the integer evaluation of the given board
@@ -125,6 +638,24 @@ public class Minimax extends Player {
 	 * @see https://www.chessprogramming.org/Evaluation
 	 */
 	private float getScore(ChessBoard cb) {
+		long key = Zobrist.getKey(cb);
+		float score = evalCache.probe(key);
+		if (Float.isNaN(score)) {
+			score = evaluate(cb);
+			evalCache.store(key, score);
+		}
+		return score;
+	}
+
+	/**
+	 * A method which evaluates the state of a chess board without using the cache.
+	 * Checkmate and stalemate are scored here, and all other positions are passed
+	 * on to the evaluator.
+	 * 
+	 * @param cb the chess board to evaluate
+	 * @return the evaluation of the given board
+	 */
+	private float evaluate(ChessBoard cb) {
 		BoardAnalyzer ba = BoardAnalyzer.getInstance();
 		if (ba.isInCheckmate(cb, PieceColor.WHITE)) {
 			return -999999;
@@ -136,38 +667,33 @@ public class Minimax extends Player {
 			return 0;
 		}
 
-		ArrayList<ChessPiece> pcs = cb.getAllPieces();
-		
-		int material = 0;
-		//int mobility = 0;
-		float pcY = 0;
-		int tot = pcs.size();
-		
-		for (ChessPiece cp : pcs) {
-			int color = (cp.getPieceColor() == PieceColor.WHITE) ? 1 : -1;
-
-			//mobility += color * cp.getValidMoves(cb).size();
-			
-			Square loc = cb.getSquare(cp);
-			pcY += loc.getY();
+		return evaluator.evaluate(cb);
+	}
 
-			if (cp instanceof Pawn) {
-				material += color * 1;
-			}
-			if (cp instanceof Knight || cp instanceof Bishop) {
-				material += color * 3;
-			}
-			if (cp instanceof Rook) {
-				material += color * 5;
-			}
-			if (cp instanceof Queen) {
-				material += color * 9;
-			}
+	/**
+	 * Converts a tablebase result into a score. Won positions are scored above
+	 * any evaluation, and the static evaluation is added so that the search still
+	 * makes progress towards the win. Cursed wins and blessed losses are draws.
+	 * 
+	 * @param cb  the chess board
+	 * @param pc  the color of the player to move
+	 * @param wdl the result for the player to move
+	 * @return the score of the position (positive for white)
+	 */
+	private float getTablebaseScore(ChessBoard cb, PieceColor pc, Wdl wdl) {
+		float score;
+		if (wdl == Wdl.WIN) {
+			score = TB_WIN;
+		} else if (wdl == Wdl.LOSS) {
+			score = -TB_WIN;
+		} else {
+			return 0;
 		}
-		
-		float pos = (pcY / tot - 3.5f);
 
-		return material + /*0.1f * mobility*/ + 4 * pos;
+		if (pc == PieceColor.BLACK) {
+			score = -score;
+		}
+		return score + evaluator.evaluate(cb);
 	}
 
 	@Override
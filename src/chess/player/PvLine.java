@@ -0,0 +1,68 @@
+package chess.player;
+
+import java.util.Collections;
+import java.util.List;
+
+import chess.board.Move;
+
+/**
+ * A class which represents one line of an analysis: a root move, the exact
+ * score of the position after it and the principal variation, the moves both
+ * players are expected to play from there on.
+ *
+ * @author kennangumbs
+ *
+ */
+public class PvLine {
+
+	private final float score;
+	private final List<Move> moves;
+
+	/**
+	 * Constructs a PvLine object.
+	 *
+	 * @param score the score of the line (positive for white)
+	 * @param moves the moves of the line, starting with the root move
+	 */
+	public PvLine(float score, List<Move> moves) {
+		this.score = score;
+		this.moves = Collections.unmodifiableList(moves);
+	}
+
+	/**
+	 * A getter for the score of the line. Positive numbers indicate that white
+	 * has an advantage.
+	 *
+	 * @return the value of score
+	 */
+	public float getScore() {
+		return score;
+	}
+
+	/**
+	 * A getter for the moves of the line.
+	 *
+	 * @return the value of moves
+	 */
+	public List<Move> getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Returns the root move of the line.
+	 *
+	 * @return the first move
+	 */
+	public Move getMove() {
+		return moves.get(0);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder().append(score);
+		for (Move m : moves) {
+			sb.append(' ').append(m.getFrom()).append(m.getTo());
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,21 @@
+package chess.player;
+
+/**
+ * An exception which is thrown inside of a search to unwind it immediately
+ * once its SearchController has been stopped. The partial result of the
+ * interrupted iteration is meaningless and should be thrown away.
+ *
+ * @author kennangumbs
+ *
+ */
+@SuppressWarnings("serial")
+public class SearchAbortedException extends RuntimeException {
+
+	/**
+	 * Constructs a SearchAbortedException object. The stack trace is not filled
+	 * in, since the exception is used for control flow and is thrown often.
+	 */
+	public SearchAbortedException() {
+		super("Search aborted", null, false, false);
+	}
+}
@@ -0,0 +1,160 @@
+package chess.player;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class which controls when a search has to stop. The search calls
+ * {@link #checkpoint()} once per node, and the (volatile) stop flag is only
+ * read every {@link #CHECK_INTERVAL} nodes. The deadline is enforced by a
+ * shared timer thread which raises the flag, so the search itself never has to
+ * read the clock. The flag can also be raised from outside of the search (for
+ * example by the UI) by calling {@link #stop()}.
+ *
+ * A stop from outside is kept until {@link #reset()} is called, and not
+ * cleared when a search starts: a stop which arrives after a search was asked
+ * for, but before the search thread has called {@link #start(long)}, still
+ * stops that search. Only the limits of a search are reset when it starts.
+ *
+ * @author kennangumbs
+ *
+ */
+public class SearchController {
+
+	/**
+	 * How many nodes are searched between two reads of the stop flag.
+	 */
+	public static final int CHECK_INTERVAL = 1024;
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "Search Timer");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private volatile boolean stopped;
+	private volatile boolean expired;
+
+	private long nodes;
+	private long nodeLimit;
+	private long start;
+	private ScheduledFuture<?> deadline;
+
+	/**
+	 * Starts a new search. The node counter is reset and a timer is scheduled
+	 * which stops the search after a given amount of time. A stop requested with
+	 * {@link #stop()} is not cleared.
+	 *
+	 * @param maxMs the maximum amount of time the search may take in milliseconds,
+	 *              or a negative number for no time limit.
+	 */
+	public synchronized void start(long maxMs) {
+		start(maxMs, 0);
+	}
+
+	/**
+	 * Starts a new search with a limit on the amount of nodes as well as on the
+	 * time. The node limit is checked as often as the stop flag, so the search
+	 * may overshoot it by up to {@link #CHECK_INTERVAL} nodes.
+	 *
+	 * @param maxMs     the maximum amount of time the search may take in
+	 *                  milliseconds, or a negative number for no time limit.
+	 * @param nodeLimit the maximum amount of nodes, or 0 for no node limit
+	 */
+	public synchronized void start(long maxMs, long nodeLimit) {
+		cancelDeadline();
+		expired = false;
+		nodes = 0;
+		this.nodeLimit = nodeLimit;
+		start = System.currentTimeMillis();
+
+		if (maxMs >= 0) {
+			deadline = TIMER.schedule(() -> {
+				expired = true;
+			}, maxMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Finishes the current search by cancelling its timer, if it is still
+	 * pending.
+	 */
+	public synchronized void finish() {
+		cancelDeadline();
+	}
+
+	/**
+	 * Stops the search which is currently running. This method is safe to call
+	 * from any thread.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Clears a stop requested with {@link #stop()}, so that the next search runs.
+	 * It must be called before the thread of the next search is started, never
+	 * while it may be running.
+	 */
+	public void reset() {
+		stopped = false;
+	}
+
+	/**
+	 * A method which is called by the search once per node. It counts the node and
+	 * every {@link #CHECK_INTERVAL} nodes checks whether the search has been
+	 * stopped.
+	 *
+	 * @throws SearchAbortedException if the search has been stopped
+	 */
+	public void checkpoint() {
+		if (++nodes % CHECK_INTERVAL == 0) {
+			if (nodeLimit > 0 && nodes >= nodeLimit) {
+				expired = true;
+			}
+			if (stopped || expired) {
+				throw new SearchAbortedException();
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the search has been stopped, either from outside or because
+	 * it reached one of its limits.
+	 *
+	 * @return true if the search was stopped, false otherwise.
+	 */
+	public boolean isStopped() {
+		return stopped || expired;
+	}
+
+	/**
+	 * A getter for the amount of nodes searched since the search was started.
+	 *
+	 * @return the value of nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the amount of time since the search was started.
+	 *
+	 * @return the elapsed time in milliseconds
+	 */
+	public long getElapsedMs() {
+		return System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Cancels the timer of the current search.
+	 */
+	private void cancelDeadline() {
+		if (deadline != null) {
+			deadline.cancel(false);
+			deadline = null;
+		}
+	}
+}
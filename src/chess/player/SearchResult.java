@@ -0,0 +1,114 @@
+package chess.player;
+
+import java.util.Collections;
+import java.util.List;
+
+import chess.board.Move;
+
+/**
+ * A class which holds the result of a search: the lines of the deepest
+ * completed iteration, best first, and statistics about the search.
+ *
+ * @author kennangumbs
+ *
+ */
+public class SearchResult {
+
+	private final List<PvLine> lines;
+	private final int depth;
+	private final int maxDepth;
+	private final long nodes;
+	private final long elapsedMs;
+
+	/**
+	 * Constructs a SearchResult object.
+	 *
+	 * @param lines     the lines found, best first
+	 * @param depth     the depth of the deepest completed iteration
+	 * @param maxDepth  the deepest position reached, including quiescence search
+	 * @param nodes     the amount of positions searched
+	 * @param elapsedMs the time the search took in milliseconds
+	 */
+	public SearchResult(List<PvLine> lines, int depth, int maxDepth, long nodes, long elapsedMs) {
+		this.lines = Collections.unmodifiableList(lines);
+		this.depth = depth;
+		this.maxDepth = maxDepth;
+		this.nodes = nodes;
+		this.elapsedMs = elapsedMs;
+	}
+
+	/**
+	 * Returns the move of the best line.
+	 *
+	 * @return the best move, null if there are no legal moves
+	 */
+	public Move getBestMove() {
+		return lines.isEmpty() ? null : lines.get(0).getMove();
+	}
+
+	/**
+	 * Returns the score of the best line.
+	 *
+	 * @return the best score (positive for white), 0 if there are no lines
+	 */
+	public float getScore() {
+		return lines.isEmpty() ? 0 : lines.get(0).getScore();
+	}
+
+	/**
+	 * A getter for the lines of the search, best first.
+	 *
+	 * @return the value of lines
+	 */
+	public List<PvLine> getLines() {
+		return lines;
+	}
+
+	/**
+	 * A getter for the depth of the deepest completed iteration.
+	 *
+	 * @return the value of depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * A getter for the deepest position reached, including quiescence search.
+	 *
+	 * @return the value of maxDepth
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * A getter for the amount of positions searched.
+	 *
+	 * @return the value of nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * A getter for the time the search took.
+	 *
+	 * @return the value of elapsedMs in milliseconds
+	 */
+	public long getElapsedMs() {
+		return elapsedMs;
+	}
+
+	@Override
+	public String toString() {
+		String s = "Move score: " + getScore() + " (Depth: " + depth + ", Max Depth: " + maxDepth + ", Nodes: " + nodes
+				+ ", Time elapsed: " + elapsedMs / 1000f + "s)";
+		if (lines.size() > 1) {
+			for (int i = 0; i < lines.size(); i++) {
+				s += "\n" + (i + 1) + ". " + lines.get(i);
+			}
+		}
+		return s;
+	}
+}
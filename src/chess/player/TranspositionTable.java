@@ -0,0 +1,157 @@
+package chess.player;
+
+import java.util.Arrays;
+
+import chess.board.Move;
+
+/**
+ * A hash table which stores the results of searched positions, so that a
+ * position which is reached again through a different move order, or searched
+ * again by a later iteration, does not have to be searched from scratch. Each
+ * entry holds the score, the depth it was searched to, whether the score is
+ * exact or only a bound, and the best move, which is tried first when the
+ * position is searched again.
+ *
+ * The table is lockless in the same way as the evaluation cache: every entry
+ * is stored as the data and the key exclusive-or'ed with the data.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Transposition_Table
+ */
+public class TranspositionTable {
+
+	/**
+	 * The bound of a score which is exact.
+	 */
+	public static final int EXACT = 1;
+
+	/**
+	 * The bound of a score which is at least as high as the real score.
+	 */
+	public static final int UPPER = 2;
+
+	/**
+	 * The bound of a score which is at most as high as the real score.
+	 */
+	public static final int LOWER = 3;
+
+	private static final long NO_MOVE = 0xFFF;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+
+	/**
+	 * Constructs a TranspositionTable object.
+	 *
+	 * @param bits the base 2 logarithm of the amount of entries in the table
+	 */
+	public TranspositionTable(int bits) {
+		keys = new long[1 << bits];
+		data = new long[1 << bits];
+		mask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @param key the Zobrist key of the position, including the player to move
+	 * @return the entry of the position, 0 if the position is not in the table
+	 */
+	public long probe(long key) {
+		int i = (int) key & mask;
+		long d = data[i];
+		if (d != 0 && (keys[i] ^ d) == key) {
+			return d;
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores the result of a search. An entry of the same position which was
+	 * searched deeper is kept.
+	 *
+	 * @param key   the Zobrist key of the position, including the player to move
+	 * @param score the score of the position
+	 * @param depth the depth the position was searched to
+	 * @param bound {@link #EXACT}, {@link #UPPER} or {@link #LOWER}
+	 * @param move  the best move, null if none
+	 */
+	public void store(long key, float score, int depth, int bound, Move move) {
+		int i = (int) key & mask;
+		long old = data[i];
+		if (old != 0 && (keys[i] ^ old) == key && getDepth(old) > depth) {
+			return;
+		}
+
+		long d = pack(score, depth, bound, move);
+		data[i] = d;
+		keys[i] = key ^ d;
+	}
+
+	/**
+	 * Packs the result of a search into the data of an entry.
+	 *
+	 * @param score the score of the position
+	 * @param depth the depth the position was searched to
+	 * @param bound {@link #EXACT}, {@link #UPPER} or {@link #LOWER}
+	 * @param move  the best move, null if none
+	 * @return the data of the entry, which is never 0
+	 */
+	static long pack(float score, int depth, int bound, Move move) {
+		long m = (move == null) ? NO_MOVE : move.getFrom().getIndex() << 6 | move.getTo().getIndex();
+		long d = Float.floatToRawIntBits(score) & 0xFFFFFFFFL;
+		return d | (long) (depth & 0xFF) << 32 | (long) bound << 40 | m << 42;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+	}
+
+	/**
+	 * Returns the score of an entry.
+	 *
+	 * @param entry the entry
+	 * @return the score
+	 */
+	public static float getScore(long entry) {
+		return Float.intBitsToFloat((int) entry);
+	}
+
+	/**
+	 * Returns the depth of an entry.
+	 *
+	 * @param entry the entry
+	 * @return the depth
+	 */
+	public static int getDepth(long entry) {
+		return (byte) (entry >>> 32);
+	}
+
+	/**
+	 * Returns the bound of an entry.
+	 *
+	 * @param entry the entry
+	 * @return {@link #EXACT}, {@link #UPPER} or {@link #LOWER}
+	 */
+	public static int getBound(long entry) {
+		return (int) (entry >>> 40) & 3;
+	}
+
+	/**
+	 * Checks whether the best move of an entry is a given move.
+	 *
+	 * @param entry the entry
+	 * @param m     the move
+	 * @return true if the move is the best move of the entry, false otherwise.
+	 */
+	public static boolean isMove(long entry, Move m) {
+		long stored = (entry >>> 42) & 0xFFF;
+		return stored != NO_MOVE && stored == (m.getFrom().getIndex() << 6 | m.getTo().getIndex());
+	}
+}
@@ -6,22 +6,44 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import javax.swing.JPanel;
 
 import chess.board.ChessBoard;
 import chess.board.Move;
 import chess.board.Square;
+import chess.explorer.ExplorerEntry;
+import chess.explorer.OpeningIndex;
 import chess.input.Input;
+import chess.pgn.San;
 import chess.piece.ChessPiece;
+import chess.piece.PieceColor;
 
 /**
  * A class which extends JPanel and handles output to the screen.
  * 
+ * The squares and coordinates never change, so they are rendered once into a
+ * board layer, a VolatileImage kept in video memory, which is copied to the
+ * screen on every repaint and only rendered again when its contents are lost.
+ * The {@link Icon images} of the pieces are scaled to the size of a square
+ * once, the first time they are drawn. Changes to the last move, the check and
+ * the valid moves, as well as {@link #repaintChanges()} after a move, repaint
+ * only the squares they touch, and a repaint draws only the pieces inside its
+ * clip.
+ * 
  * @author kennangumbs
  *
  */
@@ -44,11 +66,24 @@ public class ChessPanel extends JPanel {
 
 	private static final Color CHECK_COLOR = new Color(128 / 255f, 0.0f, 0.0f, 0.5f);
 
+	private static final int EXPLORER_WIDTH = 330;
+	private static final int EXPLORER_LINE = 24;
+	private static final int EXPLORER_MOVES = 30;
+	private static final Font EXPLORER_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 16);
+
 	private ChessBoard cb;
+	private OpeningIndex explorer;
+	private volatile List<String> explorerLines;
 
 	private ArrayList<Move> valid;
-	private Move move;
-	private Square check;
+	private volatile Move move;
+	private volatile Square check;
+
+	private VolatileImage boardLayer;
+	private BufferedImage boardImage;
+	private GraphicsConfiguration spriteConfig;
+	private final BufferedImage[] sprites;
+	private final int[] drawn;
 
 	/**
 	 * Constructs a ChessPanel object.
@@ -58,66 +93,143 @@ public class ChessPanel extends JPanel {
 	 */
 	public ChessPanel(Input input, ChessBoard cb) {
 		this.cb = cb;
-		setPreferredSize(new Dimension(WINDOW_SIZE, WINDOW_SIZE));
+		explorer = OpeningIndex.getInstance();
+		int width = (explorer == null) ? WINDOW_SIZE : WINDOW_SIZE + EXPLORER_WIDTH;
+		setPreferredSize(new Dimension(width, WINDOW_SIZE));
 		addMouseListener(input);
 
 		valid = new ArrayList<Move>();
+		explorerLines = Collections.emptyList();
+
+		sprites = new BufferedImage[Icon.values().length];
+		drawn = new int[64];
+		Arrays.fill(drawn, -1);
 	}
 
 	@Override
 	protected void paintComponent(Graphics g) {
 		super.paintComponent(g);
 		Graphics2D g2d = (Graphics2D) g;
-		drawBoard(g2d);
-		drawExtras(g2d);
+		Rectangle clip = g2d.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		if (clip.x < WINDOW_SIZE) {
+			drawBoard(g2d, clip);
+			drawExtras(g2d, clip);
+		}
+		if (explorer != null && clip.x + clip.width > WINDOW_SIZE) {
+			drawExplorer(g2d);
+		}
 	}
 
 	/**
-	 * Draws the chess board to the screen.
+	 * Draws the chess board to the screen: the board layer, which is only
+	 * rendered again when its contents are lost, and the pieces on the squares
+	 * inside the clip.
 	 * 
-	 * @param g2d the Graphics2D object
+	 * @param g2d  the Graphics2D object
+	 * @param clip the area to draw
 	 */
-	private void drawBoard(Graphics2D g2d) {
+	private void drawBoard(Graphics2D g2d, Rectangle clip) {
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		if (gc == null) {
+			// Without a screen, such as when painting into an image, the layer
+			// cannot be a VolatileImage.
+			if (boardImage == null) {
+				boardImage = new BufferedImage(WINDOW_SIZE, WINDOW_SIZE, BufferedImage.TYPE_INT_RGB);
+				renderBoardLayer(boardImage);
+			}
+			g2d.drawImage(boardImage, 0, 0, null);
+		} else {
+			do {
+				int status = (boardLayer == null) ? VolatileImage.IMAGE_INCOMPATIBLE : boardLayer.validate(gc);
+				if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+					boardLayer = gc.createCompatibleVolatileImage(WINDOW_SIZE, WINDOW_SIZE);
+				}
+				if (status != VolatileImage.IMAGE_OK) {
+					renderBoardLayer(boardLayer);
+				}
+				g2d.drawImage(boardLayer, 0, 0, null);
+			} while (boardLayer.contentsLost());
+		}
+
+		if (gc != spriteConfig) {
+			spriteConfig = gc;
+			Arrays.fill(sprites, null);
+		}
+		int x0 = Math.max(0, (clip.x - OFFSET) / SQUARE_SIZE);
+		int x1 = Math.min(7, (clip.x + clip.width - OFFSET) / SQUARE_SIZE);
+		int y0 = Math.max(0, 7 - (clip.y + clip.height - OFFSET) / SQUARE_SIZE);
+		int y1 = Math.min(7, 7 - (clip.y - OFFSET) / SQUARE_SIZE);
+		for (int j = y0; j <= y1; j++) {
+			for (int i = x0; i <= x1; i++) {
+				ChessPiece cp = cb.getPiece(i, j);
+				if (cp != null) {
+					g2d.drawImage(getSprite(cp), getScreenX(i), getScreenY(j), null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Renders the parts of the board which never change, the squares and their
+	 * coordinates, into an image.
+	 * 
+	 * @param image the image to render into
+	 */
+	private void renderBoardLayer(Image image) {
+		Graphics2D g2d = (Graphics2D) image.getGraphics();
 		g2d.setColor(BOARD_COLOR);
 		g2d.fillRect(0, 0, WINDOW_SIZE, WINDOW_SIZE);
 
+		g2d.setColor(Color.WHITE);
+		g2d.setFont(BOARD_FONT);
 		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
-				Square s = new Square(i, j);
-				Point p = getScreenLocation(s);
-				if (i == 0) {
-					g2d.setColor(Color.WHITE);
-					g2d.setFont(BOARD_FONT);
-
-					drawCenteredText(g2d, s.toString().substring(1), new Rectangle(0, p.y, OFFSET, SQUARE_SIZE));
-					drawCenteredText(g2d, s.toString().substring(1),
-							new Rectangle(WINDOW_SIZE - OFFSET, p.y, OFFSET, SQUARE_SIZE));
-				}
-				if (j == 0) {
-					g2d.setColor(Color.WHITE);
-					g2d.setFont(BOARD_FONT);
+			String rank = String.valueOf((char) ('1' + i));
+			drawCenteredText(g2d, rank, new Rectangle(0, getScreenY(i), OFFSET, SQUARE_SIZE));
+			drawCenteredText(g2d, rank, new Rectangle(WINDOW_SIZE - OFFSET, getScreenY(i), OFFSET, SQUARE_SIZE));
 
-					drawCenteredText(g2d, s.toString().substring(0, 1), new Rectangle(p.x, 0, SQUARE_SIZE, OFFSET));
-					drawCenteredText(g2d, s.toString().substring(0, 1),
-							new Rectangle(p.x, WINDOW_SIZE - OFFSET, SQUARE_SIZE, OFFSET));
-				}
-
-				Color color;
-				if ((i + j) % 2 == 0) {
-					color = SQUARE_COLOR_DARK;
-				} else {
-					color = SQUARE_COLOR_LIGHT;
-				}
+			String file = String.valueOf((char) ('a' + i));
+			drawCenteredText(g2d, file, new Rectangle(getScreenX(i), 0, SQUARE_SIZE, OFFSET));
+			drawCenteredText(g2d, file, new Rectangle(getScreenX(i), WINDOW_SIZE - OFFSET, SQUARE_SIZE, OFFSET));
+		}
 
-				g2d.setColor(color);
-				g2d.fillRect(p.x, p.y, SQUARE_SIZE, SQUARE_SIZE);
+		for (int i = 0; i < 8; i++) {
+			for (int j = 0; j < 8; j++) {
+				g2d.setColor(((i + j) % 2 == 0) ? SQUARE_COLOR_DARK : SQUARE_COLOR_LIGHT);
+				g2d.fillRect(getScreenX(i), getScreenY(j), SQUARE_SIZE, SQUARE_SIZE);
+			}
+		}
+		g2d.dispose();
+	}
 
-				ChessPiece cp = cb.getPiece(s);
-				if (cp != null) {
-					g2d.drawImage(cp.getIcon().getImage(), p.x, p.y, SQUARE_SIZE, SQUARE_SIZE, null);
-				}
+	/**
+	 * Returns the image of a piece scaled to the size of a square, scaling it the
+	 * first time it is needed.
+	 * 
+	 * @param cp the piece
+	 * @return the scaled image, or null if the image could not be read
+	 */
+	private BufferedImage getSprite(ChessPiece cp) {
+		Icon icon = Icon.of(cp.getPieceColor(), cp.getPieceType());
+		BufferedImage sprite = sprites[icon.ordinal()];
+		if (sprite == null) {
+			BufferedImage image = icon.getImage();
+			if (image == null) {
+				return null;
 			}
+			sprite = (spriteConfig == null)
+					? new BufferedImage(SQUARE_SIZE, SQUARE_SIZE, BufferedImage.TYPE_INT_ARGB)
+					: spriteConfig.createCompatibleImage(SQUARE_SIZE, SQUARE_SIZE, Transparency.TRANSLUCENT);
+			Graphics2D g2d = sprite.createGraphics();
+			g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g2d.drawImage(image, 0, 0, SQUARE_SIZE, SQUARE_SIZE, null);
+			g2d.dispose();
+			sprites[icon.ordinal()] = sprite;
 		}
+		return sprite;
 	}
 
 	/**
@@ -141,38 +253,90 @@ public class ChessPanel extends JPanel {
 	 * Draws the extra elements of the GUI, including the player's valid moves and a
 	 * line to show the last move.
 	 * 
-	 * @param g2d the Graphics2D object
+	 * @param g2d  the Graphics2D object
+	 * @param clip the area to draw
 	 */
-	private void drawExtras(Graphics2D g2d) {
+	private void drawExtras(Graphics2D g2d, Rectangle clip) {
 		synchronized (valid) {
 			if (!valid.isEmpty()) {
 				g2d.setColor(VALID_MOVE_COLOR);
 				for (Move m : valid) {
-					Point p = getScreenLocation(m.getTo());
-					g2d.fillOval(p.x, p.y, SQUARE_SIZE, SQUARE_SIZE);
+					Square to = m.getTo();
+					int x = getScreenX(to.getX());
+					int y = getScreenY(to.getY());
+					if (clip.intersects(x, y, SQUARE_SIZE, SQUARE_SIZE)) {
+						g2d.fillOval(x, y, SQUARE_SIZE, SQUARE_SIZE);
+					}
 				}
 			}
 		}
 
+		Move move = this.move;
 		if (move != null) {
-			Point p1 = getScreenLocation(move.getFrom());
-			Point p2 = getScreenLocation(move.getTo());
-
-			p1.translate(SQUARE_SIZE / 2, SQUARE_SIZE / 2);
-			p2.translate(SQUARE_SIZE / 2, SQUARE_SIZE / 2);
-
+			int half = SQUARE_SIZE / 2;
 			g2d.setColor(MOVE_COLOR);
-			g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
+			g2d.drawLine(getScreenX(move.getFrom().getX()) + half, getScreenY(move.getFrom().getY()) + half,
+					getScreenX(move.getTo().getX()) + half, getScreenY(move.getTo().getY()) + half);
 		}
 
+		Square check = this.check;
 		if (check != null) {
-			Point p1 = getScreenLocation(check);
-
 			g2d.setColor(CHECK_COLOR);
-			g2d.fillOval(p1.x, p1.y, SQUARE_SIZE, SQUARE_SIZE);
+			g2d.fillOval(getScreenX(check.getX()), getScreenY(check.getY()), SQUARE_SIZE, SQUARE_SIZE);
+		}
+	}
+
+	/**
+	 * Draws the moves of the opening index next to the board.
+	 * 
+	 * @param g2d the Graphics2D object
+	 */
+	private void drawExplorer(Graphics2D g2d) {
+		g2d.setColor(BOARD_COLOR);
+		g2d.fillRect(WINDOW_SIZE, 0, EXPLORER_WIDTH, WINDOW_SIZE);
+
+		g2d.setColor(Color.WHITE);
+		g2d.setFont(EXPLORER_FONT);
+		int y = OFFSET + EXPLORER_LINE;
+		for (String line : explorerLines) {
+			g2d.drawString(line, WINDOW_SIZE, y);
+			y += EXPLORER_LINE;
 		}
 	}
 
+	/**
+	 * Looks up the current position in the opening index, so that the moves
+	 * played in it are shown next to the board. Does nothing if there is no index.
+	 * 
+	 * @param pc the color of the player to move
+	 */
+	public void showExplorer(PieceColor pc) {
+		if (explorer == null) {
+			return;
+		}
+		List<ExplorerEntry> entries = explorer.probe(cb, pc);
+		long total = 0;
+		for (ExplorerEntry e : entries) {
+			total += e.getGames();
+		}
+
+		List<String> lines = new ArrayList<String>();
+		lines.add(String.format("%-7s %6s %5s %5s %5s", "Move", "Games", "White", "Draw", "Black"));
+		for (ExplorerEntry e : entries.subList(0, Math.min(entries.size(), EXPLORER_MOVES))) {
+			Move m = OpeningIndex.toMove(cb, pc, e);
+			if (m == null) {
+				continue;
+			}
+			long games = e.getGames();
+			lines.add(String.format("%-7s %6d %4d%% %4d%% %4d%%", San.toSan(cb, pc, m, e.getPromotion()), games,
+					100L * e.getWhite() / games, 100L * e.getDraws() / games, 100L * e.getBlack() / games));
+		}
+		lines.add("");
+		lines.add(entries.isEmpty() ? "Not in " + explorer.getGames() + " games" : total + " games");
+		explorerLines = lines;
+		repaint(WINDOW_SIZE, 0, EXPLORER_WIDTH, WINDOW_SIZE);
+	}
+
 	/**
 	 * Converts a square of a chess board to a location on the screen.
 	 * 
@@ -180,7 +344,27 @@ public class ChessPanel extends JPanel {
 	 * @return the location of the given square on the screen.
 	 */
 	public static Point getScreenLocation(Square s) {
-		return new Point(s.getX() * SQUARE_SIZE + OFFSET, WINDOW_SIZE - SQUARE_SIZE * (s.getY() + 1) - OFFSET);
+		return new Point(getScreenX(s.getX()), getScreenY(s.getY()));
+	}
+
+	/**
+	 * Converts a file of the chess board to a location on the screen.
+	 * 
+	 * @param x the file, from 0 to 7
+	 * @return the left edge of the file on the screen
+	 */
+	private static int getScreenX(int x) {
+		return x * SQUARE_SIZE + OFFSET;
+	}
+
+	/**
+	 * Converts a rank of the chess board to a location on the screen.
+	 * 
+	 * @param y the rank, from 0 to 7
+	 * @return the top edge of the rank on the screen
+	 */
+	private static int getScreenY(int y) {
+		return WINDOW_SIZE - SQUARE_SIZE * (y + 1) - OFFSET;
 	}
 
 	/**
@@ -196,9 +380,54 @@ public class ChessPanel extends JPanel {
 		return new Square((p.x - OFFSET) / SQUARE_SIZE, 8 - (p.y - OFFSET) / SQUARE_SIZE - 1);
 	}
 
+	/**
+	 * Marks a square to be drawn again.
+	 * 
+	 * @param s the square, or null for none
+	 */
+	private void repaintSquare(Square s) {
+		if (s != null && s.isValid()) {
+			repaint(getScreenX(s.getX()), getScreenY(s.getY()), SQUARE_SIZE, SQUARE_SIZE);
+		}
+	}
+
+	/**
+	 * Marks the squares of a move, and the line between them, to be drawn again.
+	 * 
+	 * @param m the move, or null for none
+	 */
+	private void repaintMove(Move m) {
+		if (m != null) {
+			int x1 = getScreenX(m.getFrom().getX());
+			int y1 = getScreenY(m.getFrom().getY());
+			int x2 = getScreenX(m.getTo().getX());
+			int y2 = getScreenY(m.getTo().getY());
+			repaint(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2) + SQUARE_SIZE,
+					Math.abs(y1 - y2) + SQUARE_SIZE);
+		}
+	}
+
+	/**
+	 * Draws again the squares whose pieces changed since this method was last
+	 * called, which after a move are only its squares, and for castling and en
+	 * passant the square of the rook or the captured pawn.
+	 */
+	public void repaintChanges() {
+		for (int i = 0; i < 64; i++) {
+			ChessPiece cp = cb.getPiece(i % 8, i / 8);
+			int code = (cp == null) ? -1 : Icon.of(cp.getPieceColor(), cp.getPieceType()).ordinal();
+			if (drawn[i] != code) {
+				drawn[i] = code;
+				repaint(getScreenX(i % 8), getScreenY(i / 8), SQUARE_SIZE, SQUARE_SIZE);
+			}
+		}
+	}
+
 	/**
 	 * A getter for the valid instance variable valid, with a synchronized block to
-	 * prevent race conditions.
+	 * prevent race conditions. Changes made to the list are only shown after a
+	 * call to {@link #repaint()}; {@link #setValid(List)} draws only the squares
+	 * which changed.
 	 * 
 	 * @return the value of valid.
 	 */
@@ -209,20 +438,45 @@ public class ChessPanel extends JPanel {
 	}
 
 	/**
-	 * A setter method for the instance variable move
+	 * A setter method for the valid moves to show, which draws again the squares
+	 * of the moves shown before and of the new moves.
+	 * 
+	 * @param moves the new valid moves, empty for none
+	 */
+	public void setValid(List<Move> moves) {
+		synchronized (valid) {
+			for (Move m : valid) {
+				repaintSquare(m.getTo());
+			}
+			valid.clear();
+			valid.addAll(moves);
+			for (Move m : valid) {
+				repaintSquare(m.getTo());
+			}
+		}
+	}
+
+	/**
+	 * A setter method for the instance variable move, which draws again the
+	 * squares of the old and the new move.
 	 * 
 	 * @param move the new value of move
 	 */
 	public void setMove(Move move) {
+		repaintMove(this.move);
 		this.move = move;
+		repaintMove(move);
 	}
 
 	/**
-	 * A setter method for the instance variable check
+	 * A setter method for the instance variable check, which draws again the old
+	 * and the new square.
 	 * 
 	 * @param move the new value of check
 	 */
 	public void setCheck(Square check) {
+		repaintSquare(this.check);
 		this.check = check;
+		repaintSquare(check);
 	}
 }
@@ -1,55 +1,99 @@
 package chess.rendering;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 import javax.imageio.ImageIO;
 
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
 /**
- * A class which represents the image of a chess piece.
- * 
+ * An enum which represents the image of a chess piece. The pieces themselves
+ * know nothing about their images, so that the engine runs without loading any
+ * images or AWT; the images are only loaded the first time one of them is
+ * needed, all of them at once and in parallel.
+ *
+ * The images are read from the classpath, under {@value #RESOURCES}, and when
+ * they are not there from {@value #DIRECTORY} relative to the working
+ * directory, so that the game also runs from the source tree.
+ *
  * Images were taken from
  * https://commons.wikimedia.org/wiki/Category:PNG_chess_pieces/Standard_transparent
- * 
+ *
  * @author kennangumbs
  *
  */
-public class Icon {
-	public static final Icon WHITE_PAWN = new Icon("src/chess/images/white_pawn.png");
-	public static final Icon BLACK_PAWN = new Icon("src/chess/images/black_pawn.png");
-	public static final Icon WHITE_ROOK = new Icon("src/chess/images/white_rook.png");
-	public static final Icon BLACK_ROOK = new Icon("src/chess/images/black_rook.png");
-	public static final Icon WHITE_KNIGHT = new Icon("src/chess/images/white_knight.png");
-	public static final Icon BLACK_KNIGHT = new Icon("src/chess/images/black_knight.png");
-	public static final Icon WHITE_BISHOP = new Icon("src/chess/images/white_bishop.png");
-	public static final Icon BLACK_BISHOP = new Icon("src/chess/images/black_bishop.png");
-	public static final Icon WHITE_QUEEN = new Icon("src/chess/images/white_queen.png");
-	public static final Icon BLACK_QUEEN = new Icon("src/chess/images/black_queen.png");
-	public static final Icon WHITE_KING = new Icon("src/chess/images/white_king.png");
-	public static final Icon BLACK_KING = new Icon("src/chess/images/black_king.png");
+public enum Icon {
+	WHITE_PAWN, WHITE_KNIGHT, WHITE_BISHOP, WHITE_ROOK, WHITE_QUEEN, WHITE_KING, BLACK_PAWN, BLACK_KNIGHT,
+	BLACK_BISHOP, BLACK_ROOK, BLACK_QUEEN, BLACK_KING;
+
+	private static final String RESOURCES = "/chess/images/";
+	private static final String DIRECTORY = "src/chess/images/";
+
+	private static volatile boolean loaded;
 
 	private BufferedImage bi;
 
 	/**
-	 * Constructs an Icon object.
-	 * 
-	 * @param fileName the path to the image
+	 * Returns the icon of a piece.
+	 *
+	 * @param pc the color of the piece
+	 * @param pt the type of the piece
+	 * @return the icon of the piece
 	 */
-	public Icon(String fileName) {
-		try {
-			bi = ImageIO.read(new File(fileName));
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	public static Icon of(PieceColor pc, PieceType pt) {
+		return values()[pc.ordinal() * PieceType.values().length + pt.ordinal()];
 	}
 
 	/**
-	 * A getter method for the BufferedImage
-	 * 
-	 * @return the value of image
+	 * A getter method for the BufferedImage, which loads the images of all icons
+	 * the first time it is called.
+	 *
+	 * @return the value of image, or null if it could not be read
 	 */
 	public BufferedImage getImage() {
+		if (!loaded) {
+			load();
+		}
 		return bi;
 	}
+
+	/**
+	 * Reads the images of all icons in parallel, unless they have already been
+	 * read.
+	 */
+	private static synchronized void load() {
+		if (!loaded) {
+			Arrays.stream(values()).parallel().forEach(icon -> icon.bi = icon.read());
+			loaded = true;
+		}
+	}
+
+	/**
+	 * Reads the image of this icon.
+	 *
+	 * @return the image, or null if it could not be read
+	 */
+	private BufferedImage read() {
+		String fileName = name().toLowerCase() + ".png";
+		try (InputStream in = Icon.class.getResourceAsStream(RESOURCES + fileName)) {
+			if (in != null) {
+				return ImageIO.read(in);
+			}
+			Path path = Paths.get(DIRECTORY + fileName);
+			if (Files.exists(path)) {
+				return ImageIO.read(path.toFile());
+			}
+			System.err.println("Missing image " + fileName);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
 }
@@ -0,0 +1,251 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import chess.board.ChessBoard;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which holds a bitbase: one bit for every position of a small endgame
+ * in which one side has only its king, telling whether the other side wins.
+ * The bits are kept off the heap, either in a mapped file or in a direct
+ * buffer.
+ *
+ * Positions are stored with the strong side as white. A position with black as
+ * the strong side is looked up with its ranks mirrored. The index of a
+ * position is made of 6 bits for each square, from the most significant to the
+ * least: the side to move (0 if the strong side is to move), the strong king,
+ * the weak king and then the other pieces of the strong side in the order they
+ * were given.
+ *
+ * Bitbases only know whether a position is won, not how long it takes, so the
+ * fifty-move rule is not taken into account.
+ *
+ * @author kennangumbs
+ *
+ */
+public class Bitbase {
+
+	private static final int MAGIC = 0x4B424231;
+	private static final int HEADER_SIZE = 8;
+
+	private static final String PIECE_LETTERS = "PNBRQK";
+
+	private final PieceType[] pieces;
+	private final ByteBuffer bits;
+
+	/**
+	 * Constructs a Bitbase object.
+	 *
+	 * @param pieces the pieces of the strong side besides the king
+	 * @param bits   the buffer holding the header and the win bits
+	 */
+	private Bitbase(PieceType[] pieces, ByteBuffer bits) {
+		this.pieces = pieces;
+		this.bits = bits;
+	}
+
+	/**
+	 * Generates a bitbase by retrograde analysis. Endgames with a pawn need the
+	 * bitbases of the pieces it can be promoted to.
+	 *
+	 * @param pieces         the pieces of the strong side besides the king
+	 * @param queenPromotion the bitbase for a promotion to a queen, or null
+	 * @param rookPromotion  the bitbase for a promotion to a rook, or null
+	 * @return the generated bitbase
+	 */
+	public static Bitbase generate(PieceType[] pieces, Bitbase queenPromotion, Bitbase rookPromotion) {
+		long[] won = new BitbaseGenerator(pieces, queenPromotion, rookPromotion).generate();
+
+		ByteBuffer bits = ByteBuffer.allocateDirect(HEADER_SIZE + won.length * 8);
+		writeHeader(bits, pieces);
+		for (int i = 0; i < won.length; i++) {
+			bits.putLong(HEADER_SIZE + i * 8, won[i]);
+		}
+		return new Bitbase(pieces.clone(), bits);
+	}
+
+	/**
+	 * Maps a bitbase file into memory read-only.
+	 *
+	 * @param path the path of the file
+	 * @return the mapped bitbase
+	 * @throws IOException if the file cannot be mapped or is not a bitbase
+	 */
+	public static Bitbase load(Path path) throws IOException {
+		ByteBuffer bits;
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			bits = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+		if (bits.capacity() < HEADER_SIZE || bits.getInt(0) != MAGIC) {
+			throw new IOException("Not a bitbase: " + path);
+		}
+
+		PieceType[] pieces = new PieceType[bits.get(4)];
+		for (int i = 0; i < pieces.length; i++) {
+			pieces[i] = PieceType.values()[bits.get(5 + i)];
+		}
+		if (bits.capacity() != HEADER_SIZE + getSize(pieces.length) / 8) {
+			throw new IOException("Truncated bitbase: " + path);
+		}
+		return new Bitbase(pieces, bits);
+	}
+
+	/**
+	 * Writes the bitbase to a file.
+	 *
+	 * @param path the path of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer data = bits.duplicate();
+			data.clear();
+			while (data.hasRemaining()) {
+				ch.write(data);
+			}
+		}
+	}
+
+	/**
+	 * Looks up a position. The position must have the material of this bitbase,
+	 * with either color as the strong side.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @return the result for the player to move, or null if the material does
+	 *         not match
+	 */
+	public Wdl probe(ChessBoard cb, PieceColor pc) {
+		for (PieceColor strong : PieceColor.values()) {
+			PieceColor weak = strong.flip();
+			if (cb.getOccupancy(weak) != cb.getPieces(PieceType.KING, weak) || !hasMaterial(cb, strong)) {
+				continue;
+			}
+
+			// Mirroring the ranks turns black into white.
+			int flip = (strong == PieceColor.WHITE) ? 0 : 56;
+			int[] sq = new int[pieces.length];
+			for (int i = 0; i < pieces.length; i++) {
+				long bb = cb.getPieces(pieces[i], strong);
+				// Two pieces of the same type are taken from the lowest square up.
+				for (int j = 0; j < i; j++) {
+					if (pieces[j] == pieces[i]) {
+						bb &= bb - 1;
+					}
+				}
+				sq[i] = Long.numberOfTrailingZeros(bb) ^ flip;
+			}
+			int wk = Long.numberOfTrailingZeros(cb.getPieces(PieceType.KING, strong)) ^ flip;
+			int bk = Long.numberOfTrailingZeros(cb.getPieces(PieceType.KING, weak)) ^ flip;
+
+			if (!isWon(getIndex(pc != strong, wk, bk, sq))) {
+				return Wdl.DRAW;
+			}
+			return (pc == strong) ? Wdl.WIN : Wdl.LOSS;
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the strong side wins a position.
+	 *
+	 * @param index the index of the position
+	 * @return true if the position is won, false otherwise.
+	 */
+	public boolean isWon(int index) {
+		return (bits.getLong(HEADER_SIZE + (index >>> 6) * 8) & (1L << index)) != 0;
+	}
+
+	/**
+	 * Computes the index of a position.
+	 *
+	 * @param blackToMove true if the weak side is to move
+	 * @param wk          the square of the strong king
+	 * @param bk          the square of the weak king
+	 * @param sq          the squares of the other pieces of the strong side
+	 * @return the index of the position
+	 */
+	static int getIndex(boolean blackToMove, int wk, int bk, int[] sq) {
+		int index = ((blackToMove ? 64 : 0) + wk) * 64 + bk;
+		for (int s : sq) {
+			index = index * 64 + s;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the name of the endgame, for example "KBNK".
+	 *
+	 * @return the name of the endgame
+	 */
+	public String getName() {
+		StringBuilder sb = new StringBuilder("K");
+		for (PieceType pt : pieces) {
+			sb.append(PIECE_LETTERS.charAt(pt.ordinal()));
+		}
+		return sb.append("K").toString();
+	}
+
+	/**
+	 * A getter for the amount of pieces on the board in this endgame, including
+	 * both kings.
+	 *
+	 * @return the amount of pieces
+	 */
+	public int getPieceCount() {
+		return pieces.length + 2;
+	}
+
+	/**
+	 * Checks whether a side has exactly the pieces of the strong side.
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the side
+	 * @return true if the material matches, false otherwise.
+	 */
+	private boolean hasMaterial(ChessBoard cb, PieceColor pc) {
+		int[] counts = new int[PieceType.values().length];
+		counts[PieceType.KING.ordinal()] = 1;
+		for (PieceType pt : pieces) {
+			counts[pt.ordinal()]++;
+		}
+		for (PieceType pt : PieceType.values()) {
+			if (Long.bitCount(cb.getPieces(pt, pc)) != counts[pt.ordinal()]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the file header: a magic number, the amount of pieces and their
+	 * types.
+	 *
+	 * @param bits   the buffer
+	 * @param pieces the pieces of the strong side besides the king
+	 */
+	private static void writeHeader(ByteBuffer bits, PieceType[] pieces) {
+		bits.putInt(0, MAGIC);
+		bits.put(4, (byte) pieces.length);
+		for (int i = 0; i < pieces.length; i++) {
+			bits.put(5 + i, (byte) pieces[i].ordinal());
+		}
+	}
+
+	/**
+	 * Returns the amount of positions in a bitbase.
+	 *
+	 * @param n the amount of pieces of the strong side besides the king
+	 * @return the amount of positions
+	 */
+	private static long getSize(int n) {
+		return 2L << (12 + 6 * n);
+	}
+}
@@ -0,0 +1,340 @@
+package chess.tablebase;
+
+import java.util.stream.IntStream;
+
+import chess.board.Bitboards;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which generates a {@link Bitbase} by retrograde analysis. The strong
+ * side is always white. Starting from the checkmates, the generator repeatedly
+ * marks positions as won: a position with white to move is won if one of
+ * white's moves leads to a won position, and a position with black to move is
+ * won if all of black's moves do. When a pass finds no new wins, every
+ * remaining position is a draw.
+ *
+ * Each pass is split into chunks of positions which are worked on in parallel.
+ * Every chunk only writes the bits of its own positions, and bits are only ever
+ * set, so reading a neighbouring chunk's bits while it is being written can
+ * only make the generator converge sooner.
+ *
+ * @author kennangumbs
+ *
+ * @see https://www.chessprogramming.org/Retrograde_Analysis
+ */
+class BitbaseGenerator {
+
+	private static final int CHUNK_BITS = 16;
+
+	private final PieceType[] pieces;
+	private final int n;
+	private final int half;
+
+	private final long[] legal;
+	private final long[] won;
+
+	private final Bitbase queenPromotion;
+	private final Bitbase rookPromotion;
+
+	/**
+	 * Constructs a BitbaseGenerator object.
+	 *
+	 * @param pieces         the pieces of the strong side besides the king
+	 * @param queenPromotion the bitbase of the strong side with a queen instead of
+	 *                       its pawn, null if there are no pawns
+	 * @param rookPromotion  the bitbase of the strong side with a rook instead of
+	 *                       its pawn, null if there are no pawns
+	 */
+	BitbaseGenerator(PieceType[] pieces, Bitbase queenPromotion, Bitbase rookPromotion) {
+		this.pieces = pieces.clone();
+		this.n = pieces.length;
+		this.half = 1 << (12 + 6 * n);
+		this.queenPromotion = queenPromotion;
+		this.rookPromotion = rookPromotion;
+
+		legal = new long[2 * half / 64];
+		won = new long[2 * half / 64];
+	}
+
+	/**
+	 * Runs the retrograde analysis.
+	 *
+	 * @return the win bits of all positions, indexed as described in
+	 *         {@link Bitbase}
+	 */
+	long[] generate() {
+		int chunks = 2 * half >> CHUNK_BITS;
+		IntStream.range(0, chunks).parallel().forEach(this::markLegal);
+
+		boolean changed = true;
+		while (changed) {
+			// First black to move (the upper half), then white to move.
+			changed = IntStream.range(chunks / 2, chunks).parallel().map(c -> markWins(c, false)).sum() > 0;
+			changed |= IntStream.range(0, chunks / 2).parallel().map(c -> markWins(c, true)).sum() > 0;
+		}
+		return won;
+	}
+
+	/**
+	 * Marks the legal positions of a chunk.
+	 *
+	 * @param chunk the index of the chunk
+	 */
+	private void markLegal(int chunk) {
+		int[] sq = new int[n];
+		int start = chunk << CHUNK_BITS;
+		for (int index = start; index < start + (1 << CHUNK_BITS); index++) {
+			if (isLegal(index, sq)) {
+				legal[index >>> 6] |= 1L << index;
+			}
+		}
+	}
+
+	/**
+	 * Makes one pass over a chunk, marking the positions which are now known to be
+	 * won.
+	 *
+	 * @param chunk the index of the chunk
+	 * @param white true if white is to move in the chunk's positions
+	 * @return the number of newly won positions
+	 */
+	private int markWins(int chunk, boolean white) {
+		int[] sq = new int[n];
+		int count = 0;
+		int start = chunk << CHUNK_BITS;
+		for (int word = start >>> 6; word < (start >>> 6) + (1 << (CHUNK_BITS - 6)); word++) {
+			long todo = legal[word] & ~won[word];
+			long found = 0;
+			for (; todo != 0; todo &= todo - 1) {
+				int bit = Long.numberOfTrailingZeros(todo);
+				int index = (word << 6) | bit;
+				decode(index, sq);
+				if (white ? whiteWins(index, sq) : blackLoses(index, sq)) {
+					found |= 1L << bit;
+					count++;
+				}
+			}
+			won[word] |= found;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks whether a position is legal: no two pieces on the same square, no
+	 * pawns on the first or last rank, no adjacent kings, and the player who is
+	 * not to move is not in check.
+	 *
+	 * @param index the index of the position
+	 * @param sq    an array to decode the piece squares into
+	 * @return true if the position is legal, false otherwise.
+	 */
+	private boolean isLegal(int index, int[] sq) {
+		decode(index, sq);
+		int wk = getWhiteKing(index);
+		int bk = getBlackKing(index);
+
+		long occ = bit(wk) | bit(bk);
+		if (wk == bk || (Bitboards.getKingAttacks(wk) & bit(bk)) != 0) {
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			if ((occ & bit(sq[i])) != 0) {
+				return false;
+			}
+			if (pieces[i] == PieceType.PAWN && (sq[i] < 8 || sq[i] >= 56)) {
+				return false;
+			}
+			occ |= bit(sq[i]);
+		}
+
+		// With white to move, black must not be in check.
+		return !isWhiteToMove(index) || (getWhiteAttacks(wk, sq, occ, -1) & bit(bk)) == 0;
+	}
+
+	/**
+	 * Checks whether one of white's moves leads to a won position.
+	 *
+	 * @param index the index of the position, with white to move
+	 * @param sq    the squares of white's pieces
+	 * @return true if white wins, false if it is not known yet
+	 */
+	private boolean whiteWins(int index, int[] sq) {
+		int wk = getWhiteKing(index);
+		int bk = getBlackKing(index);
+
+		long own = bit(wk);
+		for (int i = 0; i < n; i++) {
+			own |= bit(sq[i]);
+		}
+		long occ = own | bit(bk);
+
+		long targets = Bitboards.getKingAttacks(wk) & ~own & ~Bitboards.getKingAttacks(bk);
+		for (; targets != 0; targets &= targets - 1) {
+			if (isWon(encode(true, Long.numberOfTrailingZeros(targets), bk, sq))) {
+				return true;
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			int from = sq[i];
+			if (pieces[i] == PieceType.PAWN) {
+				int to = from + 8;
+				if ((occ & bit(to)) != 0) {
+					continue;
+				}
+				if (to >= 56) {
+					// A pawn is only ever alone with the kings, see Bitbases.
+					if (isPromotionWon(queenPromotion, wk, bk, to) || isPromotionWon(rookPromotion, wk, bk, to)) {
+						return true;
+					}
+					continue;
+				}
+
+				sq[i] = to;
+				boolean win = isWon(encode(true, wk, bk, sq));
+				if (!win && from < 16 && (occ & bit(to + 8)) == 0) {
+					sq[i] = to + 8;
+					win = isWon(encode(true, wk, bk, sq));
+				}
+				sq[i] = from;
+				if (win) {
+					return true;
+				}
+			} else {
+				long moves = Bitboards.getAttacks(pieces[i], PieceColor.WHITE, from, occ) & ~own & ~bit(bk);
+				for (; moves != 0; moves &= moves - 1) {
+					sq[i] = Long.numberOfTrailingZeros(moves);
+					boolean win = isWon(encode(true, wk, bk, sq));
+					sq[i] = from;
+					if (win) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether all of black's moves lead to won positions for white. Since
+	 * black only has a king, capturing any of white's pieces is enough to draw.
+	 *
+	 * @param index the index of the position, with black to move
+	 * @param sq    the squares of white's pieces
+	 * @return true if black loses, false if it is not known yet
+	 */
+	private boolean blackLoses(int index, int[] sq) {
+		int wk = getWhiteKing(index);
+		int bk = getBlackKing(index);
+
+		long own = bit(wk);
+		for (int i = 0; i < n; i++) {
+			own |= bit(sq[i]);
+		}
+
+		// The black king is left out of the occupancy, so that it cannot hide behind
+		// itself along a line of attack.
+		long attacked = getWhiteAttacks(wk, sq, own, -1);
+		boolean inCheck = (attacked & bit(bk)) != 0;
+		boolean hasMove = false;
+
+		long targets = Bitboards.getKingAttacks(bk) & ~Bitboards.getKingAttacks(wk);
+		for (; targets != 0; targets &= targets - 1) {
+			int to = Long.numberOfTrailingZeros(targets);
+			if ((own & bit(to)) != 0) {
+				int captured = getPieceOn(sq, to);
+				if ((getWhiteAttacks(wk, sq, own, captured) & bit(to)) == 0) {
+					return false;
+				}
+			} else if ((attacked & bit(to)) == 0) {
+				hasMove = true;
+				if (!isWon(encode(false, wk, to, sq))) {
+					return false;
+				}
+			}
+		}
+
+		// Without any moves, black is either checkmated or stalemated.
+		return hasMove || inCheck;
+	}
+
+	/**
+	 * Returns the squares attacked by white.
+	 *
+	 * @param wk      the square of the white king
+	 * @param sq      the squares of white's other pieces
+	 * @param occ     the occupied squares
+	 * @param without the index of a piece to leave out, -1 for none
+	 * @return the bitboard of the attacked squares
+	 */
+	private long getWhiteAttacks(int wk, int[] sq, long occ, int without) {
+		long attacks = Bitboards.getKingAttacks(wk);
+		for (int i = 0; i < n; i++) {
+			if (i != without) {
+				attacks |= Bitboards.getAttacks(pieces[i], PieceColor.WHITE, sq[i], occ);
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * Looks up the position after a promotion, with black to move.
+	 *
+	 * @param promotion the bitbase of the promoted piece
+	 * @param wk        the square of the white king
+	 * @param bk        the square of the black king
+	 * @param to        the square of the promoted piece
+	 * @return true if white wins after the promotion, false otherwise.
+	 */
+	private static boolean isPromotionWon(Bitbase promotion, int wk, int bk, int to) {
+		return promotion != null && promotion.isWon(Bitbase.getIndex(true, wk, bk, new int[] { to }));
+	}
+
+	/**
+	 * Finds which of white's pieces stands on a square.
+	 *
+	 * @param sq     the squares of white's pieces
+	 * @param square the square
+	 * @return the index of the piece
+	 */
+	private int getPieceOn(int[] sq, int square) {
+		for (int i = 0; i < n; i++) {
+			if (sq[i] == square) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isWon(int index) {
+		return (won[index >>> 6] & (1L << index)) != 0;
+	}
+
+	private boolean isWhiteToMove(int index) {
+		return index < half;
+	}
+
+	private int getWhiteKing(int index) {
+		return (index >>> (6 + 6 * n)) & 63;
+	}
+
+	private int getBlackKing(int index) {
+		return (index >>> (6 * n)) & 63;
+	}
+
+	private void decode(int index, int[] sq) {
+		for (int i = n - 1; i >= 0; i--) {
+			sq[i] = index & 63;
+			index >>>= 6;
+		}
+	}
+
+	private int encode(boolean blackToMove, int wk, int bk, int[] sq) {
+		return Bitbase.getIndex(blackToMove, wk, bk, sq);
+	}
+
+	private static long bit(int square) {
+		return 1L << square;
+	}
+}
@@ -0,0 +1,178 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import chess.board.ChessBoard;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A tablebase made of the bitbases which the program generates itself, for the
+ * endgames KQK, KRK, KPK and KBNK. It needs no external files, so it is used
+ * when no Syzygy tables are deployed. Bitbases only know whether a position is
+ * won, so the distance to zeroing is never known.
+ *
+ * The bitbases are generated once with the main method of this class, which
+ * writes one file per endgame into a directory, and are mapped from there at
+ * startup.
+ *
+ * @author kennangumbs
+ *
+ */
+public class Bitbases implements Tablebase {
+
+	/**
+	 * The name of the system property which holds the bitbase directory.
+	 */
+	public static final String PROPERTY = "chess.bitbases";
+
+	private static final String EXTENSION = ".bb";
+
+	private static Bitbases instance;
+	private static boolean loaded;
+
+	private final ArrayList<Bitbase> bitbases;
+	private final int maxPieces;
+
+	/**
+	 * Constructs a Bitbases object.
+	 *
+	 * @param bitbases the bitbases to probe
+	 */
+	public Bitbases(ArrayList<Bitbase> bitbases) {
+		this.bitbases = bitbases;
+
+		int largest = 2;
+		for (Bitbase bb : bitbases) {
+			largest = Math.max(largest, bb.getPieceCount());
+		}
+		this.maxPieces = largest;
+	}
+
+	/**
+	 * A method which returns the bitbases in the directory named by the
+	 * {@value #PROPERTY} system property, mapping them the first time they are
+	 * needed.
+	 *
+	 * @return the default bitbases, or null if none are configured
+	 */
+	public static synchronized Bitbases getInstance() {
+		if (!loaded) {
+			loaded = true;
+			String dir = System.getProperty(PROPERTY);
+			if (dir != null) {
+				try {
+					instance = load(Paths.get(dir));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Maps all bitbase files in a directory.
+	 *
+	 * @param dir the directory
+	 * @return the loaded bitbases
+	 * @throws IOException if a file cannot be mapped
+	 */
+	public static Bitbases load(Path dir) throws IOException {
+		ArrayList<Bitbase> bitbases = new ArrayList<Bitbase>();
+		for (String name : new String[] { "KQK", "KRK", "KPK", "KBNK" }) {
+			Path file = dir.resolve(name + EXTENSION);
+			if (Files.exists(file)) {
+				bitbases.add(Bitbase.load(file));
+			}
+		}
+		return new Bitbases(bitbases);
+	}
+
+	/**
+	 * Generates all bitbases and writes them into a directory. KPK is generated
+	 * after KQK and KRK, since it looks up the positions after a promotion.
+	 *
+	 * @param dir the directory
+	 * @return the generated bitbases
+	 * @throws IOException if a file cannot be written
+	 */
+	public static Bitbases generate(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		ArrayList<Bitbase> bitbases = new ArrayList<Bitbase>();
+
+		Bitbase kqk = generate(dir, bitbases, new PieceType[] { PieceType.QUEEN }, null, null);
+		Bitbase krk = generate(dir, bitbases, new PieceType[] { PieceType.ROOK }, null, null);
+		generate(dir, bitbases, new PieceType[] { PieceType.PAWN }, kqk, krk);
+		generate(dir, bitbases, new PieceType[] { PieceType.BISHOP, PieceType.KNIGHT }, null, null);
+		return new Bitbases(bitbases);
+	}
+
+	/**
+	 * Generates one bitbase, writes it into a directory and adds it to a list.
+	 *
+	 * @param dir            the directory
+	 * @param bitbases       the list of bitbases
+	 * @param pieces         the pieces of the strong side besides the king
+	 * @param queenPromotion the bitbase for a promotion to a queen, or null
+	 * @param rookPromotion  the bitbase for a promotion to a rook, or null
+	 * @return the generated bitbase
+	 * @throws IOException if the file cannot be written
+	 */
+	private static Bitbase generate(Path dir, ArrayList<Bitbase> bitbases, PieceType[] pieces, Bitbase queenPromotion,
+			Bitbase rookPromotion) throws IOException {
+		long start = System.currentTimeMillis();
+		Bitbase bb = Bitbase.generate(pieces, queenPromotion, rookPromotion);
+		bb.save(dir.resolve(bb.getName() + EXTENSION));
+		System.out.println("Generated " + bb.getName() + " in " + (System.currentTimeMillis() - start) + " ms");
+
+		bitbases.add(bb);
+		return bb;
+	}
+
+	@Override
+	public int getMaxPieces() {
+		return maxPieces;
+	}
+
+	@Override
+	public Wdl probeWdl(ChessBoard cb, PieceColor pc) {
+		int pieces = Long.bitCount(cb.getOccupancy());
+		if (pieces == 2) {
+			return Wdl.DRAW;
+		}
+		for (Bitbase bb : bitbases) {
+			if (bb.getPieceCount() == pieces) {
+				Wdl wdl = bb.probe(cb, pc);
+				if (wdl != null) {
+					return wdl;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int probeDtz(ChessBoard cb, PieceColor pc) {
+		return UNKNOWN_DTZ;
+	}
+
+	/**
+	 * Generates the bitbases into the directory given as the first argument, or
+	 * into the directory named by the {@value #PROPERTY} system property.
+	 *
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		String dir = (args.length > 0) ? args[0] : System.getProperty(PROPERTY, "bitbases");
+		try {
+			generate(Paths.get(dir));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,819 @@
+package chess.tablebase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import chess.board.ChessBoard;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which decodes one Syzygy WDL or DTZ table. A table is split into up
+ * to two sides (white or black to move) and, for tables with pawns, into four
+ * parts by the file of the leading pawn. Each part stores its values
+ * compressed with recursive pairing, whose symbols are coded with a canonical
+ * Huffman code and packed into blocks; a sparse index points into the blocks
+ * at regular intervals.
+ *
+ * A position is looked up by mapping it to the index of its canonical form:
+ * the board is mirrored so that the leading piece lies in the a1-d1-d4
+ * triangle (or the leading pawn on the queenside), and every group of equal
+ * pieces is encoded as a combination of squares.
+ *
+ * The headers are parsed the first time a table is probed. After that, probes
+ * only read the mapped file, so a table can be probed by several threads at
+ * once.
+ *
+ * @author kennangumbs
+ *
+ * @see https://github.com/syzygy1/tb
+ * @see http://www.larsson.dogma.net/dcc99.pdf
+ */
+class SyzygyTable {
+
+	/**
+	 * A value returned by {@link #probe} when a DTZ table only stores the
+	 * positions with the other player to move.
+	 */
+	static final int CHANGE_STM = Integer.MIN_VALUE;
+
+	private static final int STM = 1;
+	private static final int MAPPED = 2;
+	private static final int WIN_PLIES = 4;
+	private static final int LOSS_PLIES = 8;
+	private static final int WIDE = 16;
+	private static final int SINGLE_VALUE = 128;
+
+	private static final int[] WDL_MAP = { 1, 3, 0, 2, 0 };
+
+	private static final int[] MAP_B1H1H7 = new int[64];
+	private static final int[] MAP_A1D1D4 = new int[64];
+	private static final int[][] MAP_KK = new int[10][64];
+	private static final long[][] BINOMIAL = new long[6][64];
+	private static final int[] MAP_PAWNS = new int[64];
+	private static final int[][] LEAD_PAWN_IDX = new int[6][64];
+	private static final int[][] LEAD_PAWNS_SIZE = new int[6][4];
+
+	static {
+		int code = 0;
+		for (int s = 0; s < 64; s++) {
+			if (offA1H8(s) < 0) {
+				MAP_B1H1H7[s] = code++;
+			}
+		}
+
+		// The squares below the diagonal come first, then the squares on it.
+		code = 0;
+		for (int s = 0; s <= 27; s++) {
+			if (offA1H8(s) < 0 && (s & 7) <= 3) {
+				MAP_A1D1D4[s] = code++;
+			}
+		}
+		for (int s = 0; s <= 27; s++) {
+			if (offA1H8(s) == 0 && (s & 7) <= 3) {
+				MAP_A1D1D4[s] = code++;
+			}
+		}
+
+		// The 462 placements of two kings with the first in the a1-d1-d4 triangle;
+		// if the first is on the diagonal, the second is not above it. Placements
+		// with both kings on the diagonal come last.
+		code = 0;
+		int[][] bothOnDiagonal = new int[64][];
+		int diagonalCount = 0;
+		for (int idx = 0; idx < 10; idx++) {
+			for (int s1 = 0; s1 <= 27; s1++) {
+				if (MAP_A1D1D4[s1] != idx || (idx == 0 && s1 != 1) || (s1 & 7) > 3 || offA1H8(s1) > 0) {
+					continue;
+				}
+				for (int s2 = 0; s2 < 64; s2++) {
+					if (Math.abs((s1 & 7) - (s2 & 7)) <= 1 && Math.abs((s1 >> 3) - (s2 >> 3)) <= 1) {
+						continue;
+					} else if (offA1H8(s1) == 0 && offA1H8(s2) > 0) {
+						continue;
+					} else if (offA1H8(s1) == 0 && offA1H8(s2) == 0) {
+						bothOnDiagonal[diagonalCount++] = new int[] { idx, s2 };
+					} else {
+						MAP_KK[idx][s2] = code++;
+					}
+				}
+			}
+		}
+		for (int i = 0; i < diagonalCount; i++) {
+			MAP_KK[bothOnDiagonal[i][0]][bothOnDiagonal[i][1]] = code++;
+		}
+
+		BINOMIAL[0][0] = 1;
+		for (int n = 1; n < 64; n++) {
+			for (int k = 0; k < 6 && k <= n; k++) {
+				BINOMIAL[k][n] = (k > 0 ? BINOMIAL[k - 1][n - 1] : 0) + (k < n ? BINOMIAL[k][n - 1] : 0);
+			}
+		}
+
+		// MAP_PAWNS numbers a2-h7 from the edges inwards and from the second rank
+		// up, so the leading pawn is the one with the highest number.
+		int available = 47;
+		for (int leadPawns = 1; leadPawns <= 5; leadPawns++) {
+			for (int f = 0; f < 4; f++) {
+				int idx = 0;
+				for (int r = 1; r <= 6; r++) {
+					int s = r * 8 + f;
+					if (leadPawns == 1) {
+						MAP_PAWNS[s] = available--;
+						MAP_PAWNS[s ^ 7] = available--;
+					}
+					LEAD_PAWN_IDX[leadPawns][s] = idx;
+					idx += BINOMIAL[leadPawns - 1][MAP_PAWNS[s]];
+				}
+				LEAD_PAWNS_SIZE[leadPawns][f] = idx;
+			}
+		}
+	}
+
+	private final ByteBuffer buffer;
+	private final ByteBuffer bigEndian;
+	private final boolean dtz;
+	private final int pieceCount;
+	private final boolean hasPawns;
+	private final boolean hasUniquePieces;
+	private final boolean bothHavePawns;
+	private final boolean symmetric;
+
+	private PairsData[][] parts;
+	private int map;
+	private volatile boolean ready;
+
+	/**
+	 * Constructs a SyzygyTable object.
+	 *
+	 * @param material the material of the table as in its file name, for example
+	 *                 "KRPvKR", with the pieces of white first
+	 * @param buffer   the mapped file
+	 * @param dtz      true for a DTZ table, false for a WDL table
+	 */
+	SyzygyTable(String material, ByteBuffer buffer, boolean dtz) {
+		this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		this.bigEndian = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		this.dtz = dtz;
+
+		String[] sides = material.split("v");
+		String white = sides[0];
+		String black = (sides.length > 1) ? sides[1] : "";
+		pieceCount = white.length() + black.length();
+		hasPawns = material.indexOf('P') >= 0;
+		bothHavePawns = white.indexOf('P') >= 0 && black.indexOf('P') >= 0;
+		symmetric = white.equals(black);
+
+		boolean unique = false;
+		for (String side : new String[] { white, black }) {
+			for (char c : "PNBRQ".toCharArray()) {
+				if (side.indexOf(c) >= 0 && side.indexOf(c) == side.lastIndexOf(c)) {
+					unique = true;
+				}
+			}
+		}
+		hasUniquePieces = unique;
+	}
+
+	/**
+	 * Parses the headers of the table, unless they have already been parsed.
+	 */
+	private synchronized void init() {
+		if (ready) {
+			return;
+		}
+		int sides = (!dtz && !symmetric) ? 2 : 1;
+		int files = hasPawns ? 4 : 1;
+		parts = new PairsData[sides][files];
+
+		// The magic number and the flags come first.
+		int p = 5;
+		for (int f = 0; f < files; f++) {
+			int b0 = getByte(p);
+			int b1 = bothHavePawns ? getByte(p + 1) : 0xFF;
+			int[][] order = { { b0 & 0xF, b1 & 0xF }, { b0 >> 4, b1 >> 4 } };
+			p += bothHavePawns ? 2 : 1;
+
+			for (int i = 0; i < sides; i++) {
+				parts[i][f] = new PairsData(pieceCount);
+			}
+			for (int k = 0; k < pieceCount; k++, p++) {
+				for (int i = 0; i < sides; i++) {
+					parts[i][f].pieces[k] = (i == 0) ? getByte(p) & 0xF : getByte(p) >> 4;
+				}
+			}
+			for (int i = 0; i < sides; i++) {
+				setGroups(parts[i][f], order[i], f);
+			}
+		}
+		p += p & 1;
+
+		for (int f = 0; f < files; f++) {
+			for (int i = 0; i < sides; i++) {
+				p = setSizes(parts[i][f], p);
+			}
+		}
+
+		if (dtz) {
+			p = setDtzMap(p, files);
+		}
+
+		for (int f = 0; f < files; f++) {
+			for (int i = 0; i < sides; i++) {
+				parts[i][f].sparseIndex = p;
+				p += parts[i][f].sparseIndexSize * 6;
+			}
+		}
+		for (int f = 0; f < files; f++) {
+			for (int i = 0; i < sides; i++) {
+				parts[i][f].blockLength = p;
+				p += parts[i][f].blockLengthSize * 2;
+			}
+		}
+		for (int f = 0; f < files; f++) {
+			for (int i = 0; i < sides; i++) {
+				p = (p + 0x3F) & ~0x3F;
+				parts[i][f].data = p;
+				p += (int) (parts[i][f].blocksNum * parts[i][f].sizeofBlock);
+			}
+		}
+		ready = true;
+	}
+
+	/**
+	 * Splits the pieces of a part into groups and computes the factor by which the
+	 * index of each group is multiplied. The leading group holds the leading pawns,
+	 * or the two kings and, if there is a piece without a twin, the first three
+	 * pieces; every other group holds equal pieces.
+	 *
+	 * @param d     the part
+	 * @param order the positions of the leading group and of the remaining pawns
+	 *              in the encoding, 0xF if there are none
+	 * @param f     the file of the leading pawn, 0 for tables without pawns
+	 */
+	private void setGroups(PairsData d, int[] order, int f) {
+		int n = 0;
+		int firstLen = hasPawns ? 0 : (hasUniquePieces ? 3 : 2);
+		d.groupLen[n] = 1;
+		for (int i = 1; i < pieceCount; i++) {
+			if (--firstLen > 0 || d.pieces[i] == d.pieces[i - 1]) {
+				d.groupLen[n]++;
+			} else {
+				d.groupLen[++n] = 1;
+			}
+		}
+		d.groupLen[++n] = 0;
+
+		int next = bothHavePawns ? 2 : 1;
+		int freeSquares = 64 - d.groupLen[0] - (bothHavePawns ? d.groupLen[1] : 0);
+		long idx = 1;
+		for (int k = 0; next < n || k == order[0] || k == order[1]; k++) {
+			if (k == order[0]) {
+				d.groupIdx[0] = idx;
+				idx *= hasPawns ? LEAD_PAWNS_SIZE[d.groupLen[0]][f] : (hasUniquePieces ? 31332 : 462);
+			} else if (k == order[1]) {
+				d.groupIdx[1] = idx;
+				idx *= BINOMIAL[d.groupLen[1]][48 - d.groupLen[0]];
+			} else {
+				d.groupIdx[next] = idx;
+				idx *= BINOMIAL[d.groupLen[next]][freeSquares];
+				freeSquares -= d.groupLen[next++];
+			}
+		}
+		d.groupIdx[n] = idx;
+		d.size = idx;
+	}
+
+	/**
+	 * Reads the sizes and the Huffman code of a part.
+	 *
+	 * @param d the part
+	 * @param p the offset of its header
+	 * @return the offset after the header
+	 */
+	private int setSizes(PairsData d, int p) {
+		d.flags = getByte(p++);
+		if ((d.flags & SINGLE_VALUE) != 0) {
+			// The only value of the part is stored in place of the code lengths.
+			d.minSymLen = getByte(p++);
+			return p;
+		}
+
+		d.sizeofBlock = 1L << getByte(p++);
+		d.span = 1L << getByte(p++);
+		d.sparseIndexSize = (int) ((d.size + d.span - 1) / d.span);
+		int padding = getByte(p++);
+		d.blocksNum = buffer.getInt(p) & 0xFFFFFFFFL;
+		p += 4;
+		d.blockLengthSize = (int) d.blocksNum + padding;
+		d.maxSymLen = getByte(p++);
+		d.minSymLen = getByte(p++);
+		d.lowestSym = p;
+
+		// Symbols of the same length have consecutive codes, and longer symbols
+		// have lower codes, so base64[i] is the lowest code of length minSymLen + i,
+		// left-aligned to 64 bits.
+		d.base64 = new long[d.maxSymLen - d.minSymLen + 1];
+		for (int i = d.base64.length - 2; i >= 0; i--) {
+			d.base64[i] = (d.base64[i + 1] + getShort(d.lowestSym + 2 * i) - getShort(d.lowestSym + 2 * i + 2)) / 2;
+		}
+		for (int i = 0; i < d.base64.length; i++) {
+			d.base64[i] <<= 64 - i - d.minSymLen;
+		}
+		p += d.base64.length * 2;
+
+		d.symlen = new int[getShort(p)];
+		p += 2;
+		d.btree = p;
+		boolean[] visited = new boolean[d.symlen.length];
+		for (int sym = 0; sym < d.symlen.length; sym++) {
+			if (!visited[sym]) {
+				d.symlen[sym] = setSymlen(d, sym, visited);
+			}
+		}
+		return p + d.symlen.length * 3 + (d.symlen.length & 1);
+	}
+
+	/**
+	 * Computes how many values a symbol expands into, minus one.
+	 *
+	 * @param d       the part
+	 * @param sym     the symbol
+	 * @param visited the symbols already computed
+	 * @return the length of the symbol
+	 */
+	private int setSymlen(PairsData d, int sym, boolean[] visited) {
+		visited[sym] = true;
+		int right = getRight(d, sym);
+		if (right == 0xFFF) {
+			return 0;
+		}
+		int left = getLeft(d, sym);
+		if (!visited[left]) {
+			d.symlen[left] = setSymlen(d, left, visited);
+		}
+		if (!visited[right]) {
+			d.symlen[right] = setSymlen(d, right, visited);
+		}
+		return d.symlen[left] + d.symlen[right] + 1;
+	}
+
+	/**
+	 * Reads the maps of a DTZ table, which translate the stored values to
+	 * distances separately for each result.
+	 *
+	 * @param p     the offset of the maps
+	 * @param files the amount of parts
+	 * @return the offset after the maps
+	 */
+	private int setDtzMap(int p, int files) {
+		map = p;
+		for (int f = 0; f < files; f++) {
+			PairsData d = parts[0][f];
+			if ((d.flags & MAPPED) == 0) {
+				continue;
+			}
+			if ((d.flags & WIDE) != 0) {
+				p += p & 1;
+				for (int i = 0; i < 4; i++) {
+					d.mapIdx[i] = (p - map) / 2 + 1;
+					p += 2 * getShort(p) + 2;
+				}
+			} else {
+				for (int i = 0; i < 4; i++) {
+					d.mapIdx[i] = p - map + 1;
+					p += getByte(p) + 1;
+				}
+			}
+		}
+		return p + (p & 1);
+	}
+
+	/**
+	 * Looks up a position. The position must have the material of the table,
+	 * with either color as the side named first.
+	 *
+	 * @param cb            the chess board
+	 * @param pc            the color of the player to move
+	 * @param blackStronger true if black has the pieces named first in the table
+	 * @param wdl           for DTZ tables, the result of the position from -2
+	 *                      (loss) to 2 (win)
+	 * @return the result from -2 to 2 for WDL tables; the distance to zeroing in
+	 *         plies for DTZ tables, or {@link #CHANGE_STM} if the table does not
+	 *         store the player to move
+	 */
+	int probe(ChessBoard cb, PieceColor pc, boolean blackStronger, int wdl) {
+		if (!ready) {
+			init();
+		}
+		int[] squares = new int[pieceCount];
+		int[] pieces = new int[pieceCount];
+
+		// Tables are stored with the side named first as white, and symmetric
+		// tables only with white to move, so the colors and ranks may be flipped.
+		boolean flip = blackStronger || (symmetric && pc == PieceColor.BLACK);
+		int flipColor = flip ? 8 : 0;
+		int flipSquares = flip ? 56 : 0;
+		int stm = (flip ? 1 : 0) ^ pc.ordinal();
+
+		int size = 0;
+		int leadPawnsCnt = 0;
+		long leadPawns = 0;
+		int tbFile = 0;
+		if (hasPawns) {
+			int lead = parts[0][0].pieces[0] ^ flipColor;
+			leadPawns = cb.getPieces(PieceType.PAWN, (lead & 8) == 0 ? PieceColor.WHITE : PieceColor.BLACK);
+			for (long b = leadPawns; b != 0; b &= b - 1) {
+				squares[size++] = Long.numberOfTrailingZeros(b) ^ flipSquares;
+			}
+			leadPawnsCnt = size;
+
+			int best = 0;
+			for (int i = 1; i < leadPawnsCnt; i++) {
+				if (MAP_PAWNS[squares[i]] > MAP_PAWNS[squares[best]]) {
+					best = i;
+				}
+			}
+			swap(squares, 0, best);
+			tbFile = squares[0] & 7;
+			if (tbFile > 3) {
+				tbFile = 7 - tbFile;
+			}
+		}
+
+		if (dtz && (parts[0][tbFile].flags & STM) != stm && !(symmetric && !hasPawns)) {
+			return CHANGE_STM;
+		}
+
+		for (long b = cb.getOccupancy() & ~leadPawns; b != 0; b &= b - 1) {
+			int s = Long.numberOfTrailingZeros(b);
+			squares[size] = s ^ flipSquares;
+			pieces[size++] = getCode(cb, s) ^ flipColor;
+		}
+
+		// Order the pieces like the table does.
+		PairsData d = parts[stm % parts.length][tbFile];
+		for (int i = leadPawnsCnt; i < size - 1; i++) {
+			for (int j = i + 1; j < size; j++) {
+				if (d.pieces[i] == pieces[j]) {
+					swap(pieces, i, j);
+					swap(squares, i, j);
+					break;
+				}
+			}
+		}
+
+		if ((squares[0] & 7) > 3) {
+			for (int i = 0; i < size; i++) {
+				squares[i] ^= 7;
+			}
+		}
+
+		long idx;
+		if (hasPawns) {
+			idx = LEAD_PAWN_IDX[leadPawnsCnt][squares[0]];
+			for (int i = 2; i < leadPawnsCnt; i++) {
+				for (int j = i; j > 1 && MAP_PAWNS[squares[j]] < MAP_PAWNS[squares[j - 1]]; j--) {
+					swap(squares, j, j - 1);
+				}
+			}
+			for (int i = 1; i < leadPawnsCnt; i++) {
+				idx += BINOMIAL[i][MAP_PAWNS[squares[i]]];
+			}
+		} else {
+			if ((squares[0] >> 3) > 3) {
+				for (int i = 0; i < size; i++) {
+					squares[i] ^= 56;
+				}
+			}
+			// Mirror on the a1-h8 diagonal if the first piece of the leading group
+			// which is not on it lies above it.
+			for (int i = 0; i < d.groupLen[0]; i++) {
+				if (offA1H8(squares[i]) == 0) {
+					continue;
+				}
+				if (offA1H8(squares[i]) > 0) {
+					for (int j = i; j < size; j++) {
+						squares[j] = ((squares[j] >> 3) | (squares[j] << 3)) & 63;
+					}
+				}
+				break;
+			}
+			idx = hasUniquePieces ? getUniqueIndex(squares) : MAP_KK[MAP_A1D1D4[squares[0]]][squares[1]];
+		}
+
+		idx *= d.groupIdx[0];
+		int start = d.groupLen[0];
+		boolean remainingPawns = bothHavePawns;
+		for (int next = 1; d.groupLen[next] != 0; next++) {
+			int len = d.groupLen[next];
+			for (int i = start + 1; i < start + len; i++) {
+				for (int j = i; j > start && squares[j] < squares[j - 1]; j--) {
+					swap(squares, j, j - 1);
+				}
+			}
+
+			// Squares taken by earlier groups are left out.
+			long n = 0;
+			for (int i = 0; i < len; i++) {
+				int s = squares[start + i];
+				int adjust = 0;
+				for (int j = 0; j < start; j++) {
+					if (s > squares[j]) {
+						adjust++;
+					}
+				}
+				n += BINOMIAL[i + 1][s - adjust - (remainingPawns ? 8 : 0)];
+			}
+			remainingPawns = false;
+			idx += n * d.groupIdx[next];
+			start += len;
+		}
+
+		int value = decompress(d, idx);
+		return dtz ? mapScore(tbFile, value, wdl) : value - 2;
+	}
+
+	/**
+	 * Computes the index of a leading group of three pieces, the first of which
+	 * lies in the a1-d1-d4 triangle and, if the first pieces are on the a1-h8
+	 * diagonal, the next is not above it.
+	 *
+	 * @param squares the squares of the pieces
+	 * @return the index of the first three pieces
+	 */
+	private static long getUniqueIndex(int[] squares) {
+		int s0 = squares[0];
+		int s1 = squares[1];
+		int s2 = squares[2];
+		int adjust1 = (s1 > s0) ? 1 : 0;
+		int adjust2 = ((s2 > s0) ? 1 : 0) + ((s2 > s1) ? 1 : 0);
+
+		if (offA1H8(s0) != 0) {
+			return ((long) MAP_A1D1D4[s0] * 63 + (s1 - adjust1)) * 62 + s2 - adjust2;
+		} else if (offA1H8(s1) != 0) {
+			return (6 * 63 + (s0 >> 3) * 28 + MAP_B1H1H7[s1]) * 62L + s2 - adjust2;
+		} else if (offA1H8(s2) != 0) {
+			return 6 * 63 * 62 + 4 * 28 * 62 + (s0 >> 3) * 7 * 28 + ((s1 >> 3) - adjust1) * 28 + MAP_B1H1H7[s2];
+		} else {
+			return 6 * 63 * 62 + 4 * 28 * 62 + 4 * 7 * 28 + (s0 >> 3) * 7 * 6 + ((s1 >> 3) - adjust1) * 6
+					+ ((s2 >> 3) - adjust2);
+		}
+	}
+
+	/**
+	 * Translates a stored DTZ value to a distance in plies.
+	 *
+	 * @param f     the part
+	 * @param value the stored value
+	 * @param wdl   the result of the position from -2 to 2
+	 * @return the distance to zeroing in plies
+	 */
+	private int mapScore(int f, int value, int wdl) {
+		PairsData d = parts[0][f];
+		if ((d.flags & MAPPED) != 0) {
+			int i = d.mapIdx[WDL_MAP[wdl + 2]] + value;
+			value = ((d.flags & WIDE) != 0) ? getShort(map + 2 * i) : getByte(map + i);
+		}
+
+		// Unless the table says otherwise, distances are stored in moves.
+		if ((wdl == 2 && (d.flags & WIN_PLIES) == 0) || (wdl == -2 && (d.flags & LOSS_PLIES) == 0) || wdl == 1
+				|| wdl == -1) {
+			value *= 2;
+		}
+		return value + 1;
+	}
+
+	/**
+	 * Decodes the value at an index of a part.
+	 *
+	 * @param d   the part
+	 * @param idx the index
+	 * @return the stored value
+	 */
+	private int decompress(PairsData d, long idx) {
+		if ((d.flags & SINGLE_VALUE) != 0) {
+			return d.minSymLen;
+		}
+
+		// The sparse index points to the block and the offset of the value in the
+		// middle of each span, from where the right block is found by walking the
+		// block lengths.
+		int k = (int) (idx / d.span);
+		long block = buffer.getInt(d.sparseIndex + 6 * k) & 0xFFFFFFFFL;
+		int offset = getShort(d.sparseIndex + 6 * k + 4);
+		offset += (int) (idx % d.span - d.span / 2);
+		while (offset < 0) {
+			offset += getShort(d.blockLength + 2 * (int) --block) + 1;
+		}
+		while (offset > getShort(d.blockLength + 2 * (int) block)) {
+			offset -= getShort(d.blockLength + 2 * (int) block++) + 1;
+		}
+
+		// Find the symbol which covers the offset, reading the codes big-endian.
+		int ptr = d.data + (int) (block * d.sizeofBlock);
+		long buf64 = getLongBigEndian(ptr);
+		ptr += 8;
+		int buf64Size = 64;
+		int sym;
+		while (true) {
+			int len = 0;
+			while (Long.compareUnsigned(buf64, d.base64[len]) < 0) {
+				len++;
+			}
+			sym = (int) ((buf64 - d.base64[len]) >>> (64 - len - d.minSymLen));
+			sym = (sym + getShort(d.lowestSym + 2 * len)) & 0xFFFF;
+			if (offset < d.symlen[sym] + 1) {
+				break;
+			}
+			offset -= d.symlen[sym] + 1;
+			len += d.minSymLen;
+			buf64 <<= len;
+			buf64Size -= len;
+			if (buf64Size <= 32) {
+				buf64Size += 32;
+				buf64 |= getIntBigEndian(ptr) << (64 - buf64Size);
+				ptr += 4;
+			}
+		}
+
+		// Expand the symbol down to the value at the offset.
+		while (d.symlen[sym] != 0) {
+			int left = getLeft(d, sym);
+			if (offset < d.symlen[left] + 1) {
+				sym = left;
+			} else {
+				offset -= d.symlen[left] + 1;
+				sym = getRight(d, sym);
+			}
+		}
+		return getLeft(d, sym);
+	}
+
+	/**
+	 * Returns the left child of a symbol, or the value of a symbol which expands
+	 * into a single value.
+	 *
+	 * @param d   the part
+	 * @param sym the symbol
+	 * @return the left child
+	 */
+	private int getLeft(PairsData d, int sym) {
+		int p = d.btree + 3 * sym;
+		return ((getByte(p + 1) & 0xF) << 8) | getByte(p);
+	}
+
+	/**
+	 * Returns the right child of a symbol.
+	 *
+	 * @param d   the part
+	 * @param sym the symbol
+	 * @return the right child, 0xFFF if the symbol expands into a single value
+	 */
+	private int getRight(PairsData d, int sym) {
+		int p = d.btree + 3 * sym;
+		return (getByte(p + 2) << 4) | (getByte(p + 1) >> 4);
+	}
+
+	/**
+	 * Returns the code of the piece on a square, as used in the table headers: 1
+	 * to 6 for the white pawn to king, 9 to 14 for black.
+	 *
+	 * @param cb the chess board
+	 * @param s  the index of the square
+	 * @return the code of the piece
+	 */
+	private static int getCode(ChessBoard cb, int s) {
+		long bit = 1L << s;
+		for (PieceColor pc : PieceColor.values()) {
+			for (PieceType pt : PieceType.values()) {
+				if ((cb.getPieces(pt, pc) & bit) != 0) {
+					return pt.ordinal() + 1 + (pc == PieceColor.BLACK ? 8 : 0);
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns how far a square lies above the a1-h8 diagonal.
+	 *
+	 * @param s the index of the square
+	 * @return the rank minus the file of the square
+	 */
+	private static int offA1H8(int s) {
+		return (s >> 3) - (s & 7);
+	}
+
+	/**
+	 * Swaps two elements of an array.
+	 *
+	 * @param a the array
+	 * @param i the index of the first element
+	 * @param j the index of the second element
+	 */
+	private static void swap(int[] a, int i, int j) {
+		int t = a[i];
+		a[i] = a[j];
+		a[j] = t;
+	}
+
+	/**
+	 * Reads an unsigned byte.
+	 *
+	 * @param p the offset
+	 * @return the byte
+	 */
+	private int getByte(int p) {
+		return buffer.get(p) & 0xFF;
+	}
+
+	/**
+	 * Reads an unsigned little-endian 16 bit number.
+	 *
+	 * @param p the offset
+	 * @return the number
+	 */
+	private int getShort(int p) {
+		return buffer.getShort(p) & 0xFFFF;
+	}
+
+	/**
+	 * Reads an unsigned big-endian 32 bit number. The codes of the last block may
+	 * end right before the end of the file, so missing bytes read as 0.
+	 *
+	 * @param p the offset
+	 * @return the number
+	 */
+	private long getIntBigEndian(int p) {
+		if (p + 4 <= bigEndian.capacity()) {
+			return bigEndian.getInt(p) & 0xFFFFFFFFL;
+		}
+		long value = 0;
+		for (int i = 0; i < 4; i++) {
+			value = (value << 8) | (p + i < bigEndian.capacity() ? bigEndian.get(p + i) & 0xFF : 0);
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a big-endian 64 bit number, reading missing bytes as 0.
+	 *
+	 * @param p the offset
+	 * @return the number
+	 */
+	private long getLongBigEndian(int p) {
+		return (getIntBigEndian(p) << 32) | getIntBigEndian(p + 4);
+	}
+
+	/**
+	 * A getter for the amount of positions of the first part of the table.
+	 *
+	 * @return the size of the index of the part
+	 */
+	long getSize() {
+		if (!ready) {
+			init();
+		}
+		return parts[0][0].size;
+	}
+
+	/**
+	 * A class which holds the header of one part of a table.
+	 */
+	private static class PairsData {
+
+		private final int[] pieces;
+		private final int[] groupLen;
+		private final long[] groupIdx;
+		private final int[] mapIdx;
+		private long size;
+		private int flags;
+		private long sizeofBlock;
+		private long span;
+		private int sparseIndexSize;
+		private long blocksNum;
+		private int blockLengthSize;
+		private int maxSymLen;
+		private int minSymLen;
+		private int lowestSym;
+		private long[] base64;
+		private int[] symlen;
+		private int btree;
+		private int sparseIndex;
+		private int blockLength;
+		private int data;
+
+		/**
+		 * Constructs a PairsData object.
+		 *
+		 * @param pieceCount the amount of pieces of the table
+		 */
+		PairsData(int pieceCount) {
+			pieces = new int[pieceCount];
+			groupLen = new int[pieceCount + 1];
+			groupIdx = new long[pieceCount + 1];
+			mapIdx = new int[4];
+		}
+	}
+}
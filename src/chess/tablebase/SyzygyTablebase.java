@@ -0,0 +1,454 @@
+package chess.tablebase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import chess.board.BoardAnalyzer;
+import chess.board.ChessBoard;
+import chess.board.Move;
+import chess.board.Position;
+import chess.piece.ChessPiece;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+
+/**
+ * A class which gives access to Syzygy tablebase files. The WDL (.rtbw) and DTZ
+ * (.rtbz) files found in the configured directories are memory-mapped
+ * read-only, checked for the Syzygy magic numbers and indexed by their material
+ * signature (for example "KQvKR").
+ *
+ * The tables themselves are decoded by {@link SyzygyTable}. They leave out
+ * positions whose result is decided by a capture, so a probe first tries the
+ * captures (and for DTZ also the pawn moves) of the position, like the probing
+ * code of the tables' generator does. Positions with castling rights are not in
+ * the tables and are never answered.
+ *
+ * @author kennangumbs
+ *
+ * @see https://syzygy-tables.info/
+ */
+public class SyzygyTablebase implements Tablebase {
+
+	/**
+	 * The name of the system property which holds the tablebase directories,
+	 * separated by the system's path separator.
+	 */
+	public static final String PATH_PROPERTY = "chess.syzygy.path";
+
+	/**
+	 * The name of the system property which holds the piece limit.
+	 */
+	public static final String PIECES_PROPERTY = "chess.syzygy.pieces";
+
+	private static final int[] WDL_MAGIC = { 0x71, 0xE8, 0x23, 0x5D };
+	private static final int[] DTZ_MAGIC = { 0xD7, 0x66, 0x0C, 0xA5 };
+
+	private static final String PIECE_LETTERS = "PNBRQK";
+
+	private static final PieceType[] PROMOTIONS = { PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP,
+			PieceType.KNIGHT };
+	private static final PieceType[] NO_PROMOTION = { null };
+
+	private static SyzygyTablebase instance;
+	private static boolean loaded;
+
+	private final Map<String, SyzygyTable> wdl;
+	private final Map<String, SyzygyTable> dtz;
+	private final int maxPieces;
+
+	/**
+	 * Constructs a SyzygyTablebase object by mapping the tables in a list of
+	 * directories.
+	 *
+	 * @param paths     the directories, separated by the system's path separator
+	 * @param maxPieces the largest number of pieces a probed position may have
+	 * @throws IOException if a table file cannot be mapped
+	 */
+	public SyzygyTablebase(String paths, int maxPieces) throws IOException {
+		wdl = new HashMap<String, SyzygyTable>();
+		dtz = new HashMap<String, SyzygyTable>();
+
+		int largest = 2;
+		for (String dir : paths.split(File.pathSeparator)) {
+			if (dir.isEmpty() || !Files.isDirectory(Paths.get(dir))) {
+				continue;
+			}
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(dir), "*.{rtbw,rtbz}")) {
+				for (Path file : files) {
+					String name = file.getFileName().toString();
+					String material = name.substring(0, name.length() - 5);
+					boolean isWdl = name.endsWith(".rtbw");
+
+					MappedByteBuffer buffer = map(file);
+					if (!hasMagic(buffer, isWdl ? WDL_MAGIC : DTZ_MAGIC)) {
+						System.err.println("Not a Syzygy table: " + file);
+						continue;
+					}
+
+					(isWdl ? wdl : dtz).put(material, new SyzygyTable(material, buffer, !isWdl));
+					largest = Math.max(largest, material.length() - 1);
+				}
+			}
+		}
+		this.maxPieces = Math.min(maxPieces, largest);
+	}
+
+	/**
+	 * A method which returns the tablebase configured by the
+	 * {@value #PATH_PROPERTY} and {@value #PIECES_PROPERTY} system properties,
+	 * mapping its files the first time it is needed.
+	 *
+	 * @return the default tablebase, or null if none is configured
+	 */
+	public static synchronized SyzygyTablebase getInstance() {
+		if (!loaded) {
+			loaded = true;
+			String path = System.getProperty(PATH_PROPERTY);
+			if (path != null) {
+				try {
+					int pieces = Integer.parseInt(System.getProperty(PIECES_PROPERTY, "7"));
+					instance = new SyzygyTablebase(path, pieces);
+				} catch (IOException | NumberFormatException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return instance;
+	}
+
+	@Override
+	public int getMaxPieces() {
+		return maxPieces;
+	}
+
+	@Override
+	public Wdl probeWdl(ChessBoard cb, PieceColor pc) {
+		if (!canProbe(cb)) {
+			return null;
+		}
+		ProbeState state = new ProbeState();
+		int value = search(cb, pc, false, state);
+		return state.failed ? null : Wdl.values()[value + 2];
+	}
+
+	@Override
+	public int probeDtz(ChessBoard cb, PieceColor pc) {
+		if (!canProbe(cb)) {
+			return UNKNOWN_DTZ;
+		}
+		ProbeState state = new ProbeState();
+		int dtz = probeDtz(cb, pc, state);
+		return state.failed ? UNKNOWN_DTZ : dtz;
+	}
+
+	/**
+	 * Checks whether a position may be in the tables: it has few enough pieces
+	 * and no castling rights.
+	 *
+	 * @param cb the chess board
+	 * @return true if the position can be probed, false otherwise.
+	 */
+	private boolean canProbe(ChessBoard cb) {
+		if (Long.bitCount(cb.getOccupancy()) > maxPieces) {
+			return false;
+		}
+		for (PieceColor pc : PieceColor.values()) {
+			if (cb.hasCastlingRight(pc, true) || cb.hasCastlingRight(pc, false)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A class which holds the state of one probe.
+	 */
+	private static class ProbeState {
+
+		private boolean failed;
+		private boolean zeroing;
+	}
+
+	/**
+	 * Finds the result of a position. The tables may store any value for
+	 * positions in which a capture is best, so the captures are searched first;
+	 * if one of them wins, or if every move is a capture, the table is not needed.
+	 *
+	 * @param cb                the chess board
+	 * @param pc                the color of the player to move
+	 * @param checkZeroingMoves true to search pawn moves along with captures
+	 * @param state             the state of the probe, which records whether the
+	 *                          best move found is a capture or a pawn move
+	 * @return the result from -2 (loss) to 2 (win)
+	 */
+	private int search(ChessBoard cb, PieceColor pc, boolean checkZeroingMoves, ProbeState state) {
+		BoardAnalyzer ba = BoardAnalyzer.getInstance();
+		int best = -2;
+		int moveCount = 0;
+		int totalCount = 0;
+		for (Move m : ba.getValidMoves(cb, pc)) {
+			boolean pawn = cb.getPiece(m.getFrom()).getPieceType() == PieceType.PAWN;
+			PieceType[] promotions = getPromotions(cb, m);
+			totalCount += promotions.length;
+			if (!ba.isCapture(cb, m) && (!checkZeroingMoves || !pawn)) {
+				continue;
+			}
+			for (PieceType promotion : promotions) {
+				moveCount++;
+				int value = -search(play(cb, pc, m, promotion), pc.flip(), false, state);
+				if (state.failed) {
+					return 0;
+				}
+				if (value > best) {
+					best = value;
+					if (value >= 2) {
+						state.zeroing = true;
+						return value;
+					}
+				}
+			}
+		}
+
+		boolean noMoreMoves = moveCount != 0 && moveCount == totalCount;
+		int value;
+		if (noMoreMoves) {
+			value = best;
+		} else {
+			value = probeTable(cb, pc, false, 0, state);
+			if (state.failed) {
+				return 0;
+			}
+		}
+
+		if (best >= value) {
+			state.zeroing = best > 0 || noMoreMoves;
+			return best;
+		}
+		state.zeroing = false;
+		return value;
+	}
+
+	/**
+	 * Finds the distance to zeroing of a position. DTZ tables only store one
+	 * player to move; for the other one, the distances after each move are
+	 * compared.
+	 *
+	 * @param cb    the chess board
+	 * @param pc    the color of the player to move
+	 * @param state the state of the probe
+	 * @return the distance to zeroing in plies, signed like the result; cursed
+	 *         wins and blessed losses are 100 plies further away
+	 */
+	private int probeDtz(ChessBoard cb, PieceColor pc, ProbeState state) {
+		state.zeroing = false;
+		int wdl = search(cb, pc, true, state);
+		if (state.failed || wdl == 0) {
+			return 0;
+		}
+		if (state.zeroing) {
+			return getDtzBeforeZeroing(wdl);
+		}
+
+		int dtz = probeTable(cb, pc, true, wdl, state);
+		if (state.failed) {
+			return 0;
+		}
+		if (dtz != SyzygyTable.CHANGE_STM) {
+			return (dtz + ((wdl == -1 || wdl == 1) ? 100 : 0)) * Integer.signum(wdl);
+		}
+
+		BoardAnalyzer ba = BoardAnalyzer.getInstance();
+		int minDtz = 0xFFFF;
+		for (Move m : ba.getValidMoves(cb, pc)) {
+			boolean zeroing = ba.isCapture(cb, m) || cb.getPiece(m.getFrom()).getPieceType() == PieceType.PAWN;
+			for (PieceType promotion : getPromotions(cb, m)) {
+				ChessBoard sim = play(cb, pc, m, promotion);
+				int value = zeroing ? -getDtzBeforeZeroing(search(sim, pc.flip(), false, state))
+						: -probeDtz(sim, pc.flip(), state);
+				if (state.failed) {
+					return 0;
+				}
+
+				// A mate in one has the shortest distance there is.
+				if (value == 1 && ba.isInCheckmate(sim, pc.flip())) {
+					minDtz = 1;
+				}
+				if (!zeroing) {
+					value += Integer.signum(value);
+				}
+				if (value < minDtz && Integer.signum(value) == Integer.signum(wdl)) {
+					minDtz = value;
+				}
+			}
+		}
+		return (minDtz == 0xFFFF) ? -1 : minDtz;
+	}
+
+	/**
+	 * Returns the distance to zeroing of a position whose best move is a capture
+	 * or a pawn move.
+	 *
+	 * @param wdl the result from -2 to 2
+	 * @return the distance to zeroing in plies
+	 */
+	private static int getDtzBeforeZeroing(int wdl) {
+		switch (wdl) {
+		case 2:
+			return 1;
+		case 1:
+			return 101;
+		case -1:
+			return -101;
+		case -2:
+			return -1;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Looks up a position in the table with its material.
+	 *
+	 * @param cb    the chess board
+	 * @param pc    the color of the player to move
+	 * @param isDtz true to look it up in a DTZ table, false for a WDL table
+	 * @param wdl   for DTZ tables, the result of the position
+	 * @param state the state of the probe, which is marked as failed if there is
+	 *              no table
+	 * @return the value from the table
+	 */
+	private int probeTable(ChessBoard cb, PieceColor pc, boolean isDtz, int wdl, ProbeState state) {
+		if (Long.bitCount(cb.getOccupancy()) == 2) {
+			return 0;
+		}
+		Map<String, SyzygyTable> tables = isDtz ? dtz : this.wdl;
+		String white = getMaterial(cb, PieceColor.WHITE);
+		String black = getMaterial(cb, PieceColor.BLACK);
+		boolean blackStronger = false;
+		SyzygyTable table = tables.get(white + "v" + black);
+		if (table == null) {
+			table = tables.get(black + "v" + white);
+			blackStronger = true;
+		}
+		if (table == null) {
+			state.failed = true;
+			return 0;
+		}
+		return table.probe(cb, pc, blackStronger, wdl);
+	}
+
+	/**
+	 * Returns the pieces a move can promote to.
+	 *
+	 * @param cb the chess board
+	 * @param m  the move
+	 * @return the four promotion pieces for a pawn reaching the last rank, or
+	 *         an array holding only null for any other move
+	 */
+	private static PieceType[] getPromotions(ChessBoard cb, Move m) {
+		ChessPiece cp = cb.getPiece(m.getFrom());
+		int lastRank = (cp.getPieceColor() == PieceColor.WHITE) ? 7 : 0;
+		if (cp.getPieceType() == PieceType.PAWN && m.getTo().getY() == lastRank) {
+			return PROMOTIONS;
+		}
+		return NO_PROMOTION;
+	}
+
+	/**
+	 * Plays a move on a copy of a chess board.
+	 *
+	 * @param cb        the chess board
+	 * @param pc        the color of the player to move
+	 * @param m         the move
+	 * @param promotion the piece type a pawn is promoted to, null for none
+	 * @return the board after the move
+	 */
+	private static ChessBoard play(ChessBoard cb, PieceColor pc, Move m, PieceType promotion) {
+		ChessBoard sim = new ChessBoard(cb);
+		new Position(sim, pc, 0, 1).play(m, promotion);
+		return sim;
+	}
+
+	/**
+	 * Checks whether the WDL table of a position has been mapped. Tables are named
+	 * with the stronger side first, so both orders of the two sides are tried.
+	 *
+	 * @param cb the chess board
+	 * @return true if the table is available, false otherwise.
+	 */
+	public boolean hasTable(ChessBoard cb) {
+		String white = getMaterial(cb, PieceColor.WHITE);
+		String black = getMaterial(cb, PieceColor.BLACK);
+		return wdl.containsKey(white + "v" + black) || wdl.containsKey(black + "v" + white);
+	}
+
+	/**
+	 * A getter for the amount of mapped WDL and DTZ tables.
+	 *
+	 * @return the amount of tables
+	 */
+	public int getTableCount() {
+		return wdl.size() + dtz.size();
+	}
+
+	/**
+	 * Returns the pieces of one side in the notation of Syzygy file names, from
+	 * the king down to the pawns, for example "KRP".
+	 *
+	 * @param cb the chess board
+	 * @param pc the color of the side
+	 * @return the material of the side
+	 */
+	private static String getMaterial(ChessBoard cb, PieceColor pc) {
+		StringBuilder sb = new StringBuilder();
+		for (int type = PieceType.KING.ordinal(); type >= 0; type--) {
+			int count = Long.bitCount(cb.getPieces(PieceType.values()[type], pc));
+			for (int i = 0; i < count; i++) {
+				sb.append(PIECE_LETTERS.charAt(type));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Maps a file into memory read-only.
+	 *
+	 * @param file the file to map
+	 * @return the mapped buffer
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private static MappedByteBuffer map(Path file) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+	}
+
+	/**
+	 * Checks whether a buffer starts with a given magic number.
+	 *
+	 * @param buffer the buffer
+	 * @param magic  the bytes of the magic number
+	 * @return true if the buffer starts with the magic number, false otherwise.
+	 */
+	private static boolean hasMagic(ByteBuffer buffer, int[] magic) {
+		if (buffer.capacity() < magic.length) {
+			return false;
+		}
+		for (int i = 0; i < magic.length; i++) {
+			if ((buffer.get(i) & 0xFF) != magic[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,49 @@
+package chess.tablebase;
+
+import chess.board.ChessBoard;
+import chess.piece.PieceColor;
+
+/**
+ * An interface for endgame tablebases, which know the exact result of positions
+ * with few pieces left.
+ * 
+ * @author kennangumbs
+ *
+ */
+public interface Tablebase {
+
+	/**
+	 * A value returned by {@link #probeDtz(ChessBoard, PieceColor)} when the
+	 * distance is not known.
+	 */
+	int UNKNOWN_DTZ = Integer.MIN_VALUE;
+
+	/**
+	 * Returns the largest number of pieces (including kings) a position may have
+	 * for this tablebase to be probed.
+	 * 
+	 * @return the piece limit
+	 */
+	int getMaxPieces();
+
+	/**
+	 * Looks up the win/draw/loss result of a position.
+	 * 
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @return the result for the player to move, or null if it is not known
+	 */
+	Wdl probeWdl(ChessBoard cb, PieceColor pc);
+
+	/**
+	 * Looks up the distance to zeroing of a position, i.e. the number of plies
+	 * until the next capture or pawn move with best play. The sign follows the
+	 * result: positive if the player to move wins, negative if they lose and 0 for
+	 * draws.
+	 * 
+	 * @param cb the chess board
+	 * @param pc the color of the player to move
+	 * @return the distance to zeroing, or {@link #UNKNOWN_DTZ}
+	 */
+	int probeDtz(ChessBoard cb, PieceColor pc);
+}
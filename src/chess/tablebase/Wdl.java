@@ -0,0 +1,23 @@
+package chess.tablebase;
+
+/**
+ * An enum representing a win/draw/loss result from a tablebase, from the point
+ * of view of the player to move. Cursed wins and blessed losses are wins and
+ * losses which cannot be completed before the fifty-move rule ends the game in
+ * a draw.
+ * 
+ * @author kennangumbs
+ *
+ */
+public enum Wdl {
+	LOSS, BLESSED_LOSS, DRAW, CURSED_WIN, WIN;
+
+	/**
+	 * Returns the result from the point of view of the other player.
+	 * 
+	 * @return the opposite result
+	 */
+	public Wdl flip() {
+		return values()[4 - ordinal()];
+	}
+}
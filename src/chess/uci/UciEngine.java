@@ -0,0 +1,614 @@
+package chess.uci;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import chess.board.ChessBoard;
+import chess.board.Fen;
+import chess.board.Move;
+import chess.board.Position;
+import chess.pgn.San;
+import chess.piece.ChessPiece;
+import chess.piece.PieceColor;
+import chess.piece.PieceType;
+import chess.player.Minimax;
+import chess.player.PvLine;
+import chess.player.SearchResult;
+import chess.player.TranspositionTable;
+
+/**
+ * A headless front end which lets chess GUIs and match tools drive the
+ * {@link Minimax} AI over standard input and output, using the Universal Chess
+ * Interface.
+ *
+ * Commands are read on the calling thread, and each search runs on a thread of
+ * its own, so that {@code stop} and {@code ponderhit} are handled while the
+ * engine is thinking. Every completed iteration of a search is reported with
+ * {@code info} lines. With more than one thread, helper searches share the
+ * transposition table with the main search and fill it with results the main
+ * search can use (lazy SMP).
+ *
+ * @author kennangumbs
+ *
+ * @see http://wbec-ridderkerk.nl/html/UCIProtocol.html
+ */
+public class UciEngine {
+
+	private static final String NAME = "Chess";
+	private static final String AUTHOR = "kennangumbs";
+
+	private static final int DEFAULT_HASH = 16;
+	private static final int MAX_HASH = 4096;
+	private static final int MAX_THREADS = 64;
+	private static final int MAX_MULTI_PV = 64;
+
+	private static final String PROMOTION_LETTERS = "pnbrqk";
+
+	/**
+	 * How much time is kept in reserve when playing on a clock, in milliseconds.
+	 */
+	private static final int MOVE_OVERHEAD = 50;
+
+	/**
+	 * How many moves the remaining time is spread over when the GUI does not say.
+	 */
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "UCI Timer");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final BufferedReader in;
+	private final PrintStream out;
+
+	private Position position;
+	private TranspositionTable table;
+	private int threads;
+	private int multiPv;
+
+	private final Object lock = new Object();
+	private Thread searchThread;
+	private final List<Minimax> searchers;
+	private boolean waitForStop;
+	private long ponderTime;
+	private ScheduledFuture<?> ponderDeadline;
+
+	/**
+	 * Constructs a UciEngine object.
+	 *
+	 * @param in  the stream commands are read from
+	 * @param out the stream responses are written to
+	 */
+	public UciEngine(InputStream in, PrintStream out) {
+		this.in = new BufferedReader(new InputStreamReader(in));
+		this.out = out;
+
+		position = Fen.parse(Fen.START);
+		table = new TranspositionTable(getTableBits(DEFAULT_HASH));
+		threads = 1;
+		multiPv = 1;
+		searchers = new ArrayList<Minimax>();
+	}
+
+	/**
+	 * Reads and handles commands until {@code quit} is received or the input
+	 * ends.
+	 */
+	public void run() {
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (!handle(line.trim())) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		stopSearch();
+	}
+
+	/**
+	 * Handles a single command.
+	 *
+	 * @param line the command line
+	 * @return false if the engine should quit, true otherwise.
+	 */
+	private boolean handle(String line) {
+		String[] tokens = line.split("\\s+");
+		switch (tokens[0]) {
+		case "uci":
+			send("id name " + NAME);
+			send("id author " + AUTHOR);
+			send("option name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH);
+			send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+			send("option name MultiPV type spin default 1 min 1 max " + MAX_MULTI_PV);
+			send("option name Ponder type check default false");
+			send("uciok");
+			break;
+		case "isready":
+			send("readyok");
+			break;
+		case "ucinewgame":
+			stopSearch();
+			table.clear();
+			position = Fen.parse(Fen.START);
+			break;
+		case "setoption":
+			stopSearch();
+			setOption(tokens);
+			break;
+		case "position":
+			stopSearch();
+			try {
+				position = parsePosition(tokens);
+			} catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+			}
+			break;
+		case "go":
+			stopSearch();
+			go(tokens);
+			break;
+		case "stop":
+			stopSearch();
+			break;
+		case "ponderhit":
+			ponderHit();
+			break;
+		case "quit":
+			return false;
+		default:
+			// Unknown commands are ignored, as the protocol asks.
+			break;
+		}
+		return true;
+	}
+
+	/**
+	 * Handles the {@code setoption} command.
+	 *
+	 * @param tokens the tokens of the command
+	 */
+	private void setOption(String[] tokens) {
+		String name = getArgument(tokens, "name", "value");
+		String value = getArgument(tokens, "value", null);
+		try {
+			if (name.equalsIgnoreCase("Hash")) {
+				int mb = Math.max(1, Math.min(MAX_HASH, Integer.parseInt(value)));
+				table = new TranspositionTable(getTableBits(mb));
+			} else if (name.equalsIgnoreCase("Threads")) {
+				threads = Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value)));
+			} else if (name.equalsIgnoreCase("MultiPV")) {
+				multiPv = Math.max(1, Math.min(MAX_MULTI_PV, Integer.parseInt(value)));
+			}
+		} catch (NumberFormatException | NullPointerException e) {
+			System.err.println("Bad option: " + String.join(" ", tokens));
+		}
+	}
+
+	/**
+	 * Parses the {@code position} command.
+	 *
+	 * @param tokens the tokens of the command
+	 * @return the position after all of the moves
+	 * @throws IllegalArgumentException if the position or a move is not valid
+	 */
+	private static Position parsePosition(String[] tokens) {
+		int i = 1;
+		Position pos;
+		if (tokens.length > 1 && tokens[1].equals("fen")) {
+			StringBuilder fen = new StringBuilder();
+			for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++) {
+				fen.append(tokens[i]).append(' ');
+			}
+			pos = Fen.parse(fen.toString());
+		} else {
+			pos = Fen.parse(Fen.START);
+			i = 2;
+		}
+
+		if (i < tokens.length && tokens[i].equals("moves")) {
+			for (i++; i < tokens.length; i++) {
+				Move m = parseMove(pos, tokens[i]);
+				if (m == null) {
+					throw new IllegalArgumentException("Illegal move: " + tokens[i]);
+				}
+				pos.play(m, getPromotion(tokens[i]));
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Handles the {@code go} command by starting a search on a new thread.
+	 *
+	 * @param tokens the tokens of the command
+	 */
+	private void go(String[] tokens) {
+		int depth = Minimax.MAX_DEPTH;
+		long nodes = 0;
+		long moveTime = -1;
+		long time = -1;
+		long inc = 0;
+		int movesToGo = DEFAULT_MOVES_TO_GO;
+		boolean infinite = false;
+		boolean ponder = false;
+		boolean white = position.getSideToMove() == PieceColor.WHITE;
+
+		try {
+			for (int i = 1; i < tokens.length; i++) {
+				switch (tokens[i]) {
+				case "depth":
+					depth = Integer.parseInt(tokens[++i]);
+					break;
+				case "nodes":
+					nodes = Long.parseLong(tokens[++i]);
+					break;
+				case "movetime":
+					moveTime = Long.parseLong(tokens[++i]);
+					break;
+				case "wtime":
+				case "btime":
+					long t = Long.parseLong(tokens[++i]);
+					if (tokens[i - 1].charAt(0) == (white ? 'w' : 'b')) {
+						time = t;
+					}
+					break;
+				case "winc":
+				case "binc":
+					long n = Long.parseLong(tokens[++i]);
+					if (tokens[i - 1].charAt(0) == (white ? 'w' : 'b')) {
+						inc = n;
+					}
+					break;
+				case "movestogo":
+					movesToGo = Math.max(1, Integer.parseInt(tokens[++i]));
+					break;
+				case "infinite":
+					infinite = true;
+					break;
+				case "ponder":
+					ponder = true;
+					break;
+				default:
+					break;
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Bad go command: " + String.join(" ", tokens));
+		}
+
+		long limit = moveTime;
+		if (limit < 0 && time >= 0) {
+			limit = Math.max(1, Math.min(time / movesToGo + inc * 3 / 4, time - MOVE_OVERHEAD));
+		}
+		boolean unlimited = infinite || (limit < 0 && nodes == 0 && depth == Minimax.MAX_DEPTH);
+
+		synchronized (lock) {
+			waitForStop = infinite || ponder;
+			ponderTime = ponder ? limit : -1;
+		}
+		startSearch(depth, nodes, (unlimited || ponder) ? -1 : limit);
+	}
+
+	/**
+	 * Starts the main search and the helper searches.
+	 *
+	 * @param depth     the depth limit
+	 * @param nodes     the node limit, 0 for none
+	 * @param timeLimit the time limit in milliseconds, negative for none
+	 */
+	private void startSearch(int depth, long nodes, long timeLimit) {
+		Position root = position;
+		PieceColor pc = root.getSideToMove();
+
+		searchers.clear();
+		for (int i = 0; i < threads; i++) {
+			Minimax m = new Minimax(pc, new ChessBoard(root.getBoard()));
+			m.setTranspositionTable(table);
+			m.setDepthLimit(depth);
+			m.setNodeLimit(nodes);
+			m.setTimeLimit(timeLimit);
+			// The stop flag is cleared here, before any search thread runs, so that a
+			// stop which arrives before a thread gets going is not lost.
+			m.resetStop();
+			searchers.add(m);
+		}
+
+		Minimax main = searchers.get(0);
+		PieceType promotion = main.choosePromotedPiece().getPieceType();
+		main.setListener(result -> sendInfo(result, pc, promotion));
+
+		ArrayList<Thread> helpers = new ArrayList<Thread>();
+		for (int i = 1; i < threads; i++) {
+			Minimax helper = searchers.get(i);
+			Thread t = new Thread(() -> helper.analyze(1), "UCI Helper " + i);
+			t.setDaemon(true);
+			helpers.add(t);
+			t.start();
+		}
+
+		searchThread = new Thread(() -> {
+			SearchResult result = (multiPv > 1) ? main.analyze(multiPv) : search(main);
+			for (int i = 1; i < searchers.size(); i++) {
+				searchers.get(i).stop();
+			}
+			for (Thread t : helpers) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			// In infinite and ponder mode the best move may only be sent once the GUI
+			// asks for it.
+			synchronized (lock) {
+				while (waitForStop) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+			}
+			sendBestMove(root.getBoard(), pc, result, promotion);
+		}, "UCI Search");
+		searchThread.start();
+	}
+
+	/**
+	 * Runs the main search, using the opening book and the tablebase like a game
+	 * would.
+	 *
+	 * @param main the main searcher
+	 * @return the result of the search
+	 */
+	private static SearchResult search(Minimax main) {
+		main.chooseMove();
+		return main.getLastResult();
+	}
+
+	/**
+	 * Stops the running search, if there is one, and waits until its best move
+	 * has been sent.
+	 */
+	private void stopSearch() {
+		Thread t = searchThread;
+		if (t == null) {
+			return;
+		}
+
+		synchronized (lock) {
+			waitForStop = false;
+			cancelPonderDeadline();
+			lock.notifyAll();
+		}
+		for (Minimax m : searchers) {
+			m.stop();
+		}
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		searchThread = null;
+	}
+
+	/**
+	 * Handles the {@code ponderhit} command: the move that was pondered on has
+	 * been played, so the search goes on as a normal, timed search.
+	 */
+	private void ponderHit() {
+		synchronized (lock) {
+			waitForStop = false;
+			lock.notifyAll();
+			if (ponderTime >= 0) {
+				cancelPonderDeadline();
+				ponderDeadline = TIMER.schedule(() -> {
+					for (Minimax m : searchers) {
+						m.stop();
+					}
+				}, ponderTime, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Cancels the timer started by {@code ponderhit}, if there is one.
+	 */
+	private void cancelPonderDeadline() {
+		if (ponderDeadline != null) {
+			ponderDeadline.cancel(false);
+			ponderDeadline = null;
+		}
+	}
+
+	/**
+	 * Sends one {@code info} line for each line of a search result.
+	 *
+	 * @param result    the result of a completed iteration
+	 * @param pc        the color of the player to move at the root
+	 * @param promotion the piece type the engine promotes pawns to
+	 */
+	private void sendInfo(SearchResult result, PieceColor pc, PieceType promotion) {
+		long time = result.getElapsedMs();
+		long nps = (time > 0) ? result.getNodes() * 1000 / time : 0;
+		List<PvLine> lines = result.getLines();
+		for (int i = 0; i < lines.size(); i++) {
+			PvLine line = lines.get(i);
+			StringBuilder sb = new StringBuilder("info depth ").append(result.getDepth());
+			sb.append(" seldepth ").append(result.getMaxDepth());
+			sb.append(" multipv ").append(i + 1);
+			sb.append(" score ").append(formatScore(line, pc));
+			sb.append(" nodes ").append(result.getNodes());
+			sb.append(" nps ").append(nps);
+			sb.append(" time ").append(time);
+			sb.append(" pv");
+			Position pos = new Position(new ChessBoard(position.getBoard()), pc, 0, 1);
+			for (Move m : line.getMoves()) {
+				sb.append(' ').append(toUci(pos.getBoard(), m, promotion));
+				pos.play(m, promotion);
+			}
+			send(sb.toString());
+		}
+	}
+
+	/**
+	 * Sends the best move of a search.
+	 *
+	 * @param cb        the chess board at the root
+	 * @param pc        the color of the player to move at the root
+	 * @param result    the result of the search
+	 * @param promotion the piece type the engine promotes pawns to
+	 */
+	private void sendBestMove(ChessBoard cb, PieceColor pc, SearchResult result, PieceType promotion) {
+		Move best = (result == null) ? null : result.getBestMove();
+		if (best == null) {
+			send("bestmove 0000");
+			return;
+		}
+
+		String s = "bestmove " + toUci(cb, best, promotion);
+		List<Move> pv = result.getLines().get(0).getMoves();
+		if (pv.size() > 1) {
+			Position pos = new Position(new ChessBoard(cb), pc, 0, 1);
+			pos.play(best, promotion);
+			s += " ponder " + toUci(pos.getBoard(), pv.get(1), promotion);
+		}
+		send(s);
+	}
+
+	/**
+	 * Formats the score of a line for the side to move, in centipawns or as the
+	 * distance to a checkmate, which is read off the length of the line.
+	 *
+	 * @param line the line
+	 * @param pc   the color of the player to move
+	 * @return the score in UCI notation
+	 */
+	private static String formatScore(PvLine line, PieceColor pc) {
+		float score = (pc == PieceColor.WHITE) ? line.getScore() : -line.getScore();
+		if (Math.abs(score) >= 999999) {
+			int moves = (line.getMoves().size() + 1) / 2;
+			return "mate " + (score > 0 ? moves : -moves);
+		}
+		return "cp " + Math.round(score * 100);
+	}
+
+	/**
+	 * Writes the coordinates of a move in UCI notation, for example "e2e4" or
+	 * "e7e8q". A pawn reaching the last rank is written as promoting to a queen.
+	 *
+	 * @param cb the chess board before the move
+	 * @param m  the move
+	 * @return the move in UCI notation
+	 */
+	public static String toUci(ChessBoard cb, Move m) {
+		return toUci(cb, m, null);
+	}
+
+	/**
+	 * Writes the coordinates of a move in UCI notation, followed by the letter of
+	 * the piece a pawn reaching the last rank is promoted to, for example "e7e8n".
+	 *
+	 * @param cb        the chess board before the move
+	 * @param m         the move
+	 * @param promotion the piece type a pawn is promoted to, null for a queen
+	 * @return the move in UCI notation
+	 */
+	public static String toUci(ChessBoard cb, Move m, PieceType promotion) {
+		String s = m.getFrom().toString() + m.getTo();
+		ChessPiece cp = cb.getPiece(m.getFrom());
+		if (cp != null && cp.getPieceType() == PieceType.PAWN && (m.getTo().getY() == 0 || m.getTo().getY() == 7)) {
+			s += PROMOTION_LETTERS.charAt((promotion == null ? PieceType.QUEEN : promotion).ordinal());
+		}
+		return s;
+	}
+
+	/**
+	 * Finds the valid move matching a move in UCI notation.
+	 *
+	 * @param pos the position
+	 * @param uci the move in UCI notation
+	 * @return the move, or null if it is not valid
+	 */
+	public static Move parseMove(Position pos, String uci) {
+		return San.parseLan(pos, uci);
+	}
+
+	/**
+	 * Returns the piece type a UCI move promotes to.
+	 *
+	 * @param uci the move in UCI notation
+	 * @return the type of the promotion, or null if the move is not a promotion
+	 */
+	public static PieceType getPromotion(String uci) {
+		if (uci.length() < 5) {
+			return null;
+		}
+		int i = "nbrq".indexOf(Character.toLowerCase(uci.charAt(4)));
+		return (i < 0) ? null : PieceType.values()[PieceType.KNIGHT.ordinal() + i];
+	}
+
+	/**
+	 * Returns the words of a command between a keyword and the next keyword.
+	 *
+	 * @param tokens the tokens of the command
+	 * @param key    the keyword before the argument
+	 * @param next   the keyword after the argument, null for the end of the line
+	 * @return the argument, or null if the keyword is missing
+	 */
+	private static String getArgument(String[] tokens, String key, String next) {
+		StringBuilder sb = null;
+		for (String token : tokens) {
+			if (sb == null) {
+				if (token.equals(key)) {
+					sb = new StringBuilder();
+				}
+			} else if (token.equals(next)) {
+				break;
+			} else {
+				sb.append(sb.length() > 0 ? " " : "").append(token);
+			}
+		}
+		return (sb == null) ? null : sb.toString();
+	}
+
+	/**
+	 * Returns the size of a transposition table which fits into a given amount of
+	 * memory.
+	 *
+	 * @param mb the amount of memory in megabytes
+	 * @return the base 2 logarithm of the amount of entries
+	 */
+	private static int getTableBits(int mb) {
+		// Each entry takes two longs.
+		long entries = (long) mb * 1024 * 1024 / 16;
+		return 63 - Long.numberOfLeadingZeros(entries);
+	}
+
+	/**
+	 * Writes a line to the GUI.
+	 *
+	 * @param line the line
+	 */
+	private void send(String line) {
+		synchronized (out) {
+			out.println(line);
+			out.flush();
+		}
+	}
+}